@@ -44,4 +44,22 @@ public interface IIdGenerator {
      * @return 全局唯一的Long类型ID
      */
     Long nextId();
+
+    /**
+     * 批量生成全局唯一ID
+     * <p>
+     * 默认实现逐个调用{@link #nextId()}，实现类可以重写此方法，
+     * 一次性从底层生成器或预生成缓冲区中取出多个ID，减少锁竞争。
+     * </p>
+     *
+     * @param n 需要生成的ID数量
+     * @return 长度为n的ID数组
+     */
+    default long[] nextIds(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
 }
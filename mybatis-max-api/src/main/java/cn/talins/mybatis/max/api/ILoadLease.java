@@ -0,0 +1,60 @@
+package cn.talins.mybatis.max.api;
+
+/**
+ * 缓存加载租约接口 - 在多个节点之间协调同一份缓存数据的加载
+ * <p>
+ * 同一节点内的并发加载由仓库自行合并，但多个节点共享二级缓存时，
+ * 每个节点仍会各自查询数据库。配置该接口的实现后，节点在加载整个缓存区域或单条热点记录前
+ * 先获取租约，未获取到时等待持有者写入共享缓存，超过等待时间后再自行加载（或按配置快速失败）。
+ * </p>
+ *
+ * <p>
+ * 实现类通常基于Redis的SET NX PX或数据库的条件更新，租约必须在过期时间后自动失效，
+ * 避免持有者异常退出后其他节点永远无法加载。获取租约时返回唯一的持有者令牌，
+ * 释放时只在租约仍属于该令牌时删除：持有者的加载超过了租约时长、租约已被其他节点获取时，
+ * 不能误删其他节点的租约。
+ * </p>
+ *
+ * <p>
+ * 自定义实现示例：
+ * <pre>
+ * &#64;Bean
+ * public ILoadLease redisLoadLease(StringRedisTemplate redisTemplate) {
+ *     RedisScript&lt;Long&gt; compareAndDelete = new DefaultRedisScript&lt;&gt;(
+ *             "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+ *             Long.class);
+ *     return new ILoadLease() {
+ *         public String tryAcquire(String key, long leaseMillis) {
+ *             String token = IdUtil.fastSimpleUUID();
+ *             return Boolean.TRUE.equals(redisTemplate.opsForValue()
+ *                     .setIfAbsent("lease:" + key, token, Duration.ofMillis(leaseMillis))) ? token : null;
+ *         }
+ *         public void release(String key, String token) {
+ *             redisTemplate.execute(compareAndDelete, Collections.singletonList("lease:" + key), token);
+ *         }
+ *     };
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ */
+public interface ILoadLease {
+
+    /**
+     * 尝试获取加载租约，不阻塞
+     *
+     * @param key 租约键，由缓存区域名和记录键组成
+     * @param leaseMillis 租约时长（毫秒），到期后自动释放
+     * @return 获取成功返回本次持有的唯一令牌，其他节点持有时返回null
+     */
+    String tryAcquire(String key, long leaseMillis);
+
+    /**
+     * 释放加载租约，租约已过期或已被其他令牌持有时不做任何操作
+     *
+     * @param key 租约键
+     * @param token {@link #tryAcquire}返回的令牌
+     */
+    void release(String key, String token);
+}
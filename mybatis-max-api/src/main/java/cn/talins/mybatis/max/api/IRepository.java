@@ -2,6 +2,7 @@ package cn.talins.mybatis.max.api;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.talins.mybatis.max.api.exception.VersionConflictException;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
@@ -14,6 +15,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 通用数据仓库接口 - MyBatis-Max框架的核心数据访问接口
@@ -129,6 +132,106 @@ public interface IRepository {
      */
     <T> int updateById(@NotNull String tableName, @NotNull T entity);
 
+    /**
+     * 根据ID和版本号更新记录（乐观锁）
+     * <p>
+     * 实体对象必须包含id和version字段，version为读取记录时的版本号。
+     * 执行{@code UPDATE ... WHERE id = ? AND version = ?}，同时为记录分配新的版本号；
+     * 未命中任何记录说明记录已被其他请求修改或已删除，抛出{@link VersionConflictException}。
+     * </p>
+     *
+     * <p>
+     * 默认实现不支持乐观锁更新，由具体的仓库实现覆盖。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param entity 实体对象（必须包含id和version字段）
+     * @param <T> 实体类型
+     * @return 更新后的新版本号
+     * @throws VersionConflictException 如果版本号不匹配
+     */
+    default <T> Long updateByIdWithVersion(@NotNull String tableName, @NotNull T entity) {
+        throw new UnsupportedOperationException("当前仓库不支持乐观锁更新");
+    }
+
+    /**
+     * 原子递增计数字段
+     * <p>
+     * 执行{@code UPDATE ... SET column = column + delta WHERE id = ?}，由数据库保证并发安全，
+     * 避免"读取-修改-updateById"造成的更新丢失。同时分配新的version并设置updateTime，
+     * 持有旧版本号的{@link #updateByIdWithVersion}会失败，不会用旧的计数覆盖递增结果；version本身不能作为计数字段。
+     * 如果启用了缓存，直接在缓存记录上累加，不重新查询。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param id 主键ID
+     * @param column 计数字段名（支持驼峰命名，自动转换为下划线）
+     * @param delta 增量，可以为负数
+     * @return 更新的记录数（0或1）
+     */
+    default int increment(@NotNull String tableName, @NotNull Long id, @NotNull String column, long delta) {
+        return incrementBatch(tableName, Collections.singletonMap(id, Collections.singletonMap(column, delta)));
+    }
+
+    /**
+     * 批量原子递增计数字段
+     * <p>
+     * 每条记录执行一条UPDATE语句，同一条记录的多个字段合并到同一条语句中。
+     * 不在外部事务中时，增量已提交但之后的缓存更新或后置事件失败会抛出
+     * {@link cn.talins.mybatis.max.api.exception.WriteCommittedException}，调用方不应重试。
+     * </p>
+     *
+     * <p>
+     * 默认实现不支持原子递增，由具体的仓库实现覆盖。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param deltaMap 主键ID -> (计数字段名 -> 增量)
+     * @return 更新的记录数
+     */
+    default int incrementBatch(@NotNull String tableName, @NotEmpty Map<Long, Map<String, Long>> deltaMap) {
+        throw new UnsupportedOperationException("当前仓库不支持原子递增");
+    }
+
+    /**
+     * 在版本冲突时重试操作
+     * <p>
+     * 操作中应先读取最新记录再执行{@link #updateByIdWithVersion}，
+     * 发生{@link VersionConflictException}时重新执行整个操作，超过最大次数后抛出最后一次的异常。
+     * </p>
+     *
+     * <p>
+     * 使用示例：
+     * <pre>
+     * repository.retryOnVersionConflict(3, () -&gt; {
+     *     JSONObject stock = repository.selectById("stock", id, JSONObject.class);
+     *     stock.set("amount", stock.getInt("amount") - 1);
+     *     return repository.updateByIdWithVersion("stock", stock);
+     * });
+     * </pre>
+     * </p>
+     *
+     * @param maxAttempts 最大执行次数（包含第一次）
+     * @param action 读取并更新的操作
+     * @param <R> 返回类型
+     * @return 操作的返回值
+     * @throws VersionConflictException 如果所有尝试都发生冲突
+     */
+    default <R> R retryOnVersionConflict(int maxAttempts, @NotNull Supplier<R> action) {
+        VersionConflictException conflict = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            try {
+                return action.get();
+            } catch (VersionConflictException e) {
+                conflict = e;
+            }
+        }
+        if (conflict == null) {
+            throw new IllegalArgumentException("maxAttempts必须大于0");
+        }
+        throw conflict;
+    }
+
     /**
      * 根据QueryWrapper条件更新记录
      * <p>
@@ -163,14 +266,14 @@ public interface IRepository {
     /**
      * 根据ID列表批量查询记录
      * <p>
-     * 如果启用了缓存，会优先从缓存读取。
+     * 如果启用了缓存，会优先从缓存读取，缓存中没有的记录通过一次IN查询加载并回填缓存。
      * </p>
      *
      * @param tableName 表名
      * @param idList 主键ID列表（不能为空）
      * @param clazz 返回类型的Class对象
      * @param <T> 返回类型
-     * @return 查询结果列表
+     * @return 查询结果列表，启用缓存时按idList的顺序返回，不存在的记录不包含在结果中
      */
     <T> List<T> selectBatchIds(@NotNull String tableName, @NotEmpty Collection<Long> idList, @NotNull Class<T> clazz);
 
@@ -358,4 +461,23 @@ public interface IRepository {
         return page;
     }
 
+    /**
+     * 在工作单元中执行一组写操作
+     * <p>
+     * 回调中通过{@link IUnitOfWork}登记的操作不会立即执行，回调返回后按表分组，
+     * 以JDBC批处理的方式在同一个事务中刷新，事务提交后统一更新缓存并发布后置事件。
+     * 回调抛出异常或刷新失败时，所有操作都不会生效。
+     * </p>
+     *
+     * <p>
+     * 默认实现不支持工作单元，由具体的仓库实现覆盖。
+     * </p>
+     *
+     * @param work 登记写操作的回调
+     * @throws UnsupportedOperationException 如果当前仓库不支持工作单元
+     */
+    default void inTransaction(@NotNull Consumer<IUnitOfWork> work) {
+        throw new UnsupportedOperationException("当前仓库不支持工作单元");
+    }
+
 }
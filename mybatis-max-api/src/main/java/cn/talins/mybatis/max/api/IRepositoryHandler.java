@@ -3,6 +3,8 @@ package cn.talins.mybatis.max.api;
 import cn.talins.mybatis.max.api.pojo.BaseEntity;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.Collection;
+
 /**
  * 数据仓库处理器接口 - 定义数据持久化的核心处理逻辑
  * <p>
@@ -53,6 +55,21 @@ public interface IRepositoryHandler {
      */
     void fillInsertEntity(BaseEntity entity);
 
+    /**
+     * 批量填充插入实体的公共字段
+     * <p>
+     * 默认实现逐个调用{@link #fillInsertEntity}，实现类可以重写此方法，
+     * 通过{@link IIdGenerator#nextIds}一次性为所有实体分配ID。
+     * </p>
+     *
+     * @param entityList 待插入的实体集合
+     */
+    default void fillInsertEntities(Collection<? extends BaseEntity> entityList) {
+        for (BaseEntity entity : entityList) {
+            fillInsertEntity(entity);
+        }
+    }
+
     /**
      * 填充更新实体的公共字段
      * <p>
@@ -0,0 +1,53 @@
+package cn.talins.mybatis.max.api;
+
+/**
+ * 表写版本号存储接口 - 在多个节点之间共享每张表的写版本号
+ * <p>
+ * 本节点的写版本号只在进程内维护，重启后从0开始，也感知不到停机期间其他节点的写操作。
+ * 持久化的一级缓存需要一个跨节点、跨重启的版本号来判断重启前写入的记录是否仍然有效：
+ * 每次写操作提交后递增共享的版本号，重启后只有版本号与写入时相同的记录会被读取，
+ * 其他记录在读取时重新加载。
+ * </p>
+ *
+ * <p>
+ * 实现类通常基于Redis的INCR或数据库的版本表，版本号不能因为过期而丢失。
+ * </p>
+ *
+ * <p>
+ * 自定义实现示例：
+ * <pre>
+ * &#64;Bean
+ * public ITableVersionStore redisTableVersionStore(StringRedisTemplate redisTemplate) {
+ *     return new ITableVersionStore() {
+ *         public long get(String tableName) {
+ *             String version = redisTemplate.opsForValue().get("table-version:" + tableName);
+ *             return version == null ? 0 : Long.parseLong(version);
+ *         }
+ *         public long increment(String tableName) {
+ *             return redisTemplate.opsForValue().increment("table-version:" + tableName);
+ *         }
+ *     };
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ */
+public interface ITableVersionStore {
+
+    /**
+     * 获取表的版本号
+     *
+     * @param tableName 表名
+     * @return 版本号，从未写入过的表返回0
+     */
+    long get(String tableName);
+
+    /**
+     * 递增表的版本号
+     *
+     * @param tableName 表名
+     * @return 递增后的版本号
+     */
+    long increment(String tableName);
+}
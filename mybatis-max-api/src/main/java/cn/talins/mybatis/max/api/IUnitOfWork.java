@@ -0,0 +1,103 @@
+package cn.talins.mybatis.max.api;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 工作单元接口 - 收集一次业务事务中的写操作，提交时统一刷新
+ * <p>
+ * 通过{@link IRepository#inTransaction}获取，登记的操作不会立即执行：
+ * <ul>
+ *     <li>操作按表分组，表之间按首次登记的顺序刷新，同一张表内按插入、更新、删除的顺序刷新</li>
+ *     <li>刷新时使用JDBC批处理，在同一个事务中执行</li>
+ *     <li>事务提交后统一更新缓存并发布后置事件，事务回滚时不产生任何副作用</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 使用示例：
+ * <pre>
+ * repository.inTransaction(uow -&gt; {
+ *     Long orderId = uow.insert("order_info", order);
+ *     item.set("orderId", orderId);
+ *     uow.insert("order_item", item);
+ *     uow.updateById("stock", stock);
+ * });
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * 注意：同一个工作单元中的表必须位于同一个数据源。
+ * </p>
+ *
+ * @author talins
+ * @see IRepository#inTransaction 开启工作单元
+ */
+public interface IUnitOfWork {
+
+    /**
+     * 登记插入一条记录
+     * <p>
+     * 登记时即填充公共字段并分配ID，因此可以在同一个工作单元中引用新记录的ID。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param entity 实体对象（Map或POJO）
+     * @param <T> 实体类型
+     * @return 分配的ID
+     */
+    <T> Long insert(@NotNull String tableName, @NotNull T entity);
+
+    /**
+     * 登记批量插入记录
+     * <p>
+     * 批量分配ID，适合一次插入多条同表记录。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param entityList 实体列表
+     * @param <T> 实体类型
+     * @return 分配的ID列表，与实体列表顺序一致
+     */
+    <T> List<Long> insertBatch(@NotNull String tableName, @NotEmpty Collection<T> entityList);
+
+    /**
+     * 登记根据ID更新记录
+     *
+     * @param tableName 表名
+     * @param entity 实体对象（必须包含id字段）
+     * @param <T> 实体类型
+     */
+    <T> void updateById(@NotNull String tableName, @NotNull T entity);
+
+    /**
+     * 登记根据ID删除记录
+     *
+     * @param tableName 表名
+     * @param id 主键ID
+     */
+    default void deleteById(@NotNull String tableName, @NotNull Long id) {
+        deleteBatchIds(tableName, Collections.singletonList(id));
+    }
+
+    /**
+     * 登记根据ID列表批量删除记录
+     * <p>
+     * 同一张表的删除操作在刷新时合并为一条语句。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param idList 主键ID列表
+     */
+    void deleteBatchIds(@NotNull String tableName, @NotEmpty Collection<Long> idList);
+
+    /**
+     * 已登记的操作数量
+     *
+     * @return 操作数量
+     */
+    int size();
+}
@@ -25,9 +25,10 @@ import java.lang.annotation.Target;
  * <p>
  * 注意事项：
  * <ul>
- *     <li>缓存仅在当前线程有效，请求结束后自动清理</li>
+ *     <li>缓存仅在当前请求或显式打开的作用域内有效，请求结束后自动清理</li>
  *     <li>不适用于需要实时数据的场景</li>
- *     <li>需要配合AOP切面使用</li>
+ *     <li>需要配合AOP切面使用，由starter中的ThreadLocalCacheAspect实现，同一对象内部的自调用不会缓存</li>
+ *     <li>非Web场景及异步任务的作用域见starter中的ThreadLocalCacheScope</li>
  * </ul>
  * </p>
  * 
@@ -0,0 +1,49 @@
+package cn.talins.mybatis.max.api.exception;
+
+import lombok.Getter;
+
+/**
+ * 版本冲突异常 - 乐观锁更新未命中任何记录时抛出
+ * <p>
+ * 由{@link cn.talins.mybatis.max.api.IRepository#updateByIdWithVersion}抛出，表示记录在读取之后
+ * 已被其他请求修改（version已变化）或已被删除。调用方通常应重新读取记录后重试，
+ * 可以使用{@link cn.talins.mybatis.max.api.IRepository#retryOnVersionConflict}。
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.api.IRepository#updateByIdWithVersion 乐观锁更新
+ */
+@Getter
+public class VersionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 表名
+     */
+    private final String tableName;
+
+    /**
+     * 记录ID
+     */
+    private final Long id;
+
+    /**
+     * 更新时期望的版本号
+     */
+    private final Long expectedVersion;
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 表名
+     * @param id 记录ID
+     * @param expectedVersion 期望的版本号
+     */
+    public VersionConflictException(String tableName, Long id, Long expectedVersion) {
+        super("版本冲突: " + tableName + " id=" + id + " version=" + expectedVersion);
+        this.tableName = tableName;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+}
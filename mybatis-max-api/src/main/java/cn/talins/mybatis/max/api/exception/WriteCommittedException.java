@@ -0,0 +1,35 @@
+package cn.talins.mybatis.max.api.exception;
+
+import lombok.Getter;
+
+/**
+ * 写入已提交异常 - 数据库写入已经提交，但之后的缓存更新或后置事件失败时抛出
+ * <p>
+ * 由{@link cn.talins.mybatis.max.api.IRepository#incrementBatch}在事务外调用时抛出，
+ * 原始异常作为cause。调用方不应重试该写操作，否则同一增量会被写入两次。
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.api.IRepository#incrementBatch 批量原子递增
+ */
+@Getter
+public class WriteCommittedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 表名
+     */
+    private final String tableName;
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 表名
+     * @param cause 提交后失败的原因
+     */
+    public WriteCommittedException(String tableName, Throwable cause) {
+        super("写入已提交，后续处理失败: " + tableName, cause);
+        this.tableName = tableName;
+    }
+}
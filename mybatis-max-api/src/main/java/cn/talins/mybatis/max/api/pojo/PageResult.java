@@ -66,6 +66,26 @@ public class PageResult<T> implements Serializable {
      */
     private Page page;
 
+    /**
+     * 数据的陈旧时间（毫秒）
+     * <p>
+     * 数据库出错或超时、返回了缓存中的旧值时才有该字段，为null表示数据是最新的。
+     * </p>
+     */
+    private Long stale;
+
+    /**
+     * 构造函数，数据是最新的
+     *
+     * @param code 响应状态码
+     * @param message 响应消息
+     * @param data 响应数据
+     * @param page 分页信息
+     */
+    public PageResult(int code, String message, T data, Page page) {
+        this(code, message, data, page, null);
+    }
+
     /**
      * 创建成功的分页响应
      * 
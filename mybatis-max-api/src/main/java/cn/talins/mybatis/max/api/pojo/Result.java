@@ -21,6 +21,7 @@ import java.io.Serializable;
  *     "data": {"id": 1, "name": "张三"}
  * }
  * </pre>
+ * 开启了降级读取的缓存表在数据库不可用时返回旧值，响应中带有stale字段（陈旧时间，毫秒）。
  * </p>
  * 
  * <p>
@@ -62,6 +63,25 @@ public class Result<T> implements Serializable {
      */
     private T data;
 
+    /**
+     * 数据的陈旧时间（毫秒）
+     * <p>
+     * 数据库出错或超时、返回了缓存中的旧值时才有该字段，为null表示数据是最新的。
+     * </p>
+     */
+    private Long stale;
+
+    /**
+     * 构造函数，数据是最新的
+     *
+     * @param code 响应状态码
+     * @param message 响应消息
+     * @param data 响应数据
+     */
+    public Result(int code, String message, T data) {
+        this(code, message, data, null);
+    }
+
     /**
      * 创建成功响应
      * 
@@ -1,9 +1,33 @@
 package cn.talins.mybatis.max.sdk;
 
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.sdk.cache.CacheIndex;
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import cn.talins.mybatis.max.sdk.cache.CacheMode;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CacheWritePolicy;
+import cn.talins.mybatis.max.sdk.cache.OffHeapCache;
+import cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider;
+import cn.talins.mybatis.max.sdk.cache.OffHeapStore;
+import cn.talins.mybatis.max.sdk.cache.RowCodec;
+import cn.talins.mybatis.max.sdk.cache.TableReplica;
 import net.oschina.j2cache.CacheChannel;
 import net.oschina.j2cache.CacheObject;
 import net.oschina.j2cache.J2Cache;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * 缓存工具类 - 基于J2Cache的二级缓存操作封装
  * <p>
@@ -28,6 +52,8 @@ import net.oschina.j2cache.J2Cache;
  *     <li>key: 缓存键，通常为记录ID</li>
  *     <li>value: 缓存值，通常为实体对象的JSON表示</li>
  * </ul>
+ * J2Cache使用{@link cn.talins.mybatis.max.sdk.cache.RowSerializer}时，写入的记录包装为
+ * {@link cn.talins.mybatis.max.sdk.cache.CachedRow}，读取时自动取出。
  * </p>
  * 
  * @author talins
@@ -35,19 +61,228 @@ import net.oschina.j2cache.J2Cache;
  */
 public class CacheUtil {
 
+    /**
+     * 表名（缓存区域） -> 缓存策略
+     */
+    private static final Map<String, CachePolicy> POLICY_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 表名（缓存区域） -> 二级索引
+     */
+    private static final Map<String, CacheIndex> INDEX_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 通过{@link #configure}配置的表名
+     */
+    private static final Set<String> CONFIGURED_SET = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 通过{@link #unregister}注销、但J2Cache中仍存在同名区域的表名，这些区域不再以默认策略补充登记
+     */
+    private static final Set<String> UNREGISTERED_SET = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 是否已从J2Cache加载已配置的区域
+     */
+    private static volatile boolean loaded;
+
     /**
      * 检查缓存区域是否存在
+     * <p>
+     * 只查询策略注册表，不遍历J2Cache的区域列表，也不产生临时对象。
+     * </p>
      * 
      * @param region 缓存区域名称（通常为表名）
      * @return 如果区域存在返回true，否则返回false
      */
     public static Boolean exists(String region) {
+        return getPolicy(region) != null;
+    }
+
+    /**
+     * 获取表的缓存策略
+     * <p>
+     * 首次调用时从J2Cache加载已配置的区域。
+     * </p>
+     * 
+     * @param region 缓存区域名称（通常为表名）
+     * @return 缓存策略，未开启缓存或策略中关闭了缓存时返回null
+     */
+    public static CachePolicy getPolicy(String region) {
+        if (!loaded) {
+            reload();
+        }
+        CachePolicy policy = POLICY_MAP.get(region);
+        return policy == null || !policy.isEnabled() ? null : policy;
+    }
+
+    /**
+     * 登记或更新表的缓存策略
+     * 
+     * @param region 缓存区域名称（通常为表名）
+     * @param policy 缓存策略
+     * @throws IllegalArgumentException 整表缓存的表使用只移除缓存的写策略时
+     */
+    public static void register(String region, CachePolicy policy) {
+        check(region, policy);
+        POLICY_MAP.put(region, policy);
+        UNREGISTERED_SET.remove(region);
+        INDEX_MAP.remove(region);
+        TableReplica.remove(region);
+    }
+
+    /**
+     * 按配置替换表的缓存策略，可在运行时重复调用
+     * <p>
+     * 策略有变化的表清空缓存区域，按新策略重新加载；上次配置而本次没有配置的表注销策略并清空缓存区域。
+     * </p>
+     * 
+     * @param policyMap 表名 -> 缓存策略，区域名称为空时使用表名
+     */
+    public static synchronized void configure(Map<String, CachePolicy> policyMap) {
+        // 先校验全部策略，避免只应用了一部分
+        policyMap.forEach(CacheUtil::check);
+        Set<String> removedSet = new HashSet<>(CONFIGURED_SET);
+        policyMap.forEach((tableName, policy) -> {
+            if (StrUtil.isBlank(policy.getRegion())) {
+                policy.setRegion(tableName);
+            }
+            removedSet.remove(tableName);
+            CONFIGURED_SET.add(tableName);
+            CachePolicy oldPolicy = POLICY_MAP.get(tableName);
+            if (policy.equals(oldPolicy)) {
+                return;
+            }
+            register(tableName, policy);
+            if (oldPolicy != null) {
+                clear(tableName);
+                StaticLog.info("cache policy changed: {} {}", tableName, policy);
+            }
+        });
+        for (String tableName : removedSet) {
+            unregister(tableName);
+            CONFIGURED_SET.remove(tableName);
+            StaticLog.info("cache policy removed: {}", tableName);
+        }
+    }
+
+    /**
+     * 校验缓存策略
+     * <p>
+     * 整表缓存（FULL_TABLE、REPLICA）的selectByMap只遍历缓存区域中的键，INVALIDATE和DEFERRED_RELOAD
+     * 移除的记录在下次整表加载前不会出现在查询结果中，因此这两种写策略只适用于READ_THROUGH。
+     * </p>
+     * 
+     * @param region 缓存区域名称（通常为表名）
+     * @param policy 缓存策略
+     */
+    private static void check(String region, CachePolicy policy) {
+        CacheWritePolicy writePolicy = policy.getWritePolicy();
+        Assert.isTrue(policy.getMode() == CacheMode.READ_THROUGH
+                        || writePolicy != CacheWritePolicy.INVALIDATE && writePolicy != CacheWritePolicy.DEFERRED_RELOAD,
+                "整表缓存不支持移除缓存的写策略: {} {} {}", region, policy.getMode(), writePolicy);
+    }
+
+    /**
+     * 注销表的缓存策略并清空对应的缓存区域
+     * 
+     * @param region 缓存区域名称（通常为表名）
+     */
+    public static void unregister(String region) {
+        CacheChannel cache = J2Cache.getChannel();
+        if (cache != null && findRegion(cache, region) != null) {
+            UNREGISTERED_SET.add(region);
+        }
+        if (POLICY_MAP.remove(region) != null) {
+            clear(region);
+        }
+        INDEX_MAP.remove(region);
+        TableReplica.remove(region);
+    }
+
+    /**
+     * 获取表的二级索引
+     * <p>
+     * 首次获取时通过factory创建，缓存策略变更时重新创建。
+     * </p>
+     * 
+     * @param region 缓存区域名称（通常为表名）
+     * @param factory 索引工厂，不建立索引的表返回没有索引列的实例
+     * @return 二级索引，未开启缓存时返回null
+     */
+    public static CacheIndex getIndex(String region, Function<String, CacheIndex> factory) {
+        if (!exists(region)) {
+            return null;
+        }
+        return INDEX_MAP.computeIfAbsent(region, factory);
+    }
+
+    /**
+     * 从J2Cache重新加载已配置的区域
+     * <p>
+     * 已登记的策略保留，J2Cache中新出现的区域以默认策略补充登记。
+     * J2Cache尚未初始化时不标记为已加载，下次查询策略时重试。
+     * </p>
+     */
+    public static synchronized void reload() {
         CacheChannel cache = J2Cache.getChannel();
         if (cache == null) {
-            return false;
+            return;
+        }
+        for (CacheChannel.Region r : cache.regions()) {
+            regionCreated(r.getName(), r.getSize(), r.getTtl());
+        }
+        loaded = true;
+    }
+
+    /**
+     * 登记J2Cache动态创建的区域
+     * <p>
+     * 一级缓存在首次访问未配置的区域时按默认配置创建区域，创建后以默认策略补充登记，
+     * 与J2Cache的区域列表保持一致。已登记或已注销的区域不受影响。
+     * {@link OffHeapCacheProvider}在创建区域时调用，其他一级缓存实现在通过{@link #set}首次写入时登记。
+     * </p>
+     *
+     * @param region 缓存区域名称
+     * @param size 区域容量
+     * @param ttl 区域过期时间（秒）
+     */
+    public static void regionCreated(String region, long size, long ttl) {
+        if (!UNREGISTERED_SET.contains(region)) {
+            POLICY_MAP.computeIfAbsent(region, key -> new CachePolicy(key, size, ttl));
+        }
+    }
+
+    /**
+     * 写入后登记J2Cache为未登记的区域动态创建的区域
+     *
+     * @param cache J2Cache通道
+     * @param region 缓存区域名称
+     */
+    private static void trackRegion(CacheChannel cache, String region) {
+        if (POLICY_MAP.containsKey(region) || UNREGISTERED_SET.contains(region)) {
+            return;
+        }
+        CacheChannel.Region r = findRegion(cache, region);
+        if (r != null) {
+            regionCreated(region, r.getSize(), r.getTtl());
         }
+    }
 
-        return cache.regions().stream().anyMatch(r -> r.getName().equals(region));
+    /**
+     * 在J2Cache的区域列表中查找区域
+     *
+     * @param cache J2Cache通道
+     * @param region 缓存区域名称
+     * @return 区域，不存在时返回null
+     */
+    private static CacheChannel.Region findRegion(CacheChannel cache, String region) {
+        for (CacheChannel.Region r : cache.regions()) {
+            if (r.getName().equals(region)) {
+                return r;
+            }
+        }
+        return null;
     }
 
     /**
@@ -77,7 +312,61 @@ public class CacheUtil {
         if (cache == null) {
             return;
         }
-        cache.set(region, key, value);
+        cache.set(region, key, RowCodec.wrap(region, value, expireAt(region)));
+        trackRegion(cache, region);
+    }
+
+    /**
+     * 批量设置缓存值
+     * 
+     * @param region 缓存区域名称
+     * @param elements 缓存键 -> 缓存值
+     */
+    public static void set(String region, Map<String, Object> elements) {
+        CacheChannel cache = J2Cache.getChannel();
+        if (cache == null || elements.isEmpty()) {
+            return;
+        }
+        CachePolicy policy = POLICY_MAP.get(region);
+        if (RowCodec.isEnabled() || expireAt(policy) > 0) {
+            Map<String, Object> wrappedMap = new LinkedHashMap<>(elements.size() * 4 / 3 + 1);
+            elements.forEach((key, value) -> wrappedMap.put(key, RowCodec.wrap(region, value, expireAt(policy))));
+            elements = wrappedMap;
+        }
+        cache.set(region, elements);
+        trackRegion(cache, region);
+    }
+
+    /**
+     * 计算写入缓存的记录的过期时间
+     * 
+     * @param region 缓存区域名称
+     * @return 过期时间（毫秒时间戳），不过期时返回0
+     */
+    private static long expireAt(String region) {
+        return expireAt(POLICY_MAP.get(region));
+    }
+
+    /**
+     * 计算写入缓存的记录的过期时间
+     * <p>
+     * 只有READ_THROUGH模式且配置了过期时间的表按记录过期，过期时间按ttlJitter随机缩短，
+     * 同一批写入的记录不会同时过期。
+     * </p>
+     * 
+     * @param policy 缓存策略
+     * @return 过期时间（毫秒时间戳），不过期时返回0
+     */
+    private static long expireAt(CachePolicy policy) {
+        if (policy == null || policy.getMode() != CacheMode.READ_THROUGH || policy.getTtl() <= 0) {
+            return 0;
+        }
+        long ttlMillis = policy.getTtl() * 1000;
+        double jitter = Math.min(Math.max(policy.getTtlJitter(), 0), 1);
+        if (jitter > 0) {
+            ttlMillis -= (long) (ttlMillis * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return System.currentTimeMillis() + Math.max(ttlMillis, 1);
     }
 
     /**
@@ -93,7 +382,7 @@ public class CacheUtil {
             return null;
         }
         CacheObject cacheObject = cache.get(region, key);
-        return cacheObject.getValue();
+        return RowCodec.unwrap(cacheObject.getValue());
     }
 
     /**
@@ -108,6 +397,7 @@ public class CacheUtil {
             return;
         }
         cache.evict(region, key);
+        CacheMetrics.of(region).recordInvalidation(key.length);
     }
 
     /**
@@ -116,10 +406,53 @@ public class CacheUtil {
      * @param region 缓存区域名称
      */
     public static void clear(String region) {
+        CacheIndex index = INDEX_MAP.get(region);
+        if (index != null) {
+            index.invalidate();
+        }
         CacheChannel cache = J2Cache.getChannel();
         if (cache == null) {
             return;
         }
         cache.clear(region);
     }
+
+    /**
+     * 统计缓存区域的记录数，并抽样估算占用的字节数
+     * <p>
+     * 需要列出区域中的所有键，二级缓存为Redis时开销较大，只应低频调用（如{@link CacheMetrics}按间隔缓存结果）。
+     * 抽样的记录能按表结构编码时按{@link RowCodec}的编码长度估算，否则按JSON长度估算。
+     * 一级缓存为{@link OffHeapCacheProvider}时直接返回堆外区域的记录数和字节数。
+     * </p>
+     * 
+     * @param region 缓存区域名称
+     * @param sampleSize 抽样的记录数
+     * @return [记录数, 估算的字节数]
+     */
+    public static long[] sampleRegion(String region, int sampleSize) {
+        OffHeapCache offHeapCache = OffHeapCacheProvider.getCache(region);
+        if (offHeapCache != null) {
+            OffHeapStore store = offHeapCache.getStore();
+            return new long[]{store.size(), store.getPayloadBytes()};
+        }
+        CacheChannel cache = J2Cache.getChannel();
+        if (cache == null || !exists(region)) {
+            return new long[]{0, 0};
+        }
+        Collection<String> keys = cache.keys(region);
+        if (keys.isEmpty()) {
+            return new long[]{0, 0};
+        }
+        List<String> sampleKeys = keys.stream().limit(sampleSize).collect(Collectors.toList());
+        long sampled = 0;
+        long bytes = 0;
+        for (CacheObject cacheObject : cache.get(region, sampleKeys).values()) {
+            Object value = RowCodec.unwrap(cacheObject.getValue());
+            if (value != null) {
+                bytes += RowCodec.estimateSize(region, value);
+                sampled++;
+            }
+        }
+        return new long[]{keys.size(), sampled == 0 ? 0 : bytes * keys.size() / sampled};
+    }
 }
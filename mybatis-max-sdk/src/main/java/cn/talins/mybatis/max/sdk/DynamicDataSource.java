@@ -136,6 +136,25 @@ public class DynamicDataSource extends AbstractRoutingDataSource {
         CONTEXT_HOLDER.remove();
     }
 
+    /**
+     * 获取主数据源（默认数据源），不受当前线程切换的数据源影响
+     * <p>
+     * 框架自己的协调表（如号段ID的序列表）只存放在主数据源中，访问时不能跟随业务表路由到其他数据源。
+     * </p>
+     *
+     * @param dataSource 数据源，不是DynamicDataSource时原样返回
+     * @return 主数据源
+     */
+    public static DataSource primary(DataSource dataSource) {
+        if (dataSource instanceof DynamicDataSource) {
+            DataSource primary = ((DynamicDataSource) dataSource).getResolvedDefaultDataSource();
+            if (primary != null) {
+                return primary;
+            }
+        }
+        return dataSource;
+    }
+
     /**
      * 确定当前使用的数据源
      * <p>
@@ -7,6 +7,7 @@ import cn.hutool.core.util.StrUtil;
 import cn.talins.mybatis.max.api.pojo.BaseEntity;
 import cn.talins.mybatis.max.api.pojo.ColumnMetaData;
 import cn.talins.mybatis.max.api.pojo.TableMetaData;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import groovy.lang.GroovyClassLoader;
 import org.apache.ibatis.type.IntegerTypeHandler;
 import org.apache.ibatis.type.JdbcType;
@@ -304,4 +305,24 @@ public class DynamicMapperUtil {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 根据表名获取对应的Mapper接口类
+     * <p>
+     * 从GroovyClassLoader中加载之前动态生成的Mapper接口，
+     * 用于在非Spring托管的SqlSession（如批处理会话）中获取Mapper。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @return Mapper接口的Class对象
+     * @throws RuntimeException 如果类未找到
+     */
+    @SuppressWarnings("unchecked")
+    public static Class<? extends BaseMapper<BaseEntity>> getMapperClass(String tableName) {
+        try {
+            return (Class<? extends BaseMapper<BaseEntity>>)CLASS_LOADER.loadClass("mapper." + StrUtil.upperFirst(StrUtil.toCamelCase(tableName)) + "Mapper");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,259 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.convert.Convert;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 缓存二级索引 - 按列值查找缓存表中的记录ID
+ * <p>
+ * 缓存表的{@code selectByMap}原本需要取出区域中的全部记录逐条比较，
+ * 建立索引后，等值条件通过一次哈希查找得到候选ID，再按ID从缓存读取：
+ * <ul>
+ *     <li>每个索引列维护 列值 -> ID集合 以及 ID -> 列值 两个映射，后者用于更新时移除旧值</li>
+ *     <li>索引在首次查询某列时通过加载器从数据库加载（只查询id和该列），之后由仓库在写操作时维护</li>
+ *     <li>列值按实体字段类型归一化后比较，查询条件中的"1"与字段类型Long的1视为相等</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 注意：索引只反映本节点的写操作，其他节点插入的记录或变更的列值不在索引中，按索引查询会遗漏这些记录。
+ * 因此使用前需要通过{@link #sync}比较其他节点的写操作次数（{@link TableVersions#getRemoteWrites}），
+ * 变化时整个索引失效并重新加载；没有配置共享版本号存储时无法感知其他节点的写操作，调用方不应使用索引。
+ * 多余的候选ID由调用方按实际记录再次校验。
+ * </p>
+ *
+ * @author talins
+ * @see CachePolicy#getIndexColumns 索引列配置
+ */
+public class CacheIndex {
+
+    /**
+     * 字段名（驼峰） -> 单列索引
+     */
+    private final Map<String, ColumnIndex> columnIndexMap = new HashMap<>();
+
+    /**
+     * 索引加载时其他节点的写操作次数
+     */
+    private long remoteWrites = TableVersions.UNKNOWN;
+
+    /**
+     * 构造函数
+     *
+     * @param columnTypeMap 索引字段名（驼峰） -> 字段类型
+     * @param loader 索引加载器，参数为字段名，返回 ID -> 列值
+     */
+    public CacheIndex(Map<String, Class<?>> columnTypeMap, Function<String, Map<Long, Object>> loader) {
+        columnTypeMap.forEach((column, type) -> columnIndexMap.put(column, new ColumnIndex(column, type, loader)));
+    }
+
+    /**
+     * 获取已建立索引的字段
+     *
+     * @return 字段名（驼峰）集合
+     */
+    public Set<String> getColumns() {
+        return Collections.unmodifiableSet(columnIndexMap.keySet());
+    }
+
+    /**
+     * 按其他节点的写操作次数校验索引，次数变化时使整个索引失效
+     * <p>
+     * 其他节点的写操作最长在共享版本号的刷新间隔后被感知。
+     * </p>
+     *
+     * @param remoteWrites 其他节点的写操作次数，见{@link TableVersions#getRemoteWrites}
+     * @return 索引可以使用时返回true，次数未知时返回false
+     */
+    public synchronized boolean sync(long remoteWrites) {
+        if (remoteWrites == TableVersions.UNKNOWN) {
+            return false;
+        }
+        if (remoteWrites != this.remoteWrites) {
+            invalidate();
+            this.remoteWrites = remoteWrites;
+        }
+        return true;
+    }
+
+    /**
+     * 按列值查找记录ID
+     *
+     * @param column 字段名（驼峰）
+     * @param value 列值
+     * @return 候选记录ID，字段未建立索引时返回null
+     */
+    public Set<Long> lookup(String column, Object value) {
+        ColumnIndex columnIndex = columnIndexMap.get(column);
+        return columnIndex == null ? null : columnIndex.lookup(value);
+    }
+
+    /**
+     * 记录新增或变更后的列值
+     * <p>
+     * 只处理row中包含且值不为null的索引字段，适用于完整记录和只包含更新字段的实体。
+     * </p>
+     *
+     * @param id 记录ID
+     * @param row 记录，key为字段名（驼峰）
+     */
+    public void put(Long id, Map<String, Object> row) {
+        columnIndexMap.forEach((column, columnIndex) -> {
+            Object value = row.get(column);
+            if (value != null) {
+                columnIndex.put(id, value);
+            }
+        });
+    }
+
+    /**
+     * 移除记录
+     *
+     * @param idList 记录ID
+     */
+    public void remove(Collection<Long> idList) {
+        columnIndexMap.values().forEach(columnIndex -> columnIndex.remove(idList));
+    }
+
+    /**
+     * 使索引失效，下次查询时重新加载
+     *
+     * @param columns 失效的字段名（驼峰），为空时使所有字段失效
+     */
+    public void invalidate(String... columns) {
+        if (columns.length == 0) {
+            columnIndexMap.values().forEach(ColumnIndex::invalidate);
+            return;
+        }
+        for (String column : columns) {
+            ColumnIndex columnIndex = columnIndexMap.get(column);
+            if (columnIndex != null) {
+                columnIndex.invalidate();
+            }
+        }
+    }
+
+    /**
+     * 按字段类型比较两个值是否相等
+     *
+     * @param type 字段类型
+     * @param left 值
+     * @param right 值
+     * @return 转换为字段类型后相等时返回true
+     */
+    public static boolean equals(Class<?> type, Object left, Object right) {
+        return Objects.equals(normalize(type, left), normalize(type, right));
+    }
+
+    /**
+     * 将值转换为字段类型，用作索引键
+     * <p>
+     * BigDecimal去掉末尾的0，使1.0与1.00相等；无法转换时保留原值。
+     * </p>
+     *
+     * @param type 字段类型
+     * @param value 值
+     * @return 归一化后的值
+     */
+    public static Object normalize(Class<?> type, Object value) {
+        if (value == null) {
+            return null;
+        }
+        // 默认值不能传原值，否则按默认值的类型转换
+        Object converted = Convert.convertQuietly(type, value, null);
+        if (converted == null) {
+            return value;
+        }
+        if (converted instanceof BigDecimal) {
+            return ((BigDecimal) converted).stripTrailingZeros();
+        }
+        return converted;
+    }
+
+    /**
+     * 单列索引
+     */
+    private static final class ColumnIndex {
+
+        private final String column;
+
+        private final Class<?> type;
+
+        private final Function<String, Map<Long, Object>> loader;
+
+        private final Map<Object, Set<Long>> valueMap = new HashMap<>();
+
+        private final Map<Long, Object> idMap = new HashMap<>();
+
+        private boolean loaded;
+
+        ColumnIndex(String column, Class<?> type, Function<String, Map<Long, Object>> loader) {
+            this.column = column;
+            this.type = type;
+            this.loader = loader;
+        }
+
+        synchronized Set<Long> lookup(Object value) {
+            if (!loaded) {
+                valueMap.clear();
+                idMap.clear();
+                Map<Long, Object> columnValueMap = loader.apply(column);
+                loaded = true;
+                columnValueMap.forEach((id, columnValue) -> {
+                    if (columnValue != null) {
+                        put(id, columnValue);
+                    }
+                });
+            }
+            Set<Long> idSet = valueMap.get(normalize(type, value));
+            return idSet == null ? Collections.emptySet() : new HashSet<>(idSet);
+        }
+
+        synchronized void put(Long id, Object value) {
+            if (!loaded) {
+                // 尚未加载的索引在首次查询时从数据库完整加载
+                return;
+            }
+            Object key = normalize(type, value);
+            Object old = idMap.put(id, key);
+            if (old != null && !old.equals(key)) {
+                removeValue(old, id);
+            }
+            valueMap.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        }
+
+        synchronized void remove(Collection<Long> idList) {
+            if (!loaded) {
+                return;
+            }
+            for (Long id : idList) {
+                Object old = idMap.remove(id);
+                if (old != null) {
+                    removeValue(old, id);
+                }
+            }
+        }
+
+        synchronized void invalidate() {
+            loaded = false;
+            valueMap.clear();
+            idMap.clear();
+        }
+
+        private void removeValue(Object value, Long id) {
+            Set<Long> idSet = valueMap.get(value);
+            if (idSet != null && idSet.remove(id) && idSet.isEmpty()) {
+                valueMap.remove(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.talins.mybatis.max.sdk.CacheUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 缓存指标 - 按表统计缓存的命中、未命中、加载、失效、淘汰和重载
+ * <p>
+ * 热点路径上只做{@link LongAdder}累加，不加锁也不打印日志。统计项：
+ * <ul>
+ *     <li>l1Hits / l2Hits / misses: 按ID读取缓存时一级缓存命中、二级缓存命中和未命中的记录数</li>
+ *     <li>loads: 未命中后从数据库加载的记录数</li>
+ *     <li>invalidations: 写操作从缓存中移除的记录数</li>
+ *     <li>evictions: 一级缓存因容量不足或过期淘汰的记录数，由一级缓存的过期监听器记录
+ *         （见{@link MeteredCacheProvider}，{@link OffHeapCacheProvider}自行记录）</li>
+ *     <li>refreshes: 整表重载次数</li>
+ *     <li>getLatency / loadLatency / refreshLatency: 读取缓存、加载记录和整表重载的耗时分布</li>
+ *     <li>regionSize / regionBytes: 缓存区域的记录数和按抽样估算的字节数，读取时按需计算，
+ *         {@value #REGION_STATS_INTERVAL_MILLIS}毫秒内重复读取返回上次的结果</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 每张表的指标在第一次访问时创建，通过{@link #addListener}可以得到已有和之后创建的指标，
+ * starter中的Micrometer绑定通过它注册指标。
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.sdk.repository.BaseRepository 记录指标的仓库实现
+ */
+public class CacheMetrics {
+
+    /**
+     * 抽样日志的比例，每多少次操作打印一次
+     */
+    private static final int LOG_SAMPLE_RATE = 100;
+
+    /**
+     * 缓存区域统计的最短计算间隔（毫秒）
+     */
+    private static final long REGION_STATS_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * 估算字节数时抽样的记录数
+     */
+    private static final int REGION_SAMPLE_SIZE = 32;
+
+    /**
+     * 表名 -> 缓存指标
+     */
+    private static final Map<String, CacheMetrics> METRICS_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 指标创建的监听器
+     */
+    private static final List<Consumer<CacheMetrics>> LISTENER_LIST = new CopyOnWriteArrayList<>();
+
+    /**
+     * 表名
+     */
+    private final String tableName;
+
+    private final LongAdder l1Hits = new LongAdder();
+
+    private final LongAdder l2Hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final Latency getLatency = new Latency();
+
+    private final Latency loadLatency = new Latency();
+
+    private final Latency refreshLatency = new Latency();
+
+    private volatile long regionSize;
+
+    private volatile long regionBytes;
+
+    private volatile long regionStatsTime;
+
+    private CacheMetrics(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * 获取表的缓存指标，不存在时创建
+     *
+     * @param tableName 表名
+     * @return 缓存指标
+     */
+    public static CacheMetrics of(String tableName) {
+        CacheMetrics metrics = METRICS_MAP.get(tableName);
+        if (metrics != null) {
+            return metrics;
+        }
+        CacheMetrics created = new CacheMetrics(tableName);
+        metrics = METRICS_MAP.putIfAbsent(tableName, created);
+        if (metrics != null) {
+            return metrics;
+        }
+        for (Consumer<CacheMetrics> listener : LISTENER_LIST) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    /**
+     * 获取所有表的缓存指标
+     *
+     * @return 缓存指标
+     */
+    public static Collection<CacheMetrics> all() {
+        return Collections.unmodifiableCollection(METRICS_MAP.values());
+    }
+
+    /**
+     * 添加指标创建的监听器，已存在的指标立即回调一次
+     *
+     * @param listener 监听器
+     */
+    public static synchronized void addListener(Consumer<CacheMetrics> listener) {
+        LISTENER_LIST.add(listener);
+        METRICS_MAP.values().forEach(listener);
+    }
+
+    /**
+     * 是否打印本次操作的调试日志
+     * <p>
+     * 按{@value #LOG_SAMPLE_RATE}分之一的比例抽样，代替每次操作都打印日志。
+     * </p>
+     *
+     * @return 需要打印时返回true
+     */
+    public static boolean sampleLog() {
+        return ThreadLocalRandom.current().nextInt(LOG_SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * 记录一次按ID读取缓存
+     *
+     * @param l1Hit 一级缓存命中的记录数
+     * @param l2Hit 二级缓存命中的记录数
+     * @param miss 未命中的记录数
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordGet(int l1Hit, int l2Hit, int miss, long nanos) {
+        if (l1Hit > 0) {
+            l1Hits.add(l1Hit);
+        }
+        if (l2Hit > 0) {
+            l2Hits.add(l2Hit);
+        }
+        if (miss > 0) {
+            misses.add(miss);
+        }
+        getLatency.record(nanos);
+    }
+
+    /**
+     * 记录一次从数据库加载
+     *
+     * @param rows 加载的记录数
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordLoad(int rows, long nanos) {
+        loads.add(rows);
+        loadLatency.record(nanos);
+    }
+
+    /**
+     * 记录一次整表重载
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordRefresh(long nanos) {
+        refreshes.increment();
+        refreshLatency.record(nanos);
+    }
+
+    /**
+     * 记录写操作从缓存中移除的记录
+     *
+     * @param count 移除的记录数
+     */
+    public void recordInvalidation(int count) {
+        invalidations.add(count);
+    }
+
+    /**
+     * 记录一级缓存因容量不足或过期淘汰的记录
+     *
+     * @param count 淘汰的记录数
+     */
+    public void recordEviction(int count) {
+        evictions.add(count);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    public long getL2Hits() {
+        return l2Hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public Latency getGetLatency() {
+        return getLatency;
+    }
+
+    public Latency getLoadLatency() {
+        return loadLatency;
+    }
+
+    public Latency getRefreshLatency() {
+        return refreshLatency;
+    }
+
+    /**
+     * 命中率
+     *
+     * @return 一级和二级缓存命中的记录数占按ID读取记录数的比例，没有读取时返回0
+     */
+    public double getHitRatio() {
+        long hits = getL1Hits() + getL2Hits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 缓存区域的记录数
+     *
+     * @return 记录数
+     */
+    public long getRegionSize() {
+        refreshRegionStats();
+        return regionSize;
+    }
+
+    /**
+     * 缓存区域按抽样估算的字节数
+     *
+     * @return 字节数
+     */
+    public long getRegionBytes() {
+        refreshRegionStats();
+        return regionBytes;
+    }
+
+    private void refreshRegionStats() {
+        long now = System.currentTimeMillis();
+        if (now - regionStatsTime < REGION_STATS_INTERVAL_MILLIS) {
+            return;
+        }
+        synchronized (this) {
+            if (now - regionStatsTime < REGION_STATS_INTERVAL_MILLIS) {
+                return;
+            }
+            long[] stats = CacheUtil.sampleRegion(tableName, REGION_SAMPLE_SIZE);
+            regionSize = stats[0];
+            regionBytes = stats[1];
+            regionStatsTime = now;
+        }
+    }
+
+    /**
+     * 耗时分布 - 按2的幂划分的微秒桶
+     * <p>
+     * 第i个桶统计耗时在[2^(i-1), 2^i)微秒内的次数，分位数取所在桶的上界，误差在一倍以内，
+     * 足以区分命中一级缓存、访问二级缓存和查询数据库的耗时量级。
+     * </p>
+     */
+    public static class Latency {
+
+        private static final int BUCKET_COUNT = 32;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Latency() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * 记录一次耗时
+         *
+         * @param nanos 耗时（纳秒）
+         */
+        public void record(long nanos) {
+            long micros = Math.max(nanos, 0) / 1000;
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+            buckets[bucket].increment();
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * 估算分位数
+         *
+         * @param quantile 分位，取值(0, 1]
+         * @return 耗时上界（纳秒），没有记录时返回0
+         */
+        public long percentile(double quantile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return (1L << i) * 1000;
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+}
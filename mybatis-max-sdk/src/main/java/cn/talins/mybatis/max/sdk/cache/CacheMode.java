@@ -0,0 +1,39 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+/**
+ * 缓存模式枚举 - 缓存区域中保存表的哪些记录
+ * <p>
+ * 各模式的取舍：
+ * <ul>
+ *     <li>READ_THROUGH(默认): 只缓存读取过的记录，按ID查询未命中时从数据库加载并回填；
+ *         没有可用二级索引的selectByMap直接查询数据库</li>
+ *     <li>FULL_TABLE: 缓存整张表，selectByMap在没有可用二级索引时遍历缓存区域，
+ *         缓存区域为空时先加载整张表；适用于数据量小、读多写少的字典表</li>
+ *     <li>REPLICA: 在FULL_TABLE的基础上，在内存中保存整张表的只读快照，
+ *         由Query构造的selectList、selectPage、selectCount等查询直接在快照上计算，不访问数据库；
+ *         每次写操作提交后在后台重建快照并整体替换。适用于数据量小、查询条件多样的配置表</li>
+ * </ul>
+ * </p>
+ *
+ * @author talins
+ * @see CachePolicy#getMode 表的缓存模式
+ */
+public enum CacheMode {
+
+    /**
+     * 按需加载
+     */
+    READ_THROUGH,
+
+    /**
+     * 整表缓存
+     */
+    FULL_TABLE,
+
+    /**
+     * 内存副本
+     *
+     * @see TableReplica 表的内存副本
+     */
+    REPLICA
+}
@@ -0,0 +1,175 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * 表缓存策略 - 描述一张表是否缓存以及如何缓存
+ * <p>
+ * 由{@link cn.talins.mybatis.max.sdk.CacheUtil}按表名登记，仓库在每次读写时通过
+ * 一次哈希查找得到策略，查不到说明该表未开启缓存。
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.sdk.CacheUtil#getPolicy 查询表的缓存策略
+ */
+@Data
+@NoArgsConstructor
+public class CachePolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 默认的全表重载阈值
+     */
+    public static final int DEFAULT_FULL_RELOAD_THRESHOLD = 1000;
+
+    /**
+     * 默认的内存快照最大存活时间（秒）
+     */
+    public static final long DEFAULT_REPLICA_MAX_AGE = 300;
+
+    /**
+     * 是否开启缓存
+     * <p>
+     * 为false时即使J2Cache中存在同名区域也不缓存该表。
+     * </p>
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存区域名称，通常为表名
+     */
+    private String region;
+
+    /**
+     * 缓存模式，默认为{@link CacheMode#READ_THROUGH}
+     */
+    private CacheMode mode = CacheMode.READ_THROUGH;
+
+    /**
+     * 一级缓存的最大条目数
+     * <p>
+     * 一级缓存的容量由J2Cache的一级缓存配置（如caffeine.properties）在启动时决定，
+     * 从J2Cache加载的区域取其配置值。
+     * </p>
+     */
+    private long size;
+
+    /**
+     * 缓存过期时间（秒），小于等于0表示不过期
+     * <p>
+     * READ_THROUGH模式下，每条记录写入缓存时按该值和{@link #ttlJitter}计算过期时间，
+     * 读取到已过期的记录按未命中处理；FULL_TABLE模式下记录不单独过期。
+     * </p>
+     */
+    private long ttl;
+
+    /**
+     * 过期时间的随机缩短比例，取值[0, 1)
+     * <p>
+     * 每条记录的实际过期时间为ttl * (1 - ttlJitter * 随机数)，
+     * 避免同一批加载的记录同时过期后集中回源，默认为0。
+     * </p>
+     */
+    private double ttlJitter;
+
+    /**
+     * 提前刷新的时间比例，取值[0, 1)
+     * <p>
+     * 记录的剩余有效时间小于ttl * refreshAhead时被读取，就在后台重新加载，读取方照常返回当前的值。
+     * 只对配置了过期时间的READ_THROUGH表生效，默认为0（关闭）。
+     * </p>
+     *
+     * @see RefreshAhead 提前刷新
+     */
+    private double refreshAhead;
+
+    /**
+     * 最大陈旧时间（秒），小于等于0表示关闭降级读取
+     * <p>
+     * 回源查询失败或超过{@link #loadTimeout}时，返回过期不超过该时间的旧记录。
+     * 旧记录只在J2Cache仍保留该条目时可用，区域的过期时间应不小于ttl + maxStaleness。
+     * 只对配置了过期时间的READ_THROUGH表生效，默认为0。
+     * </p>
+     *
+     * @see StaleIfError 降级读取
+     */
+    private long maxStaleness;
+
+    /**
+     * 回源查询的耗时预算（毫秒），小于等于0表示不限制
+     * <p>
+     * 超过预算且需要回源的记录都存在旧记录时返回旧记录，查询在后台继续执行。只在开启了降级读取时生效。
+     * </p>
+     */
+    private long loadTimeout;
+
+    /**
+     * 全表重载阈值
+     * <p>
+     * 条件更新或删除影响的记录数超过该值时，不再逐条维护缓存，而是清空并重新加载整张表。
+     * 小于0表示总是逐条维护。
+     * </p>
+     */
+    private int fullReloadThreshold = DEFAULT_FULL_RELOAD_THRESHOLD;
+
+    /**
+     * 根据ID更新记录后的缓存写策略，默认为{@link CacheWritePolicy#RELOAD}
+     */
+    private CacheWritePolicy writePolicy = CacheWritePolicy.RELOAD;
+
+    /**
+     * 二级索引列（下划线或驼峰均可）
+     * <p>
+     * 用于selectByMap的等值查询。为null时使用数据库中该表的索引列，为空集合时不建立索引。
+     * </p>
+     *
+     * @see CacheIndex 缓存二级索引
+     */
+    private Set<String> indexColumns;
+
+    /**
+     * REPLICA模式下内存快照的最大存活时间（秒），小于等于0表示不限制，默认为300
+     * <p>
+     * 超过后读取照常返回旧快照并在后台重建，作为发现其他节点写操作的兜底，
+     * 也使绕过本应用的修改最终可见。
+     * </p>
+     *
+     * @see TableReplica 表的内存副本
+     */
+    private long replicaMaxAge = DEFAULT_REPLICA_MAX_AGE;
+
+    /**
+     * REPLICA模式下内存查询的字符串比较是否区分大小写，默认不区分，与MySQL默认的排序规则一致
+     * <p>
+     * 影响等于、IN、范围比较、LIKE和排序，列使用二进制或区分大小写的排序规则（如utf8mb4_bin）时开启。
+     * </p>
+     *
+     * @see ReplicaQuery 内存查询
+     */
+    private boolean replicaCaseSensitive;
+
+    /**
+     * 是否在启动时预热，开启后应用就绪前把整张表加载到缓存中
+     *
+     * @see cn.talins.mybatis.max.sdk.repository.CacheWarmer 缓存预热器
+     */
+    private boolean warmUp;
+
+    /**
+     * 构造函数
+     *
+     * @param region 缓存区域名称
+     * @param size 一级缓存的最大条目数
+     * @param ttl 缓存过期时间（秒）
+     */
+    public CachePolicy(String region, long size, long ttl) {
+        this.region = region;
+        this.size = size;
+        this.ttl = ttl;
+    }
+}
@@ -0,0 +1,47 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+/**
+ * 缓存写策略枚举 - 根据ID更新记录后如何维护缓存
+ * <p>
+ * 各策略的取舍：
+ * <ul>
+ *     <li>RELOAD(默认): 更新后重新查询该记录写入缓存，缓存始终为数据库中的完整记录，每次更新多一条SELECT</li>
+ *     <li>WRITE_THROUGH: 将本次更新的非空字段合并到已缓存的记录中，不访问数据库；
+ *         缓存中没有该记录时退化为RELOAD</li>
+ *     <li>INVALIDATE: 只移除缓存，下次读取时再加载</li>
+ *     <li>DEFERRED_RELOAD: 立即移除缓存，事务提交后在后台线程中重新加载</li>
+ * </ul>
+ * INVALIDATE和DEFERRED_RELOAD只能用于READ_THROUGH模式，整表缓存的selectByMap只遍历缓存区域，
+ * 被移除的记录会从查询结果中消失，登记策略时会拒绝这种组合。
+ * </p>
+ *
+ * <p>
+ * 注意：WRITE_THROUGH合并的是更新前已缓存的内容，如果记录同时被其他途径（如原生SQL）修改，
+ * 缓存中可能残留旧值，适用于只通过仓库修改的表。
+ * </p>
+ *
+ * @author talins
+ * @see CachePolicy#getWritePolicy 表的缓存写策略
+ */
+public enum CacheWritePolicy {
+
+    /**
+     * 更新后重新查询
+     */
+    RELOAD,
+
+    /**
+     * 合并更新字段到缓存
+     */
+    WRITE_THROUGH,
+
+    /**
+     * 只移除缓存
+     */
+    INVALIDATE,
+
+    /**
+     * 移除缓存并在提交后异步重新加载
+     */
+    DEFERRED_RELOAD
+}
@@ -0,0 +1,104 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.json.JSONObject;
+
+import java.io.Serializable;
+
+/**
+ * 缓存中的表记录 - 为记录附带所属表名和过期时间
+ * <p>
+ * J2Cache的序列化器只能看到缓存值本身，不知道它属于哪个区域。开启{@link RowSerializer}后，
+ * {@link cn.talins.mybatis.max.sdk.CacheUtil}在写入缓存时把记录包装为该类，读取时再取出记录，
+ * 一级缓存中保存的仍是同一个记录对象，不产生额外的转换。
+ * </p>
+ *
+ * <p>
+ * 表的缓存策略配置了过期时间时，无论使用哪种序列化器，记录都会包装为该类并带上各自的过期时间，
+ * 读取到已过期的记录按未命中处理。
+ * </p>
+ *
+ * @author talins
+ * @see RowCodec 记录编解码
+ */
+public final class CachedRow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 所属表名
+     */
+    private String tableName;
+
+    /**
+     * 记录
+     */
+    private JSONObject row;
+
+    /**
+     * 过期时间（毫秒时间戳），0表示不过期
+     */
+    private long expireAt;
+
+    /**
+     * 构造函数，供序列化框架使用
+     */
+    public CachedRow() {
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 所属表名
+     * @param row 记录
+     */
+    public CachedRow(String tableName, JSONObject row) {
+        this(tableName, row, 0);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 所属表名
+     * @param row 记录
+     * @param expireAt 过期时间（毫秒时间戳），0表示不过期
+     */
+    public CachedRow(String tableName, JSONObject row, long expireAt) {
+        this.tableName = tableName;
+        this.row = row;
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * 是否已过期
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 已过期时返回true
+     */
+    public boolean isExpired(long now) {
+        return expireAt > 0 && expireAt <= now;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public JSONObject getRow() {
+        return row;
+    }
+
+    public void setRow(JSONObject row) {
+        this.row = row;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+}
@@ -0,0 +1,292 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.lang.Assert;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行数缓存 - 缓存selectCount和分页查询的总数
+ * <p>
+ * 大表上的COUNT(*)往往比查询一页数据还慢，开启后：
+ * <ul>
+ *     <li>按查询条件（不含分页和排序）缓存行数，记录统计时的表写版本号和共享版本号，任一变化后失效</li>
+ *     <li>配置了允许的陈旧时间时，版本号变化后在该时间内仍返回旧的行数，适用于只需要近似总数的场景</li>
+ *     <li>不带条件的全表行数不随版本号失效，而是在插入、删除提交后按影响行数增量调整，
+ *         发现其他节点写入过（{@link TableVersions#getRemoteWrites}）时重新统计</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 注意：没有配置{@link cn.talins.mybatis.max.api.ITableVersionStore}时，版本号和增量只反映本节点的写操作，
+ * 其他节点的修改要等缓存过期后才可见，因此必须设置大于0的过期时间。
+ * </p>
+ *
+ * @author talins
+ * @see TableVersions 表写版本号
+ * @see CountCachePolicy 行数缓存策略
+ */
+public class CountCache {
+
+    /**
+     * 表名 -> 行数缓存
+     */
+    private static final Map<String, TableCounts> TABLE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 开启表的行数缓存，已开启时按新策略重建
+     *
+     * @param tableName 表名
+     * @param policy 行数缓存策略
+     * @throws IllegalArgumentException 如果没有配置共享版本号存储且过期时间小于等于0
+     */
+    public static void register(String tableName, CountCachePolicy policy) {
+        Assert.isTrue(policy.getTtl() > 0 || TableVersions.hasStore(),
+                "没有配置ITableVersionStore时行数缓存的ttl必须大于0，否则其他节点的写操作永远不可见: {}", tableName);
+        TABLE_MAP.put(tableName, new TableCounts(policy));
+    }
+
+    /**
+     * 关闭表的行数缓存
+     *
+     * @param tableName 表名
+     */
+    public static void unregister(String tableName) {
+        TABLE_MAP.remove(tableName);
+    }
+
+    /**
+     * 检查表是否开启了行数缓存
+     *
+     * @param tableName 表名
+     * @return 开启时返回true
+     */
+    public static boolean exists(String tableName) {
+        return TABLE_MAP.containsKey(tableName);
+    }
+
+    /**
+     * 获取缓存的行数
+     *
+     * @param tableName 表名
+     * @param key 查询条件对应的缓存键
+     * @return 行数，未命中或已失效时返回null
+     */
+    public static Long get(String tableName, String key) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        return tableCounts == null ? null : tableCounts.get(tableName, key);
+    }
+
+    /**
+     * 缓存行数
+     *
+     * @param tableName 表名
+     * @param key 查询条件对应的缓存键
+     * @param version 统计前读取的表写版本号
+     * @param sharedVersion 统计前读取的共享版本号（{@link TableVersions#getShared}）
+     * @param count 行数
+     */
+    public static void put(String tableName, String key, long version, long sharedVersion, long count) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        if (tableCounts != null) {
+            tableCounts.cache.put(key, new CountEntry(count, version, sharedVersion));
+        }
+    }
+
+    /**
+     * 获取缓存的全表行数
+     *
+     * @param tableName 表名
+     * @return 全表行数，未缓存或已过期时返回null
+     */
+    public static Long getTotal(String tableName) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        return tableCounts == null ? null : tableCounts.getTotal(tableName);
+    }
+
+    /**
+     * 获取全表行数的调整序号，统计全表行数前读取，用于判断统计期间是否发生了调整
+     *
+     * @param tableName 表名
+     * @return 调整序号
+     */
+    public static long getSequence(String tableName) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        return tableCounts == null ? 0 : tableCounts.getSequence();
+    }
+
+    /**
+     * 缓存全表行数
+     * <p>
+     * 统计期间发生过调整时丢弃，避免增量被重复计算。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param sequence 统计前读取的调整序号
+     * @param remoteWrites 统计前读取的其他节点写操作次数（{@link TableVersions#getRemoteWrites}）
+     * @param count 全表行数
+     */
+    public static void putTotal(String tableName, long sequence, long remoteWrites, long count) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        if (tableCounts != null) {
+            tableCounts.putTotal(sequence, remoteWrites, count);
+        }
+    }
+
+    /**
+     * 按插入或删除的行数调整全表行数
+     *
+     * @param tableName 表名
+     * @param delta 行数变化，插入为正数，删除为负数
+     */
+    public static void adjust(String tableName, long delta) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        if (tableCounts != null && delta != 0) {
+            tableCounts.adjust(delta);
+        }
+    }
+
+    /**
+     * 丢弃全表行数，用于影响行数未知的写操作
+     *
+     * @param tableName 表名
+     */
+    public static void invalidateTotal(String tableName) {
+        TableCounts tableCounts = TABLE_MAP.get(tableName);
+        if (tableCounts != null) {
+            tableCounts.invalidateTotal();
+        }
+    }
+
+    /**
+     * 生成查询条件对应的缓存键
+     * <p>
+     * 只包含查询类型、查询列、条件片段和绑定参数，不包含分页参数，同一条件的不同页共用一个行数。
+     * </p>
+     *
+     * @param type 查询类型，如count、page
+     * @param queryWrapper 查询条件
+     * @return 缓存键
+     */
+    public static String key(String type, QueryWrapper<?> queryWrapper) {
+        StringBuilder key = new StringBuilder()
+                .append(type).append('|')
+                .append(queryWrapper.getSqlSelect()).append('|')
+                .append(queryWrapper.getExpression().getNormal().getSqlSegment()).append('|')
+                .append(queryWrapper.getExpression().getGroupBy().getSqlSegment()).append('|')
+                .append(queryWrapper.getExpression().getHaving().getSqlSegment()).append('|');
+        new TreeMap<>(queryWrapper.getParamNameValuePairs()).forEach((name, value) -> key.append(name).append('=')
+                .append(value == null ? "null" : value.getClass().getSimpleName() + ":" + value).append(','));
+        return key.toString();
+    }
+
+    /**
+     * 单张表的行数缓存
+     */
+    private static final class TableCounts {
+
+        private final CountCachePolicy policy;
+
+        private final Cache<String, CountEntry> cache;
+
+        /**
+         * 全表行数，null表示未知
+         */
+        private Long total;
+
+        private long totalTime;
+
+        /**
+         * 统计全表行数前读取的其他节点写操作次数
+         */
+        private long totalRemoteWrites;
+
+        private long sequence;
+
+        TableCounts(CountCachePolicy policy) {
+            this.policy = policy;
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(policy.getSize());
+            if (policy.getTtl() > 0) {
+                builder.expireAfterWrite(policy.getTtl(), TimeUnit.SECONDS);
+            }
+            this.cache = builder.build();
+        }
+
+        Long get(String tableName, String key) {
+            CountEntry entry = cache.getIfPresent(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.version == TableVersions.get(tableName) && entry.sharedVersion == TableVersions.getShared(tableName)) {
+                return entry.count;
+            }
+            if (policy.getStaleTtl() <= 0) {
+                return null;
+            }
+            boolean expired = System.currentTimeMillis() - entry.time > TimeUnit.SECONDS.toMillis(policy.getStaleTtl());
+            return expired ? null : entry.count;
+        }
+
+        synchronized Long getTotal(String tableName) {
+            if (total == null) {
+                return null;
+            }
+            if (policy.getTtl() > 0 && System.currentTimeMillis() - totalTime > TimeUnit.SECONDS.toMillis(policy.getTtl())) {
+                total = null;
+            } else if (TableVersions.getRemoteWrites(tableName) != totalRemoteWrites) {
+                // 增量只包含本节点的写操作，其他节点写入后重新统计
+                total = null;
+            }
+            return total;
+        }
+
+        synchronized long getSequence() {
+            return sequence;
+        }
+
+        synchronized void putTotal(long sequence, long remoteWrites, long count) {
+            if (this.sequence == sequence) {
+                total = count;
+                totalTime = System.currentTimeMillis();
+                totalRemoteWrites = remoteWrites;
+            }
+        }
+
+        synchronized void adjust(long delta) {
+            sequence++;
+            if (total != null) {
+                total = Math.max(0, total + delta);
+            }
+        }
+
+        synchronized void invalidateTotal() {
+            sequence++;
+            total = null;
+        }
+    }
+
+    /**
+     * 缓存的行数
+     */
+    private static final class CountEntry {
+
+        private final long count;
+
+        private final long version;
+
+        private final long sharedVersion;
+
+        private final long time = System.currentTimeMillis();
+
+        CountEntry(long count, long version, long sharedVersion) {
+            this.count = count;
+            this.version = version;
+            this.sharedVersion = sharedVersion;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 行数缓存策略 - 描述一张表的行数缓存容量、过期时间和允许的陈旧时间
+ *
+ * @author talins
+ * @see CountCache#register 登记行数缓存
+ */
+@Data
+@NoArgsConstructor
+public class CountCachePolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 最多缓存的查询条件数量
+     */
+    private long size = 1000;
+
+    /**
+     * 缓存过期时间（秒），超过后重新统计，包括按增量维护的全表行数；
+     * 小于等于0表示不过期，只有配置了共享版本号存储时才能小于等于0
+     */
+    private long ttl = 300;
+
+    /**
+     * 允许的陈旧时间（秒）
+     * <p>
+     * 表发生写操作后，统计时间在该时间内的行数仍然返回，适用于可以接受近似总数的场景。
+     * 小于等于0表示写操作后立即重新统计。
+     * </p>
+     */
+    private long staleTtl;
+
+    /**
+     * 构造函数
+     *
+     * @param size 最多缓存的查询条件数量
+     * @param ttl 缓存过期时间（秒）
+     * @param staleTtl 允许的陈旧时间（秒）
+     */
+    public CountCachePolicy(long size, long ttl, long staleTtl) {
+        this.size = size;
+        this.ttl = ttl;
+        this.staleTtl = staleTtl;
+    }
+}
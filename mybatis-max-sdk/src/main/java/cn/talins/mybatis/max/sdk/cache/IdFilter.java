@@ -0,0 +1,394 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 主键过滤器 - 用布隆过滤器拦截不存在的ID
+ * <p>
+ * 使用随机ID的请求会穿透缓存到达数据库，开启J2Cache的空对象缓存后还会在缓存中留下大量空标记。
+ * 开启后，按ID查询在访问缓存和数据库之前先查询过滤器：
+ * <ul>
+ *     <li>过滤器判断不存在的ID一定不存在，直接返回空结果</li>
+ *     <li>过滤器判断可能存在的ID按原流程查询，查不到的计为一次误判，可通过{@link #getObservedFpp}观察实际误判率</li>
+ *     <li>过滤器按表的行数分配容量，插入时同步写入；构建期间过滤器不拦截任何ID</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 布隆过滤器不支持删除，删除的ID只会增加误判。插入超过容量、删除超过构建时行数的一半或距上次构建超过
+ * 策略的重建间隔时，{@link #needsBuild}返回true，由仓库在后台重建。
+ * </p>
+ *
+ * <p>
+ * 过滤器只能感知本节点的插入，其他节点插入的ID会被误拦截。配置了{@link cn.talins.mybatis.max.api.ITableVersionStore}时，
+ * 构建时记录其他节点写操作次数的基准，拦截前通过{@link #isRejectionTrusted}比较：
+ * 构建后其他节点写入过该表时拦截不可信，由仓库到数据库确认，并在最小重建间隔后重建过滤器。
+ * 没有配置共享存储时拦截总是可信，只适用于单节点部署；绕过仓库直接写入数据库的ID在重建前同样会被误拦截。
+ * </p>
+ *
+ * @author talins
+ * @see IdFilterPolicy 主键过滤器策略
+ */
+public class IdFilter {
+
+    /**
+     * 过滤器的最小容量
+     */
+    private static final long MIN_EXPECTED_INSERTIONS = 1024;
+
+    /**
+     * 发现其他节点写入后，距上次构建至少经过该时间（毫秒）才重建，避免写入频繁时持续重建
+     */
+    private static final long MIN_REBUILD_MILLIS = 10000;
+
+    /**
+     * 表名 -> 主键过滤器
+     */
+    private static final Map<String, IdFilter> FILTER_MAP = new ConcurrentHashMap<>();
+
+    private final String tableName;
+
+    private final IdFilterPolicy policy;
+
+    /**
+     * 正在使用的过滤器
+     */
+    private volatile BloomFilter<Long> filter;
+
+    /**
+     * 正在构建的过滤器，构建期间的插入同时写入
+     */
+    private volatile BloomFilter<Long> buildingFilter;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    /**
+     * 是否已安排后台构建，避免构建开始前每次查询都提交一次构建任务
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile long expectedInsertions;
+
+    private volatile long rowCount;
+
+    /**
+     * 上次构建完成的时间
+     */
+    private volatile long builtAt;
+
+    /**
+     * 构建开始时其他节点写操作次数的下界
+     */
+    private volatile long remoteWrites = TableVersions.UNKNOWN;
+
+    /**
+     * 是否发现构建后有其他节点写入
+     */
+    private volatile boolean drifted;
+
+    private final LongAdder insertCount = new LongAdder();
+
+    private final LongAdder deleteCount = new LongAdder();
+
+    private final LongAdder lookupCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder falsePositiveCount = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 表名
+     * @param policy 主键过滤器策略
+     */
+    public IdFilter(String tableName, IdFilterPolicy policy) {
+        this.tableName = tableName;
+        this.policy = policy;
+    }
+
+    /**
+     * 开启表的主键过滤器，已开启时替换为未构建的新过滤器
+     *
+     * @param tableName 表名
+     * @param policy 主键过滤器策略
+     */
+    public static void register(String tableName, IdFilterPolicy policy) {
+        FILTER_MAP.put(tableName, new IdFilter(tableName, policy));
+    }
+
+    /**
+     * 关闭表的主键过滤器
+     *
+     * @param tableName 表名
+     */
+    public static void unregister(String tableName) {
+        FILTER_MAP.remove(tableName);
+    }
+
+    /**
+     * 获取表的主键过滤器
+     *
+     * @param tableName 表名
+     * @return 主键过滤器，未开启时返回null
+     */
+    public static IdFilter get(String tableName) {
+        return FILTER_MAP.get(tableName);
+    }
+
+    /**
+     * 判断ID是否可能存在
+     *
+     * @param id 主键ID
+     * @return 可能存在或过滤器尚未构建时返回true，一定不存在时返回false
+     */
+    public boolean mightContain(Long id) {
+        BloomFilter<Long> current = filter;
+        if (current == null) {
+            return true;
+        }
+        lookupCount.increment();
+        if (current.mightContain(id)) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * 判断过滤器的拦截结果是否可信
+     * <p>
+     * 没有配置共享版本号存储时总是可信；否则读取一次共享存储，构建后其他节点写入过该表或读取失败时不可信，
+     * 同时标记过滤器需要重建。只在有ID被拦截时调用。
+     * </p>
+     *
+     * @return 拦截可信时返回true，不可信时被拦截的ID需要到数据库确认
+     */
+    public boolean isRejectionTrusted() {
+        if (!TableVersions.hasStore()) {
+            return true;
+        }
+        if (drifted) {
+            return false;
+        }
+        long baseline = remoteWrites;
+        long current = TableVersions.readRemoteWritesCeiling(tableName);
+        if (baseline == TableVersions.UNKNOWN || current == TableVersions.UNKNOWN || current > baseline) {
+            drifted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 记录新插入的ID
+     *
+     * @param id 主键ID
+     */
+    public void put(Long id) {
+        write(id);
+        insertCount.increment();
+    }
+
+    /**
+     * 事务提交后再次写入已通过{@link #put}记录的ID，不重复计入插入数量
+     * <p>
+     * 插入时写入的过滤器可能随后被重建替换，而重建的扫描看不到尚未提交的ID。
+     * </p>
+     *
+     * @param id 主键ID
+     */
+    public void putCommitted(Long id) {
+        write(id);
+    }
+
+    private void write(Long id) {
+        // 先读取构建中的过滤器：构建完成时先替换filter再清空buildingFilter，两者至少有一个会收到该ID
+        BloomFilter<Long> next = buildingFilter;
+        BloomFilter<Long> current = filter;
+        if (next != null) {
+            next.put(id);
+        }
+        if (current != null && current != next) {
+            current.put(id);
+        }
+    }
+
+    /**
+     * 记录删除的行数
+     *
+     * @param count 删除的行数
+     */
+    public void recordDelete(long count) {
+        if (count > 0) {
+            deleteCount.add(count);
+        }
+    }
+
+    /**
+     * 记录通过过滤器但实际不存在的ID数量
+     *
+     * @param count 误判的数量
+     */
+    public void recordFalsePositive(long count) {
+        if (count > 0 && filter != null) {
+            falsePositiveCount.add(count);
+        }
+    }
+
+    /**
+     * 判断过滤器是否需要构建或重建
+     *
+     * @return 从未构建、插入超过容量、删除超过构建时行数的一半、超过重建间隔或发现其他节点写入，
+     * 且当前没有在构建时返回true
+     */
+    public boolean needsBuild() {
+        if (building.get()) {
+            return false;
+        }
+        if (filter == null) {
+            return true;
+        }
+        long age = System.currentTimeMillis() - builtAt;
+        if (drifted && age >= MIN_REBUILD_MILLIS) {
+            return true;
+        }
+        if (policy.getRebuildInterval() > 0 && age >= policy.getRebuildInterval() * 1000) {
+            return true;
+        }
+        return rowCount + insertCount.sum() > expectedInsertions || deleteCount.sum() > rowCount / 2;
+    }
+
+    /**
+     * 需要构建时安排一次后台构建
+     * <p>
+     * 同一时间只有一个调用者成功，直到构建任务结束时调用{@link #cancelSchedule}，
+     * 期间的查询不会重复提交构建任务。
+     * </p>
+     *
+     * @return 需要构建且由当前调用者安排时返回true
+     */
+    public boolean schedule() {
+        return !scheduled.get() && needsBuild() && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * 构建任务结束或提交失败后清除安排标记
+     */
+    public void cancelSchedule() {
+        scheduled.set(false);
+    }
+
+    /**
+     * 构建过滤器
+     * <p>
+     * 同一时间只有一个线程构建，构建完成前继续使用旧的过滤器（首次构建时不拦截）。
+     * </p>
+     *
+     * @param rowCount 表的当前行数，用于分配容量
+     * @param idLoader ID加载器，将表中所有ID依次交给参数中的消费者
+     * @return 是否执行了构建，其他线程正在构建时返回false
+     */
+    public boolean build(long rowCount, Consumer<LongConsumer> idLoader) {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            // 先记录基准再扫描，扫描期间其他节点的写入会使拦截不可信，不会漏掉
+            long baseline = TableVersions.readRemoteWritesFloor(tableName);
+            long expected = Math.max(MIN_EXPECTED_INSERTIONS, (long) (rowCount * policy.getHeadroom()));
+            BloomFilter<Long> next = BloomFilter.create(Funnels.longFunnel(), expected, policy.getFpp());
+            buildingFilter = next;
+            insertCount.reset();
+            deleteCount.reset();
+            idLoader.accept(next::put);
+            this.expectedInsertions = expected;
+            this.rowCount = rowCount;
+            this.remoteWrites = baseline;
+            this.drifted = false;
+            this.builtAt = System.currentTimeMillis();
+            filter = next;
+            lookupCount.reset();
+            rejectedCount.reset();
+            falsePositiveCount.reset();
+            return true;
+        } finally {
+            buildingFilter = null;
+            building.set(false);
+        }
+    }
+
+    /**
+     * 过滤器是否已经构建
+     *
+     * @return 已构建时返回true
+     */
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    /**
+     * 过滤器分配的容量
+     *
+     * @return 容量
+     */
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * 按当前写入量估算的误判率
+     *
+     * @return 估算的误判率，未构建时返回0
+     */
+    public double getExpectedFpp() {
+        BloomFilter<Long> current = filter;
+        return current == null ? 0 : current.expectedFpp();
+    }
+
+    /**
+     * 实际观察到的误判率：误判数 / （误判数 + 拦截数）
+     *
+     * @return 实际误判率，没有不存在的ID查询时返回0
+     */
+    public double getObservedFpp() {
+        long falsePositive = falsePositiveCount.sum();
+        long negative = falsePositive + rejectedCount.sum();
+        return negative == 0 ? 0 : (double) falsePositive / negative;
+    }
+
+    /**
+     * 构建后经过过滤器的查询次数
+     *
+     * @return 查询次数
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * 构建后被过滤器拦截的查询次数
+     *
+     * @return 拦截次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 构建后通过过滤器但实际不存在的查询次数
+     *
+     * @return 误判次数
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.sum();
+    }
+}
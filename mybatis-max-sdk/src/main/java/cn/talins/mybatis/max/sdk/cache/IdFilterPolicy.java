@@ -0,0 +1,48 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 主键过滤器策略 - 描述一张表的布隆过滤器误判率和容量余量
+ *
+ * @author talins
+ * @see IdFilter#register 登记主键过滤器
+ */
+@Data
+@NoArgsConstructor
+public class IdFilterPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 期望的误判率
+     */
+    private double fpp = 0.01;
+
+    /**
+     * 容量余量，过滤器按 行数 * headroom 分配容量，插入超过容量或删除超过行数一半时重建
+     */
+    private double headroom = 2.0;
+
+    /**
+     * 定期重建间隔（秒），小于等于0表示不定期重建
+     * <p>
+     * 绕过仓库直接写入数据库的ID以及没有配置共享版本号存储时其他节点插入的ID，最长在该时间后可以查询到。
+     * </p>
+     */
+    private long rebuildInterval = 600;
+
+    /**
+     * 构造函数
+     *
+     * @param fpp 期望的误判率
+     * @param headroom 容量余量
+     */
+    public IdFilterPolicy(double fpp, double headroom) {
+        this.fpp = fpp;
+        this.headroom = headroom;
+    }
+}
@@ -0,0 +1,184 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.IoUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 页文件 - {@link OffHeapStore}的持久化页，按页映射本地文件
+ * <p>
+ * 文件格式：
+ * <ul>
+ *     <li>文件头：魔数、格式版本、页大小、分段数、每段页数，共{@value #FIXED_HEADER_SIZE}字节</li>
+ *     <li>页表：每个页位置1字节，保存页的块规格，0xFF表示未使用</li>
+ *     <li>页：从4KB对齐的位置开始依次排列，第i个分段的第j页位于第i * 每段页数 + j个位置</li>
+ * </ul>
+ * 文件按需扩展（稀疏文件），页在第一次使用时才映射，打开文件不读取页的内容。
+ * 文件头与当前配置不一致时丢弃原有内容。
+ * </p>
+ *
+ * <p>
+ * 同一个文件只能由一个进程打开，打开时获取文件锁。
+ * </p>
+ *
+ * @author talins
+ */
+final class MappedPageFile {
+
+    private static final int MAGIC = 0x4D4D4C31;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FIXED_HEADER_SIZE = 32;
+
+    private static final int ALIGNMENT = 4096;
+
+    private static final byte UNUSED = (byte) 0xFF;
+
+    private final FileChannel channel;
+
+    /**
+     * 文件锁，随通道关闭释放
+     */
+    private final FileLock lock;
+
+    private final MappedByteBuffer header;
+
+    private final int pageSize;
+
+    private final long dataOffset;
+
+    private final boolean reopened;
+
+    /**
+     * 已映射的页，页位置重新使用时复用映射，关闭时写回
+     */
+    private final MappedByteBuffer[] mappedPages;
+
+    /**
+     * 打开或创建页文件
+     *
+     * @param path 文件路径
+     * @param pageSize 页大小（字节）
+     * @param segmentCount 分段数
+     * @param segmentPages 每段页数
+     * @throws IORuntimeException 无法打开文件或文件已被其他进程占用
+     */
+    MappedPageFile(Path path, int pageSize, int segmentCount, int segmentPages) {
+        this.pageSize = pageSize;
+        int slotCount = segmentCount * segmentPages;
+        this.mappedPages = new MappedByteBuffer[slotCount];
+        this.dataOffset = (FIXED_HEADER_SIZE + slotCount + ALIGNMENT - 1) / ALIGNMENT * (long) ALIGNMENT;
+        FileChannel fileChannel = null;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.lock = fileChannel.tryLock();
+            if (lock == null) {
+                throw new IORuntimeException("缓存文件已被其他进程占用: " + path);
+            }
+            ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_SIZE);
+            boolean valid = fileChannel.size() >= dataOffset && fileChannel.read(fixed, 0) == FIXED_HEADER_SIZE
+                    && fixed.getInt(0) == MAGIC && fixed.getInt(4) == FORMAT_VERSION
+                    && fixed.getInt(8) == pageSize && fixed.getInt(12) == segmentCount
+                    && fixed.getInt(16) == segmentPages;
+            if (!valid) {
+                fileChannel.truncate(0);
+            }
+            this.header = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset);
+            if (!valid) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    header.put(FIXED_HEADER_SIZE + slot, UNUSED);
+                }
+                header.putInt(4, FORMAT_VERSION);
+                header.putInt(8, pageSize);
+                header.putInt(12, segmentCount);
+                header.putInt(16, segmentPages);
+                header.force();
+                header.putInt(0, MAGIC);
+            }
+            this.reopened = valid;
+            this.channel = fileChannel;
+        } catch (IOException e) {
+            IoUtil.close(fileChannel);
+            throw new IORuntimeException(e);
+        } catch (RuntimeException e) {
+            IoUtil.close(fileChannel);
+            throw e;
+        }
+    }
+
+    /**
+     * 是否打开的是已有的文件
+     *
+     * @return 文件头与当前配置一致时返回true，新建或丢弃了原有内容时返回false
+     */
+    boolean isReopened() {
+        return reopened;
+    }
+
+    /**
+     * 映射一页
+     *
+     * @param slot 页位置
+     * @return 页的内容
+     */
+    synchronized MappedByteBuffer map(int slot) {
+        if (mappedPages[slot] == null) {
+            try {
+                mappedPages[slot] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        dataOffset + (long) slot * pageSize, pageSize);
+            } catch (IOException e) {
+                throw new IORuntimeException(e);
+            }
+        }
+        return mappedPages[slot];
+    }
+
+    /**
+     * 读取页的块规格
+     *
+     * @param slot 页位置
+     * @return 块规格序号，未使用时返回-1
+     */
+    int getPageClass(int slot) {
+        byte classIndex = header.get(FIXED_HEADER_SIZE + slot);
+        return classIndex == UNUSED ? -1 : classIndex;
+    }
+
+    /**
+     * 记录页的块规格，页的内容格式化完成后调用
+     *
+     * @param slot 页位置
+     * @param classIndex 块规格序号，-1表示未使用
+     */
+    void setPageClass(int slot, int classIndex) {
+        header.put(FIXED_HEADER_SIZE + slot, classIndex < 0 ? UNUSED : (byte) classIndex);
+    }
+
+    /**
+     * 写回已映射的页并关闭文件
+     */
+    synchronized void close() {
+        for (int slot = 0; slot < mappedPages.length; slot++) {
+            if (mappedPages[slot] != null) {
+                mappedPages[slot].force();
+                mappedPages[slot] = null;
+            }
+        }
+        header.force();
+        // 关闭通道时释放文件锁
+        IoUtil.close(channel);
+    }
+}
@@ -0,0 +1,161 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import net.oschina.j2cache.Cache;
+import net.oschina.j2cache.CacheChannel;
+import net.oschina.j2cache.CacheException;
+import net.oschina.j2cache.CacheExpiredListener;
+import net.oschina.j2cache.CacheObject;
+import net.oschina.j2cache.CacheProvider;
+
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * 统计淘汰的一级缓存提供者 - 包装J2Cache的一级缓存提供者，把容量不足和过期淘汰的记录计入{@link CacheMetrics}
+ * <p>
+ * 一级缓存的记录因容量不足或过期被移除时，提供者通过{@link CacheExpiredListener}通知J2Cache
+ * （如caffeine的removalListener只在SIZE和EXPIRED时回调），主动移除和覆盖的记录不会通知。
+ * 该类在转交通知前计数，配置项以完整类名为前缀：
+ * <pre>
+ * j2cache.L1.provider_class = cn.talins.mybatis.max.sdk.cache.MeteredCacheProvider
+ * # 被包装的提供者，取值与j2cache.L1.provider_class相同：caffeine、ehcache、ehcache3或类名
+ * cn.talins.mybatis.max.sdk.cache.MeteredCacheProvider.delegate = caffeine
+ * # 其他配置项原样交给被包装的提供者
+ * cn.talins.mybatis.max.sdk.cache.MeteredCacheProvider.properties = /caffeine.properties
+ * </pre>
+ * {@link OffHeapCacheProvider}自行记录淘汰，被包装时不再重复计数。
+ * </p>
+ *
+ * @author talins
+ * @see CacheMetrics#getEvictions 一级缓存淘汰的记录数
+ */
+public class MeteredCacheProvider implements CacheProvider {
+
+    private CacheProvider delegate;
+
+    /**
+     * 最近一次包装的监听器，J2Cache每次获取区域都传入同一个监听器，复用包装后的对象
+     */
+    private volatile MeteredListener meteredListener;
+
+    /**
+     * 构造函数，被包装的提供者在{@link #start}时按delegate配置项创建
+     */
+    public MeteredCacheProvider() {
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param delegate 被包装的提供者
+     */
+    public MeteredCacheProvider(CacheProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String name() {
+        return delegate == null ? "metered" : delegate.name();
+    }
+
+    @Override
+    public int level() {
+        return CacheObject.LEVEL_1;
+    }
+
+    @Override
+    public Cache buildCache(String region, CacheExpiredListener listener) {
+        return delegate.buildCache(region, wrap(listener));
+    }
+
+    @Override
+    public Cache buildCache(String region, long timeToLiveInSeconds, CacheExpiredListener listener) {
+        return delegate.buildCache(region, timeToLiveInSeconds, wrap(listener));
+    }
+
+    @Override
+    public void removeCache(String region) {
+        delegate.removeCache(region);
+    }
+
+    @Override
+    public Collection<CacheChannel.Region> regions() {
+        return delegate.regions();
+    }
+
+    @Override
+    public void start(Properties props) {
+        if (delegate == null) {
+            delegate = newProvider(props.getProperty("delegate"));
+        }
+        delegate.start(props);
+    }
+
+    @Override
+    public void stop() {
+        if (delegate != null) {
+            delegate.stop();
+        }
+    }
+
+    private CacheExpiredListener wrap(CacheExpiredListener listener) {
+        if (listener == null || delegate instanceof OffHeapCacheProvider) {
+            return listener;
+        }
+        MeteredListener current = meteredListener;
+        if (current == null || current.listener != listener) {
+            current = new MeteredListener(listener);
+            meteredListener = current;
+        }
+        return current;
+    }
+
+    /**
+     * 按J2Cache的名称或类名创建被包装的提供者
+     */
+    private static CacheProvider newProvider(String name) {
+        if (StrUtil.isBlank(name)) {
+            throw new CacheException("Undefined delegate L1 cache provider");
+        }
+        String className;
+        switch (name.trim().toLowerCase()) {
+            case "caffeine":
+                className = "net.oschina.j2cache.caffeine.CaffeineProvider";
+                break;
+            case "ehcache":
+                className = "net.oschina.j2cache.ehcache.EhCacheProvider";
+                break;
+            case "ehcache3":
+                className = "net.oschina.j2cache.ehcache.EhCacheProvider3";
+                break;
+            default:
+                className = name.trim();
+                break;
+        }
+        try {
+            return ReflectUtil.newInstance(className);
+        } catch (RuntimeException e) {
+            throw new CacheException("Failed to create delegate L1 cache provider: " + name, e);
+        }
+    }
+
+    /**
+     * 计数后转交通知的监听器
+     */
+    private static final class MeteredListener implements CacheExpiredListener {
+
+        private final CacheExpiredListener listener;
+
+        MeteredListener(CacheExpiredListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void notifyElementExpired(String region, String key) {
+            CacheMetrics.of(region).recordEviction(1);
+            listener.notifyElementExpired(region, key);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import net.oschina.j2cache.CacheExpiredListener;
+import net.oschina.j2cache.Level1Cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外一级缓存区域 - 把缓存值编码后保存在{@link OffHeapStore}中
+ * <p>
+ * 大的参考表全部放进堆内缓存时，数十万个记录对象会拉长GC停顿。堆外区域只在堆内保留索引，
+ * 记录按{@link RowCodec}的格式编码后写入直接内存，读取时再解码：
+ * <ul>
+ *     <li>键是记录ID（能无损转换为long的字符串）时直接作为索引的键</li>
+ *     <li>其他键取64位哈希作为索引的键，原始键和值一起保存，
+ *         读取时校验，哈希冲突时后写入的覆盖先写入的</li>
+ *     <li>有表结构的记录使用按列位置的紧凑格式，其他值使用Java序列化，无法编码的值不缓存</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 堆外存储持久化到文件时，记录按写入时表的共享版本号（{@link TableVersions#getShared}）保存，
+ * 重启后第一次读取时把当前的共享版本号交给堆外存储，版本号相同的记录直接返回，
+ * 其他记录按未命中处理并重新加载；没有配置共享版本号存储时重启前的记录都不会被读取。
+ * </p>
+ *
+ * <p>
+ * 容量不足淘汰的记录和读取时发现过期的记录计入{@link CacheMetrics#getEvictions}。
+ * </p>
+ *
+ * <p>
+ * 值的格式：标志（1字节）、字符串键（标志含{@link #FLAG_STRING_KEY}时，2字节长度 + UTF-8）、编码结果。
+ * </p>
+ *
+ * @author talins
+ * @see OffHeapCacheProvider 堆外一级缓存的提供者
+ */
+public class OffHeapCache implements Level1Cache {
+
+    /**
+     * 标志：键不是记录ID，值中保存了原始键
+     */
+    private static final int FLAG_STRING_KEY = 1;
+
+    /**
+     * 标志：写入的是未包装的记录，读取时取出{@link CachedRow#getRow}
+     */
+    private static final int FLAG_UNWRAP = 2;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String region;
+
+    private final long ttl;
+
+    private final OffHeapStore store;
+
+    private final CacheExpiredListener listener;
+
+    /**
+     * 构造函数
+     *
+     * @param region 缓存区域名称
+     * @param ttl 过期时间（秒），小于等于0表示不过期
+     * @param store 堆外存储
+     * @param listener 过期监听器
+     */
+    public OffHeapCache(String region, long ttl, OffHeapStore store, CacheExpiredListener listener) {
+        this.region = region;
+        this.ttl = ttl;
+        this.store = store;
+        this.listener = listener;
+        store.setEvictionListener(() -> CacheMetrics.of(region).recordEviction(1));
+    }
+
+    @Override
+    public Object get(String key) {
+        if (store.isAwaitingVersion()) {
+            long version = TableVersions.getShared(region);
+            if (version != TableVersions.UNKNOWN) {
+                store.setTrustedVersion(version);
+            }
+        }
+        byte[] payload = store.get(indexKey(key), System.currentTimeMillis());
+        if (payload == OffHeapStore.EXPIRED) {
+            CacheMetrics.of(region).recordEviction(1);
+            if (listener != null) {
+                listener.notifyElementExpired(region, key);
+            }
+            return null;
+        }
+        return payload == null ? null : decode(key, payload);
+    }
+
+    @Override
+    public Map<String, Object> get(Collection<String> keys) {
+        Map<String, Object> resultMap = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (String key : keys) {
+            Object value = get(key);
+            if (value != null) {
+                resultMap.put(key, value);
+            }
+        }
+        return resultMap;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        long indexKey = indexKey(key);
+        if (value == null) {
+            store.remove(indexKey);
+            return;
+        }
+        long expireAt = ttl > 0 ? System.currentTimeMillis() + ttl * 1000 : 0;
+        long version = store.isPersistent() ? TableVersions.getShared(region) : 0;
+        try {
+            store.put(indexKey, encode(key, value), expireAt, version);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "off-heap cache put failed: {} {}", region, key);
+            store.remove(indexKey);
+        }
+    }
+
+    @Override
+    public void put(Map<String, Object> elements) {
+        elements.forEach(this::put);
+    }
+
+    @Override
+    public Collection<String> keys() {
+        List<String> keyList = new ArrayList<>();
+        store.forEach((indexKey, payload) -> keyList.add(
+                (payload[0] & FLAG_STRING_KEY) != 0 ? readStringKey(payload) : Long.toString(indexKey)),
+                System.currentTimeMillis());
+        return keyList;
+    }
+
+    @Override
+    public void evict(String... keys) {
+        for (String key : keys) {
+            store.remove(indexKey(key));
+        }
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+    }
+
+    @Override
+    public long ttl() {
+        return ttl;
+    }
+
+    @Override
+    public long size() {
+        return store.size();
+    }
+
+    /**
+     * 获取堆外存储，用于读取统计信息
+     *
+     * @return 堆外存储
+     */
+    public OffHeapStore getStore() {
+        return store;
+    }
+
+    /**
+     * 计算索引的键
+     *
+     * @param key 缓存键
+     * @return 记录ID直接返回，其他键返回FNV-1a哈希
+     */
+    static long indexKey(String key) {
+        Long id = parseId(key);
+        if (id != null) {
+            return id;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 解析记录ID
+     *
+     * @param key 缓存键
+     * @return 能无损转换为long时返回ID，否则返回null
+     */
+    private static Long parseId(String key) {
+        int length = key.length();
+        if (length == 0 || length > 20) {
+            return null;
+        }
+        int start = key.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (key.charAt(start) == '0' && length > start + 1)) {
+            return null;
+        }
+        for (int i = start; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        try {
+            long id = Long.parseLong(key);
+            return id == 0 && start == 1 ? null : id;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] encode(String key, Object value) {
+        int flags = 0;
+        byte[] body;
+        if (value instanceof CachedRow && RowCodec.canEncode(((CachedRow) value).getTableName())) {
+            body = RowCodec.encode((CachedRow) value);
+        } else if (value instanceof JSONObject && RowCodec.canEncode(region)) {
+            body = RowCodec.encode(new CachedRow(region, (JSONObject) value));
+            flags |= FLAG_UNWRAP;
+        } else {
+            body = RowCodec.encodeObject(value);
+        }
+        byte[] keyBytes = null;
+        if (parseId(key) == null) {
+            keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("缓存键过长: " + keyBytes.length);
+            }
+            flags |= FLAG_STRING_KEY;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (keyBytes == null ? 0 : 2 + keyBytes.length) + body.length);
+        buffer.put((byte) flags);
+        if (keyBytes != null) {
+            buffer.putShort((short) keyBytes.length);
+            buffer.put(keyBytes);
+        }
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    private Object decode(String key, byte[] payload) {
+        int flags = payload[0];
+        int offset = 1;
+        if ((flags & FLAG_STRING_KEY) != 0) {
+            if (!key.equals(readStringKey(payload))) {
+                // 哈希冲突，保存的是另一个键的值
+                return null;
+            }
+            offset += 2 + (ByteBuffer.wrap(payload, 1, 2).getShort() & 0xFFFF);
+        }
+        byte[] body = Arrays.copyOfRange(payload, offset, payload.length);
+        try {
+            if (body[0] == RowCodec.FORMAT_ROW) {
+                CachedRow cachedRow = RowCodec.decode(body);
+                if (cachedRow == null || (flags & FLAG_UNWRAP) == 0) {
+                    return cachedRow;
+                }
+                return cachedRow.getRow();
+            }
+            if (body[0] == RowCodec.FORMAT_OBJECT) {
+                return RowCodec.decodeObject(body);
+            }
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "off-heap cache decode failed, treated as miss: {} {}", region, key);
+        }
+        return null;
+    }
+
+    private static String readStringKey(byte[] payload) {
+        int length = ByteBuffer.wrap(payload, 1, 2).getShort() & 0xFFFF;
+        return new String(payload, 3, length, StandardCharsets.UTF_8);
+    }
+}
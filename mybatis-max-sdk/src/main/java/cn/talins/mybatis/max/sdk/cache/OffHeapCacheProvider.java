@@ -0,0 +1,300 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import net.oschina.j2cache.Cache;
+import net.oschina.j2cache.CacheChannel;
+import net.oschina.j2cache.CacheException;
+import net.oschina.j2cache.CacheExpiredListener;
+import net.oschina.j2cache.CacheObject;
+import net.oschina.j2cache.CacheProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 堆外一级缓存提供者 - 每个缓存区域使用独立的{@link OffHeapStore}
+ * <p>
+ * 在j2cache.properties中配置，J2Cache按provider_class的值截取配置项，所以配置项以完整类名为前缀：
+ * <pre>
+ * j2cache.L1.provider_class = cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider
+ * # 区域配置，格式与caffeine相同：记录数, 过期时间[s|m|h|d][, 堆外内存]
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.region.default = 10000, 30m
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.region.sys_region = 500000, 1h, 256m
+ * # 未单独配置堆外内存的区域使用的容量，默认64m
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.memory = 64m
+ * # 页大小，超过一页的值不缓存，默认1m
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.page_size = 1m
+ * # 也可以把区域配置放在单独的文件中，文件中的键为区域名称
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.properties = /offheap.properties
+ * # 持久化目录，配置后每个区域映射该目录下的一个文件，重启后继续使用
+ * cn.talins.mybatis.max.sdk.cache.OffHeapCacheProvider.path = /var/cache/mybatis-max
+ * </pre>
+ * 未配置的区域使用default的配置，没有default配置时无法创建。
+ * 堆外内存按区域在首次写入时逐页分配，区域删除或清空时释放。
+ * </p>
+ *
+ * <p>
+ * 配置了持久化目录时，区域的文件在区域第一次使用时打开，页按需映射，不影响启动时间；
+ * 应用停止时写回文件。重启前的记录需要通过表的共享版本号校验后才会被读取（见{@link OffHeapCache}），
+ * 文件被其他进程占用或无法打开时该区域只使用直接内存。
+ * </p>
+ *
+ * @author talins
+ * @see OffHeapCache 堆外一级缓存区域
+ */
+public class OffHeapCacheProvider implements CacheProvider {
+
+    /**
+     * 默认每个区域的堆外内存（字节）
+     */
+    public static final long DEFAULT_MEMORY = 64L << 20;
+
+    /**
+     * 默认页大小（字节）
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+    private static final String PREFIX_REGION = "region.";
+
+    private static final String DEFAULT_REGION = "default";
+
+    /**
+     * 缓存区域名称 -> 堆外缓存区域，用于读取统计信息
+     */
+    private static final Map<String, OffHeapCache> CACHE_MAP = new ConcurrentHashMap<>();
+
+    private final Map<String, RegionConfig> regionConfigMap = new ConcurrentHashMap<>();
+
+    private long defaultMemory = DEFAULT_MEMORY;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * 持久化目录，未配置时为null
+     */
+    private Path path;
+
+    /**
+     * 获取堆外缓存区域
+     *
+     * @param region 缓存区域名称
+     * @return 堆外缓存区域，一级缓存不是堆外缓存或区域未创建时返回null
+     */
+    public static OffHeapCache getCache(String region) {
+        return CACHE_MAP.get(region);
+    }
+
+    @Override
+    public String name() {
+        return "offheap";
+    }
+
+    @Override
+    public int level() {
+        return CacheObject.LEVEL_1;
+    }
+
+    @Override
+    public Collection<CacheChannel.Region> regions() {
+        return CACHE_MAP.entrySet().stream()
+                .map(entry -> new CacheChannel.Region(entry.getKey(), entry.getValue().size(), entry.getValue().ttl()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Cache buildCache(String region, CacheExpiredListener listener) {
+        return CACHE_MAP.computeIfAbsent(region, key -> {
+            RegionConfig config = regionConfigMap.get(region);
+            if (config == null) {
+                config = regionConfigMap.get(DEFAULT_REGION);
+                if (config == null) {
+                    throw new CacheException("Undefined [default] off-heap cache region");
+                }
+                config = new RegionConfig(config.size, config.ttl, config.memory);
+                regionConfigMap.put(region, config);
+            }
+            return newCache(region, config, listener);
+        });
+    }
+
+    @Override
+    public Cache buildCache(String region, long timeToLiveInSeconds, CacheExpiredListener listener) {
+        OffHeapCache cache = CACHE_MAP.computeIfAbsent(region, key -> {
+            RegionConfig config = regionConfigMap.get(region);
+            if (config == null) {
+                RegionConfig defaultConfig = regionConfigMap.get(DEFAULT_REGION);
+                if (defaultConfig == null) {
+                    throw new CacheException("Undefined [default] off-heap cache region");
+                }
+                config = new RegionConfig(defaultConfig.size, timeToLiveInSeconds, defaultConfig.memory);
+                regionConfigMap.put(region, config);
+            }
+            return newCache(region, config, listener);
+        });
+        if (cache.ttl() != timeToLiveInSeconds) {
+            throw new IllegalArgumentException(String.format(
+                    "Region [%s] exists but different TTL(%d) from the given one(%d)",
+                    region, cache.ttl(), timeToLiveInSeconds));
+        }
+        return cache;
+    }
+
+    @Override
+    public void removeCache(String region) {
+        OffHeapCache cache = CACHE_MAP.remove(region);
+        if (cache != null) {
+            cache.clear();
+            cache.getStore().close();
+        }
+    }
+
+    @Override
+    public void start(Properties props) {
+        defaultMemory = parseBytes(props.getProperty("memory"), DEFAULT_MEMORY);
+        pageSize = (int) parseBytes(props.getProperty("page_size"), DEFAULT_PAGE_SIZE);
+        String pathValue = props.getProperty("path");
+        path = StrUtil.isBlank(pathValue) ? null : Paths.get(pathValue.trim());
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(PREFIX_REGION)) {
+                putRegion(key.substring(PREFIX_REGION.length()), props.getProperty(key));
+            }
+        }
+        String propertiesFile = props.getProperty("properties");
+        if (StrUtil.isNotBlank(propertiesFile)) {
+            Properties regionProps = new Properties();
+            try (InputStream in = ResourceUtil.getStream(StrUtil.removePrefix(propertiesFile.trim(), "/"))) {
+                regionProps.load(in);
+            } catch (IOException | RuntimeException e) {
+                throw new CacheException("Failed to load off-heap cache config: " + propertiesFile, e);
+            }
+            for (String region : regionProps.stringPropertyNames()) {
+                putRegion(region, regionProps.getProperty(region));
+            }
+        }
+        StaticLog.info("off-heap L1 cache started: regions={}, memory={}, pageSize={}, path={}",
+                regionConfigMap.keySet(), defaultMemory, pageSize, path);
+    }
+
+    @Override
+    public void stop() {
+        CACHE_MAP.values().forEach(cache -> cache.getStore().close());
+        CACHE_MAP.clear();
+        regionConfigMap.clear();
+    }
+
+    private OffHeapCache newCache(String region, RegionConfig config, CacheExpiredListener listener) {
+        OffHeapStore store = null;
+        if (path != null) {
+            Path file = path.resolve(region.replaceAll("[^A-Za-z0-9._-]", "_") + ".l1");
+            try {
+                store = new OffHeapStore(config.memory, pageSize, config.size, file);
+            } catch (RuntimeException e) {
+                StaticLog.warn(e, "off-heap cache file unavailable, region kept in memory only: {} {}", region, file);
+            }
+        }
+        if (store == null) {
+            store = new OffHeapStore(config.memory, pageSize, config.size);
+        }
+        CacheUtil.regionCreated(region, config.size, config.ttl);
+        return new OffHeapCache(region, config.ttl, store, listener);
+    }
+
+    /**
+     * 解析区域配置：记录数, 过期时间[s|m|h|d][, 堆外内存]
+     */
+    private void putRegion(String region, String value) {
+        List<String> partList = StrUtil.splitTrim(value, ',');
+        if (partList.size() < 2) {
+            throw new CacheException("Illegal off-heap cache region config: " + region + " = " + value);
+        }
+        long size = Long.parseLong(partList.get(0));
+        long ttl = parseDuration(partList.get(1));
+        long memory = partList.size() > 2 ? parseBytes(partList.get(2), defaultMemory) : defaultMemory;
+        regionConfigMap.put(region, new RegionConfig(size, ttl, memory));
+    }
+
+    /**
+     * 解析过期时间
+     *
+     * @param value 带单位（s、m、h、d）的时间，不带单位时为秒
+     * @return 秒数
+     */
+    static long parseDuration(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        char unit = text.charAt(text.length() - 1);
+        long multiplier;
+        switch (unit) {
+            case 'd':
+                multiplier = 86400;
+                break;
+            case 'h':
+                multiplier = 3600;
+                break;
+            case 'm':
+                multiplier = 60;
+                break;
+            case 's':
+                multiplier = 1;
+                break;
+            default:
+                return Long.parseLong(text);
+        }
+        return Long.parseLong(text.substring(0, text.length() - 1).trim()) * multiplier;
+    }
+
+    /**
+     * 解析容量
+     *
+     * @param value 带单位（k、m、g，可以加b）的容量，不带单位时为字节
+     * @param defaultValue 未配置时的默认值
+     * @return 字节数
+     */
+    static long parseBytes(String value, long defaultValue) {
+        if (StrUtil.isBlank(value)) {
+            return defaultValue;
+        }
+        String text = StrUtil.removeSuffix(value.trim().toLowerCase(Locale.ROOT), "b");
+        long multiplier = 1;
+        if (text.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if (text.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if (text.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        if (multiplier > 1) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        return Long.parseLong(text) * multiplier;
+    }
+
+    /**
+     * 区域配置
+     */
+    private static final class RegionConfig {
+
+        private final long size;
+
+        private final long ttl;
+
+        private final long memory;
+
+        RegionConfig(long size, long ttl, long memory) {
+            this.size = size;
+            this.ttl = ttl;
+            this.memory = memory;
+        }
+    }
+}
@@ -0,0 +1,977 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.lang.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * 堆外存储 - 以long为键、在直接内存中保存字节数组的定长块存储
+ * <p>
+ * 存储按键散列为多个分段（最多{@value #MAX_SEGMENT_COUNT}个），每个分段一把锁，平分内存容量和记录数上限：
+ * <ul>
+ *     <li>内存按页（默认1MB）从直接内存分配，每页切分为同一规格的块，块大小为64字节到页大小之间的2的幂，
+ *         一条记录占用能容纳它的最小规格的一个块</li>
+ *     <li>索引为开放寻址的线性探测哈希表，键和块引用都是基本类型数组，不为每条记录创建对象</li>
+ *     <li>内存达到容量或记录数达到上限时按CLOCK算法淘汰：读取过的块先清除访问标记，
+ *         再次经过时仍未被读取才淘汰；需要的规格没有块可以淘汰时，整页回收后改为该规格</li>
+ *     <li>每条记录带过期时间，读取到已过期的记录时删除并返回{@link #EXPIRED}</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 块的格式：键（8字节）、过期时间（8字节）、版本号（8字节）、内容长度（4字节，-1表示空闲）、
+ * 校验和（4字节，只在持久化时计算）、内容。超过一页的内容不保存。
+ * </p>
+ *
+ * <p>
+ * 指定了文件时页映射到本地文件（{@link MappedPageFile}），进程重启后重新打开文件，
+ * 各分段在第一次访问时从页中重建索引，不在启动时扫描。重建的记录需要校验后才能读取：
+ * 调用方通过{@link #setTrustedVersion}给出当前的版本号，写入时版本号相同且校验和正确的记录正常返回，
+ * 其他记录删除后按未命中处理；未给出版本号之前，重建的记录都按未命中处理。
+ * </p>
+ *
+ * @author talins
+ * @see OffHeapCache 使用堆外存储的一级缓存区域
+ */
+public class OffHeapStore {
+
+    /**
+     * 已过期，{@link #get}读取到已过期的记录时返回
+     */
+    public static final byte[] EXPIRED = new byte[0];
+
+    /**
+     * 最小的块大小
+     */
+    public static final int MIN_CHUNK_SIZE = 64;
+
+    /**
+     * 最大的页大小，页内的块序号需要放进引用的低16位
+     */
+    public static final int MAX_PAGE_SIZE = MIN_CHUNK_SIZE << 16;
+
+    /**
+     * 最多的分段数，容量不足每段32页时减少分段，保证每个分段能同时容纳各个规格的块
+     */
+    public static final int MAX_SEGMENT_COUNT = 16;
+
+    /**
+     * 未知的版本号
+     */
+    public static final long UNKNOWN_VERSION = TableVersions.UNKNOWN;
+
+    private static final int KEY_OFFSET = 0;
+
+    private static final int EXPIRE_OFFSET = 8;
+
+    private static final int VERSION_OFFSET = 16;
+
+    private static final int LENGTH_OFFSET = 24;
+
+    private static final int CHECKSUM_OFFSET = 28;
+
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * 块标志：读取过，供CLOCK淘汰使用
+     */
+    private static final byte REFERENCED = 1;
+
+    /**
+     * 块标志：从文件重建，尚未校验
+     */
+    private static final byte UNVERIFIED = 2;
+
+    private final Segment[] segments;
+
+    private final long capacityBytes;
+
+    private final int pageSize;
+
+    /**
+     * 块规格，第i个规格的块大小为MIN_CHUNK_SIZE * 2^i
+     */
+    private final int classCount;
+
+    /**
+     * 页文件，只保存在直接内存中时为null
+     */
+    private final MappedPageFile file;
+
+    /**
+     * 重建的记录可以读取的版本号
+     */
+    private volatile long trustedVersion = UNKNOWN_VERSION;
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder recovered = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    /**
+     * 容量不足淘汰记录时的回调，为null时不回调
+     */
+    private volatile Runnable evictionListener;
+
+    /**
+     * 构造函数，页保存在直接内存中
+     *
+     * @param capacityBytes 最多分配的直接内存（字节）
+     * @param pageSize 页大小（字节），向上取为2的幂
+     * @param maxEntries 最多保存的记录数（按分段平分后向上取整），小于等于0表示只按内存淘汰
+     */
+    public OffHeapStore(long capacityBytes, int pageSize, long maxEntries) {
+        this(capacityBytes, pageSize, maxEntries, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacityBytes 最多分配的内存（字节），持久化时为文件大小
+     * @param pageSize 页大小（字节），向上取为2的幂
+     * @param maxEntries 最多保存的记录数（按分段平分后向上取整），小于等于0表示只按内存淘汰
+     * @param path 页文件路径，为null时页保存在直接内存中
+     * @throws cn.hutool.core.io.IORuntimeException 无法打开页文件
+     */
+    public OffHeapStore(long capacityBytes, int pageSize, long maxEntries, Path path) {
+        Assert.isTrue(pageSize >= MIN_CHUNK_SIZE * 4 && pageSize <= MAX_PAGE_SIZE,
+                "页大小必须在{}到{}字节之间", MIN_CHUNK_SIZE * 4, MAX_PAGE_SIZE);
+        int roundedPageSize = Integer.highestOneBit(pageSize - 1) << 1;
+        Assert.isTrue(capacityBytes >= roundedPageSize, "堆外内存容量不能小于页大小");
+        this.capacityBytes = capacityBytes;
+        this.pageSize = roundedPageSize;
+        this.classCount = Integer.numberOfTrailingZeros(roundedPageSize / MIN_CHUNK_SIZE) + 1;
+        int segmentCount = MAX_SEGMENT_COUNT;
+        while (segmentCount > 1 && capacityBytes / segmentCount < roundedPageSize * 32L) {
+            segmentCount >>= 1;
+        }
+        int segmentPages = (int) Math.min(capacityBytes / segmentCount / roundedPageSize, 0x7FFF);
+        long segmentEntries = maxEntries <= 0 ? 0 : (maxEntries + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(i, segmentPages, segmentEntries);
+        }
+        this.file = path == null ? null : new MappedPageFile(path, roundedPageSize, segmentCount, segmentPages);
+    }
+
+    /**
+     * 读取记录
+     *
+     * @param key 键
+     * @param now 当前时间（毫秒时间戳）
+     * @return 内容，不存在或未通过校验时返回null，已过期时删除并返回{@link #EXPIRED}
+     */
+    public byte[] get(long key, long now) {
+        byte[] payload = segment(key).get(key, now);
+        if (payload == null) {
+            misses.increment();
+        } else if (payload == EXPIRED) {
+            misses.increment();
+            expirations.increment();
+        } else {
+            hits.increment();
+        }
+        return payload;
+    }
+
+    /**
+     * 写入记录，已存在时覆盖
+     *
+     * @param key 键
+     * @param payload 内容
+     * @param expireAt 过期时间（毫秒时间戳），0表示不过期
+     * @return 写入成功返回true，内容超过一页或没有可用内存时返回false，此时旧记录也被删除
+     */
+    public boolean put(long key, byte[] payload, long expireAt) {
+        return put(key, payload, expireAt, 0);
+    }
+
+    /**
+     * 写入记录，已存在时覆盖
+     *
+     * @param key 键
+     * @param payload 内容
+     * @param expireAt 过期时间（毫秒时间戳），0表示不过期
+     * @param version 写入时的版本号，重启后与{@link #setTrustedVersion}给出的版本号比较
+     * @return 写入成功返回true，内容超过一页或没有可用内存时返回false，此时旧记录也被删除
+     */
+    public boolean put(long key, byte[] payload, long expireAt, long version) {
+        int checksum = 0;
+        if (file != null) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload);
+            checksum = (int) crc32.getValue();
+        }
+        boolean stored = segment(key).put(key, payload, expireAt, version, checksum);
+        if (!stored) {
+            rejections.increment();
+        }
+        return stored;
+    }
+
+    /**
+     * 删除记录
+     *
+     * @param key 键
+     * @return 存在并删除时返回true
+     */
+    public boolean remove(long key) {
+        return segment(key).remove(key);
+    }
+
+    /**
+     * 清空所有记录并释放已分配的页
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 写回并关闭页文件，之后不能再使用该存储；只保存在直接内存中时等同于{@link #clear}
+     */
+    public void close() {
+        if (file == null) {
+            clear();
+            return;
+        }
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        file.close();
+    }
+
+    /**
+     * 是否持久化到文件
+     *
+     * @return 指定了页文件时返回true
+     */
+    public boolean isPersistent() {
+        return file != null;
+    }
+
+    /**
+     * 是否在等待重建记录的版本号
+     *
+     * @return 打开的是已有的页文件且尚未给出版本号时返回true
+     */
+    public boolean isAwaitingVersion() {
+        return file != null && file.isReopened() && trustedVersion == UNKNOWN_VERSION;
+    }
+
+    /**
+     * 给出重建的记录可以读取的版本号，写入时版本号不同的记录在读取时删除
+     *
+     * @param trustedVersion 版本号
+     */
+    public void setTrustedVersion(long trustedVersion) {
+        this.trustedVersion = trustedVersion;
+    }
+
+    /**
+     * 设置容量不足淘汰记录时的回调，回调在分段的锁内执行，只能做计数等简单操作
+     *
+     * @param evictionListener 每淘汰一条记录调用一次，为null时不回调
+     */
+    public void setEvictionListener(Runnable evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * 遍历未过期的记录，遍历期间持有各分段的锁，回调中不能访问该存储
+     *
+     * @param visitor 访问者
+     * @param now 当前时间（毫秒时间戳）
+     */
+    public void forEach(EntryVisitor visitor, long now) {
+        for (Segment segment : segments) {
+            segment.forEach(visitor, now);
+        }
+    }
+
+    /**
+     * 记录数
+     *
+     * @return 记录数，包括已过期但尚未被读取到的记录
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 记录内容的总字节数
+     *
+     * @return 字节数
+     */
+    public long getPayloadBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.payloadBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 已分配的直接内存（字节）
+     *
+     * @return 字节数
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * 因内容过大或没有可用内存而未能写入的次数
+     *
+     * @return 次数
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * 从页文件重建的记录数
+     *
+     * @return 记录数
+     */
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    /**
+     * 重建的记录因版本号变化或校验和错误被删除的次数
+     *
+     * @return 次数
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    private Segment segment(long key) {
+        return segments[(int) (mix(key) >>> 60) & (segments.length - 1)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * 记录访问者
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+
+        /**
+         * 访问一条记录
+         *
+         * @param key 键
+         * @param payload 内容
+         */
+        void visit(long key, byte[] payload);
+    }
+
+    /**
+     * 页 - 一块直接内存或映射的文件，切分为同一规格的块
+     */
+    private static final class Page {
+
+        private final ByteBuffer buffer;
+
+        private int classIndex;
+
+        private int chunkSize;
+
+        private int chunkCount;
+
+        /**
+         * 块标志（{@link #REFERENCED}、{@link #UNVERIFIED}）
+         */
+        private byte[] flags;
+
+        Page(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void format(int classIndex) {
+            recover(classIndex);
+            for (int i = 0; i < chunkCount; i++) {
+                buffer.putInt(i * chunkSize + LENGTH_OFFSET, -1);
+            }
+        }
+
+        /**
+         * 按已有的规格使用页，不修改内容
+         */
+        void recover(int classIndex) {
+            this.classIndex = classIndex;
+            this.chunkSize = MIN_CHUNK_SIZE << classIndex;
+            this.chunkCount = buffer.capacity() / chunkSize;
+            this.flags = new byte[chunkCount];
+        }
+
+        int offset(int chunk) {
+            return chunk * chunkSize;
+        }
+
+        boolean isOccupied(int chunk) {
+            return buffer.getInt(offset(chunk) + LENGTH_OFFSET) >= 0;
+        }
+
+        long key(int chunk) {
+            return buffer.getLong(offset(chunk) + KEY_OFFSET);
+        }
+
+        long expireAt(int chunk) {
+            return buffer.getLong(offset(chunk) + EXPIRE_OFFSET);
+        }
+
+        long version(int chunk) {
+            return buffer.getLong(offset(chunk) + VERSION_OFFSET);
+        }
+
+        int length(int chunk) {
+            return buffer.getInt(offset(chunk) + LENGTH_OFFSET);
+        }
+
+        /**
+         * 检查块的内容是否完整，记录的长度超出块大小或校验和不一致时返回false
+         */
+        boolean isIntact(int chunk) {
+            int length = length(chunk);
+            if (length > chunkSize - HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset(chunk) + HEADER_SIZE);
+            view.limit(offset(chunk) + HEADER_SIZE + length);
+            CRC32 crc32 = new CRC32();
+            crc32.update(view);
+            return (int) crc32.getValue() == buffer.getInt(offset(chunk) + CHECKSUM_OFFSET);
+        }
+
+        byte[] read(int chunk) {
+            byte[] payload = new byte[length(chunk)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset(chunk) + HEADER_SIZE);
+            view.get(payload);
+            return payload;
+        }
+
+        void write(int chunk, long key, byte[] payload, long expireAt, long version, int checksum) {
+            int offset = offset(chunk);
+            buffer.putLong(offset + KEY_OFFSET, key);
+            buffer.putLong(offset + EXPIRE_OFFSET, expireAt);
+            buffer.putLong(offset + VERSION_OFFSET, version);
+            buffer.putInt(offset + LENGTH_OFFSET, payload.length);
+            buffer.putInt(offset + CHECKSUM_OFFSET, checksum);
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER_SIZE);
+            view.put(payload);
+            flags[chunk] = 0;
+        }
+
+        void free(int chunk) {
+            buffer.putInt(offset(chunk) + LENGTH_OFFSET, -1);
+            flags[chunk] = 0;
+        }
+    }
+
+    /**
+     * 分段 - 一把锁保护的索引和页
+     */
+    private final class Segment {
+
+        /**
+         * 分段序号，决定分段的页在页文件中的位置
+         */
+        private final int segmentIndex;
+
+        private final int maxPages;
+
+        private final long maxEntries;
+
+        private final List<Page> pages = new ArrayList<>();
+
+        /**
+         * 每个规格的空闲块引用
+         */
+        private final int[][] freeLists = new int[classCount][];
+
+        private final int[] freeCounts = new int[classCount];
+
+        private long[] indexKeys = new long[16];
+
+        /**
+         * 块引用 + 1，0表示空槽
+         */
+        private int[] indexRefs = new int[16];
+
+        private int indexSize;
+
+        private long payloadBytes;
+
+        private int clockPage;
+
+        private int clockChunk;
+
+        private int victimPage;
+
+        /**
+         * 是否已从页文件重建索引
+         */
+        private boolean rebuilt;
+
+        Segment(int segmentIndex, int maxPages, long maxEntries) {
+            this.segmentIndex = segmentIndex;
+            this.maxPages = maxPages;
+            this.maxEntries = maxEntries;
+            for (int i = 0; i < classCount; i++) {
+                freeLists[i] = new int[8];
+            }
+        }
+
+        synchronized byte[] get(long key, long now) {
+            ensureRecovered();
+            int slot = find(key);
+            if (slot < 0) {
+                return null;
+            }
+            int ref = indexRefs[slot] - 1;
+            Page page = pages.get(ref >>> 16);
+            int chunk = ref & 0xFFFF;
+            long expireAt = page.expireAt(chunk);
+            if (expireAt > 0 && expireAt <= now) {
+                release(page, ref);
+                deleteAt(slot);
+                return EXPIRED;
+            }
+            if ((page.flags[chunk] & UNVERIFIED) != 0) {
+                long version = trustedVersion;
+                if (version == UNKNOWN_VERSION) {
+                    return null;
+                }
+                if (page.version(chunk) != version || !page.isIntact(chunk)) {
+                    release(page, ref);
+                    deleteAt(slot);
+                    revalidations.increment();
+                    return null;
+                }
+            }
+            page.flags[chunk] = REFERENCED;
+            return page.read(chunk);
+        }
+
+        synchronized boolean put(long key, byte[] payload, long expireAt, long version, int checksum) {
+            ensureRecovered();
+            int classIndex = classOf(payload.length);
+            int slot = find(key);
+            if (slot >= 0) {
+                int ref = indexRefs[slot] - 1;
+                Page page = pages.get(ref >>> 16);
+                if (page.classIndex == classIndex) {
+                    payloadBytes += payload.length - page.length(ref & 0xFFFF);
+                    page.write(ref & 0xFFFF, key, payload, expireAt, version, checksum);
+                    return true;
+                }
+                release(page, ref);
+                deleteAt(slot);
+            } else if (maxEntries > 0 && indexSize >= maxEntries) {
+                evictOne(-1);
+            }
+            if (classIndex < 0) {
+                return false;
+            }
+            int ref = allocate(classIndex);
+            if (ref < 0) {
+                return false;
+            }
+            pages.get(ref >>> 16).write(ref & 0xFFFF, key, payload, expireAt, version, checksum);
+            payloadBytes += payload.length;
+            insert(key, ref);
+            return true;
+        }
+
+        synchronized boolean remove(long key) {
+            ensureRecovered();
+            int slot = find(key);
+            if (slot < 0) {
+                return false;
+            }
+            int ref = indexRefs[slot] - 1;
+            release(pages.get(ref >>> 16), ref);
+            deleteAt(slot);
+            return true;
+        }
+
+        synchronized void clear() {
+            rebuilt = true;
+            if (file != null) {
+                for (int i = 0; i < pages.size(); i++) {
+                    file.setPageClass(slotOf(i), -1);
+                }
+            }
+            allocatedBytes.addAndGet(-(long) pages.size() * pageSize);
+            pages.clear();
+            Arrays.fill(freeCounts, 0);
+            indexKeys = new long[16];
+            indexRefs = new int[16];
+            indexSize = 0;
+            payloadBytes = 0;
+            clockPage = 0;
+            clockChunk = 0;
+            victimPage = 0;
+        }
+
+        synchronized void close() {
+            pages.clear();
+        }
+
+        synchronized void forEach(EntryVisitor visitor, long now) {
+            ensureRecovered();
+            for (int i = 0; i < indexRefs.length; i++) {
+                if (indexRefs[i] == 0) {
+                    continue;
+                }
+                int ref = indexRefs[i] - 1;
+                Page page = pages.get(ref >>> 16);
+                long expireAt = page.expireAt(ref & 0xFFFF);
+                if (expireAt <= 0 || expireAt > now) {
+                    visitor.visit(indexKeys[i], page.read(ref & 0xFFFF));
+                }
+            }
+        }
+
+        synchronized int size() {
+            ensureRecovered();
+            return indexSize;
+        }
+
+        synchronized long payloadBytes() {
+            ensureRecovered();
+            return payloadBytes;
+        }
+
+        /**
+         * 第一次访问时从页文件重建索引：按页表依次映射分段的页，读取每个块的头部，
+         * 未过期的记录加入索引并标记为未校验，重复的键和已过期的记录释放
+         */
+        private void ensureRecovered() {
+            if (rebuilt) {
+                return;
+            }
+            rebuilt = true;
+            if (file == null || !file.isReopened()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (int pageIndex = 0; pageIndex < maxPages; pageIndex++) {
+                int classIndex = file.getPageClass(slotOf(pageIndex));
+                if (classIndex < 0 || classIndex >= classCount) {
+                    break;
+                }
+                Page page = new Page(file.map(slotOf(pageIndex)));
+                page.recover(classIndex);
+                pages.add(page);
+                allocatedBytes.addAndGet(pageSize);
+                for (int chunk = page.chunkCount - 1; chunk >= 0; chunk--) {
+                    int ref = pageIndex << 16 | chunk;
+                    if (!page.isOccupied(chunk)) {
+                        pushFree(classIndex, ref);
+                        continue;
+                    }
+                    long expireAt = page.expireAt(chunk);
+                    if (find(page.key(chunk)) >= 0 || (expireAt > 0 && expireAt <= now)) {
+                        page.free(chunk);
+                        pushFree(classIndex, ref);
+                        continue;
+                    }
+                    payloadBytes += page.length(chunk);
+                    page.flags[chunk] = UNVERIFIED;
+                    insert(page.key(chunk), ref);
+                    recovered.increment();
+                }
+            }
+        }
+
+        private int slotOf(int pageIndex) {
+            return segmentIndex * maxPages + pageIndex;
+        }
+
+        /**
+         * 能容纳内容的最小规格
+         *
+         * @return 规格序号，超过一页时返回-1
+         */
+        private int classOf(int length) {
+            int need = HEADER_SIZE + length;
+            if (need > pageSize) {
+                return -1;
+            }
+            int classIndex = 0;
+            while ((MIN_CHUNK_SIZE << classIndex) < need) {
+                classIndex++;
+            }
+            return classIndex;
+        }
+
+        /**
+         * 分配一个块：依次使用空闲块、新页、淘汰同规格的块、回收其他规格的页
+         *
+         * @return 块引用，没有可用内存时返回-1
+         */
+        private int allocate(int classIndex) {
+            if (freeCounts[classIndex] > 0) {
+                return freeLists[classIndex][--freeCounts[classIndex]];
+            }
+            if (pages.size() < maxPages) {
+                int pageIndex = pages.size();
+                ByteBuffer buffer = file == null ? ByteBuffer.allocateDirect(pageSize) : file.map(slotOf(pageIndex));
+                Page page = new Page(buffer);
+                allocatedBytes.addAndGet(pageSize);
+                pages.add(page);
+                format(page, pageIndex, classIndex);
+                return freeLists[classIndex][--freeCounts[classIndex]];
+            }
+            if (evictOne(classIndex)) {
+                return freeLists[classIndex][--freeCounts[classIndex]];
+            }
+            if (reclaimPage(classIndex)) {
+                return freeLists[classIndex][--freeCounts[classIndex]];
+            }
+            return -1;
+        }
+
+        /**
+         * 按CLOCK算法淘汰一条记录
+         *
+         * @param classIndex 只淘汰该规格的块，-1表示任意规格
+         * @return 淘汰了一条记录时返回true
+         */
+        private boolean evictOne(int classIndex) {
+            long remaining = 0;
+            for (Page page : pages) {
+                if (classIndex < 0 || page.classIndex == classIndex) {
+                    remaining += page.chunkCount;
+                }
+            }
+            // 最多两轮：第一轮清除访问标记，第二轮一定能找到可淘汰的块
+            remaining *= 2;
+            while (remaining > 0) {
+                if (clockPage >= pages.size()) {
+                    clockPage = 0;
+                    clockChunk = 0;
+                }
+                Page page = pages.get(clockPage);
+                if ((classIndex >= 0 && page.classIndex != classIndex) || clockChunk >= page.chunkCount) {
+                    clockPage++;
+                    clockChunk = 0;
+                    continue;
+                }
+                int chunk = clockChunk++;
+                remaining--;
+                if (!page.isOccupied(chunk)) {
+                    continue;
+                }
+                if ((page.flags[chunk] & REFERENCED) != 0) {
+                    page.flags[chunk] &= ~REFERENCED;
+                    continue;
+                }
+                evict(page, clockPage << 16 | chunk);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 回收一页其他规格的内存，淘汰其中的所有记录后改为指定规格
+         *
+         * @return 回收了一页时返回true
+         */
+        private boolean reclaimPage(int classIndex) {
+            for (int i = 0; i < pages.size(); i++) {
+                int pageIndex = (victimPage + i) % pages.size();
+                Page page = pages.get(pageIndex);
+                if (page.classIndex == classIndex) {
+                    continue;
+                }
+                victimPage = pageIndex + 1;
+                for (int chunk = 0; chunk < page.chunkCount; chunk++) {
+                    if (page.isOccupied(chunk)) {
+                        evict(page, pageIndex << 16 | chunk);
+                    }
+                }
+                // 移除该页在原规格空闲列表中的块
+                int[] freeList = freeLists[page.classIndex];
+                int count = 0;
+                for (int j = 0; j < freeCounts[page.classIndex]; j++) {
+                    if (freeList[j] >>> 16 != pageIndex) {
+                        freeList[count++] = freeList[j];
+                    }
+                }
+                freeCounts[page.classIndex] = count;
+                format(page, pageIndex, classIndex);
+                return true;
+            }
+            return false;
+        }
+
+        private void format(Page page, int pageIndex, int classIndex) {
+            if (file != null) {
+                file.setPageClass(slotOf(pageIndex), -1);
+            }
+            page.format(classIndex);
+            if (file != null) {
+                file.setPageClass(slotOf(pageIndex), classIndex);
+            }
+            for (int chunk = page.chunkCount - 1; chunk >= 0; chunk--) {
+                pushFree(classIndex, pageIndex << 16 | chunk);
+            }
+        }
+
+        private void evict(Page page, int ref) {
+            int slot = find(page.key(ref & 0xFFFF));
+            release(page, ref);
+            if (slot >= 0) {
+                deleteAt(slot);
+            }
+            evictions.increment();
+            Runnable listener = evictionListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+
+        private void release(Page page, int ref) {
+            payloadBytes -= page.length(ref & 0xFFFF);
+            page.free(ref & 0xFFFF);
+            pushFree(page.classIndex, ref);
+        }
+
+        private void pushFree(int classIndex, int ref) {
+            int[] freeList = freeLists[classIndex];
+            if (freeCounts[classIndex] == freeList.length) {
+                freeList = Arrays.copyOf(freeList, freeList.length * 2);
+                freeLists[classIndex] = freeList;
+            }
+            freeList[freeCounts[classIndex]++] = ref;
+        }
+
+        private int find(long key) {
+            int mask = indexRefs.length - 1;
+            for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+                if (indexRefs[i] == 0) {
+                    return -1;
+                }
+                if (indexKeys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+        private void insert(long key, int ref) {
+            if ((indexSize + 1) * 4L > indexRefs.length * 3L) {
+                resize();
+            }
+            int mask = indexRefs.length - 1;
+            int i = (int) mix(key) & mask;
+            while (indexRefs[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            indexKeys[i] = key;
+            indexRefs[i] = ref + 1;
+            indexSize++;
+        }
+
+        /**
+         * 删除槽位，把后续探测链上的记录前移，不留删除标记
+         */
+        private void deleteAt(int slot) {
+            int mask = indexRefs.length - 1;
+            int hole = slot;
+            int i = slot;
+            while (true) {
+                i = (i + 1) & mask;
+                if (indexRefs[i] == 0) {
+                    break;
+                }
+                int home = (int) mix(indexKeys[i]) & mask;
+                // home在(hole, i]之间（循环意义上）时该记录不需要移动
+                boolean stays = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+                if (!stays) {
+                    indexKeys[hole] = indexKeys[i];
+                    indexRefs[hole] = indexRefs[i];
+                    hole = i;
+                }
+            }
+            indexRefs[hole] = 0;
+            indexSize--;
+        }
+
+        private void resize() {
+            long[] oldKeys = indexKeys;
+            int[] oldRefs = indexRefs;
+            indexKeys = new long[oldKeys.length * 2];
+            indexRefs = new int[oldRefs.length * 2];
+            int mask = indexRefs.length - 1;
+            for (int j = 0; j < oldRefs.length; j++) {
+                if (oldRefs[j] == 0) {
+                    continue;
+                }
+                int i = (int) mix(oldKeys[j]) & mask;
+                while (indexRefs[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                indexKeys[i] = oldKeys[j];
+                indexRefs[i] = oldRefs[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.lang.Assert;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果缓存 - 缓存条件查询的结果，按表写版本号失效
+ * <p>
+ * 仪表盘等场景会反复执行完全相同的条件查询，开启后：
+ * <ul>
+ *     <li>缓存键由表的写版本号和共享版本号、查询类型、归一化的SQL片段、绑定参数和分页参数组成</li>
+ *     <li>表发生写操作后版本号递增，之前的缓存项不再命中，不需要扫描清理</li>
+ *     <li>每张表单独配置容量和过期时间，只缓存在本节点内存中</li>
+ *     <li>配置了最大陈旧时间时，每个查询最后一次的结果按不含版本号的键另外保留，
+ *         回源查询失败或超时时作为旧值返回</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 注意：本节点的写版本号只反映本节点的写操作。配置了{@link cn.talins.mybatis.max.api.ITableVersionStore}时，
+ * 其他节点的写操作在共享版本号刷新后可见（{@link TableVersions#getShared}）；没有配置时要等缓存过期后才可见，
+ * 因此必须设置大于0的过期时间。原生SQL的修改同样要等缓存过期后才可见，只应对能接受短暂延迟的表开启。
+ * </p>
+ *
+ * @author talins
+ * @see TableVersions 表写版本号
+ * @see cn.talins.mybatis.max.sdk.repository.BaseRepository#selectList 使用查询结果缓存的查询
+ */
+public class QueryCache {
+
+    /**
+     * 表名 -> 查询结果缓存
+     */
+    private static final Map<String, Cache<String, Object>> CACHE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 表名 -> 查询最后一次的结果，键不含版本号
+     */
+    private static final Map<String, Cache<String, StaleValue>> STALE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 表名 -> 查询结果缓存策略
+     */
+    private static final Map<String, QueryCachePolicy> POLICY_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 开启表的查询结果缓存，已开启时按新策略重建
+     *
+     * @param tableName 表名
+     * @param policy 查询结果缓存策略
+     * @throws IllegalArgumentException 如果没有配置共享版本号存储且过期时间小于等于0
+     */
+    public static void register(String tableName, QueryCachePolicy policy) {
+        Assert.isTrue(policy.getTtl() > 0 || TableVersions.hasStore(),
+                "没有配置ITableVersionStore时查询结果缓存的ttl必须大于0，否则其他节点的写操作永远不可见: {}", tableName);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(policy.getSize());
+        if (policy.getTtl() > 0) {
+            builder.expireAfterWrite(policy.getTtl(), TimeUnit.SECONDS);
+        }
+        CACHE_MAP.put(tableName, builder.build());
+        POLICY_MAP.put(tableName, policy);
+        if (policy.getMaxStaleness() > 0) {
+            STALE_MAP.put(tableName, CacheBuilder.newBuilder().maximumSize(policy.getSize())
+                    .expireAfterWrite(Math.max(policy.getTtl(), 0) + policy.getMaxStaleness(), TimeUnit.SECONDS)
+                    .build());
+        } else {
+            STALE_MAP.remove(tableName);
+        }
+    }
+
+    /**
+     * 关闭表的查询结果缓存
+     *
+     * @param tableName 表名
+     */
+    public static void unregister(String tableName) {
+        CACHE_MAP.remove(tableName);
+        STALE_MAP.remove(tableName);
+        POLICY_MAP.remove(tableName);
+    }
+
+    /**
+     * 检查表是否开启了查询结果缓存
+     *
+     * @param tableName 表名
+     * @return 开启时返回true
+     */
+    public static boolean exists(String tableName) {
+        return CACHE_MAP.containsKey(tableName);
+    }
+
+    /**
+     * 获取缓存的查询结果
+     *
+     * @param tableName 表名
+     * @param key 缓存键
+     * @return 查询结果，未命中时返回null
+     */
+    public static Object get(String tableName, String key) {
+        Cache<String, Object> cache = CACHE_MAP.get(tableName);
+        return cache == null ? null : cache.getIfPresent(key);
+    }
+
+    /**
+     * 缓存查询结果
+     *
+     * @param tableName 表名
+     * @param key 缓存键
+     * @param value 查询结果
+     */
+    public static void put(String tableName, String key, Object value) {
+        Cache<String, Object> cache = CACHE_MAP.get(tableName);
+        if (cache != null) {
+            cache.put(key, value);
+        }
+        Cache<String, StaleValue> staleCache = STALE_MAP.get(tableName);
+        if (staleCache != null) {
+            staleCache.put(staleKey(key), new StaleValue(value, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 获取查询最后一次的结果，不论之后表是否发生过写操作
+     *
+     * @param tableName 表名
+     * @param key 缓存键
+     * @return 最后一次的结果，未开启降级读取或已超过最大陈旧时间时返回null
+     * @see StaleIfError 降级读取
+     */
+    public static StaleValue getStale(String tableName, String key) {
+        Cache<String, StaleValue> staleCache = STALE_MAP.get(tableName);
+        return staleCache == null ? null : staleCache.getIfPresent(staleKey(key));
+    }
+
+    /**
+     * 获取表的查询结果缓存策略
+     *
+     * @param tableName 表名
+     * @return 查询结果缓存策略，未开启时返回null
+     */
+    public static QueryCachePolicy getPolicy(String tableName) {
+        return POLICY_MAP.get(tableName);
+    }
+
+    /**
+     * 去掉缓存键开头的版本号
+     *
+     * @param key 缓存键
+     * @return 不含版本号的键
+     */
+    private static String staleKey(String key) {
+        return key.substring(key.indexOf('|') + 1);
+    }
+
+    /**
+     * 生成缓存键
+     * <p>
+     * 必须在执行查询之前生成，这样查询期间发生的写操作会使本次结果以旧版本号缓存，不会被后续查询命中。
+     * </p>
+     *
+     * @param tableName 表名
+     * @param type 查询类型，如list、count
+     * @param queryWrapper 查询条件
+     * @param page 分页参数，可以为null
+     * @return 缓存键
+     */
+    public static String key(String tableName, String type, QueryWrapper<?> queryWrapper, IPage<?> page) {
+        StringBuilder key = new StringBuilder()
+                .append(TableVersions.get(tableName)).append(':').append(TableVersions.getShared(tableName)).append('|')
+                .append(type).append('|')
+                .append(queryWrapper.getEntityClass() == null ? "" : queryWrapper.getEntityClass().getName()).append('|')
+                .append(queryWrapper.getSqlSelect()).append('|')
+                .append(queryWrapper.getCustomSqlSegment()).append('|');
+        // 参数名由条件构造顺序决定，与SQL片段中的占位符一一对应
+        new TreeMap<>(queryWrapper.getParamNameValuePairs()).forEach((name, value) -> key.append(name).append('=')
+                .append(value == null ? "null" : value.getClass().getSimpleName() + ":" + value).append(','));
+        if (page != null) {
+            key.append('|').append(page.getCurrent()).append(',').append(page.getSize())
+                    .append(',').append(page.searchCount());
+            page.orders().forEach(order -> key.append(',').append(order.getColumn()).append(order.isAsc() ? " asc" : " desc"));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 查询最后一次的结果
+     */
+    public static final class StaleValue {
+
+        private final Object value;
+
+        private final long writeTime;
+
+        StaleValue(Object value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * 陈旧时间，按写入后经过的时间计算
+         *
+         * @param now 当前时间（毫秒时间戳）
+         * @return 陈旧时间（毫秒）
+         */
+        public long getStaleness(long now) {
+            return now - writeTime;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 查询结果缓存策略 - 描述一张表的查询结果缓存容量和过期时间
+ *
+ * @author talins
+ * @see QueryCache#register 登记查询结果缓存
+ */
+@Data
+@NoArgsConstructor
+public class QueryCachePolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 最多缓存的查询结果数量
+     */
+    private long size = 1000;
+
+    /**
+     * 缓存过期时间（秒），小于等于0表示只按容量回收，只有配置了共享版本号存储时才能小于等于0
+     */
+    private long ttl = 60;
+
+    /**
+     * 最大陈旧时间（秒），小于等于0表示关闭降级读取
+     * <p>
+     * 开启后每个查询最后一次的结果额外保留ttl + maxStaleness，不受写版本号影响，
+     * 回源查询失败或超过{@link #loadTimeout}时返回该结果。
+     * </p>
+     *
+     * @see StaleIfError 降级读取
+     */
+    private long maxStaleness;
+
+    /**
+     * 回源查询的耗时预算（毫秒），小于等于0表示不限制，只在开启了降级读取时生效
+     */
+    private long loadTimeout;
+
+    /**
+     * 构造函数
+     *
+     * @param size 最多缓存的查询结果数量
+     * @param ttl 缓存过期时间（秒）
+     */
+    public QueryCachePolicy(long size, long ttl) {
+        this.size = size;
+        this.ttl = ttl;
+    }
+}
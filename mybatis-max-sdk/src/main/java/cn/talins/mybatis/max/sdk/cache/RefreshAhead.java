@@ -0,0 +1,150 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.log.StaticLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * 提前刷新 - 热点记录在过期前被读取时，在后台重新加载
+ * <p>
+ * 记录按过期时间失效后，下一次读取要同步查询数据库；同一批加载的热点记录同时过期时，
+ * 请求延迟会周期性地出现尖峰。开启后（{@link CachePolicy#getRefreshAhead}），
+ * 记录在剩余有效时间小于该比例的TTL时被读取，就提交后台加载，读取方照常拿到当前的值，
+ * 加载完成后记录以新的过期时间写回缓存。
+ * </p>
+ *
+ * <p>
+ * 并发控制：
+ * <ul>
+ *     <li>同一条记录同时只有一个刷新任务，已在刷新中的记录不再提交</li>
+ *     <li>每个数据源同时执行的刷新任务数有上限，没有空闲名额时放弃本次刷新，
+ *         记录仍在有效期内，之后的读取会再次尝试</li>
+ * </ul>
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.sdk.repository.BaseRepository 使用提前刷新的仓库实现
+ */
+public class RefreshAhead {
+
+    /**
+     * 默认每个数据源同时执行的刷新任务数
+     */
+    public static final int DEFAULT_DATA_SOURCE_CONCURRENCY = 2;
+
+    /**
+     * 刷新任务线程池，任务数受各数据源的名额限制
+     */
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(
+            ThreadUtil.newNamedThreadFactory("mybatis-max-refresh-", true));
+
+    /**
+     * 正在刷新的记录（表名:ID）
+     */
+    private final Set<String> refreshingSet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 数据源名称 -> 刷新名额
+     */
+    private final Map<String, Semaphore> permitMap = new ConcurrentHashMap<>();
+
+    /**
+     * 每个数据源同时执行的刷新任务数
+     */
+    private volatile int dataSourceConcurrency = DEFAULT_DATA_SOURCE_CONCURRENCY;
+
+    /**
+     * 判断记录是否需要提前刷新
+     *
+     * @param cachedRow 缓存中的表记录
+     * @param policy 表的缓存策略
+     * @param now 当前时间（毫秒时间戳）
+     * @return 记录未过期，且剩余有效时间小于refreshAhead比例的TTL时返回true
+     */
+    public static boolean isDue(CachedRow cachedRow, CachePolicy policy, long now) {
+        if (policy.getRefreshAhead() <= 0 || policy.getTtl() <= 0 || cachedRow.getExpireAt() <= 0) {
+            return false;
+        }
+        long remaining = cachedRow.getExpireAt() - now;
+        return remaining > 0 && remaining <= policy.getTtl() * 1000 * policy.getRefreshAhead();
+    }
+
+    /**
+     * 设置每个数据源同时执行的刷新任务数，只对之后第一次使用的数据源生效
+     *
+     * @param dataSourceConcurrency 刷新任务数
+     */
+    public void setDataSourceConcurrency(int dataSourceConcurrency) {
+        Assert.isTrue(dataSourceConcurrency > 0, "每个数据源的刷新任务数必须大于0");
+        this.dataSourceConcurrency = dataSourceConcurrency;
+    }
+
+    /**
+     * 提交记录的后台刷新
+     *
+     * @param tableName 表名
+     * @param dataSourceName 表所在的数据源名称，默认数据源为空字符串
+     * @param idList 需要刷新的记录ID
+     * @param loader 加载并写回缓存的函数，参数为本次实际刷新的ID
+     * @return 提交了刷新任务时返回true，没有需要刷新的记录或数据源没有空闲名额时返回false
+     */
+    public boolean submit(String tableName, String dataSourceName, Collection<Long> idList,
+                          Consumer<Collection<Long>> loader) {
+        Semaphore permits = permitMap.computeIfAbsent(dataSourceName, key -> new Semaphore(dataSourceConcurrency));
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        List<Long> claimedList = new ArrayList<>(idList.size());
+        for (Long id : idList) {
+            if (refreshingSet.add(tableName + ":" + id)) {
+                claimedList.add(id);
+            }
+        }
+        if (claimedList.isEmpty()) {
+            permits.release();
+            return false;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(StaleIfError.wrap(() -> {
+                try {
+                    loader.accept(claimedList);
+                } catch (Exception e) {
+                    StaticLog.warn(e, "cache refresh ahead failed: {} {}", tableName, claimedList.size());
+                } finally {
+                    release(tableName, claimedList, permits);
+                }
+            }));
+        } catch (RuntimeException e) {
+            release(tableName, claimedList, permits);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 正在刷新的记录数
+     *
+     * @return 记录数
+     */
+    public int getRefreshingCount() {
+        return refreshingSet.size();
+    }
+
+    private void release(String tableName, List<Long> claimedList, Semaphore permits) {
+        permits.release();
+        for (Long id : claimedList) {
+            refreshingSet.remove(tableName + ":" + id);
+        }
+    }
+}
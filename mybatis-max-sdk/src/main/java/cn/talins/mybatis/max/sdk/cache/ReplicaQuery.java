@@ -0,0 +1,312 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.talins.mybatis.max.api.enums.Connect;
+import cn.talins.mybatis.max.api.enums.Operator;
+import cn.talins.mybatis.max.api.enums.Order;
+import cn.talins.mybatis.max.api.pojo.Condition;
+import cn.talins.mybatis.max.api.pojo.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 内存查询 - 在{@link TableReplica}的快照上计算{@link Query}
+ * <p>
+ * 与QueryUtil生成的SQL保持相同的语义：
+ * <ul>
+ *     <li>条件按顺序连接，AND优先于OR，即c1 OR c2 AND c3等价于c1 OR (c2 AND c3)</li>
+ *     <li>与NULL比较的条件不成立，NOT_IN的参数中有NULL时不成立</li>
+ *     <li>LIKE和NOT_LIKE在参数两侧加%，参数中的%、_为通配符，\为转义符</li>
+ *     <li>排序时NULL在升序中排在最前，在降序中排在最后；排序值相同时按ID升序</li>
+ * </ul>
+ * 参数按字段类型转换后比较（见{@link CacheIndex#normalize}），非字符串字段的LIKE按值的字符串形式匹配。
+ * 字符串的比较、IN、LIKE和排序默认不区分大小写，与MySQL默认的排序规则（如utf8mb4_general_ci）一致；
+ * 列使用二进制或区分大小写的排序规则时，通过{@link CachePolicy#isReplicaCaseSensitive}开启区分大小写。
+ * </p>
+ *
+ * <p>
+ * 条件、排序或查询列中有实体不存在的字段、缺少参数或IN的参数为空时无法在内存中计算，
+ * {@link #compile}返回null，由调用方查询数据库，与数据库返回相同的错误。
+ * </p>
+ *
+ * @author talins
+ */
+public final class ReplicaQuery {
+
+    private final Predicate<Map<String, Object>> predicate;
+
+    private final Comparator<Map<String, Object>> comparator;
+
+    /**
+     * 查询的字段（驼峰），为null时查询所有字段
+     */
+    private final List<String> columnList;
+
+    private ReplicaQuery(Predicate<Map<String, Object>> predicate, Comparator<Map<String, Object>> comparator,
+                         List<String> columnList) {
+        this.predicate = predicate;
+        this.comparator = comparator;
+        this.columnList = columnList;
+    }
+
+    /**
+     * 编译查询
+     *
+     * @param query 查询对象
+     * @param fieldTypeMap 字段名（驼峰） -> 字段类型
+     * @param caseSensitive 字符串比较是否区分大小写
+     * @return 编译后的查询，无法在内存中计算时返回null
+     */
+    public static ReplicaQuery compile(Query query, Map<String, Class<?>> fieldTypeMap, boolean caseSensitive) {
+        List<String> columnList = null;
+        if (CollUtil.isNotEmpty(query.getColumnList())) {
+            columnList = new ArrayList<>(query.getColumnList().size());
+            for (String column : query.getColumnList()) {
+                String fieldName = fieldName(column);
+                if (!fieldTypeMap.containsKey(fieldName)) {
+                    return null;
+                }
+                columnList.add(fieldName);
+            }
+        }
+        Comparator<Object> valueComparator = (left, right) -> compareValue(left, right, caseSensitive);
+        Comparator<Map<String, Object>> comparator = null;
+        if (CollUtil.isNotEmpty(query.getOrderMap())) {
+            for (Map.Entry<String, Order> entry : query.getOrderMap().entrySet()) {
+                String fieldName = fieldName(entry.getKey());
+                if (!fieldTypeMap.containsKey(fieldName)) {
+                    return null;
+                }
+                Comparator<Map<String, Object>> next = entry.getValue() == Order.DESC
+                        ? Comparator.comparing(row -> row.get(fieldName), Comparator.nullsLast(valueComparator.reversed()))
+                        : Comparator.comparing(row -> row.get(fieldName), Comparator.nullsFirst(valueComparator));
+                comparator = comparator == null ? next : comparator.thenComparing(next);
+            }
+        }
+        // 按OR拆分为若干组，组内的条件按AND连接
+        Predicate<Map<String, Object>> predicate = null;
+        Predicate<Map<String, Object>> group = null;
+        List<Condition> conditionList = query.getConditionList() == null
+                ? Collections.emptyList() : query.getConditionList();
+        for (int i = 0; i < conditionList.size(); i++) {
+            Condition condition = conditionList.get(i);
+            Predicate<Map<String, Object>> atom = compile(condition, fieldTypeMap, valueComparator, caseSensitive);
+            if (atom == null) {
+                return null;
+            }
+            if (group == null) {
+                group = atom;
+            } else if (Connect.OR.equals(condition.getConnect())) {
+                predicate = predicate == null ? group : predicate.or(group);
+                group = atom;
+            } else {
+                group = group.and(atom);
+            }
+        }
+        if (group != null) {
+            predicate = predicate == null ? group : predicate.or(group);
+        }
+        return new ReplicaQuery(predicate == null ? row -> true : predicate, comparator, columnList);
+    }
+
+    /**
+     * 检查记录是否满足条件
+     *
+     * @param row 快照中的记录
+     * @return 满足条件时返回true
+     */
+    public boolean matches(Map<String, Object> row) {
+        return predicate.test(row);
+    }
+
+    /**
+     * 获取排序规则
+     *
+     * @return 排序规则，没有排序时返回null
+     */
+    public Comparator<Map<String, Object>> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * 按查询列复制记录，未查询的字段为null
+     *
+     * @param row 快照中的记录
+     * @return 新的记录，可以由调用方修改
+     */
+    public Map<String, Object> project(Map<String, Object> row) {
+        Map<String, Object> result = new HashMap<>(row);
+        if (columnList != null) {
+            result.replaceAll((fieldName, value) -> columnList.contains(fieldName) ? value : null);
+        }
+        return result;
+    }
+
+    private static Predicate<Map<String, Object>> compile(Condition condition, Map<String, Class<?>> fieldTypeMap,
+                                                          Comparator<Object> valueComparator, boolean caseSensitive) {
+        if (condition.getOperator() == null || StrUtil.isBlank(condition.getColumn())) {
+            return null;
+        }
+        String fieldName = fieldName(condition.getColumn());
+        Class<?> type = fieldTypeMap.get(fieldName);
+        if (type == null) {
+            return null;
+        }
+        List<Object> paramList = condition.getParamList() == null
+                ? Collections.emptyList() : condition.getParamList();
+        int paramCount;
+        switch (condition.getOperator()) {
+            case IS_NULL:
+                return row -> row.get(fieldName) == null;
+            case IS_NOT_NULL:
+                return row -> row.get(fieldName) != null;
+            case IN:
+            case NOT_IN:
+                if (paramList.isEmpty()) {
+                    return null;
+                }
+                List<Object> valueList = new ArrayList<>(paramList.size());
+                paramList.forEach(param -> valueList.add(CacheIndex.normalize(type, param)));
+                if (condition.getOperator() == Operator.IN) {
+                    return row -> {
+                        Object value = row.get(fieldName);
+                        return value != null && valueList.stream()
+                                .anyMatch(param -> param != null && valueComparator.compare(value, param) == 0);
+                    };
+                }
+                boolean hasNull = valueList.contains(null);
+                return row -> {
+                    Object value = row.get(fieldName);
+                    return value != null && !hasNull && valueList.stream()
+                            .noneMatch(param -> valueComparator.compare(value, param) == 0);
+                };
+            case BETWEEN:
+            case NOT_BETWEEN:
+                paramCount = 2;
+                break;
+            default:
+                paramCount = 1;
+                break;
+        }
+        if (paramList.size() < paramCount) {
+            return null;
+        }
+        if (condition.getOperator() == Operator.LIKE || condition.getOperator() == Operator.NOT_LIKE) {
+            Pattern pattern = likePattern("%" + paramList.get(0) + "%", caseSensitive);
+            boolean like = condition.getOperator() == Operator.LIKE;
+            return row -> {
+                Object value = row.get(fieldName);
+                return value != null && pattern.matcher(String.valueOf(value)).matches() == like;
+            };
+        }
+        Object first = CacheIndex.normalize(type, paramList.get(0));
+        Object second = paramCount > 1 ? CacheIndex.normalize(type, paramList.get(1)) : null;
+        Operator operator = condition.getOperator();
+        return row -> {
+            Integer result = compare(row.get(fieldName), first, valueComparator);
+            if (result == null) {
+                return false;
+            }
+            switch (operator) {
+                case EQUAL:
+                    return result == 0;
+                case NOT_EQUAL:
+                    return result != 0;
+                case LESS:
+                    return result < 0;
+                case LESS_EQUAL:
+                    return result <= 0;
+                case GREAT:
+                    return result > 0;
+                case GREAT_EQUAL:
+                    return result >= 0;
+                default:
+                    Integer upper = compare(row.get(fieldName), second, valueComparator);
+                    if (upper == null) {
+                        return false;
+                    }
+                    boolean between = result >= 0 && upper <= 0;
+                    return operator == Operator.BETWEEN ? between : !between;
+            }
+        };
+    }
+
+    /**
+     * 比较字段值和参数
+     *
+     * @return 比较结果，任一方为NULL时返回null
+     */
+    private static Integer compare(Object value, Object param, Comparator<Object> valueComparator) {
+        if (value == null || param == null) {
+            return null;
+        }
+        return valueComparator.compare(value, param);
+    }
+
+    /**
+     * 比较两个非空的值，字符串按是否区分大小写比较，类型相同且可比较时按自然顺序，数字按数值，否则按字符串形式
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValue(Object left, Object right, boolean caseSensitive) {
+        if (!caseSensitive && (left instanceof String || right instanceof String)) {
+            return String.CASE_INSENSITIVE_ORDER.compare(Objects.toString(left), Objects.toString(right));
+        }
+        if (left.getClass() == right.getClass() && left instanceof Comparable) {
+            return ((Comparable) left).compareTo(right);
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        return Objects.toString(left).compareTo(Objects.toString(right));
+    }
+
+    /**
+     * 将LIKE的模式转换为正则表达式
+     *
+     * @param like LIKE的模式
+     * @param caseSensitive 是否区分大小写
+     * @return 正则表达式
+     */
+    static Pattern likePattern(String like, boolean caseSensitive) {
+        StringBuilder regex = new StringBuilder(like.length() + 8);
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                literal.append(like.charAt(++i));
+                continue;
+            }
+            if (c != '%' && c != '_') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '%' ? ".*" : ".");
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(),
+                caseSensitive ? Pattern.DOTALL : Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * 列名转换为字段名（驼峰）
+     */
+    private static String fieldName(String column) {
+        return StrUtil.toCamelCase(StrUtil.isUpperCase(column) ? column.toLowerCase() : column);
+    }
+}
@@ -0,0 +1,624 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.talins.mybatis.max.api.pojo.ColumnMetaData;
+import cn.talins.mybatis.max.api.pojo.TableMetaData;
+import cn.talins.mybatis.max.sdk.common.Constant;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 记录编解码 - 按表结构的列顺序把缓存记录编码为紧凑的二进制
+ * <p>
+ * JSON格式在每条记录中重复所有字段名，读取时还要解析文本。该类按
+ * {@link TableMetaData}中的列顺序逐列写入值，不写字段名：
+ * <ul>
+ *     <li>整数使用ZigZag变长编码，日期使用毫秒数，小数使用标度和非标度值，字符串使用UTF-8</li>
+ *     <li>每个值前有一个类型字节，解码后的值类型与编码前一致</li>
+ *     <li>记录中不属于表结构的字段按名称追加在末尾，不会丢失</li>
+ *     <li>编码后超过{@value #COMPRESS_THRESHOLD}字节时尝试Deflate压缩，压缩后更小才使用</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 格式：格式字节、标志字节、[原始长度]、表名、表结构版本、过期时间、列数、各列的值、附加字段数、附加字段。
+ * 表结构版本由列名和类型计算，与当前表结构不一致的数据（如发布新版本后其他节点写入的旧数据）
+ * 解码为null，按缓存未命中处理，由仓库重新从数据库加载。
+ * </p>
+ *
+ * @author talins
+ * @see RowSerializer J2Cache序列化器
+ * @see CachedRow 缓存中的表记录
+ */
+public class RowCodec {
+
+    /**
+     * 格式字节：按表结构编码的记录
+     */
+    static final byte FORMAT_ROW = 'R';
+
+    /**
+     * 格式字节：Java序列化的其他对象
+     */
+    static final byte FORMAT_OBJECT = 'J';
+
+    /**
+     * 标志位：内容经过Deflate压缩
+     */
+    private static final int FLAG_DEFLATED = 1;
+
+    /**
+     * 尝试压缩的最小长度
+     */
+    private static final int COMPRESS_THRESHOLD = 256;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte SHORT = 3;
+    private static final byte BYTE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte STRING = 9;
+    private static final byte DECIMAL = 10;
+    private static final byte DATE = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte LOCAL_DATE_TIME = 13;
+    private static final byte LOCAL_DATE = 14;
+    private static final byte LOCAL_TIME = 15;
+    private static final byte BYTES = 16;
+    private static final byte OBJECT = 17;
+
+    /**
+     * 表名 -> 表结构
+     */
+    private static final Map<String, RowSchema> SCHEMA_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 是否把写入缓存的记录包装为{@link CachedRow}
+     */
+    private static volatile boolean enabled;
+
+    /**
+     * 开启或关闭记录包装，J2Cache使用{@link RowSerializer}时由序列化器自动开启
+     *
+     * @param enabled 是否开启
+     */
+    public static void setEnabled(boolean enabled) {
+        RowCodec.enabled = enabled;
+    }
+
+    /**
+     * 是否开启了记录包装
+     *
+     * @return 开启时返回true
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 登记或更新表结构，表结构变更后调用，之前编码的数据不再能解码
+     *
+     * @param tableMetaData 表元数据
+     */
+    public static void register(TableMetaData tableMetaData) {
+        SCHEMA_MAP.put(tableMetaData.getTableName(), new RowSchema(tableMetaData));
+    }
+
+    /**
+     * 包装写入缓存的值
+     *
+     * @param tableName 表名（缓存区域）
+     * @param value 缓存值
+     * @return 未开启、不是记录或没有表结构时原样返回，否则返回{@link CachedRow}
+     */
+    public static Object wrap(String tableName, Object value) {
+        return wrap(tableName, value, 0);
+    }
+
+    /**
+     * 包装写入缓存的值
+     *
+     * @param tableName 表名（缓存区域）
+     * @param value 缓存值
+     * @param expireAt 过期时间（毫秒时间戳），0表示不过期
+     * @return 不是记录，或未开启包装、没有表结构且不过期时原样返回，否则返回{@link CachedRow}
+     */
+    public static Object wrap(String tableName, Object value, long expireAt) {
+        if (!(value instanceof JSONObject)) {
+            return value;
+        }
+        if (expireAt <= 0 && (!enabled || schema(tableName) == null)) {
+            return value;
+        }
+        return new CachedRow(tableName, (JSONObject) value, expireAt);
+    }
+
+    /**
+     * 取出缓存值中的记录
+     *
+     * @param value 缓存值
+     * @return {@link CachedRow}中的记录，已过期时返回null，其他值原样返回
+     */
+    public static Object unwrap(Object value) {
+        if (!(value instanceof CachedRow)) {
+            return value;
+        }
+        CachedRow cachedRow = (CachedRow) value;
+        return cachedRow.isExpired(System.currentTimeMillis()) ? null : cachedRow.getRow();
+    }
+
+    /**
+     * 编码记录
+     *
+     * @param cachedRow 缓存中的表记录
+     * @return 编码结果
+     */
+    public static byte[] encode(CachedRow cachedRow) {
+        RowSchema schema = schema(cachedRow.getTableName());
+        if (schema == null) {
+            throw new IllegalStateException("表结构不存在: " + cachedRow.getTableName());
+        }
+        JSONObject row = cachedRow.getRow();
+        Output out = new Output(128);
+        out.writeString(cachedRow.getTableName());
+        out.writeFixedInt(schema.version);
+        out.writeVarLong(cachedRow.getExpireAt());
+        out.writeVarLong(schema.fields.length);
+        for (String field : schema.fields) {
+            writeValue(out, row.get(field));
+        }
+        List<String> extraList = new ArrayList<>();
+        for (String key : row.keySet()) {
+            if (!schema.positionMap.containsKey(key)) {
+                extraList.add(key);
+            }
+        }
+        out.writeVarLong(extraList.size());
+        for (String key : extraList) {
+            out.writeString(key);
+            writeValue(out, row.get(key));
+        }
+        return frame(FORMAT_ROW, out.buf, out.pos);
+    }
+
+    /**
+     * 解码记录
+     *
+     * @param bytes {@link #encode}的编码结果
+     * @return 缓存中的表记录，表结构已变更或不存在时返回null
+     */
+    public static CachedRow decode(byte[] bytes) {
+        Input in = new Input(unframe(bytes));
+        String tableName = in.readString();
+        RowSchema schema = schema(tableName);
+        if (schema == null || in.readFixedInt() != schema.version) {
+            return null;
+        }
+        long expireAt = in.readVarLong();
+        int fieldCount = (int) in.readVarLong();
+        JSONObject row = new JSONObject();
+        for (int i = 0; i < fieldCount; i++) {
+            Object value = readValue(in);
+            if (value != null) {
+                row.set(schema.fields[i], value);
+            }
+        }
+        int extraCount = (int) in.readVarLong();
+        for (int i = 0; i < extraCount; i++) {
+            String key = in.readString();
+            Object value = readValue(in);
+            if (value != null) {
+                row.set(key, value);
+            }
+        }
+        return new CachedRow(tableName, row, expireAt);
+    }
+
+    /**
+     * 是否可以按表结构编码该表的记录
+     *
+     * @param tableName 表名
+     * @return 存在表结构时返回true
+     */
+    static boolean canEncode(String tableName) {
+        return schema(tableName) != null;
+    }
+
+    /**
+     * 估算缓存值序列化后的字节数
+     *
+     * @param tableName 表名（缓存区域）
+     * @param value 缓存值
+     * @return 能按表结构编码的记录返回编码长度，其他值返回JSON的UTF-8长度
+     */
+    public static int estimateSize(String tableName, Object value) {
+        if (value instanceof JSONObject && canEncode(tableName)) {
+            return encode(new CachedRow(tableName, (JSONObject) value)).length;
+        }
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * 用Java序列化编码其他对象
+     *
+     * @param value 缓存值
+     * @return 编码结果
+     */
+    static byte[] encodeObject(Object value) {
+        byte[] body = ObjectUtil.serialize(value);
+        return frame(FORMAT_OBJECT, body, body.length);
+    }
+
+    /**
+     * 解码Java序列化的对象
+     *
+     * @param bytes {@link #encodeObject}的编码结果
+     * @return 缓存值
+     */
+    static Object decodeObject(byte[] bytes) {
+        return ObjectUtil.deserialize(unframe(bytes));
+    }
+
+    private static RowSchema schema(String tableName) {
+        RowSchema schema = SCHEMA_MAP.get(tableName);
+        if (schema == null) {
+            TableMetaData tableMetaData = Constant.TABLE_METADATA_MAP.get(tableName);
+            if (tableMetaData != null) {
+                schema = SCHEMA_MAP.computeIfAbsent(tableName, key -> new RowSchema(tableMetaData));
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * 添加格式字节和标志字节，足够长时压缩
+     */
+    private static byte[] frame(byte format, byte[] body, int length) {
+        if (length >= COMPRESS_THRESHOLD) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(body, 0, length);
+                deflater.finish();
+                Output out = new Output(length / 2 + 16);
+                out.writeByte(format);
+                out.writeByte(FLAG_DEFLATED);
+                out.writeVarLong(length);
+                while (!deflater.finished()) {
+                    out.ensure(512);
+                    out.pos += deflater.deflate(out.buf, out.pos, out.buf.length - out.pos);
+                    if (out.pos >= length) {
+                        break;
+                    }
+                }
+                if (deflater.finished() && out.pos < length) {
+                    return Arrays.copyOf(out.buf, out.pos);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = format;
+        System.arraycopy(body, 0, bytes, 2, length);
+        return bytes;
+    }
+
+    /**
+     * 去掉格式字节和标志字节，必要时解压
+     */
+    private static byte[] unframe(byte[] bytes) {
+        if ((bytes[1] & FLAG_DEFLATED) == 0) {
+            return Arrays.copyOfRange(bytes, 2, bytes.length);
+        }
+        Input in = new Input(bytes);
+        in.pos = 2;
+        byte[] body = new byte[(int) in.readVarLong()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, in.pos, bytes.length - in.pos);
+            int length = 0;
+            while (length < body.length && !inflater.finished()) {
+                int n = inflater.inflate(body, length, body.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != body.length) {
+                throw new IllegalArgumentException("压缩数据不完整");
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("压缩数据格式错误", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeZigZag((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeZigZag((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeZigZag((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFixedInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(DECIMAL);
+            out.writeZigZag(decimal.scale());
+            out.writeBytes(decimal.unscaledValue().toByteArray());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeZigZag(((Date) value).getTime());
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeZigZag(timestamp.getTime());
+            out.writeVarLong(timestamp.getNanos());
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeZigZag(dateTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeVarLong(dateTime.getNano());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeZigZag(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeVarLong(((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Serializable) {
+            out.writeByte(OBJECT);
+            out.writeBytes(ObjectUtil.serialize(value));
+        } else {
+            throw new IllegalArgumentException("不支持的字段类型: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(Input in) {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case LONG:
+                return in.readZigZag();
+            case INT:
+                return (int) in.readZigZag();
+            case SHORT:
+                return (short) in.readZigZag();
+            case BYTE:
+                return in.readByte();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readFixedInt());
+            case DECIMAL:
+                int scale = (int) in.readZigZag();
+                return new BigDecimal(new BigInteger(in.readBytes()), scale);
+            case DATE:
+                return new Date(in.readZigZag());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readZigZag());
+                timestamp.setNanos((int) in.readVarLong());
+                return timestamp;
+            case LOCAL_DATE_TIME:
+                long epochSecond = in.readZigZag();
+                return LocalDateTime.ofEpochSecond(epochSecond, (int) in.readVarLong(), ZoneOffset.UTC);
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.readZigZag());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(in.readVarLong());
+            case BYTES:
+                return in.readBytes();
+            case OBJECT:
+                return ObjectUtil.deserialize(in.readBytes());
+            default:
+                throw new IllegalArgumentException("未知的类型字节: " + type);
+        }
+    }
+
+    /**
+     * 表结构：字段顺序和版本
+     */
+    private static final class RowSchema {
+
+        private final String[] fields;
+
+        private final Map<String, Integer> positionMap;
+
+        private final int version;
+
+        RowSchema(TableMetaData tableMetaData) {
+            List<ColumnMetaData> columnList = tableMetaData.getColumnList();
+            this.fields = new String[columnList.size()];
+            this.positionMap = new HashMap<>(columnList.size() * 4 / 3 + 1);
+            StringBuilder signature = new StringBuilder(tableMetaData.getTableName());
+            for (int i = 0; i < columnList.size(); i++) {
+                ColumnMetaData column = columnList.get(i);
+                fields[i] = StrUtil.toCamelCase(column.getColumnName());
+                positionMap.put(fields[i], i);
+                signature.append(',').append(column.getColumnName()).append(':').append(column.getTypeCode());
+            }
+            this.version = signature.toString().hashCode();
+        }
+    }
+
+    /**
+     * 可扩容的输出缓冲区
+     */
+    private static final class Output {
+
+        private byte[] buf;
+
+        private int pos;
+
+        Output(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixedInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeFixedLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 输入游标
+     */
+    private static final class Input {
+
+        private final byte[] buf;
+
+        private int pos;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            return buf[pos++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readFixedInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (buf[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buf[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.log.StaticLog;
+import net.oschina.j2cache.util.Serializer;
+
+/**
+ * J2Cache序列化器 - 按表结构编码缓存记录
+ * <p>
+ * 在j2cache.properties中配置：
+ * <pre>
+ * j2cache.serialization = cn.talins.mybatis.max.sdk.cache.RowSerializer
+ * </pre>
+ * J2Cache初始化时创建该序列化器，同时开启{@link RowCodec}的记录包装。
+ * 表记录使用{@link RowCodec}的紧凑格式，其他缓存值使用Java序列化。
+ * </p>
+ *
+ * <p>
+ * 无法识别的数据（如切换序列化器前写入二级缓存的旧格式数据）和表结构已变更的记录解码为null，
+ * 按缓存未命中处理。
+ * </p>
+ *
+ * @author talins
+ * @see RowCodec 记录编解码
+ */
+public class RowSerializer implements Serializer {
+
+    /**
+     * 构造函数，由J2Cache通过反射调用
+     */
+    public RowSerializer() {
+        RowCodec.setEnabled(true);
+    }
+
+    @Override
+    public String name() {
+        return "mybatis-max-row";
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof CachedRow && RowCodec.canEncode(((CachedRow) obj).getTableName())) {
+            return RowCodec.encode((CachedRow) obj);
+        }
+        return RowCodec.encodeObject(obj);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length < 2) {
+            return null;
+        }
+        try {
+            if (bytes[0] == RowCodec.FORMAT_ROW) {
+                return RowCodec.decode(bytes);
+            }
+            if (bytes[0] == RowCodec.FORMAT_OBJECT) {
+                return RowCodec.decodeObject(bytes);
+            }
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "cache value decode failed, treated as miss");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,285 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.ILoadLease;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 单飞加载器 - 合并同一缓存键或同一缓存区域上的并发加载
+ * <p>
+ * 热点记录失效或整表重载时，并发请求会各自查询数据库并重写缓存。该类保证：
+ * <ul>
+ *     <li>{@link #loadAll}：同一个键同一时间只有一个线程加载，其他线程等待同一个结果；
+ *     一次批量加载中的键各自合并，已有线程在加载的键不会再出现在本次查询中</li>
+ *     <li>{@link #refresh}：同一个区域同一时间只有一次重载；正在进行的重载开始于本次请求之前时，
+ *     本次请求等待它结束后再发起一次，后续到达的请求都合并到这一次中，写操作不会被旧的重载覆盖</li>
+ *     <li>配置了{@link ILoadLease}时，区域重载和单个键的加载还会先获取分布式租约，
+ *     未获取到时等待持有者写入共享缓存，超过等待时间后再自行加载</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 租约只是尽力而为的去重：持有者的加载超过等待时间时，每个等待超时的节点会各自再加载一次，
+ * 所以同一份数据在一个等待时间内最多被加载（1 + 等待的节点数）次。等待时间应大于一次加载的正常耗时；
+ * 不能接受重复加载时开启快速失败，单个键的加载等待超时后抛出{@link IllegalStateException}，由调用方重试。
+ * 区域重载不会快速失败：它由已提交的写操作触发，抛出异常会让调用方误以为写操作失败，等待超时后总是自行加载。
+ * </p>
+ *
+ * @author talins
+ * @see ILoadLease 缓存加载租约
+ */
+public class SingleFlight {
+
+    /**
+     * 等待其他节点持有的租约时的轮询间隔（毫秒）
+     */
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * 区域:键 -> 正在进行的加载
+     */
+    private final Map<String, CompletableFuture<Object>> keyFlightMap = new ConcurrentHashMap<>();
+
+    /**
+     * 区域 -> 正在进行的重载
+     */
+    private final Map<String, RegionFlight> regionFlightMap = new ConcurrentHashMap<>();
+
+    /**
+     * 区域 -> 重载请求序号
+     */
+    private final Map<String, AtomicLong> regionSequenceMap = new ConcurrentHashMap<>();
+
+    private volatile ILoadLease loadLease;
+
+    private volatile long leaseMillis;
+
+    private volatile long waitMillis;
+
+    /**
+     * 等待其他节点加载超时后是否抛出异常，而不是自行加载
+     */
+    private volatile boolean failFast;
+
+    /**
+     * 设置分布式加载租约，等待超时后自行加载
+     *
+     * @param loadLease 加载租约，为null时只在本节点内合并
+     * @param leaseMillis 租约时长（毫秒）
+     * @param waitMillis 等待其他节点加载的最长时间（毫秒）
+     */
+    public void setLoadLease(ILoadLease loadLease, long leaseMillis, long waitMillis) {
+        setLoadLease(loadLease, leaseMillis, waitMillis, false);
+    }
+
+    /**
+     * 设置分布式加载租约
+     *
+     * @param loadLease 加载租约，为null时只在本节点内合并
+     * @param leaseMillis 租约时长（毫秒）
+     * @param waitMillis 等待其他节点加载的最长时间（毫秒）
+     * @param failFast 等待超时后是否抛出{@link IllegalStateException}，为false时自行加载
+     */
+    public void setLoadLease(ILoadLease loadLease, long leaseMillis, long waitMillis, boolean failFast) {
+        this.leaseMillis = leaseMillis;
+        this.waitMillis = waitMillis;
+        this.failFast = failFast;
+        this.loadLease = loadLease;
+    }
+
+    /**
+     * 批量加载，合并同一个键上的并发加载
+     *
+     * @param region 缓存区域
+     * @param keys 需要加载的键
+     * @param loader 加载器，参数为本线程负责加载的键，返回键 -> 值，不存在的键不包含在结果中
+     * @param recheck 等待其他节点加载时检查共享缓存，可以为null
+     * @param <V> 值类型
+     * @return 键 -> 值，不存在的键不包含在结果中
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Map<String, V> loadAll(String region, Collection<String> keys,
+                                      Function<Collection<String>, Map<String, V>> loader,
+                                      Function<String, V> recheck) {
+        Map<String, CompletableFuture<Object>> leadingMap = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Object>> waitingMap = new LinkedHashMap<>();
+        for (String key : keys) {
+            if (leadingMap.containsKey(key) || waitingMap.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> existing = keyFlightMap.putIfAbsent(region + ':' + key, flight);
+            if (existing == null) {
+                leadingMap.put(key, flight);
+            } else {
+                waitingMap.put(key, existing);
+            }
+        }
+        Map<String, V> resultMap = new HashMap<>(keys.size());
+        if (!leadingMap.isEmpty()) {
+            try {
+                Map<String, V> loadedMap;
+                if (leadingMap.size() == 1 && recheck != null) {
+                    String key = leadingMap.keySet().iterator().next();
+                    loadedMap = withLease(region + ':' + key, () -> loader.apply(leadingMap.keySet()), () -> {
+                        V value = recheck.apply(key);
+                        return value == null ? null : Map.of(key, value);
+                    }, failFast);
+                } else {
+                    loadedMap = loader.apply(leadingMap.keySet());
+                }
+                leadingMap.forEach((key, flight) -> {
+                    V value = loadedMap.get(key);
+                    if (value != null) {
+                        resultMap.put(key, value);
+                    }
+                    flight.complete(value);
+                });
+            } catch (RuntimeException e) {
+                leadingMap.values().forEach(flight -> flight.completeExceptionally(e));
+                throw e;
+            } finally {
+                leadingMap.forEach((key, flight) -> keyFlightMap.remove(region + ':' + key, flight));
+            }
+        }
+        // 先完成自己负责的键再等待其他线程，多个线程交叉等待时不会死锁
+        waitingMap.forEach((key, flight) -> {
+            V value = (V) join(flight);
+            if (value != null) {
+                resultMap.put(key, value);
+            }
+        });
+        return resultMap;
+    }
+
+    /**
+     * 重载整个缓存区域，合并并发的重载请求
+     * <p>
+     * 本次请求之后开始的重载一定能读到请求前已提交的写操作，因此只合并到这样的重载中。
+     * 等待其他节点的租约超时后总是自行重载，不受快速失败影响。
+     * </p>
+     *
+     * @param region 缓存区域
+     * @param loader 重载操作
+     */
+    public void refresh(String region, Runnable loader) {
+        AtomicLong sequence = regionSequenceMap.computeIfAbsent(region, key -> new AtomicLong());
+        long requested = sequence.incrementAndGet();
+        while (true) {
+            RegionFlight current = regionFlightMap.get(region);
+            if (current != null) {
+                if (current.sequence >= requested) {
+                    join(current.future);
+                    return;
+                }
+                // 正在进行的重载开始得太早，等它结束后再发起
+                current.future.handle((result, e) -> null).join();
+                continue;
+            }
+            RegionFlight flight = new RegionFlight(sequence.get());
+            if (regionFlightMap.putIfAbsent(region, flight) != null) {
+                continue;
+            }
+            try {
+                withLease(region, () -> {
+                    loader.run();
+                    return null;
+                }, null, false);
+                flight.future.complete(null);
+            } catch (RuntimeException e) {
+                flight.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                regionFlightMap.remove(region, flight);
+            }
+            return;
+        }
+    }
+
+    /**
+     * 持有分布式租约执行加载
+     *
+     * @param leaseKey 租约键
+     * @param loader 加载器
+     * @param recheck 未获取到租约时检查共享缓存，返回非null时不再加载，可以为null
+     * @param failFast 等待超时后是否抛出异常，为false时自行加载
+     * @return 加载结果
+     * @throws IllegalStateException 如果failFast为true且等待其他节点加载超时
+     */
+    private <T> T withLease(String leaseKey, Supplier<T> loader, Supplier<T> recheck, boolean failFast) {
+        ILoadLease lease = loadLease;
+        if (lease == null) {
+            return loader.get();
+        }
+        long deadline = System.currentTimeMillis() + waitMillis;
+        String token;
+        while ((token = lease.tryAcquire(leaseKey, leaseMillis)) == null) {
+            T value = recheck == null ? null : recheck.get();
+            if (value != null) {
+                return value;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                if (failFast) {
+                    throw new IllegalStateException("等待其他节点加载超时: " + leaseKey);
+                }
+                StaticLog.warn("load lease wait timeout, loading locally: {}", leaseKey);
+                break;
+            }
+            ThreadUtil.sleep(POLL_MILLIS);
+        }
+        boolean acquired = token != null;
+        try {
+            if (acquired && recheck != null) {
+                // 获取租约前持有者可能刚刚写入共享缓存
+                T value = recheck.get();
+                if (value != null) {
+                    return value;
+                }
+            }
+            return loader.get();
+        } finally {
+            if (acquired) {
+                lease.release(leaseKey, token);
+            }
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一次区域重载
+     */
+    private static final class RegionFlight {
+
+        /**
+         * 开始时的请求序号，不大于该序号的请求都可以合并到本次重载中
+         */
+        private final long sequence;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        RegionFlight(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.talins.mybatis.max.api.pojo.Query;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.Objects;
+
+/**
+ * 保留原始查询的QueryWrapper - 由{@link Query}转换得到，供{@link CacheMode#REPLICA}的表在内存中计算
+ * <p>
+ * 转换完成后调用{@link #seal()}记录当时的查询列和SQL片段。之后再添加的条件
+ * （如数据权限附加的行级过滤条件）无法在内存中计算，{@link #isSealed()}返回false，查询改为访问数据库。
+ * </p>
+ *
+ * @param <T> 实体类型
+ * @author talins
+ * @see TableReplica 表的内存副本
+ */
+public class SourceQueryWrapper<T> extends QueryWrapper<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Query source;
+
+    private String sealedSelect;
+
+    private String sealedSegment;
+
+    /**
+     * 构造函数
+     *
+     * @param entity 实体对象，决定查询结果的类型
+     * @param source 原始查询
+     */
+    public SourceQueryWrapper(T entity, Query source) {
+        super(entity);
+        this.source = source;
+    }
+
+    /**
+     * 记录转换完成时的查询列和SQL片段
+     *
+     * @return 当前对象
+     */
+    public SourceQueryWrapper<T> seal() {
+        this.sealedSelect = getSqlSelect();
+        this.sealedSegment = getSqlSegment();
+        return this;
+    }
+
+    /**
+     * 检查转换完成后是否被修改过
+     *
+     * @return 已调用{@link #seal()}且之后没有添加查询列、条件或排序时返回true
+     */
+    public boolean isSealed() {
+        return sealedSegment != null && Objects.equals(sealedSelect, getSqlSelect())
+                && Objects.equals(sealedSegment, getSqlSegment());
+    }
+
+    /**
+     * 获取原始查询
+     *
+     * @return 原始查询
+     */
+    public Query getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,232 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.thread.ThreadUtil;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 降级读取 - 数据库出错或超过耗时预算时返回缓存中最后一次的值
+ * <p>
+ * 主库切换期间所有回源查询都会失败，即使是很少变化的缓存表也无法读取。表的缓存策略配置了
+ * 最大陈旧时间后，缓存未命中或已过期的读取在以下情况返回过期不超过该时间的旧值：
+ * <ul>
+ *     <li>回源查询抛出异常，此时表所在的数据源进入降级状态</li>
+ *     <li>回源查询超过了耗时预算，查询在后台继续执行，完成后照常写回缓存</li>
+ *     <li>数据源处于降级状态，读取不再同步回源，每隔{@value #PROBE_INTERVAL_MILLIS}毫秒
+ *         由一次读取提交后台重新加载，加载成功后数据源恢复正常</li>
+ * </ul>
+ * 只有本次需要回源的记录都存在旧值时才会降级，否则照常查询数据库并抛出异常。
+ * </p>
+ *
+ * <p>
+ * 返回了旧值时，当前线程记录最大的陈旧时间，Web层通过{@link #getStaleness}把它写入响应。
+ * 记录保存在线程上，必须限定在一次请求或任务的范围内，否则会残留到线程池中的下一次使用：
+ * <ul>
+ *     <li>Web请求由mybatis-max-web的过滤器在请求开始时打开{@link Scope}，请求结束时关闭</li>
+ *     <li>定时任务、消息消费等非Web场景通过{@link #open()}显式打开，或用{@link #wrap(Runnable)}包装任务，
+ *         嵌套打开时沿用外层作用域</li>
+ *     <li>框架自己的线程池（延迟加载、快照重建、提前刷新）执行的任务都已包装</li>
+ * </ul>
+ * 打开最外层作用域时丢弃之前残留的记录，关闭时清除记录。
+ * </p>
+ *
+ * @author talins
+ * @see CachePolicy#getMaxStaleness 表缓存的最大陈旧时间
+ * @see QueryCachePolicy#getMaxStaleness 查询结果缓存的最大陈旧时间
+ */
+public class StaleIfError {
+
+    /**
+     * 降级状态下提交后台重新加载的间隔（毫秒）
+     */
+    public static final long PROBE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * 有耗时预算的回源查询使用的线程池，超时的查询在这里继续执行
+     */
+    private static final ExecutorService LOAD_EXECUTOR = Executors.newCachedThreadPool(
+            ThreadUtil.newNamedThreadFactory("mybatis-max-load-", true));
+
+    /**
+     * 当前线程返回的旧值中最大的陈旧时间（毫秒）
+     */
+    private static final ThreadLocal<Long> STALENESS = new ThreadLocal<>();
+
+    /**
+     * 当前线程是否在作用域内
+     */
+    private static final ThreadLocal<Boolean> SCOPED = new ThreadLocal<>();
+
+    /**
+     * 处于降级状态的数据源名称 -> 下一次允许重新加载的时间（毫秒时间戳）
+     */
+    private final Map<String, Long> degradedMap = new ConcurrentHashMap<>();
+
+    /**
+     * 判断已过期的记录能否作为旧值返回
+     *
+     * @param cachedRow 缓存中的表记录
+     * @param policy 表的缓存策略
+     * @param now 当前时间（毫秒时间戳）
+     * @return 记录已过期且过期时间不超过最大陈旧时间时返回true
+     */
+    public static boolean isServable(CachedRow cachedRow, CachePolicy policy, long now) {
+        return policy.getMaxStaleness() > 0 && cachedRow.isExpired(now)
+                && now - cachedRow.getExpireAt() <= policy.getMaxStaleness() * 1000;
+    }
+
+    /**
+     * 在耗时预算内执行回源查询
+     *
+     * @param loader 回源查询，需要自行切换数据源
+     * @param budgetMillis 耗时预算（毫秒），小于等于0时在当前线程执行
+     * @param <V> 结果类型
+     * @return 查询结果
+     * @throws TimeoutException 超过耗时预算，查询仍在后台执行
+     */
+    public <V> V load(Supplier<V> loader, long budgetMillis) throws TimeoutException {
+        if (budgetMillis <= 0) {
+            return loader.get();
+        }
+        CompletableFuture<V> future = CompletableFuture.supplyAsync(loader, LOAD_EXECUTOR);
+        try {
+            return future.get(budgetMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待回源查询时被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 数据源是否处于降级状态
+     *
+     * @param dataSourceName 数据源名称，默认数据源为空字符串
+     * @return 处于降级状态时返回true
+     */
+    public boolean isDegraded(String dataSourceName) {
+        return degradedMap.containsKey(dataSourceName);
+    }
+
+    /**
+     * 尝试获取降级状态下的一次后台重新加载机会，同一时间间隔内只有一个调用方能获取到
+     *
+     * @param dataSourceName 数据源名称
+     * @return 获取到时返回true
+     */
+    public boolean tryProbe(String dataSourceName) {
+        Long probeAt = degradedMap.get(dataSourceName);
+        long now = System.currentTimeMillis();
+        return probeAt != null && now >= probeAt
+                && degradedMap.replace(dataSourceName, probeAt, now + PROBE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 记录回源查询失败，数据源进入降级状态
+     *
+     * @param dataSourceName 数据源名称
+     */
+    public void markFailed(String dataSourceName) {
+        degradedMap.put(dataSourceName, System.currentTimeMillis() + PROBE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 记录回源查询成功，数据源恢复正常
+     *
+     * @param dataSourceName 数据源名称
+     */
+    public void markRecovered(String dataSourceName) {
+        degradedMap.remove(dataSourceName);
+    }
+
+    /**
+     * 记录当前线程返回了旧值
+     *
+     * @param stalenessMillis 陈旧时间（毫秒）
+     */
+    public static void markStale(long stalenessMillis) {
+        Long current = STALENESS.get();
+        if (current == null || current < stalenessMillis) {
+            STALENESS.set(Math.max(stalenessMillis, 0));
+        }
+    }
+
+    /**
+     * 获取当前线程返回的旧值中最大的陈旧时间
+     *
+     * @return 陈旧时间（毫秒），没有返回旧值时返回null
+     */
+    public static Long getStaleness() {
+        return STALENESS.get();
+    }
+
+    /**
+     * 清除当前线程的陈旧标记
+     */
+    public static void clear() {
+        STALENESS.remove();
+    }
+
+    /**
+     * 在当前线程打开作用域
+     *
+     * @return 作用域，关闭时清除陈旧标记；当前线程已在作用域内时返回的对象关闭时不做任何操作
+     */
+    public static Scope open() {
+        if (SCOPED.get() != null) {
+            return new Scope(false);
+        }
+        SCOPED.set(Boolean.TRUE);
+        STALENESS.remove();
+        return new Scope(true);
+    }
+
+    /**
+     * 使任务在自己的作用域内执行，任务记录的陈旧标记不残留在执行它的线程上
+     *
+     * @param task 任务
+     * @return 包装后的任务
+     */
+    public static Runnable wrap(Runnable task) {
+        return () -> {
+            try (Scope ignored = open()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * 陈旧标记的作用域
+     */
+    public static final class Scope implements AutoCloseable {
+
+        /**
+         * 是否为最外层作用域，只有最外层作用域关闭时清除
+         */
+        private final boolean outermost;
+
+        private Scope(boolean outermost) {
+            this.outermost = outermost;
+        }
+
+        @Override
+        public void close() {
+            if (outermost) {
+                STALENESS.remove();
+                SCOPED.remove();
+            }
+        }
+    }
+}
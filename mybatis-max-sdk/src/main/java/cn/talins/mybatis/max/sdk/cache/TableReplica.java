@@ -0,0 +1,353 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.pojo.Query;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 表的内存副本 - {@link CacheMode#REPLICA}模式的表在内存中保存整张表的只读快照
+ * <p>
+ * 快照创建后不再修改，读取方拿到的快照在整个查询期间保持一致：
+ * <ul>
+ *     <li>快照记录创建时表的本地写版本号、共享写版本号和创建时间，任一版本号变化或超过最大存活时间后视为过期</li>
+ *     <li>读取到过期的快照时照常返回，同时安排后台线程从数据库重新加载，创建新的快照后整体替换</li>
+ *     <li>当前线程提交过写操作且快照早于该写操作时，在当前线程等待重建完成，
+ *         所以写操作对提交它的线程的之后的读取立即可见，其他线程在后台重建完成后可见</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 注意：其他节点的写操作通过{@link TableVersions#getShared}发现，没有配置共享存储时只能等快照超过最大存活时间；
+ * 绕过本应用的原生SQL修改同样只能等快照超过最大存活时间。只应对数据量小、通过本应用修改的表开启。
+ * </p>
+ *
+ * @author talins
+ * @see ReplicaQuery 在快照上计算查询
+ * @see TableVersions 表写版本号
+ */
+public final class TableReplica {
+
+    /**
+     * 表名 -> 内存副本
+     */
+    private static final Map<String, TableReplica> REPLICA_MAP = new ConcurrentHashMap<>();
+
+    private final String tableName;
+
+    /**
+     * 快照的最大存活时间（毫秒），小于等于0表示不限制
+     */
+    private final long maxAgeMillis;
+
+    /**
+     * 字符串比较是否区分大小写
+     */
+    private final boolean caseSensitive;
+
+    /**
+     * 当前线程最近一次提交的写操作产生的本地写版本号
+     */
+    private final ThreadLocal<Long> writtenVersion = new ThreadLocal<>();
+
+    /**
+     * 是否已安排后台重建，合并连续写操作触发的重建
+     */
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    private volatile Snapshot snapshot;
+
+    private TableReplica(String tableName, long maxAgeMillis, boolean caseSensitive) {
+        this.tableName = tableName;
+        this.maxAgeMillis = maxAgeMillis;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * 获取表的内存副本，不存在时创建（快照在第一次读取时加载），快照不限制存活时间，字符串比较不区分大小写
+     *
+     * @param tableName 表名
+     * @return 内存副本
+     */
+    public static TableReplica of(String tableName) {
+        return of(tableName, 0, false);
+    }
+
+    /**
+     * 获取表的内存副本，不存在时创建（快照在第一次读取时加载）
+     *
+     * @param tableName 表名
+     * @param maxAgeMillis 快照的最大存活时间（毫秒），小于等于0表示不限制，只在创建时生效
+     * @param caseSensitive 字符串比较是否区分大小写，只在创建时生效
+     * @return 内存副本
+     */
+    public static TableReplica of(String tableName, long maxAgeMillis, boolean caseSensitive) {
+        return REPLICA_MAP.computeIfAbsent(tableName, key -> new TableReplica(key, maxAgeMillis, caseSensitive));
+    }
+
+    /**
+     * 获取已创建的内存副本
+     *
+     * @param tableName 表名
+     * @return 内存副本，未创建时返回null
+     */
+    public static TableReplica get(String tableName) {
+        return REPLICA_MAP.get(tableName);
+    }
+
+    /**
+     * 丢弃表的内存副本，缓存策略变更或注销时调用
+     *
+     * @param tableName 表名
+     */
+    public static void remove(String tableName) {
+        REPLICA_MAP.remove(tableName);
+    }
+
+    /**
+     * 获取快照，过期时在当前线程重建
+     *
+     * @param entityClass 实体类，决定快照中的字段和字段类型
+     * @param loader 加载表中所有有效记录（按ID升序）
+     * @return 快照
+     * @see #get(Class, Supplier, Executor)
+     */
+    public Snapshot get(Class<?> entityClass, Supplier<? extends List<? extends Map<String, Object>>> loader) {
+        return get(entityClass, loader, Runnable::run);
+    }
+
+    /**
+     * 获取快照
+     * <p>
+     * 未加载或早于当前线程提交的写操作时在当前线程重建；其他情况下快照过期时返回旧快照，
+     * 并通过executor安排一次重建，连续的过期读取只安排一次。
+     * </p>
+     *
+     * @param entityClass 实体类，决定快照中的字段和字段类型
+     * @param loader 加载表中所有有效记录（按ID升序）
+     * @param executor 执行后台重建的线程池
+     * @return 快照
+     */
+    public Snapshot get(Class<?> entityClass, Supplier<? extends List<? extends Map<String, Object>>> loader,
+                        Executor executor) {
+        Snapshot current = snapshot;
+        Long written = writtenVersion.get();
+        if (current == null || written != null && current.version < written) {
+            return rebuild(entityClass, loader);
+        }
+        if (!isFresh(current) && markRefreshPending()) {
+            executor.execute(() -> refresh(entityClass, loader));
+        }
+        return current;
+    }
+
+    /**
+     * 获取当前的快照，不检查是否过期
+     *
+     * @return 快照，未加载时返回null
+     */
+    public Snapshot peek() {
+        return snapshot;
+    }
+
+    /**
+     * 记录当前线程提交的写操作，之后该线程读取到早于该写操作的快照时等待重建
+     *
+     * @param version 写操作提交后的本地写版本号
+     */
+    public void markWritten(long version) {
+        writtenVersion.set(version);
+    }
+
+    /**
+     * 标记需要后台重建
+     *
+     * @return 之前没有待执行的重建时返回true，调用方需要安排一次{@link #refresh}
+     */
+    public boolean markRefreshPending() {
+        return refreshPending.compareAndSet(false, true);
+    }
+
+    /**
+     * 后台重建快照，快照已是最新时不加载
+     *
+     * @param entityClass 实体类
+     * @param loader 加载表中所有有效记录（按ID升序）
+     */
+    public void refresh(Class<?> entityClass, Supplier<? extends List<? extends Map<String, Object>>> loader) {
+        refreshPending.set(false);
+        try {
+            rebuild(entityClass, loader);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "cache replica rebuild failed: {}", tableName);
+        }
+    }
+
+    /**
+     * 重建快照，快照已是最新时不加载；并发的重建合并为一次，重建期间不需要等待的读取继续使用旧快照
+     */
+    private synchronized Snapshot rebuild(Class<?> entityClass,
+                                          Supplier<? extends List<? extends Map<String, Object>>> loader) {
+        Snapshot current = snapshot;
+        if (current != null && isFresh(current)) {
+            return current;
+        }
+        // 加载前读取版本号，加载期间发生的写操作使新快照立即过期
+        long version = TableVersions.get(tableName);
+        long sharedVersion = TableVersions.getShared(tableName);
+        long createTime = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Snapshot rebuilt = new Snapshot(version, sharedVersion, createTime, fieldTypeMap(entityClass), caseSensitive,
+                loader.get());
+        snapshot = rebuilt;
+        CacheMetrics.of(tableName).recordRefresh(System.nanoTime() - start);
+        StaticLog.info("cache replica rebuild: {} {} version={} shared={}", tableName, rebuilt.size(), version, sharedVersion);
+        return rebuilt;
+    }
+
+    /**
+     * 快照是否仍然有效：本地和共享写版本号都没有变化，且没有超过最大存活时间
+     */
+    private boolean isFresh(Snapshot current) {
+        return current.version == TableVersions.get(tableName)
+                && current.sharedVersion == TableVersions.getShared(tableName)
+                && (maxAgeMillis <= 0 || System.currentTimeMillis() - current.createTime < maxAgeMillis);
+    }
+
+    /**
+     * 读取实体的字段和字段类型
+     */
+    private static Map<String, Class<?>> fieldTypeMap(Class<?> entityClass) {
+        Map<String, Class<?>> fieldTypeMap = new LinkedHashMap<>();
+        for (Field field : ReflectUtil.getFields(entityClass)) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                fieldTypeMap.putIfAbsent(field.getName(), field.getType());
+            }
+        }
+        return Collections.unmodifiableMap(fieldTypeMap);
+    }
+
+    /**
+     * 快照 - 某个写版本号时表中所有有效记录，创建后只读
+     */
+    public static final class Snapshot {
+
+        private final long version;
+
+        /**
+         * 创建快照时的共享写版本号
+         */
+        private final long sharedVersion;
+
+        /**
+         * 开始加载的时间（毫秒）
+         */
+        private final long createTime;
+
+        /**
+         * 字段名（驼峰） -> 字段类型
+         */
+        private final Map<String, Class<?>> fieldTypeMap;
+
+        /**
+         * 字符串比较是否区分大小写
+         */
+        private final boolean caseSensitive;
+
+        /**
+         * 记录按ID升序排列，每条记录包含实体的所有字段，值已按字段类型转换
+         */
+        private final List<Map<String, Object>> rowList;
+
+        Snapshot(long version, long sharedVersion, long createTime, Map<String, Class<?>> fieldTypeMap,
+                 boolean caseSensitive, List<? extends Map<String, Object>> sourceList) {
+            this.version = version;
+            this.sharedVersion = sharedVersion;
+            this.createTime = createTime;
+            this.fieldTypeMap = fieldTypeMap;
+            this.caseSensitive = caseSensitive;
+            List<Map<String, Object>> list = new ArrayList<>(sourceList.size());
+            for (Map<String, Object> source : sourceList) {
+                Map<String, Object> row = new HashMap<>(fieldTypeMap.size() * 4 / 3 + 1);
+                fieldTypeMap.forEach((fieldName, type) -> row.put(fieldName, CacheIndex.normalize(type, source.get(fieldName))));
+                list.add(Collections.unmodifiableMap(row));
+            }
+            this.rowList = Collections.unmodifiableList(list);
+        }
+
+        /**
+         * 编译查询
+         *
+         * @param query 查询对象
+         * @return 编译后的查询，无法在内存中计算时返回null
+         */
+        public ReplicaQuery compile(Query query) {
+            return ReplicaQuery.compile(query, fieldTypeMap, caseSensitive);
+        }
+
+        /**
+         * 查询满足条件的记录
+         *
+         * @param query 编译后的查询
+         * @param offset 跳过的记录数
+         * @param limit 最多返回的记录数，小于0时不限制
+         * @return 按查询列复制的记录
+         */
+        public List<Map<String, Object>> select(ReplicaQuery query, long offset, long limit) {
+            Stream<Map<String, Object>> stream = rowList.stream().filter(query::matches);
+            if (query.getComparator() != null) {
+                // 有序流的排序是稳定的，排序值相同时保持ID顺序
+                stream = stream.sorted(query.getComparator());
+            }
+            if (offset > 0) {
+                stream = stream.skip(offset);
+            }
+            if (limit >= 0) {
+                stream = stream.limit(limit);
+            }
+            return stream.map(query::project).collect(Collectors.toList());
+        }
+
+        /**
+         * 统计满足条件的记录数
+         *
+         * @param query 编译后的查询
+         * @return 记录数
+         */
+        public long count(ReplicaQuery query) {
+            return rowList.stream().filter(query::matches).count();
+        }
+
+        /**
+         * 获取创建快照时表的写版本号
+         *
+         * @return 写版本号
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 获取快照中的记录数
+         *
+         * @return 记录数
+         */
+        public int size() {
+            return rowList.size();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package cn.talins.mybatis.max.sdk.cache;
+
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.ITableVersionStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表写版本号 - 记录每张表在本节点的写操作次数
+ * <p>
+ * 仓库在每次插入、更新、删除提交后递增对应表的版本号，依赖表数据的缓存把版本号作为缓存键的一部分，
+ * 版本号变化后旧的缓存项自然不再命中，不需要逐项扫描清理，由缓存的容量和过期时间回收。
+ * </p>
+ *
+ * <p>
+ * 注意：版本号只在本节点内维护，其他节点的写操作不会使本节点的版本号变化，
+ * 依赖版本号的缓存需要同时比较共享的版本号，或者配合过期时间使用。
+ * </p>
+ *
+ * <p>
+ * 配置了{@link ITableVersionStore}时，写操作同时递增共享的版本号，
+ * 持久化的一级缓存用它判断重启前写入的记录是否仍然有效（{@link #getShared}），
+ * 主键过滤器用它判断构建后是否有其他节点写入（{@link #readRemoteWritesFloor}、{@link #readRemoteWritesCeiling}）。
+ * </p>
+ *
+ * <p>
+ * 递增共享版本号失败时，写操作记为待重放：下一次写操作的递增同时覆盖它，没有新的写操作时，
+ * 读取共享版本号的调用每隔刷新间隔重放一次，其他节点最终都能感知到这次写操作。
+ * 其他节点只比较版本号是否变化，多次失败的写操作合并为一次递增。
+ * 失败的递增视为没有生效；若实际已经生效，本节点会把它当作一次其他节点的写操作，只会多一次失效。
+ * </p>
+ *
+ * @author talins
+ * @see QueryCache 查询结果缓存
+ * @see OffHeapCache 持久化的一级缓存
+ */
+public class TableVersions {
+
+    /**
+     * 表名 -> 写版本号
+     */
+    private static final Map<String, AtomicLong> VERSION_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 未知的共享版本号，没有配置共享存储或读取失败时返回
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    /**
+     * 默认的共享版本号刷新间隔（毫秒）
+     */
+    public static final long DEFAULT_SHARED_REFRESH_MILLIS = 1000;
+
+    /**
+     * 表名 -> 本节点已知的共享版本号
+     */
+    private static final Map<String, SharedVersion> SHARED_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点已知的共享版本号超过该时间（毫秒）后重新读取
+     */
+    private static volatile long sharedRefreshMillis = DEFAULT_SHARED_REFRESH_MILLIS;
+
+    /**
+     * 表名 -> 本节点计入共享版本号的写操作次数
+     */
+    private static final Map<String, LocalWrites> LOCAL_WRITES_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 共享的版本号存储
+     */
+    private static volatile ITableVersionStore store;
+
+    /**
+     * 设置共享的版本号存储
+     *
+     * @param store 版本号存储，为null时只维护本节点的版本号
+     */
+    public static void setStore(ITableVersionStore store) {
+        TableVersions.store = store;
+        SHARED_MAP.clear();
+        LOCAL_WRITES_MAP.clear();
+    }
+
+    /**
+     * 设置共享版本号的刷新间隔，其他节点的写操作最长在该时间后被本节点感知
+     *
+     * @param sharedRefreshMillis 刷新间隔（毫秒）
+     */
+    public static void setSharedRefreshMillis(long sharedRefreshMillis) {
+        TableVersions.sharedRefreshMillis = sharedRefreshMillis;
+    }
+
+    /**
+     * 是否配置了共享的版本号存储
+     *
+     * @return 配置了共享存储时返回true
+     */
+    public static boolean hasStore() {
+        return store != null;
+    }
+
+    /**
+     * 获取表的当前版本号
+     *
+     * @param tableName 表名
+     * @return 版本号，从未写入过的表返回0
+     */
+    public static long get(String tableName) {
+        AtomicLong version = VERSION_MAP.get(tableName);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 递增表的版本号，配置了共享存储时同时递增共享的版本号
+     *
+     * @param tableName 表名
+     * @return 递增后的本节点版本号
+     */
+    public static long bump(String tableName) {
+        long version = VERSION_MAP.computeIfAbsent(tableName, k -> new AtomicLong()).incrementAndGet();
+        ITableVersionStore versionStore = store;
+        if (versionStore != null) {
+            increment(versionStore, tableName, LOCAL_WRITES_MAP.computeIfAbsent(tableName, k -> new LocalWrites()), 1);
+        }
+        return version;
+    }
+
+    /**
+     * 递增共享的版本号，一次递增同时覆盖之前递增失败的写操作
+     *
+     * @param versionStore 版本号存储
+     * @param tableName 表名
+     * @param localWrites 本节点计入共享版本号的写操作次数
+     * @param writes 本次新增的写操作次数，为0时只重放失败的写操作
+     */
+    private static void increment(ITableVersionStore versionStore, String tableName, LocalWrites localWrites, long writes) {
+        localWrites.pending.incrementAndGet();
+        long count = writes + localWrites.failed.getAndSet(0);
+        try {
+            if (count == 0) {
+                return;
+            }
+            // 递增的结果包含之前所有节点的写操作，可以视为一次读取
+            SharedVersion incremented = new SharedVersion(versionStore.increment(tableName), System.currentTimeMillis());
+            SHARED_MAP.merge(tableName, incremented, (known, next) -> known.version > next.version ? known : next);
+            localWrites.done.incrementAndGet();
+        } catch (RuntimeException e) {
+            localWrites.failed.addAndGet(count);
+            localWrites.retryTime = System.currentTimeMillis();
+            SHARED_MAP.remove(tableName);
+            StaticLog.warn(e, "shared table version increment failed, pending replay: {} {}", tableName, count);
+        } finally {
+            // 先计入完成再撤销进行中，两者之和在任何时刻都不小于已递增到共享存储的次数
+            localWrites.pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * 重放递增失败的写操作，距上次失败不足刷新间隔时跳过
+     * <p>
+     * 在读取本节点计入的次数之前调用，重放成功时共享版本号和已完成的次数同时增加，不影响之后的比较。
+     * </p>
+     *
+     * @param tableName 表名
+     */
+    private static void replay(String tableName) {
+        ITableVersionStore versionStore = store;
+        LocalWrites localWrites = LOCAL_WRITES_MAP.get(tableName);
+        if (versionStore == null || localWrites == null || localWrites.failed.get() == 0
+                || System.currentTimeMillis() - localWrites.retryTime < sharedRefreshMillis) {
+            return;
+        }
+        increment(versionStore, tableName, localWrites, 0);
+    }
+
+    /**
+     * 从共享存储读取其他节点写操作次数的下界，作为之后比较的基准
+     * <p>
+     * 先读取共享版本号，再减去本节点已完成和正在进行的写操作次数，
+     * 本节点并发的写操作只会使结果偏小。
+     * </p>
+     *
+     * @param tableName 表名
+     * @return 其他节点写操作次数的下界，没有配置共享存储或读取失败时返回{@link #UNKNOWN}
+     */
+    public static long readRemoteWritesFloor(String tableName) {
+        replay(tableName);
+        long shared = readShared(tableName);
+        if (shared == UNKNOWN) {
+            return UNKNOWN;
+        }
+        LocalWrites localWrites = LOCAL_WRITES_MAP.get(tableName);
+        return localWrites == null ? shared : shared - localWrites.done.get() - localWrites.pending.get();
+    }
+
+    /**
+     * 从共享存储读取其他节点写操作次数的上界，大于{@link #readRemoteWritesFloor}得到的基准时说明其他节点写入过
+     * <p>
+     * 先读取本节点已完成的写操作次数，再读取共享版本号，本节点并发的写操作只会使结果偏大。
+     * </p>
+     *
+     * @param tableName 表名
+     * @return 其他节点写操作次数的上界，没有配置共享存储或读取失败时返回{@link #UNKNOWN}
+     */
+    public static long readRemoteWritesCeiling(String tableName) {
+        replay(tableName);
+        LocalWrites localWrites = LOCAL_WRITES_MAP.get(tableName);
+        long done = localWrites == null ? 0 : localWrites.done.get();
+        long shared = readShared(tableName);
+        return shared == UNKNOWN ? UNKNOWN : shared - done;
+    }
+
+    /**
+     * 直接从共享存储读取版本号，同时更新本节点已知的值
+     *
+     * @param tableName 表名
+     * @return 共享版本号，没有配置共享存储或读取失败时返回{@link #UNKNOWN}
+     */
+    private static long readShared(String tableName) {
+        ITableVersionStore versionStore = store;
+        if (versionStore == null) {
+            return UNKNOWN;
+        }
+        long version;
+        try {
+            version = versionStore.get(tableName);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "shared table version read failed: {}", tableName);
+            version = UNKNOWN;
+        }
+        // 读取失败时同样记录读取时间，刷新间隔内不再重试
+        SHARED_MAP.put(tableName, new SharedVersion(version, System.currentTimeMillis()));
+        return version;
+    }
+
+    /**
+     * 获取表的共享版本号
+     * <p>
+     * 使用本节点已知的值，距上次读取超过刷新间隔时重新从共享存储读取，本节点的写操作会立即更新该值。
+     * 其他节点的写操作最长在刷新间隔后反映到返回值中；在此之前本节点已知的值偏小，
+     * 按它写入持久化一级缓存的记录重启后不会被读取，不影响正确性。读取前先重放递增失败的写操作。
+     * </p>
+     *
+     * @param tableName 表名
+     * @return 共享版本号，没有配置共享存储或读取失败时返回{@link #UNKNOWN}
+     */
+    public static long getShared(String tableName) {
+        replay(tableName);
+        return getKnownShared(tableName);
+    }
+
+    /**
+     * 获取本节点已知的共享版本号，超过刷新间隔时重新读取，不重放失败的写操作
+     */
+    private static long getKnownShared(String tableName) {
+        SharedVersion known = SHARED_MAP.get(tableName);
+        if (known != null && System.currentTimeMillis() - known.readTime < sharedRefreshMillis) {
+            return known.version;
+        }
+        return readShared(tableName);
+    }
+
+    /**
+     * 获取其他节点写操作次数：本节点已知的共享版本号减去本节点计入的次数
+     * <p>
+     * 与{@link #getShared}一样按刷新间隔读取共享存储，用于判断按本节点增量维护的数据是否需要重新统计。
+     * </p>
+     *
+     * @param tableName 表名
+     * @return 其他节点写操作次数，没有配置共享存储或读取失败时返回{@link #UNKNOWN}
+     */
+    public static long getRemoteWrites(String tableName) {
+        replay(tableName);
+        LocalWrites localWrites = LOCAL_WRITES_MAP.get(tableName);
+        long done = localWrites == null ? 0 : localWrites.done.get();
+        long shared = getKnownShared(tableName);
+        return shared == UNKNOWN ? UNKNOWN : shared - done;
+    }
+
+    /**
+     * 本节点计入共享版本号的写操作次数
+     */
+    private static final class LocalWrites {
+
+        /**
+         * 已递增到共享存储的次数
+         */
+        private final AtomicLong done = new AtomicLong();
+
+        /**
+         * 正在递增共享存储的次数
+         */
+        private final AtomicLong pending = new AtomicLong();
+
+        /**
+         * 递增共享存储失败、等待重放的写操作次数
+         */
+        private final AtomicLong failed = new AtomicLong();
+
+        /**
+         * 最近一次递增失败的时间（毫秒）
+         */
+        private volatile long retryTime;
+    }
+
+    /**
+     * 本节点已知的共享版本号及读取时间
+     */
+    private static final class SharedVersion {
+
+        private final long version;
+
+        private final long readTime;
+
+        SharedVersion(long version, long readTime) {
+            this.version = version;
+            this.readTime = readTime;
+        }
+    }
+}
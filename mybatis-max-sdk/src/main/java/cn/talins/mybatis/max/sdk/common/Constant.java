@@ -3,6 +3,7 @@ package cn.talins.mybatis.max.sdk.common;
 import cn.hutool.extra.template.Template;
 import cn.hutool.extra.template.TemplateEngine;
 import cn.hutool.extra.template.TemplateUtil;
+import cn.talins.mybatis.max.api.pojo.TableMetaData;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -69,4 +70,12 @@ public class Constant {
      * </p>
      */
     public static final Map<String, String> TABLE_DATASOURCE_MAP = new HashMap<>();
+
+    /**
+     * 表名到表元数据的映射
+     * <p>
+     * 在生成Mapper时记录，用于运行时获取表的索引列等结构信息。
+     * </p>
+     */
+    public static final Map<String, TableMetaData> TABLE_METADATA_MAP = new HashMap<>();
 }
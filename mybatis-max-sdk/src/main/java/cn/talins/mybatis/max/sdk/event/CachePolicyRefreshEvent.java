@@ -0,0 +1,45 @@
+package cn.talins.mybatis.max.sdk.event;
+
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+
+/**
+ * 缓存策略刷新事件 - 发布后在运行时替换表的缓存策略，不需要重启应用
+ * <p>
+ * 由starter中的监听器处理：tables为null时从当前Environment重新绑定mybatis.max.cache.tables，
+ * 否则直接使用事件中的策略，最终通过{@link cn.talins.mybatis.max.sdk.CacheUtil#configure}生效。
+ * </p>
+ *
+ * <p>
+ * 发布示例（如配置中心推送变更后）：
+ * <pre>
+ * &#64;Autowired
+ * private ApplicationEventPublisher publisher;
+ *
+ * public void onConfigChanged() {
+ *     publisher.publishEvent(new CachePolicyRefreshEvent());
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.sdk.CacheUtil#configure 替换表的缓存策略
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachePolicyRefreshEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 表名 -> 缓存策略，为null时从Environment重新绑定
+     */
+    private Map<String, CachePolicy> tables;
+}
@@ -0,0 +1,153 @@
+package cn.talins.mybatis.max.sdk.id;
+
+import cn.hutool.core.lang.Assert;
+import cn.talins.mybatis.max.api.IIdGenerator;
+
+/**
+ * 分段缓冲ID生成器 - 为底层ID生成器提供条带化的预生成缓冲区
+ * <p>
+ * 底层生成器（如Yitter雪花算法）内部使用全局锁保证唯一性，在多核机器上
+ * 大量线程同时插入时，所有线程都会在同一把锁上排队。该类将ID缓冲区按线程
+ * 拆分为多个条带（stripe），每个条带一次性从底层生成器批量取出一段ID，
+ * 之后在条带内部分配，只有缓冲区耗尽时才会再次访问底层生成器。
+ * 补充缓冲区调用底层生成器的{@link IIdGenerator#nextIds}，底层生成器应在一次加锁内生成整批ID
+ * （如starter中的YitterIdGenerator），否则默认实现逐个调用nextId，每个ID仍然竞争一次底层的锁。
+ * </p>
+ *
+ * <p>
+ * 特点：
+ * <ul>
+ *     <li>线程按ID散列到固定条带，不使用ThreadLocal，线程池复用线程时不会泄漏</li>
+ *     <li>同一条带内的ID保持递增，不同条带之间只保证唯一、不保证全局有序</li>
+ *     <li>批量获取时直接从缓冲区拷贝，不足部分由底层生成器补齐</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 使用示例：
+ * <pre>
+ * IIdGenerator idGenerator = new BufferedIdGenerator(new YitterIdGenerator(), 16, 64);
+ * Long id = idGenerator.nextId();
+ * long[] ids = idGenerator.nextIds(100);
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ * @see IIdGenerator ID生成器接口
+ * @see cn.talins.mybatis.max.starter.BeanConfiguration#idGenerator 默认ID生成器配置
+ */
+public class BufferedIdGenerator implements IIdGenerator {
+
+    /**
+     * 底层ID生成器
+     */
+    private final IIdGenerator delegate;
+
+    /**
+     * 每个条带一次预生成的ID数量
+     */
+    private final int bufferSize;
+
+    /**
+     * 条带数组，长度为2的幂
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * 条带下标掩码
+     */
+    private final int mask;
+
+    /**
+     * 构造函数
+     *
+     * @param delegate 底层ID生成器
+     * @param stripeCount 条带数量（会向上取整为2的幂）
+     * @param bufferSize 每个条带一次预生成的ID数量
+     */
+    public BufferedIdGenerator(IIdGenerator delegate, int stripeCount, int bufferSize) {
+        Assert.notNull(delegate, "delegate不能为空");
+        Assert.isTrue(stripeCount > 0, "stripeCount必须大于0");
+        Assert.isTrue(bufferSize > 0, "bufferSize必须大于0");
+        this.delegate = delegate;
+        this.bufferSize = bufferSize;
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public Long nextId() {
+        return stripe().next();
+    }
+
+    @Override
+    public long[] nextIds(int n) {
+        long[] ids = new long[n];
+        int filled = stripe().drainTo(ids);
+        if (filled < n) {
+            // 缓冲区不足的部分直接向底层生成器批量申请，不占用条带缓冲
+            long[] rest = delegate.nextIds(n - filled);
+            System.arraycopy(rest, 0, ids, filled, rest.length);
+        }
+        return ids;
+    }
+
+    /**
+     * 丢弃所有条带中尚未分配的ID
+     * <p>
+     * 底层生成器的参数变化（如workerId被重新分配）后调用，之后的ID全部由新的底层生成器生成。
+     * </p>
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * 根据当前线程选择条带
+     *
+     * @return 当前线程对应的条带
+     */
+    private Stripe stripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 32) & mask];
+    }
+
+    /**
+     * 单个条带的ID缓冲区
+     */
+    private final class Stripe {
+
+        private long[] buffer = new long[0];
+
+        private int position;
+
+        synchronized long next() {
+            if (position == buffer.length) {
+                buffer = delegate.nextIds(bufferSize);
+                position = 0;
+            }
+            return buffer[position++];
+        }
+
+        synchronized int drainTo(long[] target) {
+            int count = Math.min(buffer.length - position, target.length);
+            System.arraycopy(buffer, position, target, 0, count);
+            position += count;
+            return count;
+        }
+
+        synchronized void clear() {
+            buffer = new long[0];
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.talins.mybatis.max.sdk.id;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+
+/**
+ * 协调表的JDBC工具方法 - 供号段ID生成器和workerId租约管理器使用
+ * <p>
+ * 只使用标准SQL和JDBC元数据，不依赖特定数据库的语法（如CREATE TABLE IF NOT EXISTS、INSERT IGNORE）。
+ * </p>
+ *
+ * @author talins
+ */
+final class JdbcSupport {
+
+    private JdbcSupport() {
+    }
+
+    /**
+     * 创建表（已存在时忽略）
+     * <p>
+     * 通过元数据判断表是否存在，建表失败时再次检查，兼容并发建表和不支持IF NOT EXISTS的数据库。
+     * </p>
+     *
+     * @param connection 数据库连接
+     * @param tableName 表名
+     * @param columns 列定义
+     * @throws SQLException 建表失败且表不存在
+     */
+    static void createTableIfAbsent(Connection connection, String tableName, String columns) throws SQLException {
+        if (tableExists(connection, tableName)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + tableName + " (" + columns + ")");
+        } catch (SQLException e) {
+            if (!tableExists(connection, tableName)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 表是否存在，按数据库保存标识符的大小写查找
+     *
+     * @param connection 数据库连接
+     * @param tableName 表名
+     * @return 存在时返回true
+     * @throws SQLException 数据库访问异常
+     */
+    static boolean tableExists(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String name = metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase()
+                : metaData.storesLowerCaseIdentifiers() ? tableName.toLowerCase() : tableName;
+        try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, name, new String[]{"TABLE"})) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * 是否违反完整性约束，SQLState以23开头表示违反完整性约束
+     * <p>
+     * 各数据库主键冲突的错误码不同，调用方需要再确认冲突的记录确实存在。
+     * </p>
+     *
+     * @param e 数据库访问异常
+     * @return 违反完整性约束时返回true
+     */
+    static boolean isIntegrityViolation(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+}
@@ -0,0 +1,47 @@
+package cn.talins.mybatis.max.sdk.id;
+
+import cn.hutool.core.lang.Assert;
+import cn.talins.mybatis.max.api.IIdGenerator;
+
+/**
+ * 受workerId租约保护的ID生成器 - 租约失效期间拒绝生成ID
+ * <p>
+ * 数据库不可用时心跳无法续约，租约过期后其他节点可以接管同一workerId，
+ * 该类在每次生成前调用{@link WorkerIdLeaser#checkLease()}，租约失效时抛出异常而不是继续生成可能重复的ID。
+ * 包装在{@link BufferedIdGenerator}外层时，缓冲区中预生成的ID同样受到保护。
+ * </p>
+ *
+ * @author talins
+ * @see WorkerIdLeaser workerId租约管理器
+ */
+public class LeasedIdGenerator implements IIdGenerator {
+
+    private final WorkerIdLeaser leaser;
+
+    private final IIdGenerator delegate;
+
+    /**
+     * 构造函数
+     *
+     * @param leaser workerId租约管理器
+     * @param delegate 底层ID生成器
+     */
+    public LeasedIdGenerator(WorkerIdLeaser leaser, IIdGenerator delegate) {
+        Assert.notNull(leaser, "leaser不能为空");
+        Assert.notNull(delegate, "delegate不能为空");
+        this.leaser = leaser;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Long nextId() {
+        leaser.checkLease();
+        return delegate.nextId();
+    }
+
+    @Override
+    public long[] nextIds(int n) {
+        leaser.checkLease();
+        return delegate.nextIds(n);
+    }
+}
@@ -0,0 +1,319 @@
+package cn.talins.mybatis.max.sdk.id;
+
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.IIdGenerator;
+import cn.talins.mybatis.max.sdk.DynamicDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 号段ID生成器 - 基于数据库序列表的IIdGenerator实现
+ * <p>
+ * 与雪花算法不同，该生成器不依赖workerId和系统时钟：每个节点从序列表中
+ * 租用一段连续的ID（号段），在内存中递增分配，号段用完后再租用下一段。
+ * 因此节点扩缩容时无需分配workerId，时钟回拨也不会导致阻塞。
+ * </p>
+ *
+ * <p>
+ * 双缓冲机制：
+ * <ul>
+ *     <li>当前号段消耗超过{@link #PRELOAD_RATIO}时，后台线程异步租用下一个号段</li>
+ *     <li>当前号段用完时直接切换到已准备好的下一个号段</li>
+ *     <li>{@link #nextId()}在号段内只是一次原子自增，不加锁、不访问数据库</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 序列表固定使用主数据源，不受调用线程通过{@link DynamicDataSource#push}切换的数据源影响。
+ * 建表和初始化序列只使用标准SQL，不依赖特定数据库的语法。
+ * </p>
+ *
+ * <p>
+ * 序列表结构（不存在时自动创建）：
+ * <pre>
+ * CREATE TABLE mybatis_max_sequence (
+ *     biz_tag VARCHAR(128) NOT NULL PRIMARY KEY,
+ *     max_id BIGINT NOT NULL,
+ *     step INT NOT NULL
+ * );
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ * @see IIdGenerator ID生成器接口
+ * @see cn.talins.mybatis.max.starter.BeanConfiguration#idGenerator 默认ID生成器配置
+ */
+public class SegmentIdGenerator implements IIdGenerator, AutoCloseable {
+
+    /**
+     * 默认序列表名
+     */
+    public static final String DEFAULT_TABLE_NAME = "mybatis_max_sequence";
+
+    /**
+     * 当前号段消耗达到该比例时开始预加载下一个号段
+     */
+    private static final double PRELOAD_RATIO = 0.1;
+
+    /**
+     * 主数据源，序列表所在的库
+     */
+    private final DataSource dataSource;
+
+    /**
+     * 序列表名
+     */
+    private final String tableName;
+
+    /**
+     * 业务标识，同一张序列表可以为不同业务维护独立的序列
+     */
+    private final String bizTag;
+
+    /**
+     * 每次租用的号段长度
+     */
+    private final int step;
+
+    /**
+     * 异步加载号段的线程池
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 当前正在分配的号段
+     */
+    private volatile Segment current = new Segment(1, 0);
+
+    /**
+     * 正在加载或已加载完成的下一个号段
+     */
+    private final AtomicReference<CompletableFuture<Segment>> next = new AtomicReference<>();
+
+    /**
+     * 构造函数
+     *
+     * @param dataSource 数据源，多数据源时使用其中的主数据源
+     * @param tableName 序列表名
+     * @param bizTag 业务标识
+     * @param step 号段长度
+     */
+    public SegmentIdGenerator(DataSource dataSource, String tableName, String bizTag, int step) {
+        Assert.notNull(dataSource, "dataSource不能为空");
+        Assert.isTrue(tableName.matches("^[a-zA-Z_][a-zA-Z0-9_]*$"), "序列表名格式不正确");
+        Assert.notBlank(bizTag, "bizTag不能为空");
+        Assert.isTrue(step > 0, "step必须大于0");
+        this.dataSource = DynamicDataSource.primary(dataSource);
+        this.tableName = tableName;
+        this.bizTag = bizTag;
+        this.step = step;
+        this.executor = Executors.newSingleThreadExecutor(
+                ThreadUtil.newNamedThreadFactory("mybatis-max-segment-" + bizTag + "-", true));
+        createTableIfAbsent();
+    }
+
+    @Override
+    public Long nextId() {
+        while (true) {
+            Segment segment = current;
+            long id = segment.cursor.getAndIncrement();
+            if (id <= segment.max) {
+                if (id == segment.preloadAt) {
+                    preload();
+                }
+                return id;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    /**
+     * 异步租用下一个号段（同一时间只会有一个加载任务）
+     */
+    private void preload() {
+        CompletableFuture<Segment> future = new CompletableFuture<>();
+        if (next.compareAndSet(null, future)) {
+            executor.execute(() -> {
+                try {
+                    future.complete(lease());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 当前号段用完后切换到下一个号段
+     * <p>
+     * 只有一个线程真正执行切换，其余线程在锁释放后重新读取新的号段。
+     * 如果预加载失败或尚未开始，则同步租用。
+     * </p>
+     *
+     * @param exhausted 已用完的号段
+     */
+    private synchronized void switchSegment(Segment exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        CompletableFuture<Segment> future = next.getAndSet(null);
+        Segment segment = null;
+        if (future != null) {
+            try {
+                segment = future.join();
+            } catch (CompletionException e) {
+                StaticLog.warn(e.getCause(), "号段预加载失败，改为同步加载: {}", bizTag);
+            }
+        }
+        current = segment != null ? segment : lease();
+    }
+
+    /**
+     * 从序列表中租用一个号段
+     *
+     * @return 新号段
+     */
+    private Segment lease() {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Long maxId = increase(connection);
+                if (maxId == null) {
+                    // 在事务外初始化序列，部分数据库的事务在语句失败后不能继续使用
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                    insertIfAbsent(connection);
+                    connection.setAutoCommit(false);
+                    maxId = increase(connection);
+                }
+                connection.commit();
+                Assert.notNull(maxId, "序列不存在: {}", bizTag);
+                return new Segment(maxId - step + 1, maxId);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("租用号段失败: " + bizTag, e);
+        }
+    }
+
+    /**
+     * 将序列推进一个号段并返回推进后的最大值
+     *
+     * @param connection 数据库连接（处于事务中）
+     * @return 推进后的max_id，序列不存在时返回null
+     * @throws SQLException 数据库访问异常
+     */
+    private Long increase(Connection connection) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + tableName + " SET max_id = max_id + ? WHERE biz_tag = ?")) {
+            update.setInt(1, step);
+            update.setString(2, bizTag);
+            if (update.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT max_id FROM " + tableName + " WHERE biz_tag = ?")) {
+            select.setString(1, bizTag);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * 初始化序列记录，并发初始化时忽略主键冲突
+     * <p>
+     * 各数据库主键冲突的错误码不同，违反完整性约束（SQLState以23开头）且序列记录已存在时才视为主键冲突。
+     * </p>
+     *
+     * @param connection 数据库连接（自动提交）
+     * @throws SQLException 除主键冲突以外的数据库访问异常
+     */
+    private void insertIfAbsent(Connection connection) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + tableName + " (biz_tag, max_id, step) VALUES (?, 0, ?)")) {
+            insert.setString(1, bizTag);
+            insert.setInt(2, step);
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            if (!isDuplicateKey(connection, e)) {
+                throw e;
+            }
+            // 其他节点已经初始化了该序列
+            StaticLog.debug("序列已存在: {}", bizTag);
+        }
+    }
+
+    /**
+     * 初始化失败是否由其他节点已插入同一序列引起
+     */
+    private boolean isDuplicateKey(Connection connection, SQLException e) throws SQLException {
+        if (!JdbcSupport.isIntegrityViolation(e)) {
+            return false;
+        }
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT 1 FROM " + tableName + " WHERE biz_tag = ?")) {
+            select.setString(1, bizTag);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * 创建序列表（已存在时忽略）
+     */
+    private void createTableIfAbsent() {
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcSupport.createTableIfAbsent(connection, tableName, "biz_tag VARCHAR(128) NOT NULL PRIMARY KEY, "
+                    + "max_id BIGINT NOT NULL, "
+                    + "step INT NOT NULL");
+        } catch (SQLException e) {
+            throw new IllegalStateException("创建序列表失败: " + tableName, e);
+        }
+    }
+
+    /**
+     * 关闭异步加载线程
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 号段：[start, max]区间内的连续ID
+     */
+    private static final class Segment {
+
+        private final AtomicLong cursor;
+
+        private final long max;
+
+        private final long preloadAt;
+
+        Segment(long start, long max) {
+            this.cursor = new AtomicLong(start);
+            this.max = max;
+            this.preloadAt = start + (long) ((max - start + 1) * PRELOAD_RATIO);
+        }
+    }
+}
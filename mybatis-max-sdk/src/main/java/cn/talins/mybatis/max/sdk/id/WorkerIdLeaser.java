@@ -0,0 +1,360 @@
+package cn.talins.mybatis.max.sdk.id;
+
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.sdk.DynamicDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * 雪花算法workerId租约管理器 - 为水平扩展的节点自动分配workerId
+ * <p>
+ * 手工为每个节点配置workerId在自动扩缩容场景下容易冲突，该类通过主数据源中的
+ * 一张协调表为节点分配workerId：
+ * <ul>
+ *     <li>启动时选择一个空闲或租约已过期的workerId，使用条件更新抢占</li>
+ *     <li>后台线程按心跳间隔续约，续约失败说明租约已被回收，会重新申请并通知回调</li>
+ *     <li>距上次成功续约超过租约时长减去心跳间隔后视为租约失效，{@link #checkLease()}拒绝继续生成ID，
+ *         直到续约成功或重新分配完成，避免数据库不可用期间其他节点接管同一workerId后产生重复ID</li>
+ *     <li>关闭时主动释放租约，其他节点无需等待过期即可复用</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 协调表结构（不存在时自动创建）：
+ * <pre>
+ * CREATE TABLE mybatis_max_worker (
+ *     worker_id INT NOT NULL PRIMARY KEY,
+ *     instance_id VARCHAR(128) NOT NULL,
+ *     expire_time TIMESTAMP NOT NULL
+ * );
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * 租约的过期时间和是否过期都在SQL中按数据库的CURRENT_TIMESTAMP计算（JDBC转义函数TIMESTAMPADD，按秒向上取整），
+ * 各节点的本地时钟不参与比较，时钟偏差不会导致接管仍然有效的租约。
+ * 本地只用时长判断租约是否失效：数据库记录的续约时间不早于本地发起续约的时间，
+ * 本地的失效时间总是早于数据库中的过期时间。协调表固定使用主数据源。
+ * </p>
+ *
+ * @author talins
+ * @see cn.talins.mybatis.max.starter.BeanConfiguration#idGenerator 默认ID生成器配置
+ */
+public class WorkerIdLeaser implements AutoCloseable {
+
+    /**
+     * 默认协调表名
+     */
+    public static final String DEFAULT_TABLE_NAME = "mybatis_max_worker";
+
+    /**
+     * 数据源，协调表所在的库
+     */
+    private final DataSource dataSource;
+
+    /**
+     * 协调表名
+     */
+    private final String tableName;
+
+    /**
+     * 可分配的最大workerId（包含）
+     */
+    private final int maxWorkerId;
+
+    /**
+     * 租约时长（毫秒）
+     */
+    private final long leaseMillis;
+
+    /**
+     * 按数据库时间计算过期时间的SQL表达式
+     */
+    private final String expireTimeSql;
+
+    /**
+     * 心跳间隔（毫秒）
+     */
+    private final long heartbeatMillis;
+
+    /**
+     * 租约丢失后重新分配到新workerId时的回调，按注册顺序执行
+     */
+    private final List<IntConsumer> reassignListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前节点的实例标识
+     */
+    private final String instanceId;
+
+    /**
+     * 心跳线程
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 当前持有的workerId，未持有时为-1
+     */
+    private volatile int workerId = -1;
+
+    /**
+     * 租约在本地视为有效的截止时间（毫秒），为上次成功续约前的时间加上租约时长再减去心跳间隔
+     */
+    private volatile long validUntil;
+
+    /**
+     * 构造函数
+     *
+     * @param dataSource 数据源，多数据源时使用其中的主数据源
+     * @param tableName 协调表名
+     * @param maxWorkerId 可分配的最大workerId（包含）
+     * @param leaseMillis 租约时长（毫秒）
+     * @param heartbeatMillis 心跳间隔（毫秒），必须小于租约时长
+     * @param onReassign 租约丢失并重新分配后的回调，参数为新的workerId
+     */
+    public WorkerIdLeaser(DataSource dataSource, String tableName, int maxWorkerId,
+                          long leaseMillis, long heartbeatMillis, IntConsumer onReassign) {
+        Assert.notNull(dataSource, "dataSource不能为空");
+        Assert.isTrue(tableName.matches("^[a-zA-Z_][a-zA-Z0-9_]*$"), "协调表名格式不正确");
+        Assert.isTrue(maxWorkerId >= 0, "maxWorkerId不能小于0");
+        Assert.isTrue(heartbeatMillis > 0 && heartbeatMillis < leaseMillis, "心跳间隔必须大于0且小于租约时长");
+        this.dataSource = DynamicDataSource.primary(dataSource);
+        this.tableName = tableName;
+        this.maxWorkerId = maxWorkerId;
+        this.leaseMillis = leaseMillis;
+        this.expireTimeSql = "{fn TIMESTAMPADD(SQL_TSI_SECOND, " + (leaseMillis + 999) / 1000 + ", CURRENT_TIMESTAMP)}";
+        this.heartbeatMillis = heartbeatMillis;
+        if (onReassign != null) {
+            this.reassignListeners.add(onReassign);
+        }
+        this.instanceId = StrUtil.sub(NetUtil.getLocalHostName() + "-" + IdUtil.fastSimpleUUID(), 0, 128);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("mybatis-max-worker-lease-", true));
+        createTableIfAbsent();
+    }
+
+    /**
+     * 申请workerId并启动心跳
+     *
+     * @return 分配到的workerId
+     * @throws IllegalStateException 如果所有workerId都被占用
+     */
+    public synchronized int start() {
+        if (workerId < 0) {
+            long now = System.currentTimeMillis();
+            workerId = acquire();
+            validUntil = now + leaseMillis - heartbeatMillis;
+            scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+            StaticLog.info("worker id leased: {} {}", workerId, instanceId);
+        }
+        return workerId;
+    }
+
+    /**
+     * 获取当前持有的workerId
+     *
+     * @return workerId，未启动时返回-1
+     */
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 注册重新分配workerId后的回调
+     * <p>
+     * 回调在租约失效期间执行，执行完成前{@link #checkLease()}不会放行，
+     * 适合用来重置底层生成器、清空按旧workerId预生成的ID缓冲区。
+     * </p>
+     *
+     * @param listener 回调，参数为新的workerId
+     */
+    public void addReassignListener(IntConsumer listener) {
+        Assert.notNull(listener, "listener不能为空");
+        reassignListeners.add(listener);
+    }
+
+    /**
+     * 当前租约是否有效
+     *
+     * @return 已启动且距上次成功续约未超过租约时长减去心跳间隔时返回true
+     */
+    public boolean isLeaseValid() {
+        return workerId >= 0 && System.currentTimeMillis() < validUntil;
+    }
+
+    /**
+     * 校验当前租约有效，生成ID前调用
+     *
+     * @throws IllegalStateException 如果租约已失效
+     */
+    public void checkLease() {
+        if (!isLeaseValid()) {
+            throw new IllegalStateException("workerId租约已失效，暂停生成ID: " + workerId);
+        }
+    }
+
+    /**
+     * 抢占一个空闲或已过期的workerId
+     *
+     * @return 抢占到的workerId
+     */
+    private int acquire() {
+        try (Connection connection = dataSource.getConnection()) {
+            Map<Integer, Boolean> expiredMap = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT worker_id, "
+                         + "CASE WHEN expire_time <= CURRENT_TIMESTAMP THEN 1 ELSE 0 END FROM " + tableName)) {
+                while (resultSet.next()) {
+                    expiredMap.put(resultSet.getInt(1), resultSet.getInt(2) == 1);
+                }
+            }
+            for (int candidate = 0; candidate <= maxWorkerId; candidate++) {
+                Boolean expired = expiredMap.get(candidate);
+                if (expired == null && tryInsert(connection, candidate)) {
+                    return candidate;
+                }
+                if (Boolean.TRUE.equals(expired) && tryTakeOver(connection, candidate)) {
+                    return candidate;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("申请workerId失败", e);
+        }
+        throw new IllegalStateException("没有可用的workerId，最大值: " + maxWorkerId);
+    }
+
+    /**
+     * 插入新的租约记录，违反主键约束说明已被其他节点抢占，其他异常向上抛出
+     */
+    private boolean tryInsert(Connection connection, int candidate) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + tableName + " (worker_id, instance_id, expire_time) VALUES (?, ?, " + expireTimeSql + ")")) {
+            insert.setInt(1, candidate);
+            insert.setString(2, instanceId);
+            return insert.executeUpdate() == 1;
+        } catch (SQLException e) {
+            if (JdbcSupport.isIntegrityViolation(e) && isTaken(connection, candidate)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * workerId是否已有租约记录
+     */
+    private boolean isTaken(Connection connection, int candidate) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT 1 FROM " + tableName + " WHERE worker_id = ?")) {
+            select.setInt(1, candidate);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * 接管已过期的租约，按数据库时间判断过期，条件更新保证同一时间只有一个节点成功
+     */
+    private boolean tryTakeOver(Connection connection, int candidate) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + tableName + " SET instance_id = ?, expire_time = " + expireTimeSql
+                        + " WHERE worker_id = ? AND expire_time <= CURRENT_TIMESTAMP")) {
+            update.setString(1, instanceId);
+            update.setInt(2, candidate);
+            return update.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * 续约，续约失败时重新申请workerId
+     */
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE " + tableName + " SET expire_time = " + expireTimeSql
+                             + " WHERE worker_id = ? AND instance_id = ?")) {
+            update.setInt(1, workerId);
+            update.setString(2, instanceId);
+            if (update.executeUpdate() == 1) {
+                validUntil = now + leaseMillis - heartbeatMillis;
+                return;
+            }
+        } catch (Exception e) {
+            if (isLeaseValid()) {
+                StaticLog.warn(e, "worker id heartbeat failed: {}", workerId);
+            } else {
+                StaticLog.error(e, "worker id heartbeat failed, id generation fenced: {}", workerId);
+            }
+            return;
+        }
+        StaticLog.error("worker id lease lost: {} {}", workerId, instanceId);
+        validUntil = 0;
+        try {
+            int reassigned = acquire();
+            workerId = reassigned;
+            for (IntConsumer listener : reassignListeners) {
+                listener.accept(reassigned);
+            }
+            validUntil = now + leaseMillis - heartbeatMillis;
+            StaticLog.info("worker id re-leased: {} {}", reassigned, instanceId);
+        } catch (Exception e) {
+            StaticLog.error(e, "worker id re-lease failed");
+        }
+    }
+
+    /**
+     * 创建协调表（已存在时忽略）
+     */
+    private void createTableIfAbsent() {
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcSupport.createTableIfAbsent(connection, tableName, "worker_id INT NOT NULL PRIMARY KEY, "
+                    + "instance_id VARCHAR(128) NOT NULL, "
+                    + "expire_time TIMESTAMP NOT NULL");
+        } catch (SQLException e) {
+            throw new IllegalStateException("创建workerId协调表失败: " + tableName, e);
+        }
+    }
+
+    /**
+     * 停止心跳并释放租约
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        if (workerId < 0) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE " + tableName + " SET expire_time = CURRENT_TIMESTAMP WHERE worker_id = ? AND instance_id = ?")) {
+            update.setInt(1, workerId);
+            update.setString(2, instanceId);
+            update.executeUpdate();
+            StaticLog.info("worker id released: {}", workerId);
+        } catch (SQLException e) {
+            StaticLog.warn(e, "worker id release failed: {}", workerId);
+        }
+        workerId = -1;
+        validUntil = 0;
+    }
+}
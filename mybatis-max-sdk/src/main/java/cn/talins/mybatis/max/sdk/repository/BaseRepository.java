@@ -1,34 +1,91 @@
 package cn.talins.mybatis.max.sdk.repository;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.map.CaseInsensitiveMap;
+import cn.hutool.core.convert.Convert;
 import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import cn.hutool.log.StaticLog;
 import cn.talins.mybatis.max.api.IRepository;
+import cn.talins.mybatis.max.api.ILoadLease;
 import cn.talins.mybatis.max.api.IRepositoryHandler;
+import cn.talins.mybatis.max.api.IUnitOfWork;
 import cn.talins.mybatis.max.api.enums.Booleans;
+import cn.talins.mybatis.max.api.exception.VersionConflictException;
+import cn.talins.mybatis.max.api.exception.WriteCommittedException;
 import cn.talins.mybatis.max.api.pojo.BaseEntity;
+import cn.talins.mybatis.max.api.pojo.TableMetaData;
 import cn.talins.mybatis.max.sdk.CacheUtil;
 import cn.talins.mybatis.max.sdk.DynamicDataSource;
 import cn.talins.mybatis.max.sdk.DynamicMapperUtil;
+import cn.talins.mybatis.max.sdk.cache.CacheIndex;
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import cn.talins.mybatis.max.sdk.cache.CacheMode;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CacheWritePolicy;
+import cn.talins.mybatis.max.sdk.cache.CachedRow;
+import cn.talins.mybatis.max.sdk.cache.CountCache;
+import cn.talins.mybatis.max.sdk.cache.IdFilter;
+import cn.talins.mybatis.max.sdk.cache.QueryCache;
+import cn.talins.mybatis.max.sdk.cache.QueryCachePolicy;
+import cn.talins.mybatis.max.sdk.cache.RefreshAhead;
+import cn.talins.mybatis.max.sdk.cache.ReplicaQuery;
+import cn.talins.mybatis.max.sdk.cache.RowCodec;
+import cn.talins.mybatis.max.sdk.cache.SingleFlight;
+import cn.talins.mybatis.max.sdk.cache.SourceQueryWrapper;
+import cn.talins.mybatis.max.sdk.cache.StaleIfError;
+import cn.talins.mybatis.max.sdk.cache.TableReplica;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
 import cn.talins.mybatis.max.sdk.common.Constant;
 import cn.talins.mybatis.max.sdk.event.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import net.oschina.j2cache.CacheChannel;
 import net.oschina.j2cache.CacheObject;
 import net.oschina.j2cache.J2Cache;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionHolder;
+import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
+import java.lang.reflect.Field;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 基础数据仓库实现类 - IRepository接口的核心实现
@@ -61,9 +118,16 @@ import java.util.stream.Collectors;
  *     <li>更新时：更新缓存中的记录</li>
  *     <li>删除时：从缓存中移除记录</li>
  *     <li>查询时：优先从缓存读取</li>
+ *     <li>开启降级读取时：回源查询失败或超时，返回缓存中未超过最大陈旧时间的旧值</li>
  * </ul>
  * </p>
  * 
+ * <p>
+ * 工作单元：
+ * 配置了SqlSessionFactory和事务管理器后支持{@link #inTransaction}，
+ * 登记的写操作在同一个事务中以JDBC批处理刷新，提交后统一更新缓存并发布后置事件。
+ * </p>
+ * 
  * @author talins
  * @see IRepository 接口定义
  * @see DataPermissionRepository 带数据权限的仓库实现
@@ -77,11 +141,58 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
      */
     private final IRepositoryHandler repositoryHandler;
 
+    /**
+     * 缓存记录累加时使用的分段锁
+     */
+    private static final Object[] CACHE_LOCKS = new Object[64];
+
+    /**
+     * 主键过滤器构建时每批扫描的ID数量
+     */
+    private static final int ID_SCAN_BATCH_SIZE = 5000;
+
+    /**
+     * 缓存后台任务线程，用于延迟加载缓存和构建主键过滤器
+     */
+    private static final ExecutorService CACHE_EXECUTOR = Executors.newSingleThreadExecutor(
+            ThreadUtil.newNamedThreadFactory("mybatis-max-cache-", true));
+
+    static {
+        for (int i = 0; i < CACHE_LOCKS.length; i++) {
+            CACHE_LOCKS[i] = new Object();
+        }
+    }
+
     /**
      * Spring事件发布器，用于发布实体操作事件
      */
     private ApplicationEventPublisher publisher;
 
+    /**
+     * 批处理会话，用于刷新工作单元
+     */
+    private SqlSessionTemplate batchSqlSession;
+
+    /**
+     * 事务模板，用于刷新工作单元
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 合并同一缓存键或区域上的并发加载
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 提前刷新，热点记录过期前在后台重新加载
+     */
+    private final RefreshAhead refreshAhead = new RefreshAhead();
+
+    /**
+     * 降级读取，数据库出错或超时时返回旧值
+     */
+    private final StaleIfError staleIfError = new StaleIfError();
+
     /**
      * 构造函数
      * 
@@ -102,11 +213,17 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
             mapper.insert(baseEntity);
+            putIdFilter(tableName, Collections.singletonList(baseEntity.getId()));
             if(CacheUtil.exists(tableName)) {
-                CacheUtil.set(tableName, String.valueOf(baseEntity.getId()),
-                        JSONUtil.parseObj(baseEntity));
-                StaticLog.info("cache insert: {} {}", tableName, baseEntity.getId());
+                JSONObject json = JSONUtil.parseObj(baseEntity);
+                CacheUtil.set(tableName, String.valueOf(baseEntity.getId()), json);
+                index(tableName).put(baseEntity.getId(), json);
+                if(CacheMetrics.sampleLog()) {
+                    StaticLog.debug("cache insert: {} {}", tableName, baseEntity.getId());
+                }
             }
+            bumpVersion(tableName);
+            adjustCount(tableName, 1);
             publisher.publishEvent(new EntityInsertEvent(tableName, baseEntity, Booleans.FALSE.getValue()));
             return baseEntity.getId();
         } finally {
@@ -125,10 +242,24 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
+            List<Long> affectedIdList = CacheUtil.exists(tableName)
+                    ? selectAffectedIds(tableName, mapper, queryWrapper) : null;
             int count = mapper.delete(queryWrapper);
             if(CacheUtil.exists(tableName)) {
-                refreshCache(tableName);
+                if(affectedIdList == null) {
+                    reloadCache(tableName);
+                } else if(!affectedIdList.isEmpty()) {
+                    CacheUtil.remove(tableName, affectedIdList.stream()
+                            .map(String::valueOf).toArray(String[]::new));
+                    index(tableName).remove(affectedIdList);
+                    if(CacheMetrics.sampleLog()) {
+                        StaticLog.debug("cache evict: {} {}", tableName, affectedIdList.size());
+                    }
+                }
             }
+            bumpVersion(tableName);
+            adjustCount(tableName, -count);
+            recordIdDelete(tableName, count);
             publisher.publishEvent(new EntityDeleteEvent(tableName, queryWrapper, Booleans.FALSE.getValue()));
             return count;
         } finally {
@@ -138,17 +269,45 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
         }
     }
 
+    /**
+     * 写操作后重载整个缓存区域
+     * <p>
+     * 立即清空区域，使后续读取回源数据库；重载在事务提交后由后台线程执行，
+     * 写线程不会等待其他节点的加载租约，重载失败也不会让已提交的写操作抛出异常。
+     * </p>
+     * 
+     * @param tableName 表名
+     */
+    private void reloadCache(String tableName) {
+        if(J2Cache.getChannel() == null) {
+            return;
+        }
+        CacheUtil.clear(tableName);
+        runAfterCommit(() -> CACHE_EXECUTOR.execute(StaleIfError.wrap(() -> {
+            try {
+                refreshCache(tableName);
+            } catch (Exception e) {
+                StaticLog.warn(e, "cache reload failed: {}", tableName);
+            }
+        })));
+    }
+
     private void refreshCache(String tableName) {
         CacheChannel cache = J2Cache.getChannel();
         if(cache == null) {
             return;
         }
-        cache.clear(tableName);
-        Map<String, Object> cacheMap = selectList(tableName,
-                Wrappers.query(JSONObject.class)).stream()
-                .collect(Collectors.toMap(item -> item.getStr("id"), item -> item));
-        cache.set(tableName, cacheMap);
-        StaticLog.info("cache refresh: {}", tableName);
+        // 并发的全表重载合并为一次
+        singleFlight.refresh(tableName, () -> {
+            long start = System.nanoTime();
+            CacheUtil.clear(tableName);
+            Map<String, Object> cacheMap = selectCacheRows(tableName,
+                    Wrappers.query(JSONObject.class)).stream()
+                    .collect(Collectors.toMap(item -> item.getStr("id"), item -> item));
+            CacheUtil.set(tableName, cacheMap);
+            CacheMetrics.of(tableName).recordRefresh(System.nanoTime() - start);
+            StaticLog.info("cache refresh: {} {}", tableName, cacheMap.size());
+        });
     }
 
     @Override
@@ -163,8 +322,14 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
             if(CacheUtil.exists(tableName)) {
                 CacheUtil.remove(tableName, idList.stream()
                         .map(String::valueOf).toArray(String[]::new));
-                StaticLog.info("cache evict: {}", tableName);
+                index(tableName).remove(idList);
+                if(CacheMetrics.sampleLog()) {
+                    StaticLog.debug("cache evict: {}", tableName);
+                }
             }
+            bumpVersion(tableName);
+            adjustCount(tableName, -count);
+            recordIdDelete(tableName, count);
             publisher.publishEvent(new EntityDeleteBatchEvent(tableName, idList, Booleans.FALSE.getValue()));
             return count;
         } finally {
@@ -186,12 +351,11 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
             int count = mapper.updateById(baseEntity);
-            if(CacheUtil.exists(tableName)) {
-                Long id = baseEntity.getId();
-                CacheUtil.set(tableName, String.valueOf(id), selectList(tableName,
-                        Wrappers.query(JSONObject.class).eq("id", id)).get(0));
-                StaticLog.info("cache update: {} {}", tableName, id);
+            if(count > 0 && CacheUtil.exists(tableName)) {
+                updateCache(tableName, Collections.singletonList(baseEntity), false);
             }
+            bumpVersion(tableName);
+            invalidateCount(tableName, baseEntity);
             publisher.publishEvent(new EntityUpdateByIdEvent(tableName, entity, Booleans.FALSE.getValue()));
             return count;
         } finally {
@@ -202,22 +366,35 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
     }
 
     @Override
-    public <T> int update(String tableName, T entity, QueryWrapper<T> updateWrapper) {
+    public <T> Long updateByIdWithVersion(String tableName, T entity) {
         try {
             BaseEntity baseEntity = BeanUtil.toBean(entity, DynamicMapperUtil.getLoaderClass(tableName));
-            BaseMapper mapper = repositoryHandler.getMapper(tableName);
+            Long id = baseEntity.getId();
+            Long expectedVersion = baseEntity.getVersion();
+            Assert.notNull(id, "entity没有id");
+            Assert.notNull(expectedVersion, "entity没有version");
+            BaseMapper<BaseEntity> mapper = repositoryHandler.getMapper(tableName);
+            // 清空版本号，由处理器分配新版本
+            baseEntity.setVersion(null);
             repositoryHandler.fillUpdateEntity(baseEntity);
-            updateWrapper.eq("normal", Booleans.TRUE.getValue());
-            publisher.publishEvent(new EntityUpdateEvent(tableName, entity, updateWrapper, Booleans.TRUE.getValue()));
+            publisher.publishEvent(new EntityUpdateByIdEvent(tableName, entity, Booleans.TRUE.getValue()));
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
-            int count = mapper.update(baseEntity, updateWrapper);
+            int count = mapper.update(baseEntity, Wrappers.<BaseEntity>query()
+                    .eq("id", id)
+                    .eq("version", expectedVersion)
+                    .eq("normal", Booleans.TRUE.getValue()));
+            if(count == 0) {
+                throw new VersionConflictException(tableName, id, expectedVersion);
+            }
             if(CacheUtil.exists(tableName)) {
-                refreshCache(tableName);
+                updateCache(tableName, Collections.singletonList(baseEntity), false);
             }
-            publisher.publishEvent(new EntityUpdateEvent(tableName, entity, updateWrapper, Booleans.FALSE.getValue()));
-            return count;
+            bumpVersion(tableName);
+            invalidateCount(tableName, baseEntity);
+            publisher.publishEvent(new EntityUpdateByIdEvent(tableName, entity, Booleans.FALSE.getValue()));
+            return baseEntity.getVersion();
         } finally {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.poll();
@@ -225,28 +402,299 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
         }
     }
 
-    @Override
-    public <T> List<T> selectBatchIds(String tableName, Collection<Long> idList, Class<T> clazz) {
+    /**
+     * 根据表的缓存写策略维护已按ID更新的记录
+     * 
+     * @param tableName 表名
+     * @param updatedList 已更新的实体（只包含本次更新的字段和公共字段）
+     * @param committed 更新是否已提交，未提交时延迟加载等到事务提交后再执行
+     * @see CacheWritePolicy 缓存写策略
+     */
+    private void updateCache(String tableName, List<BaseEntity> updatedList, boolean committed) {
+        List<Long> idList = updatedList.stream().map(BaseEntity::getId).collect(Collectors.toList());
+        CacheIndex index = index(tableName);
+        updatedList.forEach(baseEntity -> index.put(baseEntity.getId(), JSONUtil.parseObj(baseEntity)));
+        switch (CacheUtil.getPolicy(tableName).getWritePolicy()) {
+            case WRITE_THROUGH:
+                List<Long> missingIdList = new ArrayList<>();
+                for (BaseEntity baseEntity : updatedList) {
+                    if(!mergeCache(tableName, baseEntity)) {
+                        missingIdList.add(baseEntity.getId());
+                    }
+                }
+                refreshCache(tableName, missingIdList);
+                if(CacheMetrics.sampleLog()) {
+                    StaticLog.debug("cache write through: {} {}", tableName, updatedList.size());
+                }
+                break;
+            case INVALIDATE:
+                CacheUtil.remove(tableName, idList.stream().map(String::valueOf).toArray(String[]::new));
+                if(CacheMetrics.sampleLog()) {
+                    StaticLog.debug("cache evict: {} {}", tableName, idList.size());
+                }
+                break;
+            case DEFERRED_RELOAD:
+                CacheUtil.remove(tableName, idList.stream().map(String::valueOf).toArray(String[]::new));
+                Runnable reload = () -> CACHE_EXECUTOR.execute(StaleIfError.wrap(() -> {
+                    try {
+                        refreshCache(tableName, idList);
+                    } catch (Exception e) {
+                        StaticLog.warn(e, "cache deferred reload failed: {}", tableName);
+                    }
+                }));
+                if(committed) {
+                    reload.run();
+                } else {
+                    runAfterCommit(reload);
+                }
+                break;
+            default:
+                refreshCache(tableName, idList);
+        }
+    }
+
+    /**
+     * 将更新的非空字段合并到已缓存的记录中
+     * 
+     * @param tableName 表名
+     * @param baseEntity 已更新的实体
+     * @return 缓存中存在该记录并完成合并时返回true
+     */
+    private boolean mergeCache(String tableName, BaseEntity baseEntity) {
+        String key = String.valueOf(baseEntity.getId());
+        synchronized (cacheLock(tableName, key)) {
+            Object cached = CacheUtil.get(tableName, key);
+            if(!(cached instanceof JSONObject)) {
+                return false;
+            }
+            JSONObject json = new JSONObject(cached);
+            json.putAll(JSONUtil.parseObj(baseEntity));
+            CacheUtil.set(tableName, key, json);
+            return true;
+        }
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * 
+     * @param action 要执行的操作
+     */
+    private void runAfterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 递增表的写版本号，处于事务中时在提交后递增
+     * 
+     * @param tableName 表名
+     * @see TableVersions 表写版本号
+     */
+    private void bumpVersion(String tableName) {
+        runAfterCommit(() -> {
+            long version = TableVersions.bump(tableName);
+            refreshReplica(tableName, version);
+        });
+    }
+
+    /**
+     * 在后台重建表的内存副本，连续的写操作只安排一次重建
+     * 
+     * @param tableName 表名
+     * @param version 写操作提交后的本地写版本号，当前线程之后的读取等待包含该写操作的快照
+     * @see TableReplica 表的内存副本
+     */
+    private void refreshReplica(String tableName, long version) {
+        TableReplica replica = TableReplica.get(tableName);
+        if(replica == null) {
+            return;
+        }
+        replica.markWritten(version);
+        if(!replica.markRefreshPending()) {
+            return;
+        }
+        Class<? extends BaseEntity> entityClass = DynamicMapperUtil.getLoaderClass(tableName);
+        CACHE_EXECUTOR.execute(StaleIfError.wrap(
+                () -> replica.refresh(entityClass, () -> selectReplicaRows(tableName))));
+    }
+
+    /**
+     * 获取可以计算该查询的内存副本快照
+     * <p>
+     * 只有REPLICA模式的表、由Query转换且之后没有被修改（如附加行级数据权限）的查询、
+     * 不在事务中时使用内存副本；快照过期时在后台重建，早于当前线程提交的写操作时在当前线程重建。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param queryWrapper 查询条件
+     * @return 快照，不能使用内存副本时返回null
+     */
+    private TableReplica.Snapshot replicaSnapshot(String tableName, QueryWrapper<?> queryWrapper) {
+        CachePolicy policy = CacheUtil.getPolicy(tableName);
+        if(policy == null || policy.getMode() != CacheMode.REPLICA
+                || !(queryWrapper instanceof SourceQueryWrapper)
+                || !((SourceQueryWrapper<?>) queryWrapper).isSealed()
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        Class<? extends BaseEntity> entityClass = DynamicMapperUtil.getLoaderClass(tableName);
+        return TableReplica.of(tableName, policy.getReplicaMaxAge() * 1000, policy.isReplicaCaseSensitive())
+                .get(entityClass, () -> selectReplicaRows(tableName),
+                        task -> CACHE_EXECUTOR.execute(StaleIfError.wrap(task)));
+    }
+
+    /**
+     * 加载内存副本的记录
+     * 
+     * @param tableName 表名
+     * @return 表中所有有效记录，按ID升序
+     */
+    private List<JSONObject> selectReplicaRows(String tableName) {
+        return selectCacheRows(tableName, Wrappers.query(JSONObject.class).orderByAsc("id"));
+    }
+
+    /**
+     * 按插入或删除的行数调整缓存的全表行数，处于事务中时在提交后调整
+     * 
+     * @param tableName 表名
+     * @param delta 行数变化
+     * @see CountCache#adjust 调整全表行数
+     */
+    private void adjustCount(String tableName, long delta) {
+        if(delta != 0 && CountCache.exists(tableName)) {
+            runAfterCommit(() -> CountCache.adjust(tableName, delta));
+        }
+    }
+
+    /**
+     * 更新修改了normal字段（逻辑删除或恢复）时丢弃缓存的全表行数，处于事务中时在提交后丢弃
+     * <p>
+     * 更新不调整全表行数，而修改normal会改变有效记录数，且影响行数中不包含原来的normal值。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param baseEntity 更新的实体
+     * @see CountCache#invalidateTotal 丢弃全表行数
+     */
+    private void invalidateCount(String tableName, BaseEntity baseEntity) {
+        if(baseEntity.getNormal() != null && CountCache.exists(tableName)) {
+            runAfterCommit(() -> CountCache.invalidateTotal(tableName));
+        }
+    }
+
+    /**
+     * 记录删除的行数，删除过多时主键过滤器需要重建
+     * 
+     * @param tableName 表名
+     * @param count 删除的行数
+     */
+    private void recordIdDelete(String tableName, long count) {
+        IdFilter idFilter = IdFilter.get(tableName);
+        if(idFilter != null) {
+            idFilter.recordDelete(count);
+        }
+    }
+
+    /**
+     * 获取缓存记录的分段锁
+     * 
+     * @param tableName 表名
+     * @param key 缓存键
+     * @return 锁对象
+     */
+    private static Object cacheLock(String tableName, String key) {
+        return CACHE_LOCKS[(tableName.hashCode() * 31 + key.hashCode()) & (CACHE_LOCKS.length - 1)];
+    }
+
+    /**
+     * 重新加载指定记录的缓存
+     * <p>
+     * 使用一次IN查询批量加载，查询不到的记录（如已被逻辑删除）从缓存中移除。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param idList 需要重新加载的ID列表
+     */
+    private void refreshCache(String tableName, Collection<Long> idList) {
+        if(idList.isEmpty()) {
+            return;
+        }
+        Map<String, Object> cacheMap = loadCache(tableName, idList);
+        String[] missingKeys = idList.stream().map(String::valueOf)
+                .filter(key -> !cacheMap.containsKey(key)).toArray(String[]::new);
+        if(missingKeys.length > 0) {
+            CacheUtil.remove(tableName, missingKeys);
+            index(tableName).remove(Arrays.stream(missingKeys).map(Long::valueOf).collect(Collectors.toList()));
+        }
+        if(CacheMetrics.sampleLog()) {
+            StaticLog.debug("cache update: {} {}", tableName, idList.size());
+        }
+    }
+
+    /**
+     * 从数据库加载缓存中缺失的记录并批量回填
+     * <p>
+     * 使用一次IN查询加载，数据库中不存在的记录不写入缓存。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param idList 缓存未命中的ID列表
+     * @return 缓存键 -> 记录
+     */
+    private Map<String, Object> loadCache(String tableName, Collection<Long> idList) {
+        long start = System.nanoTime();
+        Map<String, Object> loadedMap = selectCacheRows(tableName,
+                Wrappers.query(JSONObject.class).in("id", idList)).stream()
+                .collect(Collectors.toMap(item -> item.getStr("id"), item -> item));
+        CacheUtil.set(tableName, loadedMap);
+        CacheIndex index = index(tableName);
+        loadedMap.forEach((key, row) -> index.put(Long.valueOf(key), (JSONObject) row));
+        CacheMetrics.of(tableName).recordLoad(loadedMap.size(), System.nanoTime() - start);
+        if(CacheMetrics.sampleLog()) {
+            StaticLog.debug("cache load: {} {}/{}", tableName, loadedMap.size(), idList.size());
+        }
+        return loadedMap;
+    }
+
+    /**
+     * 查询用于填充缓存的记录
+     * <p>
+     * 直接通过Mapper查询，不经过查询结果缓存，也不受子类附加的数据权限影响。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param queryWrapper 查询条件
+     * @return 记录列表
+     */
+    private List<JSONObject> selectCacheRows(String tableName, QueryWrapper<JSONObject> queryWrapper) {
+        return selectCacheRows(tableName, null, queryWrapper);
+    }
+
+    /**
+     * 分页查询用于填充缓存的记录
+     * 
+     * @param tableName 表名
+     * @param page 分页参数，为null时不分页
+     * @param queryWrapper 查询条件
+     * @return 记录列表
+     */
+    private List<JSONObject> selectCacheRows(String tableName, IPage<JSONObject> page, QueryWrapper<JSONObject> queryWrapper) {
         try {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
-            if(!CacheUtil.exists(tableName)) {
-                return selectList(tableName, Wrappers.query(clazz).in("id", idList));
-            }
-            CacheChannel cache = J2Cache.getChannel();
-            if(cache == null) {
-                return selectList(tableName, Wrappers.query(clazz).in("id", idList));
-            }
-            Map<String, CacheObject> cacheMap = cache.get(tableName, idList.stream().map(String::valueOf).collect(Collectors.toList()));
-            return idList.stream().map(id -> {
-                CacheObject cacheObject = cacheMap.get(String.valueOf(id));
-                if(cacheObject == null) {
-                    return null;
-                }
-                StaticLog.info("cache get: {} {}", tableName, id);
-                return JSONUtil.toBean((JSONObject) cacheObject.getValue(), clazz);
-            }).collect(Collectors.toList());
+            BaseMapper mapper = repositoryHandler.getMapper(tableName);
+            queryWrapper.eq("normal", Booleans.TRUE.getValue());
+            List rowList = page == null ? mapper.selectList(queryWrapper) : mapper.selectList(page, queryWrapper);
+            return BeanUtil.copyToList(rowList, JSONObject.class);
         } finally {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.poll();
@@ -254,30 +702,56 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
         }
     }
 
+    /**
+     * 在条件写操作执行前查询受影响的记录ID
+     * <p>
+     * 复制写操作的条件，只查询id列，最多返回阈值+1条。
+     * 超过缓存策略的全表重载阈值时返回null，由调用方退化为全表重载。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param mapper 表对应的Mapper
+     * @param queryWrapper 写操作的条件
+     * @return 受影响的ID列表，超过阈值时返回null
+     */
+    private List<Long> selectAffectedIds(String tableName, BaseMapper mapper, QueryWrapper<?> queryWrapper) {
+        int threshold = CacheUtil.getPolicy(tableName).getFullReloadThreshold();
+        QueryWrapper<?> idWrapper = queryWrapper.clone().select("id");
+        List<Map<String, Object>> rowList = threshold < 0 ? mapper.selectMaps(idWrapper)
+                : mapper.selectMaps(new Page<Map<String, Object>>(1, threshold + 1L, false), idWrapper);
+        if(threshold >= 0 && rowList.size() > threshold) {
+            return null;
+        }
+        // 只有一列，不依赖数据库返回的列名大小写
+        return rowList.stream().map(row -> Convert.toLong(row.values().iterator().next()))
+                .collect(Collectors.toList());
+    }
+
     @Override
-    public <T> List<T> selectByMap(String tableName, Map<String, Object> columnMap, Class<T> clazz) {
+    public <T> int update(String tableName, T entity, QueryWrapper<T> updateWrapper) {
         try {
+            BaseEntity baseEntity = BeanUtil.toBean(entity, DynamicMapperUtil.getLoaderClass(tableName));
+            BaseMapper mapper = repositoryHandler.getMapper(tableName);
+            repositoryHandler.fillUpdateEntity(baseEntity);
+            updateWrapper.eq("normal", Booleans.TRUE.getValue());
+            publisher.publishEvent(new EntityUpdateEvent(tableName, entity, updateWrapper, Booleans.TRUE.getValue()));
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
-            if(!CacheUtil.exists(tableName)) {
-                return IRepository.super.selectByMap(tableName, columnMap, clazz);
-            }
-            CacheChannel cache = J2Cache.getChannel();
-            if(cache == null) {
-                return IRepository.super.selectByMap(tableName, columnMap, clazz);
-            }
-            Map<String, CacheObject> cacheMap = cache.get(tableName, cache.keys(tableName));
-            StaticLog.info("cache get all: {}", tableName);
-            return cacheMap.values().stream().filter(item -> {
-                JSONObject json = (JSONObject) item.getValue();
-                for (Map.Entry<String, Object> entry : columnMap.entrySet()) {
-                    if (!json.get(entry.getKey()).equals(entry.getValue())) {
-                        return false;
-                    }
+            List<Long> affectedIdList = CacheUtil.exists(tableName)
+                    ? selectAffectedIds(tableName, mapper, updateWrapper) : null;
+            int count = mapper.update(baseEntity, updateWrapper);
+            if(CacheUtil.exists(tableName)) {
+                if(affectedIdList == null) {
+                    reloadCache(tableName);
+                } else {
+                    refreshCache(tableName, affectedIdList);
                 }
-                return true;
-            }).map(item -> JSONUtil.toBean((JSONObject) item.getValue(), clazz)).collect(Collectors.toList());
+            }
+            bumpVersion(tableName);
+            invalidateCount(tableName, baseEntity);
+            publisher.publishEvent(new EntityUpdateEvent(tableName, entity, updateWrapper, Booleans.FALSE.getValue()));
+            return count;
         } finally {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.poll();
@@ -286,14 +760,50 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
     }
 
     @Override
-    public <T> Long selectCount(String tableName, QueryWrapper<T> queryWrapper) {
+    public <T> List<T> selectBatchIds(String tableName, Collection<Long> idList, Class<T> clazz) {
         try {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
-            BaseMapper mapper = repositoryHandler.getMapper(tableName);
-            queryWrapper.eq("normal", Booleans.TRUE.getValue());
-            return mapper.selectCount(queryWrapper);
+            IdFilter idFilter = idFilter(tableName);
+            Set<Long> verifySet = Collections.emptySet();
+            if(idFilter != null) {
+                List<Long> distinctList = idList.stream().distinct().collect(Collectors.toList());
+                List<Long> passedList = new ArrayList<>(distinctList.size());
+                Set<Long> rejectedSet = new HashSet<>();
+                for (Long id : distinctList) {
+                    if(idFilter.mightContain(id)) {
+                        passedList.add(id);
+                    } else {
+                        rejectedSet.add(id);
+                    }
+                }
+                if(!rejectedSet.isEmpty() && !idFilter.isRejectionTrusted()) {
+                    // 过滤器构建后其他节点写入过该表，被拦截的ID可能是其他节点新插入的，与其他ID一起按请求的顺序查询确认
+                    verifySet = rejectedSet;
+                    passedList = distinctList;
+                }
+                idList = passedList;
+                if(idList.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+            CacheChannel cache = CacheUtil.exists(tableName) ? J2Cache.getChannel() : null;
+            if(cache == null) {
+                List<T> resultList = selectList(tableName, Wrappers.query(clazz).in("id", idList));
+                if(idFilter != null) {
+                    recordIdFilter(idFilter, idList.size(), verifySet, resultList.stream()
+                            .map(row -> Convert.toLong(BeanUtil.getFieldValue(row, "id"))));
+                }
+                return resultList;
+            }
+            List<JSONObject> rowList = getCachedRows(cache, tableName, idList);
+            if(idFilter != null) {
+                recordIdFilter(idFilter, idList.size(), verifySet, rowList.stream().map(row -> row.getLong("id")));
+            }
+            return rowList.stream()
+                    .map(row -> JSONUtil.toBean(row, clazz))
+                    .collect(Collectors.toList());
         } finally {
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.poll();
@@ -301,23 +811,1202 @@ public class BaseRepository implements IRepository, ApplicationEventPublisherAwa
         }
     }
 
-    @Override
-    public <T> List<T> selectList(String tableName, IPage<T> page, QueryWrapper<T> queryWrapper) {
+    /**
+     * 按查询结果更新主键过滤器：确认存在的被拦截ID写入过滤器，通过过滤器但不存在的ID计为误判
+     * 
+     * @param idFilter 主键过滤器
+     * @param queried 查询的ID数量
+     * @param verifySet 被拦截后到数据库确认的ID
+     * @param foundIds 查询到的记录ID
+     */
+    private void recordIdFilter(IdFilter idFilter, int queried, Set<Long> verifySet, Stream<Long> foundIds) {
+        long found = 0;
+        long verified = 0;
+        for (Long id : (Iterable<Long>) foundIds::iterator) {
+            found++;
+            if(verifySet.contains(id)) {
+                idFilter.put(id);
+                verified++;
+            }
+        }
+        idFilter.recordFalsePositive((queried - verifySet.size()) - (found - verified));
+    }
+
+    /**
+     * 获取表的主键过滤器，尚未构建或需要重建时提交到后台构建
+     * 
+     * @param tableName 表名
+     * @return 主键过滤器，未开启时返回null
+     */
+    private IdFilter idFilter(String tableName) {
+        IdFilter idFilter = IdFilter.get(tableName);
+        if(idFilter != null && idFilter.schedule()) {
+            try {
+                CACHE_EXECUTOR.execute(StaleIfError.wrap(() -> buildIdFilter(tableName, idFilter)));
+            } catch (RuntimeException e) {
+                idFilter.cancelSchedule();
+                throw e;
+            }
+        }
+        return idFilter;
+    }
+
+    /**
+     * 构建主键过滤器
+     * <p>
+     * 先统计行数确定容量，再按ID顺序分批扫描未删除记录的ID写入过滤器。
+     * 构建失败时保留旧的过滤器，下次查询时重试。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param idFilter 主键过滤器
+     */
+    private void buildIdFilter(String tableName, IdFilter idFilter) {
         try {
+            if(!idFilter.needsBuild()) {
+                return;
+            }
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
             }
             BaseMapper mapper = repositoryHandler.getMapper(tableName);
-            queryWrapper.eq("normal", Booleans.TRUE.getValue());
-            List<T> list = mapper.selectList(page, queryWrapper);
-            return BeanUtil.copyToList(list, queryWrapper.getEntityClass());
+            long rowCount = mapper.selectCount(Wrappers.query().eq("normal", Booleans.TRUE.getValue()));
+            long start = System.currentTimeMillis();
+            if(idFilter.build(rowCount, sink -> scanIds(mapper, sink))) {
+                StaticLog.info("id filter build: {} rows={} capacity={} fpp={} {}ms", tableName, rowCount,
+                        idFilter.getExpectedInsertions(), idFilter.getExpectedFpp(), System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            StaticLog.warn(e, "id filter build failed: {}", tableName);
         } finally {
+            idFilter.cancelSchedule();
             if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
                 DynamicDataSource.poll();
             }
         }
     }
 
+    /**
+     * 预热表缓存
+     * <p>
+     * 按ID顺序分批加载未删除的记录写入缓存区域，每批从上一批的最大ID之后开始，
+     * 不使用OFFSET，也不会一次性把整张表读入内存。表未开启缓存时不做任何操作。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param chunkSize 每批加载的记录数
+     * @param progress 进度回调，参数为已加载的记录数
+     * @return 加载的记录数
+     * @see CacheWarmer 并行预热多张表
+     */
+    public long warmUpCache(String tableName, int chunkSize, LongConsumer progress) {
+        Assert.isTrue(chunkSize > 0, "每批加载的记录数必须大于0");
+        if(!CacheUtil.exists(tableName)) {
+            return 0;
+        }
+        CacheIndex index = index(tableName);
+        long loaded = 0;
+        Long lastId = null;
+        while (true) {
+            List<JSONObject> rowList = selectCacheRows(tableName, new Page<>(1, chunkSize, false),
+                    Wrappers.query(JSONObject.class).gt(lastId != null, "id", lastId).orderByAsc("id"));
+            Map<String, Object> cacheMap = new LinkedHashMap<>(rowList.size() * 4 / 3 + 1);
+            for (JSONObject row : rowList) {
+                cacheMap.put(row.getStr("id"), row);
+                index.put(row.getLong("id"), row);
+            }
+            CacheUtil.set(tableName, cacheMap);
+            loaded += rowList.size();
+            if(!rowList.isEmpty()) {
+                lastId = rowList.get(rowList.size() - 1).getLong("id");
+                progress.accept(loaded);
+            }
+            if(rowList.size() < chunkSize) {
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * 立即构建表的主键过滤器，未开启或已构建时不做任何操作
+     * 
+     * @param tableName 表名
+     * @see IdFilter 主键过滤器
+     */
+    public void warmUpIdFilter(String tableName) {
+        IdFilter idFilter = IdFilter.get(tableName);
+        if(idFilter != null) {
+            buildIdFilter(tableName, idFilter);
+        }
+    }
+
+    /**
+     * 按ID顺序分批扫描未删除记录的ID，每批从上一批的最大ID之后开始，不使用OFFSET
+     * 
+     * @param mapper 表对应的Mapper
+     * @param sink ID消费者
+     */
+    private void scanIds(BaseMapper mapper, LongConsumer sink) {
+        Long lastId = null;
+        while (true) {
+            QueryWrapper<?> idWrapper = Wrappers.query().select("id")
+                    .eq("normal", Booleans.TRUE.getValue())
+                    .gt(lastId != null, "id", lastId)
+                    .orderByAsc("id");
+            List<Map<String, Object>> rowList = mapper.selectMaps(
+                    new Page<Map<String, Object>>(1, ID_SCAN_BATCH_SIZE, false), idWrapper);
+            for (Map<String, Object> row : rowList) {
+                lastId = Convert.toLong(row.values().iterator().next());
+                sink.accept(lastId);
+            }
+            if(rowList.size() < ID_SCAN_BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按ID从缓存读取记录，未命中的记录通过一次IN查询加载并回填缓存
+     * 
+     * @param cache 缓存通道
+     * @param tableName 表名
+     * @param idList 主键ID列表
+     * @return 按idList顺序排列的记录，不存在的记录不包含在结果中
+     */
+    private List<JSONObject> getCachedRows(CacheChannel cache, String tableName, Collection<Long> idList) {
+        long start = System.nanoTime();
+        Map<String, CacheObject> cacheMap = cache.get(tableName, idList.stream().map(String::valueOf).collect(Collectors.toList()));
+        Map<String, Object> rowMap = new HashMap<>(cacheMap.size());
+        List<Long> missingIdList = new ArrayList<>();
+        int l1Hit = 0;
+        CachePolicy policy = CacheUtil.getPolicy(tableName);
+        boolean refreshAheadEnabled = policy != null && policy.getRefreshAhead() > 0;
+        boolean staleEnabled = policy != null && policy.getMaxStaleness() > 0
+                && !TransactionSynchronizationManager.isActualTransactionActive();
+        long now = System.currentTimeMillis();
+        List<Long> dueIdList = null;
+        Map<String, CachedRow> staleMap = null;
+        for (Long id : idList) {
+            String key = String.valueOf(id);
+            CacheObject cacheObject = cacheMap.get(key);
+            Object row = cacheObject == null ? null : RowCodec.unwrap(cacheObject.getValue());
+            if(row == null) {
+                missingIdList.add(id);
+                if(staleEnabled && cacheObject != null && cacheObject.getValue() instanceof CachedRow
+                        && StaleIfError.isServable((CachedRow) cacheObject.getValue(), policy, now)) {
+                    if(staleMap == null) {
+                        staleMap = new HashMap<>();
+                    }
+                    staleMap.put(key, (CachedRow) cacheObject.getValue());
+                }
+            } else {
+                rowMap.put(key, row);
+                if(cacheObject.getLevel() == CacheObject.LEVEL_1) {
+                    l1Hit++;
+                }
+                if(refreshAheadEnabled && cacheObject.getValue() instanceof CachedRow
+                        && RefreshAhead.isDue((CachedRow) cacheObject.getValue(), policy, now)) {
+                    if(dueIdList == null) {
+                        dueIdList = new ArrayList<>();
+                    }
+                    dueIdList.add(id);
+                }
+            }
+        }
+        CacheMetrics.of(tableName).recordGet(l1Hit, rowMap.size() - l1Hit, missingIdList.size(),
+                System.nanoTime() - start);
+        if(dueIdList != null) {
+            // 即将过期的热点记录在后台重新加载，本次读取照常返回当前的值
+            revalidate(tableName, dueIdList);
+        }
+        if(!missingIdList.isEmpty()) {
+            rowMap.putAll(loadMissing(tableName, policy, missingIdList, staleMap));
+        }
+        if(CacheMetrics.sampleLog()) {
+            StaticLog.debug("cache get: {} hit={} miss={}", tableName,
+                    idList.size() - missingIdList.size(), missingIdList.size());
+        }
+        return idList.stream().map(id -> (JSONObject) rowMap.get(String.valueOf(id)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 加载缓存中缺失或已过期的记录
+     * <p>
+     * 这些记录都存在未超过最大陈旧时间的旧记录时，回源查询失败、超过耗时预算或数据源处于降级状态时
+     * 返回旧记录，并在当前线程记录陈旧时间；否则照常查询数据库。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param policy 表的缓存策略
+     * @param missingIdList 缓存中缺失或已过期的ID
+     * @param staleMap 缓存键 -> 可以返回的旧记录，没有时为null
+     * @return 缓存键 -> 记录
+     * @see StaleIfError 降级读取
+     */
+    private Map<String, Object> loadMissing(String tableName, CachePolicy policy, List<Long> missingIdList,
+                                            Map<String, CachedRow> staleMap) {
+        // 其他线程正在加载的记录直接等待其结果，不重复查询
+        Supplier<Map<String, Object>> loader = () -> singleFlight.loadAll(tableName,
+                missingIdList.stream().map(String::valueOf).collect(Collectors.toList()),
+                keys -> loadCache(tableName, keys.stream().map(Long::valueOf).collect(Collectors.toList())),
+                key -> CacheUtil.get(tableName, key));
+        if(staleMap == null || staleMap.size() < missingIdList.size()) {
+            return loader.get();
+        }
+        String dataSourceName = Constant.TABLE_DATASOURCE_MAP.getOrDefault(tableName, "");
+        if(staleIfError.isDegraded(dataSourceName)) {
+            if(staleIfError.tryProbe(dataSourceName)) {
+                revalidate(tableName, missingIdList);
+            }
+            return serveStale(staleMap);
+        }
+        try {
+            return staleIfError.load(loader, policy.getLoadTimeout());
+        } catch (TimeoutException e) {
+            StaticLog.warn("cache load timeout, serving stale rows: {} {}", tableName, staleMap.size());
+        } catch (RuntimeException e) {
+            staleIfError.markFailed(dataSourceName);
+            StaticLog.warn(e, "cache load failed, serving stale rows: {} {}", tableName, staleMap.size());
+        }
+        return serveStale(staleMap);
+    }
+
+    /**
+     * 返回旧记录，并在当前线程记录其中最大的陈旧时间
+     * 
+     * @param staleMap 缓存键 -> 旧记录
+     * @return 缓存键 -> 记录
+     */
+    private Map<String, Object> serveStale(Map<String, CachedRow> staleMap) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> rowMap = new HashMap<>(staleMap.size());
+        long staleness = 0;
+        for (Map.Entry<String, CachedRow> entry : staleMap.entrySet()) {
+            rowMap.put(entry.getKey(), entry.getValue().getRow());
+            staleness = Math.max(staleness, now - entry.getValue().getExpireAt());
+        }
+        StaleIfError.markStale(staleness);
+        return rowMap;
+    }
+
+    /**
+     * 在后台重新加载记录，加载结果同时决定表所在数据源是否处于降级状态
+     * 
+     * @param tableName 表名
+     * @param idList 需要重新加载的ID
+     * @see RefreshAhead 提前刷新
+     */
+    private void revalidate(String tableName, Collection<Long> idList) {
+        String dataSourceName = Constant.TABLE_DATASOURCE_MAP.getOrDefault(tableName, "");
+        refreshAhead.submit(tableName, dataSourceName, idList, ids -> {
+            try {
+                refreshCache(tableName, ids);
+                staleIfError.markRecovered(dataSourceName);
+            } catch (RuntimeException e) {
+                staleIfError.markFailed(dataSourceName);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public <T> List<T> selectByMap(String tableName, Map<String, Object> columnMap, Class<T> clazz) {
+        try {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+            }
+            CachePolicy policy = CacheUtil.getPolicy(tableName);
+            if(policy == null) {
+                return IRepository.super.selectByMap(tableName, columnMap, clazz);
+            }
+            CacheChannel cache = J2Cache.getChannel();
+            if(cache == null) {
+                return IRepository.super.selectByMap(tableName, columnMap, clazz);
+            }
+            Map<String, Object> conditionMap = new LinkedHashMap<>();
+            columnMap.forEach((column, value) -> conditionMap.put(StrUtil.toCamelCase(column), value));
+            CacheIndex index = index(tableName);
+            if(usesIndex(index, conditionMap) && !index.sync(TableVersions.getRemoteWrites(tableName))) {
+                // 无法感知其他节点的写操作时索引可能遗漏记录
+                return IRepository.super.selectByMap(tableName, columnMap, clazz);
+            }
+            Set<Long> idSet = lookupIndex(index, conditionMap);
+            List<JSONObject> rowList;
+            if(idSet == null) {
+                // 只缓存了读取过的记录时，遍历缓存区域得到的结果不完整
+                if(policy.getMode() == CacheMode.READ_THROUGH) {
+                    return IRepository.super.selectByMap(tableName, columnMap, clazz);
+                }
+                Collection<String> keys = cache.keys(tableName);
+                if(keys.isEmpty()) {
+                    refreshCache(tableName);
+                    keys = cache.keys(tableName);
+                }
+                long start = System.nanoTime();
+                Map<String, CacheObject> cacheMap = cache.get(tableName, keys);
+                rowList = new ArrayList<>(cacheMap.size());
+                int l1Hit = 0;
+                for (CacheObject cacheObject : cacheMap.values()) {
+                    JSONObject row = (JSONObject) RowCodec.unwrap(cacheObject.getValue());
+                    if(row != null) {
+                        rowList.add(row);
+                        if(cacheObject.getLevel() == CacheObject.LEVEL_1) {
+                            l1Hit++;
+                        }
+                    }
+                }
+                CacheMetrics.of(tableName).recordGet(l1Hit, rowList.size() - l1Hit, 0, System.nanoTime() - start);
+                if(CacheMetrics.sampleLog()) {
+                    StaticLog.debug("cache get all: {} {}", tableName, rowList.size());
+                }
+            } else {
+                rowList = idSet.isEmpty() ? Collections.emptyList()
+                        : getCachedRows(cache, tableName, new TreeSet<>(idSet));
+            }
+            Class<? extends BaseEntity> entityClass = DynamicMapperUtil.getLoaderClass(tableName);
+            return rowList.stream().filter(row -> {
+                for (Map.Entry<String, Object> entry : conditionMap.entrySet()) {
+                    Field field = ReflectUtil.getField(entityClass, entry.getKey());
+                    Class<?> type = field == null ? Object.class : field.getType();
+                    if(!CacheIndex.equals(type, row.get(entry.getKey()), entry.getValue())) {
+                        return false;
+                    }
+                }
+                return true;
+            }).map(row -> JSONUtil.toBean(row, clazz)).collect(Collectors.toList());
+        } finally {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.poll();
+            }
+        }
+    }
+
+    /**
+     * 通过二级索引查找满足等值条件的候选ID
+     * <p>
+     * 条件中每个建立了索引且值不为null的字段查找一次，取交集。
+     * </p>
+     * 
+     * @param index 二级索引
+     * @param conditionMap 字段名（驼峰） -> 值
+     * @return 候选ID，条件中没有索引字段时返回null
+     */
+    private Set<Long> lookupIndex(CacheIndex index, Map<String, Object> conditionMap) {
+        Set<Long> idSet = null;
+        for (Map.Entry<String, Object> entry : conditionMap.entrySet()) {
+            if(entry.getValue() == null || !index.getColumns().contains(entry.getKey())) {
+                continue;
+            }
+            Set<Long> candidateSet = index.lookup(entry.getKey(), entry.getValue());
+            if(idSet == null) {
+                idSet = candidateSet;
+            } else {
+                idSet.retainAll(candidateSet);
+            }
+            if(idSet.isEmpty()) {
+                break;
+            }
+        }
+        return idSet;
+    }
+
+    /**
+     * 条件中是否有建立了索引且值不为null的字段
+     * 
+     * @param index 二级索引
+     * @param conditionMap 字段名（驼峰） -> 值
+     * @return 查询会使用索引时返回true
+     */
+    private boolean usesIndex(CacheIndex index, Map<String, Object> conditionMap) {
+        for (Map.Entry<String, Object> entry : conditionMap.entrySet()) {
+            if(entry.getValue() != null && index.getColumns().contains(entry.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取表的二级索引
+     * 
+     * @param tableName 表名
+     * @return 二级索引
+     */
+    private CacheIndex index(String tableName) {
+        CacheIndex index = CacheUtil.getIndex(tableName, this::createIndex);
+        return index == null ? createIndex(tableName) : index;
+    }
+
+    /**
+     * 创建表的二级索引
+     * <p>
+     * 索引列取自缓存策略，未配置时使用数据库中该表的索引列，主键和实体中不存在的列被忽略。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @return 二级索引
+     */
+    private CacheIndex createIndex(String tableName) {
+        CachePolicy policy = CacheUtil.getPolicy(tableName);
+        Collection<String> columns = policy == null ? null : policy.getIndexColumns();
+        if(columns == null) {
+            TableMetaData tableMetaData = Constant.TABLE_METADATA_MAP.get(tableName);
+            columns = tableMetaData == null || tableMetaData.getIndexColumnSet() == null
+                    ? Collections.emptySet() : tableMetaData.getIndexColumnSet();
+        }
+        Class<? extends BaseEntity> entityClass = DynamicMapperUtil.getLoaderClass(tableName);
+        Map<String, Class<?>> columnTypeMap = new LinkedHashMap<>();
+        for (String column : columns) {
+            String fieldName = StrUtil.toCamelCase(StrUtil.isUpperCase(column) ? column.toLowerCase() : column);
+            Field field = ReflectUtil.getField(entityClass, fieldName);
+            if(field != null && !"id".equals(fieldName)) {
+                columnTypeMap.put(fieldName, field.getType());
+            }
+        }
+        return new CacheIndex(columnTypeMap, fieldName -> loadIndexColumn(tableName, fieldName));
+    }
+
+    /**
+     * 从数据库加载索引列
+     * 
+     * @param tableName 表名
+     * @param fieldName 字段名（驼峰）
+     * @return ID -> 列值
+     */
+    private Map<Long, Object> loadIndexColumn(String tableName, String fieldName) {
+        try {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+            }
+            BaseMapper<BaseEntity> mapper = repositoryHandler.getMapper(tableName);
+            String column = StrUtil.toUnderlineCase(fieldName);
+            List<Map<String, Object>> rowList = mapper.selectMaps(Wrappers.<BaseEntity>query()
+                    .select("id", column).eq("normal", Booleans.TRUE.getValue()));
+            Map<Long, Object> columnValueMap = new HashMap<>(rowList.size());
+            for (Map<String, Object> row : rowList) {
+                // 列名大小写取决于数据库
+                Map<String, Object> caseInsensitiveRow = new CaseInsensitiveMap<>(row);
+                columnValueMap.put(Convert.toLong(caseInsensitiveRow.get("id")), caseInsensitiveRow.get(column));
+            }
+            StaticLog.info("cache index load: {} {} {}", tableName, fieldName, columnValueMap.size());
+            return columnValueMap;
+        } finally {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.poll();
+            }
+        }
+    }
+
+    @Override
+    public <T> Long selectCount(String tableName, QueryWrapper<T> queryWrapper) {
+        try {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+            }
+            TableReplica.Snapshot snapshot = replicaSnapshot(tableName, queryWrapper);
+            ReplicaQuery replicaQuery = snapshot == null ? null
+                    : snapshot.compile(((SourceQueryWrapper<?>) queryWrapper).getSource());
+            if(replicaQuery != null) {
+                return snapshot.count(replicaQuery);
+            }
+            BaseMapper mapper = repositoryHandler.getMapper(tableName);
+            boolean unfiltered = isUnfiltered(queryWrapper);
+            queryWrapper.eq("normal", Booleans.TRUE.getValue());
+            if(!isQueryCacheable(tableName)) {
+                return selectCount(tableName, mapper, queryWrapper, unfiltered);
+            }
+            String cacheKey = QueryCache.key(tableName, "count", queryWrapper, null);
+            Long count = (Long) QueryCache.get(tableName, cacheKey);
+            if(count == null) {
+                count = loadQuery(tableName, cacheKey, true,
+                        () -> selectCount(tableName, mapper, queryWrapper, unfiltered));
+            }
+            return count;
+        } finally {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.poll();
+            }
+        }
+    }
+
+    @Override
+    public <T> List<T> selectList(String tableName, IPage<T> page, QueryWrapper<T> queryWrapper) {
+        try {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+            }
+            TableReplica.Snapshot snapshot = replicaSnapshot(tableName, queryWrapper);
+            ReplicaQuery replicaQuery = snapshot == null ? null
+                    : snapshot.compile(((SourceQueryWrapper<?>) queryWrapper).getSource());
+            if(replicaQuery != null) {
+                return selectList(snapshot, replicaQuery, page, queryWrapper);
+            }
+            BaseMapper mapper = repositoryHandler.getMapper(tableName);
+            boolean unfiltered = isUnfiltered(queryWrapper);
+            queryWrapper.eq("normal", Booleans.TRUE.getValue());
+            if(!isQueryCacheable(tableName)) {
+                List<T> list = selectList(tableName, mapper, page, queryWrapper, unfiltered);
+                return BeanUtil.copyToList(list, queryWrapper.getEntityClass());
+            }
+            String cacheKey = QueryCache.key(tableName, "list", queryWrapper, page);
+            CachedPage cachedPage = (CachedPage) QueryCache.get(tableName, cacheKey);
+            if(cachedPage == null) {
+                // 超时的查询在后台继续执行，使用分页参数的副本，不再修改调用方的分页参数
+                IPage<T> loadPage = page instanceof Page ? copyPage((Page<T>) page) : page;
+                cachedPage = loadQuery(tableName, cacheKey, loadPage != page || page == null, () -> {
+                    List<T> list = selectList(tableName, mapper, loadPage, queryWrapper, unfiltered);
+                    return new CachedPage(list, loadPage == null ? 0 : loadPage.getTotal());
+                });
+            }
+            if(page != null) {
+                page.setTotal(cachedPage.total);
+            }
+            // 每次返回副本，调用方修改结果不会影响缓存
+            return BeanUtil.copyToList(cachedPage.records, queryWrapper.getEntityClass());
+        } finally {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.poll();
+            }
+        }
+    }
+
+    /**
+     * 执行查询并写入查询结果缓存
+     * <p>
+     * 开启了降级读取且该查询有最后一次的结果时，回源查询失败、超过耗时预算或数据源处于降级状态时
+     * 返回该结果，并在当前线程记录陈旧时间。降级状态下每个间隔只有一次查询回源，成功后恢复正常。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param cacheKey 缓存键
+     * @param async 查询能否在其他线程执行，为false时不限制耗时
+     * @param loader 查询
+     * @param <V> 结果类型
+     * @return 查询结果
+     * @see StaleIfError 降级读取
+     */
+    private <V> V loadQuery(String tableName, String cacheKey, boolean async, Supplier<V> loader) {
+        QueryCache.StaleValue staleValue = QueryCache.getStale(tableName, cacheKey);
+        if(staleValue == null) {
+            V value = loader.get();
+            QueryCache.put(tableName, cacheKey, value);
+            return value;
+        }
+        String dataSourceName = Constant.TABLE_DATASOURCE_MAP.getOrDefault(tableName, "");
+        if(staleIfError.isDegraded(dataSourceName) && !staleIfError.tryProbe(dataSourceName)) {
+            return serveStaleQuery(staleValue);
+        }
+        QueryCachePolicy policy = QueryCache.getPolicy(tableName);
+        long budget = async && policy != null ? policy.getLoadTimeout() : 0;
+        try {
+            V value = staleIfError.load(() -> {
+                try {
+                    if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                        DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+                    }
+                    V loaded = loader.get();
+                    QueryCache.put(tableName, cacheKey, loaded);
+                    return loaded;
+                } finally {
+                    if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                        DynamicDataSource.poll();
+                    }
+                }
+            }, budget);
+            staleIfError.markRecovered(dataSourceName);
+            return value;
+        } catch (TimeoutException e) {
+            StaticLog.warn("query load timeout, serving stale result: {}", tableName);
+        } catch (RuntimeException e) {
+            staleIfError.markFailed(dataSourceName);
+            StaticLog.warn(e, "query load failed, serving stale result: {}", tableName);
+        }
+        return serveStaleQuery(staleValue);
+    }
+
+    /**
+     * 返回查询最后一次的结果，并在当前线程记录陈旧时间
+     * 
+     * @param staleValue 查询最后一次的结果
+     * @param <V> 结果类型
+     * @return 查询结果
+     */
+    private <V> V serveStaleQuery(QueryCache.StaleValue staleValue) {
+        StaleIfError.markStale(staleValue.getStaleness(System.currentTimeMillis()));
+        return (V) staleValue.getValue();
+    }
+
+    /**
+     * 复制分页参数，不包含查询结果
+     * 
+     * @param page 分页参数
+     * @param <T> 实体类型
+     * @return 分页参数的副本
+     */
+    private <T> Page<T> copyPage(Page<T> page) {
+        Page<T> copy = new Page<>(page.getCurrent(), page.getSize(), page.searchCount());
+        copy.setOrders(new ArrayList<>(page.orders()));
+        copy.setOptimizeCountSql(page.optimizeCountSql());
+        copy.setMaxLimit(page.maxLimit());
+        copy.setCountId(page.countId());
+        return copy;
+    }
+
+    /**
+     * 统计行数，开启了行数缓存时优先使用缓存的行数
+     * 
+     * @param tableName 表名
+     * @param mapper 表对应的Mapper
+     * @param queryWrapper 查询条件（已包含normal条件）
+     * @param unfiltered 是否为不带条件的全表统计
+     * @return 行数
+     */
+    private Long selectCount(String tableName, BaseMapper mapper, QueryWrapper<?> queryWrapper, boolean unfiltered) {
+        if(!isCountCacheable(tableName)) {
+            return mapper.selectCount(queryWrapper);
+        }
+        if(unfiltered) {
+            Long total = CountCache.getTotal(tableName);
+            if(total == null) {
+                long sequence = CountCache.getSequence(tableName);
+                long remoteWrites = TableVersions.getRemoteWrites(tableName);
+                total = mapper.selectCount(queryWrapper);
+                CountCache.putTotal(tableName, sequence, remoteWrites, total);
+            }
+            return total;
+        }
+        String countKey = CountCache.key("count", queryWrapper);
+        Long count = CountCache.get(tableName, countKey);
+        if(count == null) {
+            long version = TableVersions.get(tableName);
+            long sharedVersion = TableVersions.getShared(tableName);
+            count = mapper.selectCount(queryWrapper);
+            CountCache.put(tableName, countKey, version, sharedVersion, count);
+        }
+        return count;
+    }
+
+    /**
+     * 分页查询，开启了行数缓存时跳过分页插件的COUNT查询
+     * 
+     * @param tableName 表名
+     * @param mapper 表对应的Mapper
+     * @param page 分页参数，可以为null
+     * @param queryWrapper 查询条件（已包含normal条件）
+     * @param unfiltered 是否为不带条件的全表查询
+     * @param <T> 实体类型
+     * @return 当前页的记录
+     */
+    private <T> List<T> selectList(String tableName, BaseMapper mapper, IPage<T> page, QueryWrapper<T> queryWrapper,
+                                   boolean unfiltered) {
+        if(!(page instanceof Page) || !page.searchCount() || !isCountCacheable(tableName)) {
+            return mapper.selectList(page, queryWrapper);
+        }
+        String countKey = unfiltered ? null : CountCache.key("page", queryWrapper);
+        Long total = unfiltered ? CountCache.getTotal(tableName) : CountCache.get(tableName, countKey);
+        if(total == null) {
+            long version = TableVersions.get(tableName);
+            long sharedVersion = TableVersions.getShared(tableName);
+            long sequence = CountCache.getSequence(tableName);
+            long remoteWrites = TableVersions.getRemoteWrites(tableName);
+            List<T> list = mapper.selectList(page, queryWrapper);
+            if(unfiltered) {
+                CountCache.putTotal(tableName, sequence, remoteWrites, page.getTotal());
+            } else {
+                CountCache.put(tableName, countKey, version, sharedVersion, page.getTotal());
+            }
+            return list;
+        }
+        Page<T> countedPage = (Page<T>) page;
+        countedPage.setSearchCount(false);
+        countedPage.setTotal(total);
+        try {
+            return mapper.selectList(page, queryWrapper);
+        } finally {
+            countedPage.setSearchCount(true);
+        }
+    }
+
+    /**
+     * 在内存副本的快照上分页查询，与分页插件一致：总数为0或页码超过总页数时返回空列表
+     * 
+     * @param snapshot 快照
+     * @param replicaQuery 编译后的查询
+     * @param page 分页参数，为null或每页条数小于0时不分页
+     * @param queryWrapper 查询条件，决定返回的类型
+     * @param <T> 实体类型
+     * @return 当前页的记录
+     */
+    private <T> List<T> selectList(TableReplica.Snapshot snapshot, ReplicaQuery replicaQuery, IPage<T> page,
+                                   QueryWrapper<T> queryWrapper) {
+        if(page == null || page.getSize() < 0) {
+            return BeanUtil.copyToList(snapshot.select(replicaQuery, 0, -1), queryWrapper.getEntityClass());
+        }
+        if(page.searchCount()) {
+            page.setTotal(snapshot.count(replicaQuery));
+            if(page.getTotal() == 0 || page.getCurrent() > page.getPages()) {
+                return new ArrayList<>();
+            }
+        }
+        return BeanUtil.copyToList(snapshot.select(replicaQuery, page.offset(), page.getSize()),
+                queryWrapper.getEntityClass());
+    }
+
+    /**
+     * 检查查询条件是否为空（不含查询列、条件、分组和排序）
+     * 
+     * @param queryWrapper 查询条件
+     * @return 条件为空时返回true
+     */
+    private boolean isUnfiltered(QueryWrapper<?> queryWrapper) {
+        return StrUtil.isBlank(queryWrapper.getSqlSelect()) && StrUtil.isBlank(queryWrapper.getCustomSqlSegment());
+    }
+
+    /**
+     * 检查统计是否可以使用行数缓存
+     * 
+     * @param tableName 表名
+     * @return 表开启了行数缓存且当前不在事务中时返回true
+     */
+    private boolean isCountCacheable(String tableName) {
+        return CountCache.exists(tableName) && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * 检查查询是否可以使用查询结果缓存
+     * <p>
+     * 事务中的查询可能读到本事务未提交的数据，不读取也不写入查询结果缓存。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @return 表开启了查询结果缓存且当前不在事务中时返回true
+     */
+    private boolean isQueryCacheable(String tableName) {
+        return QueryCache.exists(tableName) && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * 缓存的分页查询结果
+     */
+    private static final class CachedPage {
+
+        private final List<?> records;
+
+        private final long total;
+
+        CachedPage(List<?> records, long total) {
+            this.records = records;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 批量原子递增计数字段
+     * <p>
+     * 单条记录或处于外部事务中时逐条执行；否则在一个事务中以JDBC批处理执行。
+     * 每条记录同时分配新的乐观锁版本号和更新时间，使持有旧版本号的{@link #updateByIdWithVersion}失败。
+     * 缓存中的记录直接累加增量，不重新查询。
+     * 不在外部事务中时，增量提交后的缓存更新或后置事件失败抛出{@link WriteCommittedException}。
+     * </p>
+     */
+    @Override
+    public int incrementBatch(String tableName, Map<Long, Map<String, Long>> deltaMap) {
+        Class<? extends BaseEntity> clazz = DynamicMapperUtil.getLoaderClass(tableName);
+        Map<Long, Map<String, Long>> columnDeltaMap = new LinkedHashMap<>();
+        deltaMap.forEach((id, columns) -> {
+            Map<String, Long> deltas = new LinkedHashMap<>();
+            columns.forEach((column, delta) -> {
+                String field = StrUtil.toCamelCase(column);
+                Assert.isTrue(!"id".equals(field) && !"version".equals(field) && ReflectUtil.hasField(clazz, field),
+                        "计数字段不存在: {}", column);
+                deltas.merge(StrUtil.toUnderlineCase(field), delta, Long::sum);
+            });
+            columnDeltaMap.put(id, deltas);
+        });
+        Map<Long, BaseEntity> stampMap = new HashMap<>();
+        columnDeltaMap.keySet().forEach(id -> {
+            BaseEntity stamp = new BaseEntity();
+            repositoryHandler.fillUpdateEntity(stamp);
+            stampMap.put(id, stamp);
+        });
+        try {
+            columnDeltaMap.forEach((id, deltas) -> publisher.publishEvent(new EntityUpdateEvent(tableName, deltas,
+                    Wrappers.query().eq("id", id), Booleans.TRUE.getValue())));
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.push(Constant.TABLE_DATASOURCE_MAP.get(tableName));
+            }
+            int count;
+            if(columnDeltaMap.size() == 1 || batchSqlSession == null || transactionTemplate == null
+                    || TransactionSynchronizationManager.isActualTransactionActive()) {
+                BaseMapper<BaseEntity> mapper = repositoryHandler.getMapper(tableName);
+                count = columnDeltaMap.entrySet().stream()
+                        .mapToInt(entry -> mapper.update(null,
+                                incrementWrapper(entry.getKey(), entry.getValue(), stampMap.get(entry.getKey()))))
+                        .sum();
+            } else {
+                BaseMapper<BaseEntity> mapper = batchSqlSession.getMapper(DynamicMapperUtil.getMapperClass(tableName));
+                count = transactionTemplate.execute(status -> {
+                    columnDeltaMap.forEach((id, deltas) -> mapper.update(null, incrementWrapper(id, deltas, stampMap.get(id))));
+                    return batchSqlSession.flushStatements().stream()
+                            .flatMapToInt(result -> Arrays.stream(result.getUpdateCounts()))
+                            .map(updateCount -> updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount)
+                            .sum();
+                });
+            }
+            try {
+                if(CacheUtil.exists(tableName)) {
+                    columnDeltaMap.forEach((id, deltas) -> incrementCache(tableName, id, deltas, stampMap.get(id)));
+                    index(tableName).invalidate(columnDeltaMap.values().stream().flatMap(deltas -> deltas.keySet().stream())
+                            .distinct().map(StrUtil::toCamelCase).toArray(String[]::new));
+                    if(CacheMetrics.sampleLog()) {
+                        StaticLog.debug("cache increment: {} {}", tableName, columnDeltaMap.size());
+                    }
+                }
+                bumpVersion(tableName);
+                columnDeltaMap.forEach((id, deltas) -> publisher.publishEvent(new EntityUpdateEvent(tableName, deltas,
+                        Wrappers.query().eq("id", id), Booleans.FALSE.getValue())));
+            } catch (RuntimeException e) {
+                if(TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw e;
+                }
+                // 增量已经提交，调用方不能按写入失败重试
+                throw new WriteCommittedException(tableName, e);
+            }
+            return count;
+        } finally {
+            if(Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)) {
+                DynamicDataSource.poll();
+            }
+        }
+    }
+
+    /**
+     * 构建递增语句：SET column = column + delta, version = ?, update_time = ? WHERE id = ? AND normal = 1
+     * 
+     * @param id 主键ID
+     * @param deltas 字段名（下划线） -> 增量
+     * @param stamp 已填充新版本号和更新时间的实体
+     * @return 更新条件包装器
+     */
+    private UpdateWrapper<BaseEntity> incrementWrapper(Long id, Map<String, Long> deltas, BaseEntity stamp) {
+        UpdateWrapper<BaseEntity> updateWrapper = Wrappers.update();
+        deltas.forEach((column, delta) -> updateWrapper.setSql(column + " = " + column + " + {0}", delta));
+        return updateWrapper.set("version", stamp.getVersion())
+                .set("update_time", stamp.getUpdateTime())
+                .eq("id", id).eq("normal", Booleans.TRUE.getValue());
+    }
+
+    /**
+     * 在缓存记录上累加增量
+     * <p>
+     * 同一条记录的累加在本节点内串行执行；缓存中不存在该记录时不做处理。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param id 主键ID
+     * @param deltas 字段名（下划线） -> 增量
+     * @param stamp 已填充新版本号和更新时间的实体
+     */
+    private void incrementCache(String tableName, Long id, Map<String, Long> deltas, BaseEntity stamp) {
+        String key = String.valueOf(id);
+        synchronized (cacheLock(tableName, key)) {
+            Object cached = CacheUtil.get(tableName, key);
+            if(!(cached instanceof JSONObject)) {
+                return;
+            }
+            JSONObject json = new JSONObject(cached);
+            deltas.forEach((column, delta) -> {
+                String field = StrUtil.toCamelCase(column);
+                json.set(field, Convert.toLong(json.get(field), 0L) + delta);
+            });
+            json.set("version", stamp.getVersion());
+            json.set("updateTime", stamp.getUpdateTime());
+            CacheUtil.set(tableName, key, json);
+        }
+    }
+
+    /**
+     * 在工作单元中执行一组写操作
+     * <p>
+     * 执行流程：
+     * <ol>
+     *     <li>执行回调，收集写操作（此时不访问数据库）</li>
+     *     <li>发布所有前置事件</li>
+     *     <li>开启事务，按表依次刷新插入、更新、删除，同类语句合并为JDBC批处理</li>
+     *     <li>事务提交后更新缓存并发布所有后置事件</li>
+     * </ol>
+     * </p>
+     * 
+     * <p>
+     * 如果调用时已处于外部事务中，则加入该事务，缓存更新和后置事件延迟到外部事务提交后执行。
+     * MyBatis不允许在同一个事务中切换执行器类型，所以加入外部事务时只有事务中已经使用批处理会话才以批处理方式刷新，
+     * 否则使用普通的会话逐条执行，外部事务中工作单元前后都可以使用普通的写操作。
+     * </p>
+     *
+     * <p>
+     * 刷新后校验每条语句的影响行数：语句执行失败或插入的行数不符时抛出{@link IllegalStateException}并回滚事务。
+     * </p>
+     */
+    @Override
+    public void inTransaction(Consumer<IUnitOfWork> work) {
+        Assert.notNull(batchSqlSession, "未配置SqlSessionFactory，不支持工作单元");
+        Assert.notNull(transactionTemplate, "未配置事务管理器，不支持工作单元");
+        UnitOfWork unitOfWork = new UnitOfWork(repositoryHandler);
+        work.accept(unitOfWork);
+        if(unitOfWork.size() == 0) {
+            return;
+        }
+        String dataSource = unitOfWork.getDataSource();
+        publishEvents(unitOfWork, Booleans.TRUE.getValue());
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        boolean batch = !joined || isBatchSessionBound();
+        try {
+            if(dataSource != null) {
+                DynamicDataSource.push(dataSource);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                if(batch) {
+                    flush(unitOfWork);
+                } else {
+                    execute(unitOfWork);
+                }
+            });
+        } finally {
+            if(dataSource != null) {
+                DynamicDataSource.poll();
+            }
+        }
+        if(!joined) {
+            afterCommit(unitOfWork);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                BaseRepository.this.afterCommit(unitOfWork);
+            }
+        });
+    }
+
+    /**
+     * 当前事务是否已经绑定了批处理会话
+     * 
+     * @return 事务中已经使用过批处理会话时返回true
+     */
+    private boolean isBatchSessionBound() {
+        SqlSessionHolder holder = (SqlSessionHolder) TransactionSynchronizationManager
+                .getResource(batchSqlSession.getSqlSessionFactory());
+        return holder != null && holder.getExecutorType() == ExecutorType.BATCH;
+    }
+
+    /**
+     * 以批处理方式刷新工作单元中的写操作
+     * 
+     * @param unitOfWork 工作单元
+     */
+    private void flush(UnitOfWork unitOfWork) {
+        Map<String, UnitOfWork.TableChanges> namespaceMap = new HashMap<>();
+        for (UnitOfWork.TableChanges changes : unitOfWork.getChanges()) {
+            Class<? extends BaseMapper<BaseEntity>> mapperClass = DynamicMapperUtil.getMapperClass(changes.tableName);
+            namespaceMap.put(mapperClass.getName(), changes);
+            BaseMapper<BaseEntity> mapper = batchSqlSession.getMapper(mapperClass);
+            changes.insertList.forEach(mapper::insert);
+            putIdFilter(changes);
+            changes.updateList.forEach(mapper::updateById);
+            if(!changes.deleteIdSet.isEmpty()) {
+                mapper.deleteBatchIds(changes.deleteIdSet);
+            }
+        }
+        List<BatchResult> batchResultList = batchSqlSession.flushStatements();
+        for (BatchResult batchResult : batchResultList) {
+            String statementId = batchResult.getMappedStatement().getId();
+            int index = statementId.lastIndexOf('.');
+            UnitOfWork.TableChanges changes = namespaceMap.get(statementId.substring(0, index));
+            String method = statementId.substring(index + 1);
+            for (int updateCount : batchResult.getUpdateCounts()) {
+                if(updateCount == Statement.EXECUTE_FAILED) {
+                    throw new IllegalStateException("工作单元批量写入失败: " + statementId);
+                }
+                if(changes == null || updateCount == Statement.SUCCESS_NO_INFO) {
+                    continue;
+                }
+                if("insert".equals(method) && updateCount != 1) {
+                    throw new IllegalStateException("工作单元插入的行数不符: " + changes.tableName + " " + updateCount);
+                }
+                if("deleteBatchIds".equals(method)) {
+                    changes.deletedCount = updateCount;
+                }
+            }
+        }
+        StaticLog.debug("unit of work flush: {} operations in {} batches", unitOfWork.size(), batchResultList.size());
+    }
+
+    /**
+     * 加入外部事务时使用普通会话逐条执行工作单元中的写操作
+     * 
+     * @param unitOfWork 工作单元
+     */
+    private void execute(UnitOfWork unitOfWork) {
+        for (UnitOfWork.TableChanges changes : unitOfWork.getChanges()) {
+            BaseMapper<BaseEntity> mapper = repositoryHandler.getMapper(changes.tableName);
+            for (BaseEntity baseEntity : changes.insertList) {
+                int count = mapper.insert(baseEntity);
+                if(count != 1) {
+                    throw new IllegalStateException("工作单元插入的行数不符: " + changes.tableName + " " + count);
+                }
+            }
+            putIdFilter(changes);
+            changes.updateList.forEach(mapper::updateById);
+            if(!changes.deleteIdSet.isEmpty()) {
+                changes.deletedCount = mapper.deleteBatchIds(changes.deleteIdSet);
+            }
+        }
+        StaticLog.debug("unit of work execute: {} operations in joined transaction", unitOfWork.size());
+    }
+
+    /**
+     * 把工作单元插入的ID加入主键过滤器
+     * 
+     * @param changes 一张表的写操作
+     */
+    private void putIdFilter(UnitOfWork.TableChanges changes) {
+        putIdFilter(changes.tableName, changes.insertList.stream().map(BaseEntity::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * 把插入的ID加入主键过滤器
+     * <p>
+     * 处于事务中时提交后再写入一次：提交前开始的重建扫描不到尚未提交的ID，
+     * 插入时写入的又是旧的过滤器，重建完成后该ID会被误拦截。
+     * </p>
+     * 
+     * @param tableName 表名
+     * @param idList 插入的ID
+     */
+    private void putIdFilter(String tableName, List<Long> idList) {
+        IdFilter idFilter = IdFilter.get(tableName);
+        if(idFilter == null || idList.isEmpty()) {
+            return;
+        }
+        idList.forEach(idFilter::put);
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            runAfterCommit(() -> {
+                IdFilter committed = IdFilter.get(tableName);
+                if(committed != null) {
+                    idList.forEach(committed::putCommitted);
+                }
+            });
+        }
+    }
+
+    /**
+     * 工作单元提交后更新缓存并发布后置事件
+     * 
+     * @param unitOfWork 工作单元
+     */
+    private void afterCommit(UnitOfWork unitOfWork) {
+        for (UnitOfWork.TableChanges changes : unitOfWork.getChanges()) {
+            String tableName = changes.tableName;
+            long version = TableVersions.bump(tableName);
+            refreshReplica(tableName, version);
+            if(changes.deletedCount >= 0) {
+                CountCache.adjust(tableName, changes.insertList.size() - changes.deletedCount);
+                recordIdDelete(tableName, changes.deletedCount);
+            } else {
+                // 驱动没有返回删除的行数
+                CountCache.adjust(tableName, changes.insertList.size());
+                CountCache.invalidateTotal(tableName);
+                recordIdDelete(tableName, changes.deleteIdSet.size());
+            }
+            if(changes.updateList.stream().anyMatch(baseEntity -> baseEntity.getNormal() != null)) {
+                CountCache.invalidateTotal(tableName);
+            }
+            if(!CacheUtil.exists(tableName)) {
+                continue;
+            }
+            CacheIndex index = index(tableName);
+            for (BaseEntity baseEntity : changes.insertList) {
+                JSONObject json = JSONUtil.parseObj(baseEntity);
+                CacheUtil.set(tableName, String.valueOf(baseEntity.getId()), json);
+                index.put(baseEntity.getId(), json);
+            }
+            if(!changes.updateList.isEmpty()) {
+                updateCache(tableName, changes.updateList, true);
+            }
+            if(!changes.deleteIdSet.isEmpty()) {
+                CacheUtil.remove(tableName, changes.deleteIdSet.stream()
+                        .map(String::valueOf).toArray(String[]::new));
+                index.remove(changes.deleteIdSet);
+            }
+            if(CacheMetrics.sampleLog()) {
+                StaticLog.debug("cache flush: {}", tableName);
+            }
+        }
+        publishEvents(unitOfWork, Booleans.FALSE.getValue());
+    }
+
+    /**
+     * 发布工作单元中所有操作的事件
+     * 
+     * @param unitOfWork 工作单元
+     * @param isBefore 是否为前置事件
+     */
+    private void publishEvents(UnitOfWork unitOfWork, Integer isBefore) {
+        for (UnitOfWork.TableChanges changes : unitOfWork.getChanges()) {
+            String tableName = changes.tableName;
+            changes.insertList.forEach(baseEntity ->
+                    publisher.publishEvent(new EntityInsertEvent(tableName, baseEntity, isBefore)));
+            changes.updateSourceList.forEach(entity ->
+                    publisher.publishEvent(new EntityUpdateByIdEvent(tableName, entity, isBefore)));
+            if(!changes.deleteIdSet.isEmpty()) {
+                publisher.publishEvent(new EntityDeleteBatchEvent(tableName, changes.deleteIdSet, isBefore));
+            }
+        }
+    }
+
+    /**
+     * 设置SqlSessionFactory，用于创建工作单元的批处理会话
+     * 
+     * @param sqlSessionFactory MyBatis会话工厂
+     */
+    public void setSqlSessionFactory(SqlSessionFactory sqlSessionFactory) {
+        this.batchSqlSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+    }
+
+    /**
+     * 设置分布式缓存加载租约，多个节点共享二级缓存时避免各自重复加载
+     * 
+     * @param loadLease 加载租约
+     * @param leaseMillis 租约时长（毫秒）
+     * @param waitMillis 等待其他节点加载的最长时间（毫秒）
+     * @param failFast 单个键的加载等待超时后是否抛出异常，为false时自行加载；区域重载总是自行加载
+     * @see SingleFlight 单飞加载器
+     */
+    public void setLoadLease(ILoadLease loadLease, long leaseMillis, long waitMillis, boolean failFast) {
+        singleFlight.setLoadLease(loadLease, leaseMillis, waitMillis, failFast);
+    }
+
+    /**
+     * 设置每个数据源同时执行的提前刷新任务数
+     * 
+     * @param dataSourceConcurrency 刷新任务数
+     * @see RefreshAhead 提前刷新
+     */
+    public void setRefreshAheadConcurrency(int dataSourceConcurrency) {
+        refreshAhead.setDataSourceConcurrency(dataSourceConcurrency);
+    }
+
+    /**
+     * 设置事务管理器，用于工作单元的事务控制
+     * 
+     * @param transactionManager 事务管理器
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     @Override
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         this.publisher = applicationEventPublisher;
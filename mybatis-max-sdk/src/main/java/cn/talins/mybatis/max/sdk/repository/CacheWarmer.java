@@ -0,0 +1,200 @@
+package cn.talins.mybatis.max.sdk.repository;
+
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.sdk.common.Constant;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存预热器 - 启动时并行加载表缓存和主键过滤器
+ * <p>
+ * 表缓存只在写操作或查询未命中时才逐步填充，发布后的最初一段时间缓存几乎全部未命中，
+ * 请求集中落到数据库上。预热器在应用就绪前把指定的表加载到缓存中：
+ * <ul>
+ *     <li>多张表并行加载，每张表按ID顺序分批读取，不会一次性把整张表读入内存</li>
+ *     <li>同一数据源上同时加载的表数量受限制，避免预热本身压垮数据库</li>
+ *     <li>每批加载后输出进度日志，可以通过{@link #getLoadedRows}等方法查询进度</li>
+ *     <li>{@link #warmUp}等待全部完成或超时后返回，超时后未完成的表继续在后台加载</li>
+ * </ul>
+ * </p>
+ *
+ * @author talins
+ * @see BaseRepository#warmUpCache 预热单张表的缓存
+ * @see BaseRepository#warmUpIdFilter 构建单张表的主键过滤器
+ */
+public class CacheWarmer {
+
+    /**
+     * 未配置数据源的表使用的并发限制键
+     */
+    private static final String DEFAULT_DATASOURCE = "";
+
+    /**
+     * 执行加载的数据仓库
+     */
+    private final BaseRepository repository;
+
+    /**
+     * 同时加载的表数量
+     */
+    private final int parallelism;
+
+    /**
+     * 每批加载的记录数
+     */
+    private final int chunkSize;
+
+    /**
+     * 同一数据源上同时加载的表数量
+     */
+    private final int dataSourceConcurrency;
+
+    /**
+     * 数据源 -> 并发许可
+     */
+    private final Map<String, Semaphore> semaphoreMap = new ConcurrentHashMap<>();
+
+    private final AtomicInteger finishedTables = new AtomicInteger();
+
+    private final LongAdder loadedRows = new LongAdder();
+
+    private volatile int totalTables;
+
+    /**
+     * 构造函数
+     *
+     * @param repository 执行加载的数据仓库
+     * @param parallelism 同时加载的表数量
+     * @param chunkSize 每批加载的记录数
+     * @param dataSourceConcurrency 同一数据源上同时加载的表数量
+     */
+    public CacheWarmer(BaseRepository repository, int parallelism, int chunkSize, int dataSourceConcurrency) {
+        Assert.notNull(repository, "repository不能为空");
+        Assert.isTrue(parallelism > 0, "并行度必须大于0");
+        Assert.isTrue(chunkSize > 0, "每批加载的记录数必须大于0");
+        Assert.isTrue(dataSourceConcurrency > 0, "数据源并发数必须大于0");
+        this.repository = repository;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.dataSourceConcurrency = dataSourceConcurrency;
+    }
+
+    /**
+     * 并行预热表缓存和主键过滤器
+     * <p>
+     * 对每张表先加载缓存（表未开启缓存时跳过），再构建主键过滤器（未开启时跳过）。
+     * 单张表加载失败只记录日志，不影响其他表。
+     * </p>
+     *
+     * @param tableNames 需要预热的表名
+     * @param timeoutMillis 等待超时时间（毫秒），小于等于0表示一直等待
+     * @return 全部完成时返回true，超时返回false
+     */
+    public boolean warmUp(Collection<String> tableNames, long timeoutMillis) {
+        if (tableNames.isEmpty()) {
+            return true;
+        }
+        totalTables = tableNames.size();
+        long start = System.currentTimeMillis();
+        CountDownLatch latch = new CountDownLatch(tableNames.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tableNames.size()),
+                ThreadUtil.newNamedThreadFactory("mybatis-max-warmup-", true));
+        for (String tableName : tableNames) {
+            executor.execute(() -> {
+                try {
+                    warmUp(tableName);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        // 不再接收新任务，已提交的任务执行完后线程退出
+        executor.shutdown();
+        StaticLog.info("cache warm-up: {} tables, parallelism={} chunk={}", tableNames.size(), parallelism, chunkSize);
+        try {
+            boolean finished = timeoutMillis <= 0 ? await(latch) : latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (finished) {
+                StaticLog.info("cache warm-up finished: {} tables {} rows {}ms", tableNames.size(),
+                        loadedRows.sum(), System.currentTimeMillis() - start);
+            } else {
+                StaticLog.warn("cache warm-up timeout: {}/{} tables {} rows, continuing in background",
+                        finishedTables.get(), tableNames.size(), loadedRows.sum());
+            }
+            return finished;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean await(CountDownLatch latch) throws InterruptedException {
+        latch.await();
+        return true;
+    }
+
+    private void warmUp(String tableName) {
+        Semaphore semaphore = semaphoreMap.computeIfAbsent(
+                Constant.TABLE_DATASOURCE_MAP.getOrDefault(tableName, DEFAULT_DATASOURCE),
+                key -> new Semaphore(dataSourceConcurrency));
+        long start = System.currentTimeMillis();
+        long[] reported = new long[1];
+        try {
+            semaphore.acquire();
+            try {
+                long rows = repository.warmUpCache(tableName, chunkSize, loaded -> {
+                    loadedRows.add(loaded - reported[0]);
+                    reported[0] = loaded;
+                    StaticLog.info("cache warm-up: {} {} rows", tableName, loaded);
+                });
+                repository.warmUpIdFilter(tableName);
+                StaticLog.info("cache warm-up: {} done, {} rows {}ms ({}/{} tables)", tableName, rows,
+                        System.currentTimeMillis() - start, finishedTables.incrementAndGet(), totalTables);
+            } finally {
+                semaphore.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            finishedTables.incrementAndGet();
+            StaticLog.warn(e, "cache warm-up failed: {}", tableName);
+        }
+    }
+
+    /**
+     * 已完成（包括失败）的表数量
+     *
+     * @return 已完成的表数量
+     */
+    public int getFinishedTables() {
+        return finishedTables.get();
+    }
+
+    /**
+     * 本次预热的表数量
+     *
+     * @return 表数量
+     */
+    public int getTotalTables() {
+        return totalTables;
+    }
+
+    /**
+     * 已加载到缓存的记录数
+     *
+     * @return 记录数
+     */
+    public long getLoadedRows() {
+        return loadedRows.sum();
+    }
+}
@@ -0,0 +1,198 @@
+package cn.talins.mybatis.max.sdk.repository;
+
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.IRepository;
+import cn.talins.mybatis.max.api.exception.WriteCommittedException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 计数器聚合器 - 在内存中合并热点记录的计数增量，定时批量写入数据库
+ * <p>
+ * 浏览量、点赞数等计数字段集中在少数热点记录上，即使使用
+ * {@link IRepository#increment}，每次递增仍会竞争同一行的行锁。该类将增量按
+ * （表名, ID, 字段）累加到{@link LongAdder}中，后台线程按固定间隔取出并通过
+ * {@link IRepository#incrementBatch}一次性写入：
+ * <ul>
+ *     <li>{@link #add}只是一次内存累加，高并发下不会在同一个计数器上排队</li>
+ *     <li>同一条记录在一个刷新周期内的所有增量合并为一条UPDATE</li>
+ *     <li>写入数据库失败的增量会放回计数器，在下一个周期重试；已写入数据库但之后的缓存更新或事件失败时只记录日志，不再重试</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 注意：尚未刷新的增量只存在于本节点内存中，进程异常退出时会丢失，
+ * 适用于允许少量误差的统计类计数。正常关闭时会刷新剩余的增量。
+ * </p>
+ *
+ * @author talins
+ * @see IRepository#incrementBatch 批量原子递增
+ */
+public class CounterAggregator implements AutoCloseable {
+
+    /**
+     * 执行写入的数据仓库
+     */
+    private final IRepository repository;
+
+    /**
+     * 待刷新的计数器
+     */
+    private final ConcurrentHashMap<CounterKey, LongAdder> counterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 刷新线程
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 构造函数
+     *
+     * @param repository 执行写入的数据仓库
+     * @param flushIntervalMillis 刷新间隔（毫秒）
+     */
+    public CounterAggregator(IRepository repository, long flushIntervalMillis) {
+        Assert.notNull(repository, "repository不能为空");
+        Assert.isTrue(flushIntervalMillis > 0, "刷新间隔必须大于0");
+        this.repository = repository;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("mybatis-max-counter-", true));
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 累加计数增量，在下一个刷新周期写入数据库
+     *
+     * @param tableName 表名
+     * @param id 主键ID
+     * @param column 计数字段名
+     * @param delta 增量，可以为负数
+     */
+    public void add(String tableName, Long id, String column, long delta) {
+        add(new CounterKey(tableName, id, column), delta);
+    }
+
+    private void add(CounterKey key, long delta) {
+        LongAdder adder = counterMap.computeIfAbsent(key, k -> new LongAdder());
+        adder.add(delta);
+        if (counterMap.get(key) != adder) {
+            // 计数器在累加期间被当作空闲计数器移除，把增量转移到新的计数器上
+            long moved = adder.sumThenReset();
+            if (moved != 0) {
+                add(key, moved);
+            }
+        }
+    }
+
+    /**
+     * 获取尚未刷新的增量
+     *
+     * @param tableName 表名
+     * @param id 主键ID
+     * @param column 计数字段名
+     * @return 尚未写入数据库的增量
+     */
+    public long pending(String tableName, Long id, String column) {
+        LongAdder adder = counterMap.get(new CounterKey(tableName, id, column));
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * 立即将所有累加的增量写入数据库
+     * <p>
+     * 每张表调用一次{@link IRepository#incrementBatch}，写入数据库失败时增量放回计数器；
+     * 抛出{@link WriteCommittedException}说明增量已经提交，不再放回，避免重复累加。
+     * 上个周期以来没有变化的计数器会被移除，避免长期占用内存。
+     * </p>
+     */
+    public synchronized void flush() {
+        Map<String, Map<Long, Map<String, Long>>> tableDeltaMap = new HashMap<>();
+        counterMap.forEach((key, adder) -> {
+            long sum = adder.sumThenReset();
+            if (sum == 0 && counterMap.remove(key, adder)) {
+                // 移除前后可能仍有线程完成了累加
+                sum = adder.sumThenReset();
+            }
+            if (sum != 0) {
+                tableDeltaMap.computeIfAbsent(key.tableName, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(key.id, k -> new LinkedHashMap<>())
+                        .merge(key.column, sum, Long::sum);
+            }
+        });
+        tableDeltaMap.forEach((tableName, deltaMap) -> {
+            try {
+                repository.incrementBatch(tableName, deltaMap);
+                StaticLog.debug("counter flush: {} {}", tableName, deltaMap.size());
+            } catch (WriteCommittedException e) {
+                StaticLog.error(e, "counter flushed, but post-commit handling failed: {}", tableName);
+            } catch (Exception e) {
+                StaticLog.warn(e, "counter flush failed, retry next time: {}", tableName);
+                deltaMap.forEach((id, columns) -> columns.forEach((column, delta) ->
+                        add(new CounterKey(tableName, id, column), delta)));
+            }
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            StaticLog.error(e, "counter flush failed");
+        }
+    }
+
+    /**
+     * 停止定时刷新并写入剩余的增量
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * 计数器标识：表名 + ID + 字段名
+     */
+    private static final class CounterKey {
+
+        private final String tableName;
+
+        private final Long id;
+
+        private final String column;
+
+        CounterKey(String tableName, Long id, String column) {
+            this.tableName = tableName;
+            this.id = id;
+            this.column = column;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey that = (CounterKey) o;
+            return tableName.equals(that.tableName) && id.equals(that.id) && column.equals(that.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, id, column);
+        }
+    }
+}
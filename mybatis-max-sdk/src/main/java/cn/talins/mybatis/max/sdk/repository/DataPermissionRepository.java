@@ -67,6 +67,11 @@ public class DataPermissionRepository extends BaseRepository {
         return super.updateById(tableName, dataPermissionHandler.addColumnPermission(tableName, entity));
     }
 
+    @Override
+    public <T> Long updateByIdWithVersion(String tableName, T entity) {
+        return super.updateByIdWithVersion(tableName, dataPermissionHandler.addColumnPermission(tableName, entity));
+    }
+
     @Override
     public <T> int update(String tableName, T entity, QueryWrapper<T> updateWrapper) {
         dataPermissionHandler.addRowPermission(tableName, updateWrapper);
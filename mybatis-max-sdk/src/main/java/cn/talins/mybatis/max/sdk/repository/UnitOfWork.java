@@ -0,0 +1,158 @@
+package cn.talins.mybatis.max.sdk.repository;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.lang.Assert;
+import cn.talins.mybatis.max.api.IRepositoryHandler;
+import cn.talins.mybatis.max.api.IUnitOfWork;
+import cn.talins.mybatis.max.api.pojo.BaseEntity;
+import cn.talins.mybatis.max.sdk.DynamicMapperUtil;
+import cn.talins.mybatis.max.sdk.common.Constant;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 工作单元实现 - 按表收集待刷新的写操作
+ * <p>
+ * 登记时完成实体转换和公共字段填充，刷新、缓存更新和事件发布由
+ * {@link BaseRepository#inTransaction}负责。
+ * </p>
+ *
+ * @author talins
+ * @see IUnitOfWork 工作单元接口
+ */
+class UnitOfWork implements IUnitOfWork {
+
+    /**
+     * 仓库处理器，用于填充实体字段
+     */
+    private final IRepositoryHandler repositoryHandler;
+
+    /**
+     * 表名 -> 该表的待刷新操作，保持首次登记的顺序
+     */
+    private final Map<String, TableChanges> changeMap = new LinkedHashMap<>();
+
+    /**
+     * 已登记的操作数量
+     */
+    private int size;
+
+    /**
+     * 构造函数
+     *
+     * @param repositoryHandler 仓库处理器
+     */
+    UnitOfWork(IRepositoryHandler repositoryHandler) {
+        this.repositoryHandler = repositoryHandler;
+    }
+
+    @Override
+    public <T> Long insert(String tableName, T entity) {
+        BaseEntity baseEntity = BeanUtil.toBean(entity, DynamicMapperUtil.getLoaderClass(tableName));
+        repositoryHandler.fillInsertEntity(baseEntity);
+        changes(tableName).insertList.add(baseEntity);
+        size++;
+        return baseEntity.getId();
+    }
+
+    @Override
+    public <T> List<Long> insertBatch(String tableName, Collection<T> entityList) {
+        Class<? extends BaseEntity> clazz = DynamicMapperUtil.getLoaderClass(tableName);
+        List<BaseEntity> baseEntityList = entityList.stream()
+                .map(entity -> (BaseEntity) BeanUtil.toBean(entity, clazz))
+                .collect(Collectors.toList());
+        repositoryHandler.fillInsertEntities(baseEntityList);
+        changes(tableName).insertList.addAll(baseEntityList);
+        size += baseEntityList.size();
+        return baseEntityList.stream().map(BaseEntity::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public <T> void updateById(String tableName, T entity) {
+        BaseEntity baseEntity = BeanUtil.toBean(entity, DynamicMapperUtil.getLoaderClass(tableName));
+        Assert.notNull(baseEntity.getId(), "entity没有id");
+        repositoryHandler.fillUpdateEntity(baseEntity);
+        TableChanges changes = changes(tableName);
+        changes.updateList.add(baseEntity);
+        changes.updateSourceList.add(entity);
+        size++;
+    }
+
+    @Override
+    public void deleteBatchIds(String tableName, Collection<Long> idList) {
+        changes(tableName).deleteIdSet.addAll(idList);
+        size += idList.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 获取按表分组的待刷新操作
+     *
+     * @return 各表的待刷新操作，按首次登记的顺序
+     */
+    Collection<TableChanges> getChanges() {
+        return changeMap.values();
+    }
+
+    /**
+     * 获取工作单元涉及的数据源
+     *
+     * @return 数据源名称，使用默认数据源时返回null
+     * @throws IllegalArgumentException 如果涉及多个数据源
+     */
+    String getDataSource() {
+        Set<String> dataSourceSet = changeMap.keySet().stream()
+                .map(Constant.TABLE_DATASOURCE_MAP::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        long defaultCount = changeMap.keySet().stream()
+                .filter(tableName -> !Constant.TABLE_DATASOURCE_MAP.containsKey(tableName)).count();
+        Assert.isTrue(dataSourceSet.size() + (defaultCount > 0 ? 1 : 0) <= 1,
+                "工作单元中的表必须位于同一个数据源: {}", changeMap.keySet());
+        return dataSourceSet.isEmpty() ? null : dataSourceSet.iterator().next();
+    }
+
+    private TableChanges changes(String tableName) {
+        return changeMap.computeIfAbsent(tableName, TableChanges::new);
+    }
+
+    /**
+     * 单张表的待刷新操作
+     */
+    static final class TableChanges {
+
+        final String tableName;
+
+        final List<BaseEntity> insertList = new ArrayList<>();
+
+        final List<BaseEntity> updateList = new ArrayList<>();
+
+        /**
+         * 更新操作的原始实体，用于发布与{@link BaseRepository#updateById}一致的事件
+         */
+        final List<Object> updateSourceList = new ArrayList<>();
+
+        final Set<Long> deleteIdSet = new LinkedHashSet<>();
+
+        /**
+         * 实际删除的行数，刷新后由语句的影响行数填充，驱动不返回行数时为-1
+         */
+        int deletedCount = -1;
+
+        TableChanges(String tableName) {
+            this.tableName = tableName;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package cn.talins.mybatis.max.starter;
 
+import cn.hutool.core.lang.Assert;
 import cn.hutool.core.util.StrUtil;
 import cn.talins.mybatis.max.api.IIdGenerator;
 import cn.talins.mybatis.max.api.IDataPermissionHandler;
+import cn.talins.mybatis.max.api.ILoadLease;
 import cn.talins.mybatis.max.api.IRepositoryHandler;
+import cn.talins.mybatis.max.api.ITableVersionStore;
+import cn.talins.mybatis.max.sdk.CacheUtil;
 import cn.talins.mybatis.max.sdk.DynamicDataSource;
+import cn.talins.mybatis.max.sdk.cache.CountCache;
+import cn.talins.mybatis.max.sdk.cache.IdFilter;
+import cn.talins.mybatis.max.sdk.cache.QueryCache;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import cn.talins.mybatis.max.sdk.event.CachePolicyRefreshEvent;
+import cn.talins.mybatis.max.sdk.id.BufferedIdGenerator;
+import cn.talins.mybatis.max.sdk.id.LeasedIdGenerator;
+import cn.talins.mybatis.max.sdk.id.SegmentIdGenerator;
+import cn.talins.mybatis.max.sdk.id.WorkerIdLeaser;
 import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import cn.talins.mybatis.max.sdk.repository.CacheWarmer;
+import cn.talins.mybatis.max.sdk.repository.CounterAggregator;
 import cn.talins.mybatis.max.sdk.repository.DataPermissionRepository;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
@@ -16,8 +31,18 @@ import com.github.yitter.idgen.YitIdHelper;
 import com.zaxxer.hikari.HikariDataSource;
 
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.*;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.context.support.StandardServletEnvironment;
 
 import javax.sql.DataSource;
@@ -31,12 +56,14 @@ import java.util.*;
  *     <li>DataSource: 数据源（支持单数据源和多数据源）</li>
  *     <li>SqlSessionFactory: MyBatis会话工厂</li>
  *     <li>MybatisPlusInterceptor: MyBatis-Plus拦截器（分页等）</li>
+ *     <li>PlatformTransactionManager: 事务管理器（工作单元使用）</li>
  *     <li>BaseRepository: 基础数据仓库</li>
  *     <li>DataPermissionRepository: 数据权限仓库</li>
  *     <li>IRepositoryHandler: 仓库处理器</li>
  *     <li>IIdGenerator: ID生成器</li>
  *     <li>IDataPermissionHandler: 数据权限处理器</li>
  *     <li>DynamicMapperBeanFactoryPostProcessor: 动态Mapper注册处理器</li>
+ *     <li>ThreadLocalCacheAspect: &#64;ThreadLocalCache切面及其请求作用域过滤器、异步任务装饰器</li>
  * </ul>
  * </p>
  * 
@@ -117,16 +144,42 @@ public class BeanConfiguration {
         return interceptor;
     }
 
+    /**
+     * 注册事务管理器
+     * <p>
+     * 工作单元（{@link BaseRepository#inTransaction}）使用该事务管理器控制刷新事务。
+     * </p>
+     * 
+     * @param dataSource 数据源
+     * @return 事务管理器实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
     /**
      * 注册基础数据仓库
      * 
      * @param mapperHandler 仓库处理器
+     * @param sqlSessionFactory MyBatis会话工厂（用于工作单元批处理）
+     * @param transactionManager 事务管理器（用于工作单元）
+     * @param properties 配置属性
+     * @param loadLease 分布式缓存加载租约（可选）
      * @return 基础仓库实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public BaseRepository baseRepository(IRepositoryHandler mapperHandler) {
-        return new BaseRepository(mapperHandler);
+    public BaseRepository baseRepository(IRepositoryHandler mapperHandler, SqlSessionFactory sqlSessionFactory,
+                                         PlatformTransactionManager transactionManager,
+                                         MybatisMaxProperties properties, ObjectProvider<ILoadLease> loadLease) {
+        BaseRepository repository = new BaseRepository(mapperHandler);
+        repository.setSqlSessionFactory(sqlSessionFactory);
+        repository.setTransactionManager(transactionManager);
+        setLoadLease(repository, properties, loadLease);
+        repository.setRefreshAheadConcurrency(properties.getRefreshAhead().getDataSourceConcurrency());
+        return repository;
     }
 
     /**
@@ -134,13 +187,147 @@ public class BeanConfiguration {
      * 
      * @param mapperHandler 仓库处理器
      * @param permissionHandler 数据权限处理器
+     * @param sqlSessionFactory MyBatis会话工厂（用于工作单元批处理）
+     * @param transactionManager 事务管理器（用于工作单元）
+     * @param properties 配置属性
+     * @param loadLease 分布式缓存加载租约（可选）
      * @return 数据权限仓库实例
      */
     @Bean
     @ConditionalOnMissingBean
     public DataPermissionRepository dataPermissionRepository(IRepositoryHandler mapperHandler,
-                                                             IDataPermissionHandler permissionHandler) {
-        return new DataPermissionRepository(mapperHandler, permissionHandler);
+                                                             IDataPermissionHandler permissionHandler,
+                                                             SqlSessionFactory sqlSessionFactory,
+                                                             PlatformTransactionManager transactionManager,
+                                                             MybatisMaxProperties properties,
+                                                             ObjectProvider<ILoadLease> loadLease) {
+        DataPermissionRepository repository = new DataPermissionRepository(mapperHandler, permissionHandler);
+        repository.setSqlSessionFactory(sqlSessionFactory);
+        repository.setTransactionManager(transactionManager);
+        setLoadLease(repository, properties, loadLease);
+        repository.setRefreshAheadConcurrency(properties.getRefreshAhead().getDataSourceConcurrency());
+        return repository;
+    }
+
+    /**
+     * 存在ILoadLease实现时为仓库开启跨节点的缓存加载协调
+     * 
+     * @param repository 数据仓库
+     * @param properties 配置属性
+     * @param loadLease 分布式缓存加载租约
+     */
+    private void setLoadLease(BaseRepository repository, MybatisMaxProperties properties,
+                              ObjectProvider<ILoadLease> loadLease) {
+        ILoadLease lease = loadLease.getIfAvailable();
+        if(lease != null) {
+            MybatisMaxProperties.LoadLease config = properties.getLoadLease();
+            repository.setLoadLease(lease, config.getLeaseMillis(), config.getWaitMillis(), config.getFailFast());
+        }
+    }
+
+    /**
+     * 注册计数器聚合器
+     * <p>
+     * 仅在配置mybatis.max.counter.aggregate=true时生效，通过基础数据仓库写入合并后的增量。
+     * </p>
+     * 
+     * @param properties 配置属性
+     * @param baseRepository 基础数据仓库
+     * @return 计数器聚合器实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "mybatis.max.counter", name = "aggregate", havingValue = "true")
+    public CounterAggregator counterAggregator(MybatisMaxProperties properties, BaseRepository baseRepository) {
+        return new CounterAggregator(baseRepository, properties.getCounter().getFlushIntervalMillis());
+    }
+
+    /**
+     * 登记配置文件中的表缓存、查询结果缓存、行数缓存和主键过滤器策略
+     * <p>
+     * 在所有单例Bean初始化完成后执行，策略的区域名默认为表名。
+     * 表缓存策略可以通过发布{@link CachePolicyRefreshEvent}在运行时替换。
+     * 存在ITableVersionStore实现时同时设置共享的表写版本号存储。
+     * 主键过滤器依赖共享的表写版本号发现其他节点的插入，没有ITableVersionStore实现时
+     * 必须配置mybatis.max.id-filter.single-node=true声明单节点部署，否则启动失败。
+     * </p>
+     * 
+     * @param properties 配置属性
+     * @param tableVersionStore 共享的表写版本号存储（可选）
+     * @return 缓存策略初始化器
+     */
+    @Bean
+    public SmartInitializingSingleton cachePolicyInitializer(MybatisMaxProperties properties,
+                                                             ObjectProvider<ITableVersionStore> tableVersionStore) {
+        return () -> {
+            tableVersionStore.ifAvailable(TableVersions::setStore);
+            MybatisMaxProperties.IdFilter idFilter = properties.getIdFilter();
+            Assert.isTrue(idFilter.getTables().isEmpty() || TableVersions.hasStore() || idFilter.getSingleNode(),
+                    "多节点部署开启主键过滤器需要注册ITableVersionStore，单节点部署请配置mybatis.max.id-filter.single-node=true");
+            CacheUtil.configure(properties.getCache().getTables());
+            properties.getQueryCache().getTables().forEach(QueryCache::register);
+            properties.getCountCache().getTables().forEach(CountCache::register);
+            idFilter.getTables().forEach(IdFilter::register);
+        };
+    }
+
+    /**
+     * 注册缓存策略刷新监听器
+     * 
+     * @param properties 配置属性
+     * @param environment 当前环境
+     * @return 缓存策略刷新监听器
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public CachePolicyRefreshListener cachePolicyRefreshListener(MybatisMaxProperties properties,
+                                                                 Environment environment) {
+        return new CachePolicyRefreshListener(properties, environment);
+    }
+
+    /**
+     * 注册缓存预热器
+     * <p>
+     * 仅在配置mybatis.max.warm-up.enabled=true时生效。
+     * </p>
+     * 
+     * @param properties 配置属性
+     * @param baseRepository 基础数据仓库
+     * @return 缓存预热器实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "mybatis.max.warm-up", name = "enabled", havingValue = "true")
+    public CacheWarmer cacheWarmer(MybatisMaxProperties properties, BaseRepository baseRepository) {
+        MybatisMaxProperties.WarmUp warmUp = properties.getWarmUp();
+        return new CacheWarmer(baseRepository, warmUp.getParallelism(), warmUp.getChunkSize(),
+                warmUp.getDataSourceConcurrency());
+    }
+
+    /**
+     * 启动时执行缓存预热
+     * <p>
+     * Spring Boot在所有ApplicationRunner执行完后才发布ReadinessState.ACCEPTING_TRAFFIC，
+     * 因此应用在预热完成或超时之前不会对外就绪。
+     * </p>
+     * 
+     * @param properties 配置属性
+     * @param cacheWarmer 缓存预热器
+     * @return 缓存预热任务
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mybatis.max.warm-up", name = "enabled", havingValue = "true")
+    public ApplicationRunner cacheWarmUpRunner(MybatisMaxProperties properties, CacheWarmer cacheWarmer) {
+        return args -> {
+            Set<String> tableNames = new LinkedHashSet<>();
+            properties.getCache().getTables().forEach((tableName, policy) -> {
+                if(policy.isWarmUp()) {
+                    tableNames.add(tableName);
+                }
+            });
+            tableNames.addAll(properties.getIdFilter().getTables().keySet());
+            cacheWarmer.warmUp(tableNames, properties.getWarmUp().getTimeoutMillis());
+        };
     }
 
     /**
@@ -186,20 +373,95 @@ public class BeanConfiguration {
         return new DefaultRepositoryHandler(idGenerator);
     }
 
+    /**
+     * 注册workerId租约管理器
+     * <p>
+     * 仅在配置mybatis.max.worker-lease.enabled=true时生效。节点启动时从协调表中
+     * 自动抢占workerId，租约丢失后重新分配的workerId会立即应用到雪花算法。
+     * </p>
+     * 
+     * @param properties 配置属性
+     * @param dataSource 数据源（存放协调表）
+     * @return workerId租约管理器实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "mybatis.max.worker-lease", name = "enabled", havingValue = "true")
+    public WorkerIdLeaser workerIdLeaser(MybatisMaxProperties properties, DataSource dataSource) {
+        MybatisMaxProperties.WorkerLease workerLease = properties.getWorkerLease();
+        int maxWorkerId = (1 << properties.getWorkerIdBitLength()) - 1;
+        return new WorkerIdLeaser(dataSource, workerLease.getTableName(), maxWorkerId,
+                workerLease.getLeaseSeconds() * 1000L, workerLease.getHeartbeatSeconds() * 1000L,
+                workerId -> YitIdHelper.setIdGenerator(idGeneratorOptions(properties, (short) workerId)));
+    }
+
     /**
      * 注册ID生成器
      * <p>
      * 使用Yitter IdGenerator（雪花算法变种），支持通过配置指定workerId。
+     * 默认在其外层包装{@link BufferedIdGenerator}，按线程条带预取ID，
+     * 避免多核机器上所有插入线程竞争同一把锁。
+     * </p>
+     * 
+     * <p>
+     * 开启workerId租约时，workerId由{@link WorkerIdLeaser}自动分配，忽略mybatis.max.worker-id。
+     * 生成器外层包装{@link LeasedIdGenerator}，租约失效期间拒绝生成ID；重新分配workerId后清空缓冲区。
+     * </p>
+     * 
+     * <p>
+     * 配置mybatis.max.id-generator=segment时，改用{@link SegmentIdGenerator}
+     * 从数据源中的序列表租用号段，不再依赖workerId。
      * </p>
      * 
      * @param properties 配置属性
+     * @param dataSource 数据源（号段模式下存放序列表）
+     * @param workerIdLeaser workerId租约管理器（未开启租约时为空）
      * @return ID生成器实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public IIdGenerator idGenerator(MybatisMaxProperties properties) {
-        YitIdHelper.setIdGenerator(new IdGeneratorOptions(properties.getWorkerId() == null ? 0 : properties.getWorkerId()));
-        return YitIdHelper::nextId;
+    public IIdGenerator idGenerator(MybatisMaxProperties properties, DataSource dataSource,
+                                    ObjectProvider<WorkerIdLeaser> workerIdLeaser) {
+        if(properties.getIdGenerator() == MybatisMaxProperties.IdGeneratorType.SEGMENT) {
+            MybatisMaxProperties.Segment segment = properties.getSegment();
+            return new SegmentIdGenerator(dataSource, segment.getTableName(), segment.getBizTag(), segment.getStep());
+        }
+        WorkerIdLeaser leaser = workerIdLeaser.getIfAvailable();
+        short workerId;
+        if(leaser != null) {
+            workerId = (short) leaser.start();
+        } else {
+            workerId = properties.getWorkerId() == null ? 0 : properties.getWorkerId();
+        }
+        YitIdHelper.setIdGenerator(idGeneratorOptions(properties, workerId));
+        IIdGenerator idGenerator = new YitterIdGenerator();
+        Integer bufferSize = properties.getIdBufferSize();
+        if(bufferSize != null && bufferSize > 0) {
+            Integer stripes = properties.getIdBufferStripes();
+            BufferedIdGenerator bufferedIdGenerator = new BufferedIdGenerator(idGenerator,
+                    stripes == null ? Runtime.getRuntime().availableProcessors() : stripes, bufferSize);
+            if(leaser != null) {
+                // 重新分配workerId后丢弃按旧workerId预生成的ID
+                leaser.addReassignListener(reassigned -> bufferedIdGenerator.clear());
+            }
+            idGenerator = bufferedIdGenerator;
+        }
+        return leaser == null ? idGenerator : new LeasedIdGenerator(leaser, idGenerator);
+    }
+
+    /**
+     * 构建雪花算法参数
+     *
+     * @param properties 配置属性
+     * @param workerId 工作节点ID
+     * @return 雪花算法参数
+     */
+    private static IdGeneratorOptions idGeneratorOptions(MybatisMaxProperties properties, short workerId) {
+        IdGeneratorOptions options = new IdGeneratorOptions(workerId);
+        if(properties.getWorkerIdBitLength() != null) {
+            options.WorkerIdBitLength = properties.getWorkerIdBitLength();
+        }
+        return options;
     }
 
     /**
@@ -298,4 +560,78 @@ public class BeanConfiguration {
         return dynamicDataSource;
     }
 
+    /**
+     * 缓存指标的Micrometer绑定
+     * <p>
+     * 仅在类路径中存在Micrometer时生效，没有引入Micrometer的应用不会加载该配置。
+     * </p>
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MetricsConfiguration {
+
+        /**
+         * 注册缓存指标绑定
+         * 
+         * @return 缓存指标绑定
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public CacheMetricsBinder cacheMetricsBinder() {
+            return new CacheMetricsBinder();
+        }
+    }
+
+    /**
+     * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}的切面、请求作用域和异步任务装饰器
+     * <p>
+     * 默认开启，配置mybatis.max.thread-local-cache.enabled=false时不加载。
+     * </p>
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "mybatis.max.thread-local-cache", name = "enabled", havingValue = "true",
+            matchIfMissing = true)
+    static class ThreadLocalCacheConfiguration {
+
+        /**
+         * 注册缓存切面
+         * 
+         * @param properties 配置属性
+         * @return 缓存切面
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public ThreadLocalCacheAspect threadLocalCacheAspect(MybatisMaxProperties properties) {
+            ThreadLocalCacheScope.setMaxEntries(properties.getThreadLocalCache().getMaxEntries());
+            return new ThreadLocalCacheAspect();
+        }
+
+        /**
+         * 注册请求作用域过滤器，仅在Servlet应用中生效
+         * 
+         * @return 请求作用域过滤器
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+        public ThreadLocalCacheFilter threadLocalCacheFilter() {
+            return new ThreadLocalCacheFilter();
+        }
+
+        /**
+         * 注册异步任务装饰器
+         * <p>
+         * Spring Boot自动配置的任务执行器会使用该装饰器，&#64;Async方法中调用的注解方法沿用提交线程的作用域。
+         * 容器中已有其他TaskDecorator时不注册。
+         * </p>
+         * 
+         * @return 异步任务装饰器
+         */
+        @Bean
+        @ConditionalOnMissingBean(TaskDecorator.class)
+        public ThreadLocalCacheTaskDecorator threadLocalCacheTaskDecorator() {
+            return new ThreadLocalCacheTaskDecorator();
+        }
+    }
+
 }
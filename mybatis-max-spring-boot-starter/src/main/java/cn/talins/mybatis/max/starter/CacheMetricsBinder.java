@@ -0,0 +1,90 @@
+package cn.talins.mybatis.max.starter;
+
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * 缓存指标的Micrometer绑定 - 把{@link CacheMetrics}注册为Micrometer指标
+ * <p>
+ * 每张表的指标带table标签，之后才第一次访问的表在创建指标时自动注册：
+ * <ul>
+ *     <li>mybatis.max.cache.gets: 按ID读取的记录数，result标签为l1_hit、l2_hit或miss</li>
+ *     <li>mybatis.max.cache.loads / invalidations / evictions / refreshes: 加载的记录数、写操作移除的记录数、
+ *         一级缓存淘汰的记录数、整表重载次数</li>
+ *     <li>mybatis.max.cache.latency: 耗时，operation标签为get、load或refresh；
+ *         mybatis.max.cache.latency.percentile为p50和p99的估算值（秒）</li>
+ *     <li>mybatis.max.cache.size / bytes: 缓存区域的记录数和估算的字节数</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 指标只读取累加器，不改变缓存行为。引入spring-boot-starter-actuator后由Spring Boot自动绑定到MeterRegistry。
+ * </p>
+ *
+ * @author talins
+ * @see BeanConfiguration.MetricsConfiguration 注册位置
+ */
+public class CacheMetricsBinder implements MeterBinder {
+
+    private static final String PREFIX = "mybatis.max.cache";
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CacheMetrics.addListener(metrics -> bind(registry, metrics));
+    }
+
+    private void bind(MeterRegistry registry, CacheMetrics metrics) {
+        Tags tags = Tags.of("table", metrics.getTableName());
+        counter(registry, "gets", tags.and("result", "l1_hit"), metrics, CacheMetrics::getL1Hits);
+        counter(registry, "gets", tags.and("result", "l2_hit"), metrics, CacheMetrics::getL2Hits);
+        counter(registry, "gets", tags.and("result", "miss"), metrics, CacheMetrics::getMisses);
+        counter(registry, "loads", tags, metrics, CacheMetrics::getLoads);
+        counter(registry, "invalidations", tags, metrics, CacheMetrics::getInvalidations);
+        counter(registry, "evictions", tags, metrics, CacheMetrics::getEvictions);
+        counter(registry, "refreshes", tags, metrics, CacheMetrics::getRefreshes);
+        latency(registry, tags.and("operation", "get"), metrics.getGetLatency());
+        latency(registry, tags.and("operation", "load"), metrics.getLoadLatency());
+        latency(registry, tags.and("operation", "refresh"), metrics.getRefreshLatency());
+        Gauge.builder(PREFIX + ".size", metrics, CacheMetrics::getRegionSize)
+                .tags(tags)
+                .description("缓存区域的记录数")
+                .register(registry);
+        Gauge.builder(PREFIX + ".bytes", metrics, CacheMetrics::getRegionBytes)
+                .tags(tags)
+                .baseUnit(BaseUnits.BYTES)
+                .description("缓存区域按抽样估算的字节数")
+                .register(registry);
+    }
+
+    private void counter(MeterRegistry registry, String name, Tags tags, CacheMetrics metrics,
+                         ToDoubleFunction<CacheMetrics> function) {
+        FunctionCounter.builder(PREFIX + "." + name, metrics, function)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private void latency(MeterRegistry registry, Tags tags, CacheMetrics.Latency latency) {
+        FunctionTimer.builder(PREFIX + ".latency", latency, CacheMetrics.Latency::getCount,
+                        CacheMetrics.Latency::getTotalNanos, TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(PREFIX + ".latency.percentile", latency, item -> item.percentile(0.5) / 1e9)
+                .tags(tags.and("percentile", "0.5"))
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder(PREFIX + ".latency.percentile", latency, item -> item.percentile(0.99) / 1e9)
+                .tags(tags.and("percentile", "0.99"))
+                .baseUnit("seconds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,71 @@
+package cn.talins.mybatis.max.starter;
+
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.event.CachePolicyRefreshEvent;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * 缓存策略刷新监听器 - 处理{@link CachePolicyRefreshEvent}，在运行时替换表的缓存策略
+ * <p>
+ * 事件中没有策略时，从Environment重新绑定mybatis.max.cache.tables，
+ * 配置中心修改的属性源会在下一次刷新时生效。替换后的策略同时写回{@link MybatisMaxProperties}。
+ * </p>
+ *
+ * @author talins
+ * @see CacheUtil#configure 替换表的缓存策略
+ * @see BeanConfiguration#cachePolicyRefreshListener 注册位置
+ */
+public class CachePolicyRefreshListener {
+
+    /**
+     * 表缓存策略的配置前缀
+     */
+    private static final String TABLES_PREFIX = "mybatis.max.cache.tables";
+
+    /**
+     * 配置属性
+     */
+    private final MybatisMaxProperties properties;
+
+    /**
+     * 当前环境
+     */
+    private final Environment environment;
+
+    /**
+     * 构造函数
+     *
+     * @param properties 配置属性
+     * @param environment 当前环境
+     */
+    public CachePolicyRefreshListener(MybatisMaxProperties properties, Environment environment) {
+        this.properties = properties;
+        this.environment = environment;
+    }
+
+    /**
+     * 刷新表的缓存策略
+     *
+     * @param event 缓存策略刷新事件
+     */
+    @EventListener
+    public void onRefresh(CachePolicyRefreshEvent event) {
+        Map<String, CachePolicy> tables = event.getTables();
+        if(tables == null) {
+            tables = Binder.get(environment)
+                    .bind(TABLES_PREFIX, Bindable.mapOf(String.class, CachePolicy.class))
+                    .orElseGet(LinkedHashMap::new);
+        }
+        tables = new LinkedHashMap<>(tables);
+        CacheUtil.configure(tables);
+        properties.getCache().setTables(tables);
+    }
+}
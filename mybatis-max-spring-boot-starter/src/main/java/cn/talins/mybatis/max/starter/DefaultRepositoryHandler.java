@@ -7,6 +7,8 @@ import cn.talins.mybatis.max.api.IRepositoryHandler;
 import cn.talins.mybatis.max.api.enums.Booleans;
 import cn.talins.mybatis.max.api.pojo.BaseEntity;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import java.util.Collection;
 import java.util.Date;
 
 
@@ -102,6 +104,33 @@ public class DefaultRepositoryHandler implements IRepositoryHandler {
         entity.setUpdateTime(new Date());
     }
 
+    /**
+     * 批量填充插入实体的公共字段
+     * <p>
+     * 先统计缺少ID的实体数量，通过{@link IIdGenerator#nextIds}一次性分配，
+     * 再逐个填充其余字段，避免每个实体单独访问ID生成器。
+     * </p>
+     *
+     * @param entityList 待插入的实体集合
+     */
+    @Override
+    public void fillInsertEntities(Collection<? extends BaseEntity> entityList) {
+        int missing = 0;
+        for (BaseEntity entity : entityList) {
+            if (entity.getId() == null) {
+                missing++;
+            }
+        }
+        long[] ids = missing > 0 ? idGenerator.nextIds(missing) : new long[0];
+        int index = 0;
+        for (BaseEntity entity : entityList) {
+            if (entity.getId() == null) {
+                entity.setId(ids[index++]);
+            }
+            fillInsertEntity(entity);
+        }
+    }
+
     /**
      * 填充更新实体的公共字段
      * <p>
@@ -18,6 +18,7 @@ import javax.sql.DataSource;
 import java.util.Map;
 
 import static cn.talins.mybatis.max.sdk.common.Constant.TABLE_DATASOURCE_MAP;
+import static cn.talins.mybatis.max.sdk.common.Constant.TABLE_METADATA_MAP;
 
 /**
  * 动态Mapper Bean注册处理器 - 在Spring容器初始化时动态注册Mapper
@@ -113,8 +114,9 @@ public class DynamicMapperBeanFactoryPostProcessor implements BeanDefinitionRegi
                 // 注册Bean定义
                 registry.registerBeanDefinition(beanName, memberBeanDefinition);
                 
-                // 记录表与数据源的映射关系（用于多数据源自动切换）
+                // 记录表与数据源的映射关系（用于多数据源自动切换）和表元数据
                 TABLE_DATASOURCE_MAP.put(tableMetaData.getTableName(), tableMetaData.getDataSourceName());
+                TABLE_METADATA_MAP.put(tableMetaData.getTableName(), tableMetaData);
             }
         }
     }
@@ -1,8 +1,17 @@
 package cn.talins.mybatis.max.starter;
 
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CountCachePolicy;
+import cn.talins.mybatis.max.sdk.cache.IdFilterPolicy;
+import cn.talins.mybatis.max.sdk.cache.QueryCachePolicy;
+import cn.talins.mybatis.max.sdk.id.SegmentIdGenerator;
+import cn.talins.mybatis.max.sdk.id.WorkerIdLeaser;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * MyBatis-Max配置属性类 - 用于绑定application.yml中的配置
  * <p>
@@ -15,6 +24,37 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * mybatis:
  *   max:
  *     worker-id: 1
+ *     id-buffer-size: 64
+ *     id-buffer-stripes: 16
+ *     worker-id-bit-length: 10
+ *     worker-lease:
+ *       enabled: true
+ *     id-generator: segment
+ *     segment:
+ *       biz-tag: default
+ *       step: 1000
+ *     cache:
+ *       tables:
+ *         sys_user:
+ *           mode: read_through
+ *           ttl: 600
+ *           ttl-jitter: 0.2
+ *           refresh-ahead: 0.2
+ *           max-staleness: 300
+ *           load-timeout: 200
+ *           full-reload-threshold: 500
+ *           write-policy: write_through
+ *           index-columns: [username, email]
+ *     query-cache:
+ *       tables:
+ *         sys_user:
+ *           size: 1000
+ *           ttl: 60
+ *           max-staleness: 300
+ *     count-cache:
+ *       tables:
+ *         sys_user:
+ *           stale-ttl: 30
  * </pre>
  * </p>
  * 
@@ -23,6 +63,19 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * <ul>
  *     <li>worker-id: 雪花算法的工作节点ID，用于分布式环境下避免ID冲突。
  *         取值范围：0-63，默认为0。在集群部署时，每个节点应配置不同的值。</li>
+ *     <li>id-buffer-size: 每个条带预生成的ID数量，默认为64，0表示关闭缓冲。</li>
+ *     <li>id-buffer-stripes: ID缓冲区条带数量，默认为CPU核数。</li>
+ *     <li>worker-id-bit-length: 雪花算法workerId的位数，默认为6（最多64个节点）。</li>
+ *     <li>worker-lease: workerId自动租约配置，开启后忽略worker-id，从协调表中自动分配。</li>
+ *     <li>id-generator: ID生成策略，snowflake（默认）或segment（数据库号段）。</li>
+ *     <li>segment: 号段生成器配置，仅在id-generator为segment时生效。</li>
+ *     <li>counter: 计数器聚合配置，开启后热点计数在内存中合并后定时批量写入。</li>
+ *     <li>cache.tables: 按表名配置的缓存策略，如是否开启、缓存模式（按需加载、整表缓存或内存副本）、记录过期时间及随机缩短比例、过期前提前刷新的时间比例、数据库出错或超时时可返回的旧记录的最大陈旧时间及回源耗时预算、
+ *         条件写操作的全表重载阈值、按ID更新后的缓存写策略、selectByMap使用的二级索引列。
+ *         发布{@link cn.talins.mybatis.max.sdk.event.CachePolicyRefreshEvent}后重新绑定并在运行时生效。</li>
+ *     <li>query-cache.tables: 开启查询结果缓存的表及其容量、过期时间（秒），以及数据库出错或超时时返回最后一次结果的最大陈旧时间。</li>
+ *     <li>count-cache.tables: 开启行数缓存的表，stale-ttl为写操作后仍可返回旧行数的时间（秒）。</li>
+ *     <li>thread-local-cache: &#64;ThreadLocalCache的开关及每个请求最多缓存的结果数。</li>
  * </ul>
  * </p>
  * 
@@ -51,4 +104,354 @@ public class MybatisMaxProperties {
      */
     private Short workerId;
 
+    /**
+     * 雪花算法workerId的位数
+     * <p>
+     * 决定可用workerId的范围：[0, 2^位数 - 1]，默认为6。
+     * 需要支持数百个节点时可以调大（如10），但与序列号位数之和不能超过22。
+     * </p>
+     */
+    private Byte workerIdBitLength = 6;
+
+    /**
+     * workerId自动租约配置
+     */
+    private WorkerLease workerLease = new WorkerLease();
+
+    /**
+     * ID缓冲区大小
+     * <p>
+     * 每个条带一次从雪花算法生成器预取的ID数量，默认为64。
+     * 设置为0时关闭缓冲，直接调用底层生成器。
+     * </p>
+     */
+    private Integer idBufferSize = 64;
+
+    /**
+     * ID缓冲区条带数量
+     * <p>
+     * 线程按ID散列到不同条带，条带越多锁竞争越少。
+     * 默认为null，表示使用CPU核数。
+     * </p>
+     */
+    private Integer idBufferStripes;
+
+    /**
+     * ID生成策略
+     * <p>
+     * 默认为{@link IdGeneratorType#SNOWFLAKE}。
+     * </p>
+     */
+    private IdGeneratorType idGenerator = IdGeneratorType.SNOWFLAKE;
+
+    /**
+     * 号段ID生成器配置
+     */
+    private Segment segment = new Segment();
+
+    /**
+     * 计数器聚合配置
+     */
+    private Counter counter = new Counter();
+
+    /**
+     * 表缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 查询结果缓存配置
+     */
+    private QueryCache queryCache = new QueryCache();
+
+    /**
+     * 行数缓存配置
+     */
+    private CountCache countCache = new CountCache();
+
+    /**
+     * 主键过滤器配置
+     */
+    private IdFilter idFilter = new IdFilter();
+
+    /**
+     * 缓存预热配置
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * 分布式缓存加载租约配置
+     */
+    private LoadLease loadLease = new LoadLease();
+
+    /**
+     * 提前刷新配置
+     */
+    private RefreshAhead refreshAhead = new RefreshAhead();
+
+    /**
+     * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}配置
+     */
+    private ThreadLocalCache threadLocalCache = new ThreadLocalCache();
+
+    /**
+     * ID生成策略枚举
+     */
+    public enum IdGeneratorType {
+
+        /**
+         * 雪花算法（Yitter），依赖workerId
+         */
+        SNOWFLAKE,
+
+        /**
+         * 数据库号段，从序列表中租用ID区间，不依赖workerId和时钟
+         */
+        SEGMENT
+    }
+
+    /**
+     * 号段ID生成器配置
+     */
+    @Data
+    public static class Segment {
+
+        /**
+         * 序列表名，不存在时自动创建
+         */
+        private String tableName = SegmentIdGenerator.DEFAULT_TABLE_NAME;
+
+        /**
+         * 业务标识
+         */
+        private String bizTag = "default";
+
+        /**
+         * 每次租用的号段长度
+         */
+        private Integer step = 1000;
+    }
+
+    /**
+     * workerId自动租约配置
+     * <p>
+     * 开启后，各节点启动时从主数据源的协调表中抢占一个空闲或已过期的workerId，
+     * 并通过心跳续约，适用于自动扩缩容的集群部署。
+     * </p>
+     */
+    @Data
+    public static class WorkerLease {
+
+        /**
+         * 是否开启自动租约，默认关闭
+         */
+        private Boolean enabled = false;
+
+        /**
+         * 协调表名，不存在时自动创建
+         */
+        private String tableName = WorkerIdLeaser.DEFAULT_TABLE_NAME;
+
+        /**
+         * 租约时长（秒）
+         */
+        private Integer leaseSeconds = 60;
+
+        /**
+         * 心跳间隔（秒），必须小于租约时长
+         */
+        private Integer heartbeatSeconds = 10;
+    }
+
+    /**
+     * 计数器聚合配置
+     * <p>
+     * 开启后注册{@link cn.talins.mybatis.max.sdk.repository.CounterAggregator}，
+     * 热点计数的增量在内存中合并，按刷新间隔批量写入数据库。
+     * </p>
+     */
+    @Data
+    public static class Counter {
+
+        /**
+         * 是否开启计数器聚合，默认关闭
+         */
+        private Boolean aggregate = false;
+
+        /**
+         * 刷新间隔（毫秒）
+         */
+        private Long flushIntervalMillis = 200L;
+    }
+
+    /**
+     * 表缓存配置
+     * <p>
+     * 按表名配置缓存策略，启动时登记到{@link cn.talins.mybatis.max.sdk.CacheUtil}。
+     * 在此配置的表即使没有在J2Cache中单独配置区域也会开启缓存（使用默认区域配置），
+     * enabled为false的表即使J2Cache中存在同名区域也不缓存。
+     * </p>
+     */
+    @Data
+    public static class Cache {
+
+        /**
+         * 表名 -> 缓存策略
+         */
+        private Map<String, CachePolicy> tables = new LinkedHashMap<>();
+    }
+
+    /**
+     * 查询结果缓存配置
+     * <p>
+     * 按表名开启查询结果缓存，启动时登记到{@link cn.talins.mybatis.max.sdk.cache.QueryCache}。
+     * 未配置的表不缓存查询结果。
+     * </p>
+     */
+    @Data
+    public static class QueryCache {
+
+        /**
+         * 表名 -> 查询结果缓存策略
+         */
+        private Map<String, QueryCachePolicy> tables = new LinkedHashMap<>();
+    }
+
+    /**
+     * 行数缓存配置
+     * <p>
+     * 按表名开启selectCount和分页总数的缓存，启动时登记到{@link cn.talins.mybatis.max.sdk.cache.CountCache}。
+     * </p>
+     */
+    @Data
+    public static class CountCache {
+
+        /**
+         * 表名 -> 行数缓存策略
+         */
+        private Map<String, CountCachePolicy> tables = new LinkedHashMap<>();
+    }
+
+    /**
+     * 主键过滤器配置
+     * <p>
+     * 按表名开启主键布隆过滤器，启动时登记到{@link cn.talins.mybatis.max.sdk.cache.IdFilter}，
+     * 首次按ID查询时在后台构建。
+     * </p>
+     *
+     * <p>
+     * 过滤器只能感知本节点的插入，多节点部署时需要注册{@link cn.talins.mybatis.max.api.ITableVersionStore}，
+     * 构建后其他节点写入过的表，被拦截的ID会到数据库确认。
+     * </p>
+     */
+    @Data
+    public static class IdFilter {
+
+        /**
+         * 是否为单节点部署，没有注册ITableVersionStore时必须为true才能开启主键过滤器
+         */
+        private Boolean singleNode = false;
+
+        /**
+         * 表名 -> 主键过滤器策略
+         */
+        private Map<String, IdFilterPolicy> tables = new LinkedHashMap<>();
+    }
+
+    /**
+     * 缓存预热配置
+     * <p>
+     * 开启后，应用就绪前并行加载缓存策略中warm-up为true的表以及开启了主键过滤器的表，
+     * 全部完成或超时后应用才对外就绪。
+     * </p>
+     */
+    @Data
+    public static class WarmUp {
+
+        /**
+         * 是否开启缓存预热，默认关闭
+         */
+        private Boolean enabled = false;
+
+        /**
+         * 同时加载的表数量
+         */
+        private Integer parallelism = 4;
+
+        /**
+         * 每批加载的记录数
+         */
+        private Integer chunkSize = 5000;
+
+        /**
+         * 同一数据源上同时加载的表数量
+         */
+        private Integer dataSourceConcurrency = 2;
+
+        /**
+         * 等待预热完成的超时时间（毫秒），超时后应用照常就绪，未完成的表继续在后台加载
+         */
+        private Long timeoutMillis = 300000L;
+    }
+
+    /**
+     * 分布式缓存加载租约配置
+     * <p>
+     * 仅在容器中存在{@link cn.talins.mybatis.max.api.ILoadLease}实现时生效。
+     * </p>
+     */
+    @Data
+    public static class LoadLease {
+
+        /**
+         * 租约时长（毫秒），应大于一次整表重载的耗时
+         */
+        private Long leaseMillis = 30000L;
+
+        /**
+         * 等待其他节点加载的最长时间（毫秒），超时后自行加载，应大于一次加载的正常耗时
+         */
+        private Long waitMillis = 3000L;
+
+        /**
+         * 单个键的加载等待超时后是否抛出异常而不是自行加载，不能接受重复加载时开启；区域重载总是自行加载
+         */
+        private Boolean failFast = false;
+    }
+
+    /**
+     * 提前刷新配置
+     * <p>
+     * 各表是否提前刷新由缓存策略的refresh-ahead决定，这里只限制后台刷新对数据源的压力。
+     * </p>
+     */
+    @Data
+    public static class RefreshAhead {
+
+        /**
+         * 每个数据源同时执行的刷新任务数
+         */
+        private Integer dataSourceConcurrency = cn.talins.mybatis.max.sdk.cache.RefreshAhead.DEFAULT_DATA_SOURCE_CONCURRENCY;
+    }
+
+    /**
+     * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}配置
+     * <p>
+     * 开启后注册缓存切面和{@link ThreadLocalCacheFilter}，Web请求内相同参数的注解方法只执行一次。
+     * </p>
+     */
+    @Data
+    public static class ThreadLocalCache {
+
+        /**
+         * 是否开启，默认开启
+         */
+        private Boolean enabled = true;
+
+        /**
+         * 每个作用域最多缓存的结果数，小于等于0表示不限制
+         */
+        private Integer maxEntries = ThreadLocalCacheScope.DEFAULT_MAX_ENTRIES;
+    }
+
 }
@@ -0,0 +1,102 @@
+package cn.talins.mybatis.max.starter;
+
+import cn.talins.mybatis.max.api.annotation.ThreadLocalCache;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * {@link ThreadLocalCache}切面 - 在作用域内按目标对象、方法和参数缓存方法的返回值
+ * <p>
+ * 处理规则：
+ * <ul>
+ *     <li>不在{@link ThreadLocalCacheScope}内的调用直接执行，不缓存</li>
+ *     <li>缓存键由目标对象、方法和参数组成，目标对象按引用比较，不同的bean实例（包括继承同一方法的子类）互不共享；
+ *     参数按equals比较（数组按内容比较），哈希值在创建时计算一次</li>
+ *     <li>返回null也会缓存，抛出异常时不缓存</li>
+ *     <li>同一对象内部的自调用不经过代理，不会缓存</li>
+ * </ul>
+ * 缓存的是返回值本身，调用方修改返回的对象会影响同一作用域内之后的调用。
+ * </p>
+ *
+ * @author talins
+ * @see BeanConfiguration#threadLocalCacheAspect 注册位置
+ */
+@Aspect
+public class ThreadLocalCacheAspect {
+
+    /**
+     * 缓存的null返回值
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * 执行或返回缓存的结果
+     *
+     * @param joinPoint 连接点
+     * @return 方法的返回值
+     * @throws Throwable 方法抛出的异常
+     */
+    @Around("@annotation(cn.talins.mybatis.max.api.annotation.ThreadLocalCache)")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        ThreadLocalCacheScope.Store store = ThreadLocalCacheScope.current();
+        if (store == null) {
+            return joinPoint.proceed();
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CacheKey key = new CacheKey(joinPoint.getTarget(), method, joinPoint.getArgs());
+        Object value = store.get(key);
+        if (value == null) {
+            value = joinPoint.proceed();
+            store.put(key, value == null ? NULL : value);
+            return value;
+        }
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * 缓存键
+     */
+    static final class CacheKey {
+
+        /**
+         * 目标对象，静态方法为null
+         */
+        private final Object target;
+
+        private final Method method;
+
+        private final Object[] args;
+
+        private final int hash;
+
+        CacheKey(Object target, Method method, Object[] args) {
+            this.target = target;
+            this.method = method;
+            this.args = args == null || args.length == 0 ? null : args.clone();
+            this.hash = 31 * (31 * System.identityHashCode(target) + method.hashCode()) + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && target == other.target && method.equals(other.method)
+                    && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cn.talins.mybatis.max.starter;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}的请求作用域过滤器
+ * <p>
+ * 每个请求开始时打开{@link ThreadLocalCacheScope}，请求处理完成后关闭并清空缓存的结果，
+ * 请求线程归还到容器线程池时不残留任何状态。异步请求的后续处理不在该作用域内。
+ * </p>
+ *
+ * @author talins
+ * @see BeanConfiguration#threadLocalCacheFilter 注册位置
+ */
+public class ThreadLocalCacheFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (ThreadLocalCacheScope ignored = ThreadLocalCacheScope.open()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
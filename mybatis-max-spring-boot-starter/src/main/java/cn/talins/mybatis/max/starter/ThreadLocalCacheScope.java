@@ -0,0 +1,218 @@
+package cn.talins.mybatis.max.starter;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}的作用域 - 决定缓存结果的保存时间
+ * <p>
+ * 只有在作用域内调用的注解方法才会缓存结果，作用域关闭时清空：
+ * <ul>
+ *     <li>Web请求由{@link ThreadLocalCacheFilter}在请求开始时打开，结束时关闭</li>
+ *     <li>定时任务、消息消费等非Web场景通过{@link #open()}显式打开，嵌套打开时沿用外层作用域</li>
+ *     <li>异步执行的任务通过{@link #wrap(Runnable)}或{@link ThreadLocalCacheTaskDecorator}
+ *         使用提交任务时的作用域，任务结束后恢复线程原来的状态，线程池中的线程不会残留作用域</li>
+ * </ul>
+ * 作用域内的结果可能被多个线程同时读写，使用并发容器保存；作用域关闭后异步任务仍持有的作用域不再保存新的结果。
+ * </p>
+ *
+ * <p>
+ * 使用示例：
+ * <pre>
+ * try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+ *     userService.getUserById(1L);
+ *     // 相同参数直接返回上一次的结果
+ *     userService.getUserById(1L);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author talins
+ * @see ThreadLocalCacheAspect 缓存切面
+ */
+public final class ThreadLocalCacheScope implements AutoCloseable {
+
+    /**
+     * 默认每个作用域最多保存的结果数
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * 当前线程所在的作用域
+     */
+    private static final ThreadLocal<Store> CURRENT = new ThreadLocal<>();
+
+    private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * 本次打开的存储，嵌套打开时为null
+     */
+    private final Store store;
+
+    private ThreadLocalCacheScope(Store store) {
+        this.store = store;
+    }
+
+    /**
+     * 设置每个作用域最多保存的结果数，之后打开的作用域生效
+     *
+     * @param maxEntries 结果数，小于等于0表示不限制
+     */
+    public static void setMaxEntries(int maxEntries) {
+        ThreadLocalCacheScope.maxEntries = maxEntries;
+    }
+
+    /**
+     * 在当前线程打开作用域
+     *
+     * @return 作用域，关闭时清空缓存的结果；当前线程已在作用域内时返回的对象关闭时不做任何操作
+     */
+    public static ThreadLocalCacheScope open() {
+        if (CURRENT.get() != null) {
+            return new ThreadLocalCacheScope(null);
+        }
+        Store store = new Store(maxEntries);
+        CURRENT.set(store);
+        return new ThreadLocalCacheScope(store);
+    }
+
+    /**
+     * 当前线程是否在作用域内
+     *
+     * @return 在作用域内时返回true
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * 使任务在其他线程执行时使用当前的作用域
+     *
+     * @param task 任务
+     * @return 包装后的任务，当前线程不在作用域内时返回原任务
+     */
+    public static Runnable wrap(Runnable task) {
+        Store store = CURRENT.get();
+        if (store == null) {
+            return task;
+        }
+        return () -> {
+            Store previous = attach(store);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 使任务在其他线程执行时使用当前的作用域
+     *
+     * @param task 任务
+     * @param <V> 返回值类型
+     * @return 包装后的任务，当前线程不在作用域内时返回原任务
+     */
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        Store store = CURRENT.get();
+        if (store == null) {
+            return task;
+        }
+        return () -> {
+            Store previous = attach(store);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 获取当前线程所在作用域的存储
+     *
+     * @return 存储，不在作用域内时返回null
+     */
+    static Store current() {
+        return CURRENT.get();
+    }
+
+    private static Store attach(Store store) {
+        Store previous = CURRENT.get();
+        CURRENT.set(store);
+        return previous;
+    }
+
+    private static void restore(Store previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (store == null) {
+            return;
+        }
+        store.close();
+        if (CURRENT.get() == store) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 作用域内缓存的结果
+     */
+    static final class Store {
+
+        private final Map<Object, Object> entryMap = new ConcurrentHashMap<>();
+
+        private final int maxEntries;
+
+        private volatile boolean closed;
+
+        Store(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * 读取缓存的结果
+         *
+         * @param key 缓存键
+         * @return 结果，未缓存时返回null
+         */
+        Object get(Object key) {
+            return entryMap.get(key);
+        }
+
+        /**
+         * 保存结果，作用域已关闭或结果数达到上限时不保存
+         *
+         * @param key 缓存键
+         * @param value 结果，不能为null
+         */
+        void put(Object key, Object value) {
+            if (closed || (maxEntries > 0 && entryMap.size() >= maxEntries)) {
+                return;
+            }
+            entryMap.putIfAbsent(key, value);
+        }
+
+        /**
+         * 已缓存的结果数
+         *
+         * @return 结果数
+         */
+        int size() {
+            return entryMap.size();
+        }
+
+        private void close() {
+            closed = true;
+            entryMap.clear();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.talins.mybatis.max.starter;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * {@link cn.talins.mybatis.max.api.annotation.ThreadLocalCache}的异步任务装饰器
+ * <p>
+ * 提交任务时捕获提交线程的{@link ThreadLocalCacheScope}，任务在线程池中执行期间使用该作用域，
+ * 结束后恢复线程原来的状态。Spring Boot自动配置的任务执行器（&#64;Async等）会使用容器中的TaskDecorator，
+ * 自定义的ThreadPoolTaskExecutor需要自行调用setTaskDecorator。
+ * </p>
+ *
+ * @author talins
+ * @see ThreadLocalCacheScope#wrap(Runnable) 包装任务
+ */
+public class ThreadLocalCacheTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return ThreadLocalCacheScope.wrap(runnable);
+    }
+}
@@ -0,0 +1,67 @@
+package cn.talins.mybatis.max.starter;
+
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.IIdGenerator;
+import com.github.yitter.idgen.YitIdHelper;
+
+import java.lang.reflect.Field;
+
+/**
+ * Yitter雪花ID生成器 - 批量生成时只获取一次全局锁
+ * <p>
+ * Yitter的每次{@link YitIdHelper#nextId()}都会获取一把全局锁（SnowWorkerM1._SyncLock），
+ * {@link IIdGenerator#nextIds}的默认实现逐个调用nextId，一批ID要竞争同样多次。
+ * 该类在批量生成时先持有这把锁，再逐个调用nextId，锁是可重入的，内部的加锁不会再与其他线程竞争，
+ * 一批ID只排队一次。{@link cn.talins.mybatis.max.sdk.id.BufferedIdGenerator}的条带补充缓冲区时调用该方法。
+ * </p>
+ *
+ * <p>
+ * 读取不到Yitter的锁时（版本变化导致字段不存在）改用本类的锁，批量生成之间仍然互斥，
+ * Yitter的锁只在批量生成与单独调用nextId的线程之间竞争。
+ * </p>
+ *
+ * @author talins
+ * @see BeanConfiguration#idGenerator 默认ID生成器配置
+ */
+public class YitterIdGenerator implements IIdGenerator {
+
+    /**
+     * 批量生成时持有的锁
+     */
+    private static final Object LOCK = syncLock();
+
+    @Override
+    public Long nextId() {
+        return YitIdHelper.nextId();
+    }
+
+    @Override
+    public long[] nextIds(int n) {
+        long[] ids = new long[n];
+        synchronized (LOCK) {
+            for (int i = 0; i < n; i++) {
+                ids[i] = YitIdHelper.nextId();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 读取Yitter的全局锁，读取失败时返回新的锁对象
+     *
+     * @return 批量生成时持有的锁
+     */
+    private static Object syncLock() {
+        try {
+            Field field = Class.forName("com.github.yitter.core.SnowWorkerM1").getDeclaredField("_SyncLock");
+            field.setAccessible(true);
+            Object lock = field.get(null);
+            if (lock != null) {
+                return lock;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            StaticLog.warn("yitter sync lock not found, batching under a local lock: {}", e.toString());
+        }
+        return new Object();
+    }
+}
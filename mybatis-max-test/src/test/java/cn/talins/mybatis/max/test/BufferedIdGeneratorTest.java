@@ -0,0 +1,151 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.IIdGenerator;
+import cn.talins.mybatis.max.sdk.id.BufferedIdGenerator;
+import cn.talins.mybatis.max.starter.YitterIdGenerator;
+import com.github.yitter.contract.IdGeneratorOptions;
+import com.github.yitter.idgen.YitIdHelper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BufferedIdGenerator 单元测试
+ * 测试条带缓冲ID生成器的唯一性和批量补充，以及Yitter生成器的批量生成
+ *
+ * @author talins
+ */
+@DisplayName("BufferedIdGenerator测试")
+public class BufferedIdGeneratorTest {
+
+    @BeforeAll
+    static void setUp() {
+        YitIdHelper.setIdGenerator(new IdGeneratorOptions((short) 1));
+    }
+
+    @Test
+    @DisplayName("测试nextId生成唯一ID")
+    void testNextIdUnique() {
+        AtomicLong sequence = new AtomicLong();
+        IIdGenerator idGenerator = new BufferedIdGenerator(sequence::incrementAndGet, 4, 16);
+        Set<Long> idSet = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(idSet.add(idGenerator.nextId()), "ID不应该重复");
+        }
+    }
+
+    @Test
+    @DisplayName("测试nextIds批量生成")
+    void testNextIds() {
+        AtomicLong sequence = new AtomicLong();
+        IIdGenerator idGenerator = new BufferedIdGenerator(sequence::incrementAndGet, 1, 8);
+        idGenerator.nextId();
+
+        long[] ids = idGenerator.nextIds(20);
+
+        assertEquals(20, ids.length, "应该返回20个ID");
+        Set<Long> idSet = ConcurrentHashMap.newKeySet();
+        for (long id : ids) {
+            assertTrue(idSet.add(id), "ID不应该重复");
+        }
+    }
+
+    @Test
+    @DisplayName("测试默认nextIds实现")
+    void testDefaultNextIds() {
+        AtomicLong sequence = new AtomicLong();
+        IIdGenerator idGenerator = sequence::incrementAndGet;
+
+        assertArrayEquals(new long[]{1, 2, 3}, idGenerator.nextIds(3));
+    }
+
+    @Test
+    @DisplayName("测试多线程下ID不重复")
+    void testConcurrentUnique() throws InterruptedException {
+        IIdGenerator idGenerator = new BufferedIdGenerator(YitIdHelper::nextId, 8, 64);
+        Set<Long> idSet = ConcurrentHashMap.newKeySet();
+        int threadCount = 16;
+        int perThread = 2000;
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    idSet.add(idGenerator.nextId());
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        assertEquals(threadCount * perThread, idSet.size(), "多线程生成的ID不应该重复");
+    }
+
+    @Test
+    @DisplayName("测试补充缓冲区时一次批量获取")
+    void testBatchRefill() {
+        AtomicLong sequence = new AtomicLong();
+        AtomicInteger batchCount = new AtomicInteger();
+        IIdGenerator delegate = new IIdGenerator() {
+            @Override
+            public Long nextId() {
+                fail("补充缓冲区不应该逐个获取");
+                return null;
+            }
+
+            @Override
+            public long[] nextIds(int n) {
+                batchCount.incrementAndGet();
+                long[] ids = new long[n];
+                for (int i = 0; i < n; i++) {
+                    ids[i] = sequence.incrementAndGet();
+                }
+                return ids;
+            }
+        };
+        IIdGenerator idGenerator = new BufferedIdGenerator(delegate, 1, 64);
+        for (int i = 0; i < 640; i++) {
+            idGenerator.nextId();
+        }
+
+        assertEquals(10, batchCount.get(), "每64个ID只访问一次底层生成器");
+    }
+
+    @Test
+    @DisplayName("测试Yitter批量生成的ID唯一且递增")
+    void testYitterNextIds() throws InterruptedException {
+        IIdGenerator idGenerator = new YitterIdGenerator();
+        Set<Long> idSet = ConcurrentHashMap.newKeySet();
+        int threadCount = 8;
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicBoolean ordered = new AtomicBoolean(true);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    long[] ids = idGenerator.nextIds(64);
+                    for (int k = 0; k < ids.length; k++) {
+                        idSet.add(ids[k]);
+                        if (k > 0 && ids[k] <= ids[k - 1]) {
+                            ordered.set(false);
+                        }
+                    }
+                    idSet.add(idGenerator.nextId());
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        assertEquals(threadCount * 50 * 65, idSet.size(), "ID不应该重复");
+        assertTrue(ordered.get(), "同一批ID应该递增");
+    }
+}
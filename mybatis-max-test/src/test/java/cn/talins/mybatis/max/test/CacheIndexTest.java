@@ -0,0 +1,209 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.api.IRepositoryHandler;
+import cn.talins.mybatis.max.api.pojo.BaseEntity;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.DynamicMapperUtil;
+import cn.talins.mybatis.max.sdk.cache.CacheIndex;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存二级索引测试
+ * 测试selectByMap在缓存表上通过索引查找，以及写操作对索引的维护
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CacheIndexTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    @Autowired
+    private IRepositoryHandler repositoryHandler;
+
+    private MemoryTableVersionStore versionStore;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private static final int USER_COUNT = 200;
+
+    private final List<Long> idList = new ArrayList<>();
+
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        TableVersions.setSharedRefreshMillis(0);
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 10000, -1);
+        policy.setIndexColumns(CollUtil.newHashSet("username", "email"));
+        CacheUtil.register(TEST_TABLE, policy);
+        prefix = "index_" + System.nanoTime() + "_";
+        for (int i = 0; i < USER_COUNT; i++) {
+            JSONObject user = new JSONObject();
+            user.set("username", prefix + i);
+            user.set("nickname", "索引" + i % 2);
+            user.set("email", prefix + (i % 10) + "@example.com");
+            idList.add(baseRepository.insert(TEST_TABLE, user));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        CacheUtil.unregister(TEST_TABLE);
+        TableVersions.setSharedRefreshMillis(TableVersions.DEFAULT_SHARED_REFRESH_MILLIS);
+        TableVersions.setStore(null);
+    }
+
+    @Test
+    @DisplayName("测试通过索引等值查询")
+    void testSelectByIndex() {
+        List<JSONObject> resultList = baseRepository.selectByMap(TEST_TABLE,
+                condition("email", prefix + "3@example.com"), JSONObject.class);
+        assertEquals(USER_COUNT / 10, resultList.size());
+
+        Map<String, Object> columnMap = condition("email", prefix + "3@example.com");
+        columnMap.put("nickname", "索引1");
+        assertEquals(USER_COUNT / 10, baseRepository.selectByMap(TEST_TABLE, columnMap, JSONObject.class).size(),
+                "非索引条件应该在候选记录上校验");
+        columnMap.put("nickname", "索引0");
+        assertTrue(baseRepository.selectByMap(TEST_TABLE, columnMap, JSONObject.class).isEmpty());
+
+        JSONObject user = baseRepository.selectOneByMap(TEST_TABLE, condition("username", prefix + 7), JSONObject.class);
+        assertEquals(idList.get(7), user.getLong("id"));
+    }
+
+    @Test
+    @DisplayName("测试写操作维护索引")
+    void testMaintainIndex() {
+        String username = prefix + 5;
+        assertNotNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class));
+
+        JSONObject update = new JSONObject();
+        update.set("id", idList.get(5));
+        update.set("username", username + "_renamed");
+        baseRepository.updateById(TEST_TABLE, update);
+        assertNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class),
+                "更新后旧值不应该再命中");
+        assertNotNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username + "_renamed"),
+                JSONObject.class), "更新后新值应该命中");
+
+        baseRepository.deleteById(TEST_TABLE, idList.get(6));
+        assertNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", prefix + 6), JSONObject.class),
+                "删除的记录不应该命中");
+
+        JSONObject user = new JSONObject();
+        user.set("username", prefix + "new");
+        idList.add(baseRepository.insert(TEST_TABLE, user));
+        assertNotNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", prefix + "new"),
+                JSONObject.class), "新增的记录应该命中");
+    }
+
+    @Test
+    @DisplayName("测试其他节点插入的记录可以通过索引查询")
+    void testRemoteInsert() {
+        String username = prefix + "remote";
+        assertNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class));
+
+        // 模拟其他节点插入：直接写入数据库并递增共享版本号，本节点的索引不知道该记录
+        JSONObject user = new JSONObject();
+        user.set("username", username);
+        BaseEntity entity = BeanUtil.toBean(user, DynamicMapperUtil.getLoaderClass(TEST_TABLE));
+        repositoryHandler.fillInsertEntity(entity);
+        repositoryHandler.getMapper(TEST_TABLE).insert(entity);
+        idList.add(entity.getId());
+        versionStore.remoteWrite(TEST_TABLE);
+
+        JSONObject found = baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class);
+        assertNotNull(found, "其他节点写入后索引应该重新加载");
+        assertEquals(entity.getId(), found.getLong("id"));
+    }
+
+    @Test
+    @DisplayName("测试没有共享版本号存储时查询数据库")
+    void testWithoutStore() {
+        TableVersions.setStore(null);
+        String username = prefix + "remote";
+        assertNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class));
+
+        JSONObject user = new JSONObject();
+        user.set("username", username);
+        BaseEntity entity = BeanUtil.toBean(user, DynamicMapperUtil.getLoaderClass(TEST_TABLE));
+        repositoryHandler.fillInsertEntity(entity);
+        repositoryHandler.getMapper(TEST_TABLE).insert(entity);
+        idList.add(entity.getId());
+
+        assertNotNull(baseRepository.selectOneByMap(TEST_TABLE, condition("username", username), JSONObject.class),
+                "无法感知其他节点的写操作时不应该使用索引");
+    }
+
+    @Test
+    @DisplayName("测试按字段类型比较")
+    void testTypeAwareEquality() {
+        assertTrue(CacheIndex.equals(Long.class, 1L, "1"));
+        assertTrue(CacheIndex.equals(Long.class, 1, 1L));
+        assertTrue(CacheIndex.equals(BigDecimal.class, new BigDecimal("1.0"), "1.00"));
+        assertFalse(CacheIndex.equals(String.class, "a", "b"));
+        assertTrue(CacheIndex.equals(String.class, null, null));
+    }
+
+    @Test
+    @DisplayName("索引查询与全量扫描耗时对比")
+    void testBenchmark() {
+        Map<String, Object> columnMap = condition("username", prefix + 100);
+        baseRepository.selectByMap(TEST_TABLE, columnMap, JSONObject.class);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            baseRepository.selectByMap(TEST_TABLE, columnMap, JSONObject.class);
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        Map<String, Object> scanMap = new HashMap<>();
+        scanMap.put("nickname", "索引0");
+        scanMap.put("username", prefix + 100);
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 10000, -1);
+        policy.setIndexColumns(CollUtil.newHashSet());
+        CacheUtil.register(TEST_TABLE, policy);
+        baseRepository.selectBatchIds(TEST_TABLE, idList, JSONObject.class);
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            baseRepository.selectByMap(TEST_TABLE, scanMap, JSONObject.class);
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        StaticLog.info("100 selectByMap on {} rows: index={}ms scan={}ms",
+                USER_COUNT, indexNanos / 1_000_000, scanNanos / 1_000_000);
+    }
+
+    private Map<String, Object> condition(String column, Object value) {
+        Map<String, Object> columnMap = new HashMap<>();
+        columnMap.put(column, value);
+        return columnMap;
+    }
+}
@@ -0,0 +1,85 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 条件写操作的缓存维护测试
+ * 测试update/delete按条件只维护受影响的缓存记录
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CacheInvalidationTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private Long targetId;
+
+    private Long otherId;
+
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, -1);
+        policy.setFullReloadThreshold(10);
+        CacheUtil.register(TEST_TABLE, policy);
+        username = "cache_user_" + System.nanoTime();
+        targetId = baseRepository.insert(TEST_TABLE, newUser(username));
+        otherId = baseRepository.insert(TEST_TABLE, newUser(username + "_other"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, Arrays.asList(targetId, otherId));
+        CacheUtil.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试条件更新只刷新受影响的缓存记录")
+    void testUpdateByWrapper() {
+        Object otherBefore = CacheUtil.get(TEST_TABLE, String.valueOf(otherId));
+        JSONObject update = new JSONObject();
+        update.set("nickname", "条件更新");
+
+        baseRepository.update(TEST_TABLE, update, Wrappers.query(update).eq("username", username));
+
+        JSONObject cached = (JSONObject) CacheUtil.get(TEST_TABLE, String.valueOf(targetId));
+        assertEquals("条件更新", cached.getStr("nickname"), "受影响的记录应该刷新缓存");
+        assertSame(otherBefore, CacheUtil.get(TEST_TABLE, String.valueOf(otherId)), "未受影响的记录不应该重新加载");
+    }
+
+    @Test
+    @DisplayName("测试条件删除只移除受影响的缓存记录")
+    void testDeleteByWrapper() {
+        baseRepository.delete(TEST_TABLE, Wrappers.query(JSONObject.class).eq("username", username));
+
+        assertNull(CacheUtil.get(TEST_TABLE, String.valueOf(targetId)), "删除的记录应该从缓存移除");
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(otherId)), "未受影响的记录应该保留");
+    }
+
+    private JSONObject newUser(String name) {
+        JSONObject user = new JSONObject();
+        user.set("username", name);
+        user.set("nickname", "缓存");
+        return user;
+    }
+}
@@ -0,0 +1,85 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import cn.talins.mybatis.max.starter.CacheMetricsBinder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CacheMetrics 单元测试
+ * 测试命中计数、耗时分位数的估算，以及Micrometer绑定
+ *
+ * @author talins
+ */
+@DisplayName("CacheMetrics测试")
+public class CacheMetricsTest {
+
+    @Test
+    @DisplayName("测试命中和未命中计数")
+    void testCounters() {
+        CacheMetrics metrics = CacheMetrics.of("metrics_counter_" + System.nanoTime());
+
+        metrics.recordGet(3, 1, 0, 1000);
+        metrics.recordGet(0, 0, 4, 2000);
+        metrics.recordLoad(4, 5_000_000);
+        metrics.recordInvalidation(2);
+        metrics.recordEviction(1);
+
+        assertEquals(3, metrics.getL1Hits());
+        assertEquals(1, metrics.getL2Hits());
+        assertEquals(4, metrics.getMisses());
+        assertEquals(4, metrics.getLoads());
+        assertEquals(2, metrics.getInvalidations());
+        assertEquals(1, metrics.getEvictions());
+        assertEquals(0.5, metrics.getHitRatio(), 1e-9);
+        assertEquals(2, metrics.getGetLatency().getCount());
+        assertEquals(3000, metrics.getGetLatency().getTotalNanos());
+    }
+
+    @Test
+    @DisplayName("测试耗时分位数的估算")
+    void testPercentile() {
+        CacheMetrics.Latency latency = CacheMetrics.of("metrics_latency_" + System.nanoTime()).getGetLatency();
+        for (int i = 0; i < 99; i++) {
+            latency.record(TimeUnit.MICROSECONDS.toNanos(3));
+        }
+        latency.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(0, CacheMetrics.of("metrics_empty_" + System.nanoTime()).getGetLatency().percentile(0.99));
+        long p50 = latency.percentile(0.5);
+        assertTrue(p50 >= TimeUnit.MICROSECONDS.toNanos(3) && p50 <= TimeUnit.MICROSECONDS.toNanos(6),
+                "分位数应该落在所在桶的上界，实际" + p50);
+        long p100 = latency.percentile(1);
+        assertTrue(p100 >= TimeUnit.MILLISECONDS.toNanos(10) && p100 <= TimeUnit.MILLISECONDS.toNanos(20),
+                "最大值所在的桶应该覆盖10毫秒，实际" + p100);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), latency.getMaxNanos());
+    }
+
+    @Test
+    @DisplayName("测试绑定已有和之后创建的表的指标")
+    void testBinder() {
+        String existingTable = "metrics_existing_" + System.nanoTime();
+        CacheMetrics.of(existingTable).recordGet(2, 0, 1, 1000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new CacheMetricsBinder().bindTo(registry);
+
+        String newTable = "metrics_new_" + System.nanoTime();
+        CacheMetrics.of(newTable).recordLoad(5, 1000);
+
+        FunctionCounter hits = registry.get("mybatis.max.cache.gets")
+                .tag("table", existingTable).tag("result", "l1_hit").functionCounter();
+        assertEquals(2, hits.count());
+        FunctionCounter loads = registry.get("mybatis.max.cache.loads").tag("table", newTable).functionCounter();
+        assertEquals(5, loads.count(), "之后创建的表应该自动注册");
+        FunctionTimer loadLatency = registry.get("mybatis.max.cache.latency")
+                .tag("table", newTable).tag("operation", "load").functionTimer();
+        assertEquals(1, loadLatency.count());
+    }
+}
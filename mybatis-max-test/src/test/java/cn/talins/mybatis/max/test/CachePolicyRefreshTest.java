@@ -0,0 +1,118 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CacheMode;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.event.CachePolicyRefreshEvent;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表缓存策略测试
+ * 测试缓存开关、记录过期时间、整表缓存模式，以及通过事件在运行时替换策略
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CachePolicyRefreshTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private Long id;
+
+    @AfterEach
+    void tearDown() {
+        if (id != null) {
+            baseRepository.deleteById(TEST_TABLE, id);
+        }
+        publisher.publishEvent(new CachePolicyRefreshEvent(Collections.emptyMap()));
+        CacheUtil.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试通过事件替换缓存策略")
+    void testRefreshEvent() {
+        CachePolicy policy = new CachePolicy();
+        policy.setTtl(600);
+        refresh(policy);
+        assertEquals(600, CacheUtil.getPolicy(TEST_TABLE).getTtl());
+        assertEquals(TEST_TABLE, CacheUtil.getPolicy(TEST_TABLE).getRegion(), "区域名称默认为表名");
+
+        policy = new CachePolicy();
+        policy.setEnabled(false);
+        refresh(policy);
+        assertFalse(CacheUtil.exists(TEST_TABLE), "关闭后不应该缓存该表");
+
+        publisher.publishEvent(new CachePolicyRefreshEvent(Collections.emptyMap()));
+        assertNull(CacheUtil.getPolicy(TEST_TABLE), "移除配置后应该注销策略");
+    }
+
+    @Test
+    @DisplayName("测试记录按过期时间失效")
+    void testRowTtl() {
+        CachePolicy policy = new CachePolicy();
+        policy.setTtl(1);
+        policy.setTtlJitter(0.5);
+        refresh(policy);
+        id = insert("ttl_" + System.nanoTime());
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)));
+
+        ThreadUtil.sleep(1100);
+
+        assertNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)), "过期的记录应该按未命中处理");
+        assertNotNull(baseRepository.selectById(TEST_TABLE, id, JSONObject.class), "过期后应该从数据库重新加载");
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)));
+    }
+
+    @Test
+    @DisplayName("测试整表缓存模式遍历缓存区域")
+    void testFullTable() {
+        CachePolicy policy = new CachePolicy();
+        policy.setMode(CacheMode.FULL_TABLE);
+        policy.setIndexColumns(Collections.emptySet());
+        refresh(policy);
+        String nickname = "整表缓存" + System.nanoTime();
+        id = insert(nickname);
+        CacheUtil.clear(TEST_TABLE);
+
+        List<JSONObject> resultList = baseRepository.selectByMap(TEST_TABLE,
+                Collections.singletonMap("nickname", nickname), JSONObject.class);
+
+        assertEquals(1, resultList.size());
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)), "区域为空时应该加载整张表");
+    }
+
+    private void refresh(CachePolicy policy) {
+        Map<String, CachePolicy> tables = new HashMap<>();
+        tables.put(TEST_TABLE, policy);
+        publisher.publishEvent(new CachePolicyRefreshEvent(tables));
+    }
+
+    private Long insert(String nickname) {
+        JSONObject user = new JSONObject();
+        user.set("username", "policy_" + System.nanoTime());
+        user.set("nickname", nickname);
+        return baseRepository.insert(TEST_TABLE, user);
+    }
+}
@@ -0,0 +1,83 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存读穿透测试
+ * 测试selectBatchIds在缓存未命中时从数据库加载并回填
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CacheReadThroughTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        CacheUtil.register(TEST_TABLE, new CachePolicy(TEST_TABLE, 1000, -1));
+        for (int i = 0; i < 3; i++) {
+            JSONObject user = new JSONObject();
+            user.set("username", "read_through_" + i + "_" + System.nanoTime());
+            user.set("nickname", "读穿透" + i);
+            idList.add(baseRepository.insert(TEST_TABLE, user));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        CacheUtil.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试未命中的记录从数据库加载并回填缓存")
+    void testLoadMissing() {
+        CacheUtil.remove(TEST_TABLE, String.valueOf(idList.get(0)), String.valueOf(idList.get(2)));
+
+        List<JSONObject> resultList = baseRepository.selectBatchIds(TEST_TABLE, idList, JSONObject.class);
+
+        assertEquals(3, resultList.size(), "未命中的记录应该从数据库加载");
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(idList.get(0))), "加载的记录应该回填缓存");
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(idList.get(2))), "加载的记录应该回填缓存");
+    }
+
+    @Test
+    @DisplayName("测试结果按请求的ID顺序返回")
+    void testRequestedOrder() {
+        CacheUtil.clear(TEST_TABLE);
+        CacheUtil.set(TEST_TABLE, String.valueOf(idList.get(1)),
+                baseRepository.selectById(TEST_TABLE, idList.get(1), JSONObject.class));
+        List<Long> requestList = Arrays.asList(idList.get(2), idList.get(1), -1L, idList.get(0));
+
+        List<JSONObject> resultList = baseRepository.selectBatchIds(TEST_TABLE, requestList, JSONObject.class);
+
+        assertEquals(3, resultList.size(), "不存在的记录不应该包含在结果中");
+        assertEquals(idList.get(2), resultList.get(0).getLong("id"));
+        assertEquals(idList.get(1), resultList.get(1).getLong("id"));
+        assertEquals(idList.get(0), resultList.get(2).getLong("id"));
+        assertNull(CacheUtil.get(TEST_TABLE, "-1"), "不存在的记录不应该写入缓存");
+    }
+}
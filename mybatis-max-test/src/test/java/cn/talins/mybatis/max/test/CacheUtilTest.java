@@ -1,9 +1,16 @@
 package cn.talins.mybatis.max.test;
 
+import cn.hutool.log.StaticLog;
 import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import net.oschina.j2cache.CacheChannel;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -18,6 +25,17 @@ public class CacheUtilTest {
 
     private static final String TEST_REGION = "test_region";
     private static final String TEST_KEY = "test_key";
+    private static final int REGION_COUNT = 500;
+    private static final int ITERATIONS = 200_000;
+
+    @AfterEach
+    void tearDown() {
+        // 注销测试中登记的策略，避免影响同一JVM中的其他测试
+        CacheUtil.unregister("registered_region");
+        for (int i = 0; i < REGION_COUNT; i++) {
+            CacheUtil.unregister("bench_region_" + i);
+        }
+    }
 
     @Test
     @DisplayName("测试exists方法 - region不存在")
@@ -102,4 +120,47 @@ public class CacheUtilTest {
             CacheUtil.clear("");
         }, "缓存操作应该是空安全的");
     }
+
+    @Test
+    @DisplayName("测试登记和注销缓存策略")
+    void testRegister() {
+        String region = "registered_region";
+        CacheUtil.register(region, new CachePolicy(region, 100, 60));
+
+        assertTrue(CacheUtil.exists(region), "登记后region应该存在");
+        assertEquals(60, CacheUtil.getPolicy(region).getTtl());
+
+        CacheUtil.unregister(region);
+        assertFalse(CacheUtil.exists(region), "注销后region应该不存在");
+    }
+
+    @Test
+    @DisplayName("500个region下exists单次调用耗时对比")
+    void testExistsBenchmark() {
+        List<CacheChannel.Region> regionList = new ArrayList<>();
+        for (int i = 0; i < REGION_COUNT; i++) {
+            String region = "bench_region_" + i;
+            regionList.add(new CacheChannel.Region(region, 1000, -1));
+            CacheUtil.register(region, new CachePolicy(region, 1000, -1));
+        }
+        String target = "bench_region_" + (REGION_COUNT - 1);
+
+        boolean found = false;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            // 原实现：每次遍历全部region
+            found ^= regionList.stream().anyMatch(r -> r.getName().equals(target));
+        }
+        long scanNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            found ^= CacheUtil.exists(target);
+        }
+        long lookupNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        StaticLog.info("{} regions: scan={}ns/op lookup={}ns/op ({})", REGION_COUNT, scanNanos, lookupNanos, found);
+        assertTrue(CacheUtil.exists(target));
+        assertFalse(CacheUtil.exists("bench_region_" + REGION_COUNT));
+    }
 }
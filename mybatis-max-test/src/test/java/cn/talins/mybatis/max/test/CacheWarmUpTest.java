@@ -0,0 +1,94 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.IdFilter;
+import cn.talins.mybatis.max.sdk.cache.IdFilterPolicy;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import cn.talins.mybatis.max.sdk.repository.CacheWarmer;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存预热测试
+ * 测试分批加载表缓存、构建主键过滤器以及预热进度
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CacheWarmUpTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 5; i++) {
+            JSONObject user = new JSONObject();
+            user.set("username", "warm_up_" + i + "_" + System.nanoTime());
+            user.set("nickname", "预热" + i);
+            idList.add(baseRepository.insert(TEST_TABLE, user));
+        }
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, -1);
+        policy.setWarmUp(true);
+        CacheUtil.register(TEST_TABLE, policy);
+        CacheUtil.clear(TEST_TABLE);
+        IdFilter.register(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        CacheUtil.unregister(TEST_TABLE);
+        IdFilter.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试分批加载整张表到缓存")
+    void testWarmUp() {
+        // 每批2条，5条测试数据至少需要3批
+        CacheWarmer cacheWarmer = new CacheWarmer(baseRepository, 2, 2, 1);
+
+        assertTrue(cacheWarmer.warmUp(Collections.singletonList(TEST_TABLE), 30000), "预热应该在超时前完成");
+
+        for (Long id : idList) {
+            assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)), "预热后记录应该在缓存中");
+        }
+        assertTrue(IdFilter.get(TEST_TABLE).isReady(), "预热应该构建主键过滤器");
+        assertEquals(1, cacheWarmer.getFinishedTables());
+        assertEquals(baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class)),
+                cacheWarmer.getLoadedRows(), "加载的记录数应该等于表的行数");
+    }
+
+    @Test
+    @DisplayName("测试超时后预热在后台继续")
+    void testTimeout() throws InterruptedException {
+        CacheWarmer cacheWarmer = new CacheWarmer(baseRepository, 1, 1, 1);
+
+        cacheWarmer.warmUp(Collections.singletonList(TEST_TABLE), 1);
+
+        for (int i = 0; i < 100 && cacheWarmer.getFinishedTables() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, cacheWarmer.getFinishedTables(), "超时后未完成的表应该继续加载");
+        assertNotNull(CacheUtil.get(TEST_TABLE, String.valueOf(idList.get(4))));
+    }
+}
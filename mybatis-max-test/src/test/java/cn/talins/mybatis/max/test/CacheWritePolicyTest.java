@@ -0,0 +1,112 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CacheMode;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CacheWritePolicy;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存写策略测试
+ * 测试updateById在各写策略下对缓存的维护
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CacheWritePolicyTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private Long id;
+
+    @AfterEach
+    void tearDown() {
+        if (id != null) {
+            baseRepository.deleteById(TEST_TABLE, id);
+        }
+        CacheUtil.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试WRITE_THROUGH合并更新字段到缓存")
+    void testWriteThrough() {
+        prepare(CacheWritePolicy.WRITE_THROUGH);
+
+        baseRepository.updateById(TEST_TABLE, update("写穿透"));
+
+        JSONObject cached = (JSONObject) CacheUtil.get(TEST_TABLE, String.valueOf(id));
+        assertEquals("写穿透", cached.getStr("nickname"), "更新字段应该合并到缓存");
+        assertNotNull(cached.getStr("username"), "未更新的字段应该保留");
+    }
+
+    @Test
+    @DisplayName("测试INVALIDATE只移除缓存")
+    void testInvalidate() {
+        prepare(CacheWritePolicy.INVALIDATE);
+
+        baseRepository.updateById(TEST_TABLE, update("失效"));
+
+        assertNull(CacheUtil.get(TEST_TABLE, String.valueOf(id)), "更新后应该移除缓存");
+    }
+
+    @Test
+    @DisplayName("测试DEFERRED_RELOAD在后台重新加载")
+    void testDeferredReload() {
+        prepare(CacheWritePolicy.DEFERRED_RELOAD);
+
+        baseRepository.updateById(TEST_TABLE, update("延迟加载"));
+
+        JSONObject cached = null;
+        for (int i = 0; i < 50 && cached == null; i++) {
+            ThreadUtil.sleep(20);
+            cached = (JSONObject) CacheUtil.get(TEST_TABLE, String.valueOf(id));
+        }
+        assertNotNull(cached, "后台线程应该重新加载缓存");
+        assertEquals("延迟加载", cached.getStr("nickname"));
+    }
+
+    @Test
+    @DisplayName("测试整表缓存不允许移除缓存的写策略")
+    void testFullTableRejected() {
+        for (CacheWritePolicy writePolicy : new CacheWritePolicy[]{CacheWritePolicy.INVALIDATE, CacheWritePolicy.DEFERRED_RELOAD}) {
+            CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, -1);
+            policy.setMode(CacheMode.FULL_TABLE);
+            policy.setWritePolicy(writePolicy);
+            assertThrows(IllegalArgumentException.class, () -> CacheUtil.register(TEST_TABLE, policy));
+            assertThrows(IllegalArgumentException.class,
+                    () -> CacheUtil.configure(Collections.singletonMap(TEST_TABLE, policy)));
+        }
+    }
+
+    private void prepare(CacheWritePolicy writePolicy) {
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, -1);
+        policy.setWritePolicy(writePolicy);
+        CacheUtil.register(TEST_TABLE, policy);
+        JSONObject user = new JSONObject();
+        user.set("username", "write_policy_" + System.nanoTime());
+        user.set("nickname", "缓存");
+        id = baseRepository.insert(TEST_TABLE, user);
+    }
+
+    private JSONObject update(String nickname) {
+        JSONObject update = new JSONObject();
+        update.set("id", id);
+        update.set("nickname", nickname);
+        return update;
+    }
+}
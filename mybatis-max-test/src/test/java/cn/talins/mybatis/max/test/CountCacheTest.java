@@ -0,0 +1,172 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.cache.CountCache;
+import cn.talins.mybatis.max.sdk.cache.CountCachePolicy;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行数缓存测试
+ * 测试selectCount和分页总数的缓存、全表行数的增量调整以及允许陈旧的行数
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CountCacheTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (!idList.isEmpty()) {
+            baseRepository.deleteBatchIds(TEST_TABLE, idList);
+            idList.clear();
+        }
+        CountCache.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试全表行数按插入和删除增量调整")
+    void testIncrementalTotal() {
+        CountCache.register(TEST_TABLE, new CountCachePolicy(100, 300, 0));
+        long total = baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class));
+        assertEquals(total, CountCache.getTotal(TEST_TABLE), "全表行数应该写入缓存");
+
+        idList.add(baseRepository.insert(TEST_TABLE, newUser("count_total")));
+        assertEquals(total + 1, CountCache.getTotal(TEST_TABLE), "插入后应该增量调整");
+        assertEquals(total + 1, baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class)));
+
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        assertEquals(total, baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class)),
+                "删除后应该增量调整");
+
+        Page<JSONObject> page = baseRepository.selectPage(TEST_TABLE, new Page<>(1, 10), Wrappers.query(JSONObject.class));
+        assertEquals(total, page.getTotal(), "分页总数应该使用缓存的全表行数");
+        assertTrue(page.searchCount(), "查询后应该恢复分页对象的COUNT设置");
+    }
+
+    @Test
+    @DisplayName("测试修改normal字段的更新丢弃全表行数")
+    void testLogicalDeleteByUpdate() {
+        CountCache.register(TEST_TABLE, new CountCachePolicy(100, 300, 0));
+        Long id = baseRepository.insert(TEST_TABLE, newUser("count_normal"));
+        idList.add(id);
+        long total = baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class));
+
+        JSONObject update = new JSONObject();
+        update.set("id", id);
+        update.set("nickname", "count_normal_renamed");
+        baseRepository.updateById(TEST_TABLE, update);
+        assertEquals(total, CountCache.getTotal(TEST_TABLE), "不修改normal的更新不影响全表行数");
+
+        update.set("normal", 0);
+        baseRepository.updateById(TEST_TABLE, update);
+        assertNull(CountCache.getTotal(TEST_TABLE), "逻辑删除后应该丢弃全表行数");
+        assertEquals(total - 1, baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class)));
+
+        update.set("normal", 1);
+        baseRepository.updateById(TEST_TABLE, update);
+        assertEquals(total, baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class)),
+                "恢复后应该重新统计");
+    }
+
+    @Test
+    @DisplayName("测试带条件的行数在写操作后失效")
+    void testFilteredCount() {
+        CountCache.register(TEST_TABLE, new CountCachePolicy(100, 300, 0));
+        String nickname = "count_" + System.nanoTime();
+        idList.add(baseRepository.insert(TEST_TABLE, newUser(nickname)));
+        assertEquals(1L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+
+        idList.add(baseRepository.insert(TEST_TABLE, newUser(nickname)));
+        assertEquals(2L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)), "写操作后应该重新统计");
+
+        Page<JSONObject> page = baseRepository.selectPage(TEST_TABLE, new Page<>(1, 1),
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(2, page.getTotal());
+        Page<JSONObject> next = baseRepository.selectPage(TEST_TABLE, new Page<>(2, 1),
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(2, next.getTotal(), "同一条件的不同页应该共用缓存的总数");
+        assertEquals(1, next.getRecords().size());
+    }
+
+    @Test
+    @DisplayName("测试允许陈旧时返回旧的行数")
+    void testStaleCount() {
+        CountCache.register(TEST_TABLE, new CountCachePolicy(100, 300, 60));
+        String nickname = "stale_" + System.nanoTime();
+        idList.add(baseRepository.insert(TEST_TABLE, newUser(nickname)));
+        assertEquals(1L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+
+        idList.add(baseRepository.insert(TEST_TABLE, newUser(nickname)));
+        assertEquals(1L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)), "陈旧时间内应该返回旧的行数");
+    }
+
+    @Test
+    @DisplayName("测试其他节点写入后重新统计")
+    void testRemoteWrite() {
+        MemoryTableVersionStore versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        TableVersions.setSharedRefreshMillis(0);
+        try {
+            CountCache.register(TEST_TABLE, new CountCachePolicy(100, 0, 0));
+            long total = baseRepository.selectCount(TEST_TABLE, Wrappers.query(JSONObject.class));
+            String nickname = "remote_" + System.nanoTime();
+            assertEquals(0L, baseRepository.selectCount(TEST_TABLE,
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+
+            idList.add(baseRepository.insert(TEST_TABLE, newUser(nickname)));
+            assertEquals(total + 1, CountCache.getTotal(TEST_TABLE), "本节点的插入应该增量调整");
+
+            assertEquals(1L, baseRepository.selectCount(TEST_TABLE,
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+            String countKey = CountCache.key("count", Wrappers.query(JSONObject.class).eq("nickname", nickname));
+            assertEquals(1L, CountCache.get(TEST_TABLE, countKey));
+
+            versionStore.remoteWrite(TEST_TABLE);
+            assertNull(CountCache.getTotal(TEST_TABLE), "其他节点写入后全表行数应该重新统计");
+            assertNull(CountCache.get(TEST_TABLE, countKey), "其他节点写入后带条件的行数应该失效");
+        } finally {
+            TableVersions.setSharedRefreshMillis(TableVersions.DEFAULT_SHARED_REFRESH_MILLIS);
+            TableVersions.setStore(null);
+        }
+    }
+
+    @Test
+    @DisplayName("测试没有共享版本号存储时不允许永不过期")
+    void testTtlRequired() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CountCache.register(TEST_TABLE, new CountCachePolicy(100, 0, 0)));
+    }
+
+    private JSONObject newUser(String nickname) {
+        JSONObject user = new JSONObject();
+        user.set("username", nickname + "_" + System.nanoTime());
+        user.set("nickname", nickname);
+        return user;
+    }
+}
@@ -0,0 +1,150 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.api.IRepository;
+import cn.talins.mybatis.max.api.exception.VersionConflictException;
+import cn.talins.mybatis.max.api.exception.WriteCommittedException;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import cn.talins.mybatis.max.sdk.repository.CounterAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 计数器测试
+ * 测试原子递增和内存聚合后的批量写入
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class CounterTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    /**
+     * 测试表中没有业务计数字段，使用数值类型的status字段验证递增
+     */
+    private static final String COUNTER_COLUMN = "status";
+
+    private Long id;
+
+    private long initialValue;
+
+    @BeforeEach
+    void setUp() {
+        JSONObject entity = new JSONObject();
+        entity.set("username", "counter_user_" + System.nanoTime());
+        id = baseRepository.insert(TEST_TABLE, entity);
+        initialValue = currentValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteById(TEST_TABLE, id);
+    }
+
+    @Test
+    @DisplayName("测试并发原子递增不丢失更新")
+    void testIncrement() throws InterruptedException {
+        int threadCount = 8;
+        int perThread = 10;
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    baseRepository.increment(TEST_TABLE, id, COUNTER_COLUMN, 1);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        assertEquals(initialValue + threadCount * perThread, currentValue(), "并发递增不应该丢失更新");
+    }
+
+    @Test
+    @DisplayName("测试非法计数字段")
+    void testIllegalColumn() {
+        assertThrows(IllegalArgumentException.class,
+                () -> baseRepository.increment(TEST_TABLE, id, "version = 0; --", 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> baseRepository.increment(TEST_TABLE, id, "id", 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> baseRepository.increment(TEST_TABLE, id, "version", 1), "版本号由框架维护，不能作为计数字段");
+    }
+
+    @Test
+    @DisplayName("测试递增后持有旧版本号的乐观锁更新失败")
+    void testIncrementWithVersion() {
+        JSONObject stale = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        try (CounterAggregator aggregator = new CounterAggregator(baseRepository, 60_000)) {
+            aggregator.add(TEST_TABLE, id, COUNTER_COLUMN, 2);
+            aggregator.flush();
+        }
+        JSONObject current = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        assertNotEquals(stale.getLong("version"), current.getLong("version"), "递增应该分配新版本号");
+        assertEquals(initialValue + 2, current.getLong(COUNTER_COLUMN));
+
+        stale.set("nickname", "旧版本");
+        assertThrows(VersionConflictException.class, () -> baseRepository.updateByIdWithVersion(TEST_TABLE, stale),
+                "旧版本号的更新不应覆盖递增结果");
+
+        current.set("nickname", "新版本");
+        baseRepository.updateByIdWithVersion(TEST_TABLE, current);
+        JSONObject updated = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        assertEquals("新版本", updated.getStr("nickname"));
+        assertEquals(initialValue + 2, updated.getLong(COUNTER_COLUMN));
+    }
+
+    @Test
+    @DisplayName("测试聚合后批量写入")
+    void testAggregate() {
+        try (CounterAggregator aggregator = new CounterAggregator(baseRepository, 60_000)) {
+            for (int i = 0; i < 100; i++) {
+                aggregator.add(TEST_TABLE, id, COUNTER_COLUMN, 1);
+            }
+            assertEquals(100, aggregator.pending(TEST_TABLE, id, COUNTER_COLUMN), "刷新前增量应该在内存中");
+            assertEquals(initialValue, currentValue(), "刷新前不应该写入数据库");
+
+            aggregator.flush();
+
+            assertEquals(0, aggregator.pending(TEST_TABLE, id, COUNTER_COLUMN));
+            assertEquals(initialValue + 100, currentValue(), "刷新后应该一次写入全部增量");
+        }
+    }
+
+    @Test
+    @DisplayName("测试只有写入数据库失败的增量才重试")
+    void testRetryOnlyUncommitted() {
+        IRepository repository = mock(IRepository.class);
+        when(repository.incrementBatch(anyString(), anyMap()))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenThrow(new WriteCommittedException(TEST_TABLE, new IllegalStateException("后置事件失败")));
+        try (CounterAggregator aggregator = new CounterAggregator(repository, 60_000)) {
+            aggregator.add(TEST_TABLE, id, COUNTER_COLUMN, 5);
+
+            aggregator.flush();
+            assertEquals(5, aggregator.pending(TEST_TABLE, id, COUNTER_COLUMN), "写入数据库失败的增量应该放回");
+
+            aggregator.flush();
+            assertEquals(0, aggregator.pending(TEST_TABLE, id, COUNTER_COLUMN), "已提交的增量不应该再次写入");
+        }
+        verify(repository, times(2)).incrementBatch(anyString(), anyMap());
+    }
+
+    private long currentValue() {
+        return baseRepository.selectById(TEST_TABLE, id, JSONObject.class).getLong(COUNTER_COLUMN);
+    }
+}
@@ -0,0 +1,162 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.api.IRepositoryHandler;
+import cn.talins.mybatis.max.api.pojo.BaseEntity;
+import cn.talins.mybatis.max.sdk.DynamicMapperUtil;
+import cn.talins.mybatis.max.sdk.cache.IdFilter;
+import cn.talins.mybatis.max.sdk.cache.IdFilterPolicy;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 主键过滤器测试
+ * 测试不存在的ID被拦截、新插入的ID可以查询以及误判率统计
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class IdFilterTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    @Autowired
+    private IRepositoryHandler repositoryHandler;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            idList.add(baseRepository.insert(TEST_TABLE, newUser(i)));
+        }
+        IdFilter.register(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+        baseRepository.selectBatchIds(TEST_TABLE, idList, JSONObject.class);
+        IdFilter idFilter = IdFilter.get(TEST_TABLE);
+        for (int i = 0; i < 100 && !idFilter.isReady(); i++) {
+            ThreadUtil.sleep(100);
+        }
+        assertTrue(idFilter.isReady(), "首次查询后应该在后台构建过滤器");
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        IdFilter.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试已存在和新插入的ID可以查询")
+    void testExisting() {
+        assertEquals(3, baseRepository.selectBatchIds(TEST_TABLE, idList, JSONObject.class).size());
+
+        Long id = baseRepository.insert(TEST_TABLE, newUser(3));
+        idList.add(id);
+        assertNotNull(baseRepository.selectById(TEST_TABLE, id, JSONObject.class), "新插入的ID应该写入过滤器");
+    }
+
+    @Test
+    @DisplayName("测试不存在的ID被拦截")
+    void testReject() {
+        IdFilter idFilter = IdFilter.get(TEST_TABLE);
+        for (long id = -1; id >= -1000; id--) {
+            assertTrue(baseRepository.selectBatchIds(TEST_TABLE, Collections.singletonList(id), JSONObject.class).isEmpty());
+        }
+        assertEquals(1000, idFilter.getRejectedCount() + idFilter.getFalsePositiveCount());
+        assertTrue(idFilter.getRejectedCount() > 900, "绝大多数不存在的ID应该被拦截");
+        StaticLog.info("id filter: expected fpp={} observed fpp={}", idFilter.getExpectedFpp(), idFilter.getObservedFpp());
+    }
+
+    @Test
+    @DisplayName("测试其他节点插入的ID到数据库确认")
+    void testRemoteInsert() {
+        MemoryTableVersionStore versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        try {
+            IdFilter idFilter = new IdFilter(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+            idFilter.build(idList.size(), sink -> idList.forEach(sink::accept));
+            assertTrue(idFilter.isRejectionTrusted(), "构建后没有其他节点写入时拦截可信");
+
+            // 模拟其他节点插入：直接写入数据库并递增共享版本号，本节点的过滤器不知道该ID
+            BaseEntity entity = BeanUtil.toBean(newUser(3), DynamicMapperUtil.getLoaderClass(TEST_TABLE));
+            repositoryHandler.fillInsertEntity(entity);
+            repositoryHandler.getMapper(TEST_TABLE).insert(entity);
+            idList.add(entity.getId());
+            versionStore.remoteWrite(TEST_TABLE);
+            assertFalse(idFilter.isRejectionTrusted(), "其他节点写入后拦截不可信");
+
+            IdFilter.register(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+            IdFilter registered = IdFilter.get(TEST_TABLE);
+            registered.build(0, sink -> { });
+            versionStore.remoteWrite(TEST_TABLE);
+            assertNotNull(baseRepository.selectById(TEST_TABLE, entity.getId(), JSONObject.class),
+                    "其他节点插入的ID应该到数据库确认");
+            assertTrue(registered.mightContain(entity.getId()), "确认存在的ID应该写入过滤器");
+        } finally {
+            TableVersions.setStore(null);
+        }
+    }
+
+    @Test
+    @DisplayName("测试确认的ID按请求的顺序返回")
+    void testVerifiedOrder() {
+        MemoryTableVersionStore versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        try {
+            IdFilter.register(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+            IdFilter.get(TEST_TABLE).build(idList.size(), sink -> idList.forEach(sink::accept));
+
+            BaseEntity entity = BeanUtil.toBean(newUser(3), DynamicMapperUtil.getLoaderClass(TEST_TABLE));
+            repositoryHandler.fillInsertEntity(entity);
+            repositoryHandler.getMapper(TEST_TABLE).insert(entity);
+            idList.add(entity.getId());
+            versionStore.remoteWrite(TEST_TABLE);
+
+            List<Long> requestList = Arrays.asList(idList.get(0), entity.getId(), idList.get(1));
+            List<Long> resultIdList = baseRepository.selectBatchIds(TEST_TABLE, requestList, JSONObject.class)
+                    .stream().map(row -> row.getLong("id")).collect(Collectors.toList());
+            assertEquals(requestList, resultIdList, "到数据库确认的记录应该按请求的顺序合并");
+        } finally {
+            TableVersions.setStore(null);
+        }
+    }
+
+    @Test
+    @DisplayName("测试构建开始前只安排一次构建")
+    void testSchedule() {
+        IdFilter idFilter = new IdFilter(TEST_TABLE, new IdFilterPolicy(0.01, 2.0));
+        assertTrue(idFilter.schedule(), "未构建的过滤器应该安排构建");
+        assertFalse(idFilter.schedule(), "已安排构建时不应该重复安排");
+        idFilter.cancelSchedule();
+        assertTrue(idFilter.schedule(), "构建任务结束后可以再次安排");
+    }
+
+    private JSONObject newUser(int i) {
+        JSONObject user = new JSONObject();
+        user.set("username", "id_filter_" + System.nanoTime() + "_" + i);
+        user.set("nickname", "id_filter");
+        return user;
+    }
+}
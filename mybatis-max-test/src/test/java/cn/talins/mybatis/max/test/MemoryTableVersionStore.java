@@ -0,0 +1,36 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.ITableVersionStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存中的表写版本号存储，测试中用{@link #remoteWrite}模拟其他节点的写操作
+ *
+ * @author talins
+ */
+public class MemoryTableVersionStore implements ITableVersionStore {
+
+    private final Map<String, AtomicLong> versionMap = new ConcurrentHashMap<>();
+
+    @Override
+    public long get(String tableName) {
+        return versionMap.computeIfAbsent(tableName, key -> new AtomicLong()).get();
+    }
+
+    @Override
+    public long increment(String tableName) {
+        return versionMap.computeIfAbsent(tableName, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 模拟其他节点对表的一次写操作
+     *
+     * @param tableName 表名
+     */
+    public void remoteWrite(String tableName) {
+        increment(tableName);
+    }
+}
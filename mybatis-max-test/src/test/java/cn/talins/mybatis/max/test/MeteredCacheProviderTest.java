@@ -0,0 +1,47 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import cn.talins.mybatis.max.sdk.cache.MeteredCacheProvider;
+import net.oschina.j2cache.CacheExpiredListener;
+import net.oschina.j2cache.CacheProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MeteredCacheProvider 单元测试
+ * 测试一级缓存的淘汰通知计入缓存指标并转交给J2Cache
+ *
+ * @author talins
+ */
+@DisplayName("MeteredCacheProvider测试")
+public class MeteredCacheProviderTest {
+
+    @Test
+    @DisplayName("测试淘汰通知计入缓存指标")
+    void testEvictionCounted() {
+        String region = "metered_region_" + System.nanoTime();
+        CacheProvider delegate = mock(CacheProvider.class);
+        MeteredCacheProvider provider = new MeteredCacheProvider(delegate);
+        List<String> expiredList = new ArrayList<>();
+        CacheExpiredListener listener = (name, key) -> expiredList.add(key);
+
+        provider.buildCache(region, listener);
+        provider.buildCache(region, listener);
+        ArgumentCaptor<CacheExpiredListener> captor = ArgumentCaptor.forClass(CacheExpiredListener.class);
+        verify(delegate, times(2)).buildCache(eq(region), captor.capture());
+        assertSame(captor.getAllValues().get(0), captor.getAllValues().get(1), "同一个监听器只包装一次");
+
+        captor.getValue().notifyElementExpired(region, "1");
+        captor.getValue().notifyElementExpired(region, "2");
+
+        assertEquals(2, CacheMetrics.of(region).getEvictions());
+        assertEquals(List.of("1", "2"), expiredList, "通知应该转交给J2Cache");
+    }
+}
@@ -1,5 +1,6 @@
 package cn.talins.mybatis.max.test;
 
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
 import cn.talins.mybatis.max.starter.MybatisMaxProperties;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -57,4 +58,14 @@ public class MybatisMaxPropertiesTest {
 
         assertEquals((short) 0, properties.getWorkerId());
     }
+
+    @Test
+    @DisplayName("测试默认表缓存策略为空")
+    void testDefaultCacheTables() {
+        MybatisMaxProperties properties = new MybatisMaxProperties();
+
+        assertNotNull(properties.getCache().getTables());
+        assertTrue(properties.getCache().getTables().isEmpty(), "默认不应该配置任何表缓存策略");
+        assertEquals(CachePolicy.DEFAULT_FULL_RELOAD_THRESHOLD, new CachePolicy().getFullReloadThreshold());
+    }
 }
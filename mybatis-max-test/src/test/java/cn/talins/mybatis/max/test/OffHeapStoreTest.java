@@ -0,0 +1,260 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.ITableVersionStore;
+import cn.talins.mybatis.max.sdk.cache.CacheMetrics;
+import cn.talins.mybatis.max.sdk.cache.OffHeapCache;
+import cn.talins.mybatis.max.sdk.cache.OffHeapStore;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OffHeapStore 单元测试
+ * 测试堆外存储的读写、规格切换、容量淘汰、过期和统计信息，堆外缓存区域的字符串键，以及持久化后的重建和版本校验
+ *
+ * @author talins
+ */
+@DisplayName("OffHeapStore测试")
+public class OffHeapStoreTest {
+
+    private static final int PAGE_SIZE = 64 * 1024;
+
+    @Test
+    @DisplayName("测试读写、覆盖和删除")
+    void testPutGet() {
+        OffHeapStore store = new OffHeapStore(4L << 20, PAGE_SIZE, 0);
+        long now = System.currentTimeMillis();
+        assertNull(store.get(1L, now));
+
+        assertTrue(store.put(1L, bytes(10, 1), 0));
+        assertArrayEquals(bytes(10, 1), store.get(1L, now));
+
+        assertTrue(store.put(1L, bytes(3000, 2), 0), "覆盖为更大规格的块");
+        assertArrayEquals(bytes(3000, 2), store.get(1L, now));
+        assertTrue(store.put(1L, bytes(5, 3), 0), "覆盖为更小规格的块");
+        assertArrayEquals(bytes(5, 3), store.get(1L, now));
+        assertEquals(1, store.size());
+        assertEquals(5, store.getPayloadBytes());
+
+        assertTrue(store.remove(1L));
+        assertFalse(store.remove(1L));
+        assertNull(store.get(1L, now));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("测试容量不足时淘汰并保持内容正确")
+    void testEviction() {
+        OffHeapStore store = new OffHeapStore(1L << 20, PAGE_SIZE, 0);
+        long now = System.currentTimeMillis();
+        Random random = new Random(1);
+        Map<Long, byte[]> expectedMap = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                byte[] payload = store.get(key, now);
+                if (payload != null) {
+                    assertArrayEquals(expectedMap.get(key), payload, "读取到的内容与写入的不一致");
+                }
+            } else {
+                byte[] payload = bytes(random.nextInt(3000), random.nextInt());
+                assertTrue(store.put(key, payload, 0));
+                expectedMap.put(key, payload);
+            }
+        }
+        assertTrue(store.getEvictions() > 0, "超过容量时应该淘汰");
+        assertTrue(store.getAllocatedBytes() <= store.getCapacityBytes(), "分配的内存不能超过容量");
+        List<Long> keyList = new ArrayList<>();
+        store.forEach((key, payload) -> {
+            assertArrayEquals(expectedMap.get(key), payload);
+            keyList.add(key);
+        }, now);
+        assertEquals(store.size(), keyList.size());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getAllocatedBytes(), "清空后释放所有页");
+    }
+
+    @Test
+    @DisplayName("测试记录数上限和超过一页的内容")
+    void testLimits() {
+        OffHeapStore store = new OffHeapStore(4L << 20, PAGE_SIZE, 100);
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(store.put(key, bytes(8, (int) key), 0));
+        }
+        assertTrue(store.size() <= 100 + OffHeapStore.MAX_SEGMENT_COUNT, "记录数按分段平分上限");
+
+        assertFalse(store.put(1L, bytes(PAGE_SIZE, 0), 0), "超过一页的内容不保存");
+        assertEquals(1, store.getRejections());
+    }
+
+    @Test
+    @DisplayName("测试过期记录和命中统计")
+    void testExpireAndStats() {
+        OffHeapStore store = new OffHeapStore(4L << 20, PAGE_SIZE, 0);
+        long now = System.currentTimeMillis();
+        store.put(1L, bytes(10, 1), now + 1000);
+        store.put(2L, bytes(10, 2), now - 1);
+
+        assertNotNull(store.get(1L, now));
+        assertSame(OffHeapStore.EXPIRED, store.get(2L, now), "已过期的记录返回EXPIRED");
+        assertNull(store.get(2L, now), "已过期的记录读取后删除");
+        assertNull(store.get(3L, now));
+
+        assertEquals(1, store.getHits());
+        assertEquals(3, store.getMisses());
+        assertEquals(1, store.getExpirations());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    @DisplayName("测试堆外缓存区域的淘汰计入缓存指标")
+    void testOffHeapCacheEvictionMetrics() {
+        String region = "off_heap_evict_" + System.nanoTime();
+        OffHeapStore store = new OffHeapStore(1L << 20, PAGE_SIZE, 0);
+        List<String> expiredList = new ArrayList<>();
+        OffHeapCache cache = new OffHeapCache(region, 0, store, (name, key) -> expiredList.add(key));
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            char[] value = new char[3000];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = (char) ('a' + random.nextInt(26));
+            }
+            cache.put(String.valueOf(i), new String(value));
+        }
+
+        assertTrue(store.getEvictions() > 0, "超过容量时应该淘汰");
+        assertEquals(store.getEvictions(), CacheMetrics.of(region).getEvictions());
+        assertEquals(0, CacheMetrics.of(region).getInvalidations(), "淘汰不计入写操作的移除");
+        assertTrue(expiredList.isEmpty(), "容量淘汰不通知J2Cache");
+    }
+
+    @Test
+    @DisplayName("测试堆外缓存区域的记录ID键和字符串键")
+    void testOffHeapCacheKeys() {
+        OffHeapStore store = new OffHeapStore(4L << 20, PAGE_SIZE, 0);
+        List<String> expiredList = new ArrayList<>();
+        OffHeapCache cache = new OffHeapCache("off_heap_test", 0, store, (region, key) -> expiredList.add(key));
+
+        cache.put("42", "row");
+        cache.put("0042", "padded");
+        cache.put("abc", Arrays.asList(1, 2));
+        assertEquals("row", cache.get("42"));
+        assertEquals("padded", cache.get("0042"), "不是规范格式的数字按字符串键保存");
+        assertEquals(Arrays.asList(1, 2), cache.get("abc"));
+        assertNull(cache.get("43"));
+        assertEquals(3, cache.size());
+        assertTrue(cache.keys().containsAll(Arrays.asList("42", "0042", "abc")));
+
+        cache.evict("42", "abc");
+        assertNull(cache.get("42"));
+        assertNull(cache.get("abc"));
+        assertTrue(expiredList.isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试重新打开页文件后按版本号校验记录")
+    void testReopen() throws Exception {
+        Path file = Files.createTempDirectory("offheap").resolve("reopen.l1");
+        long now = System.currentTimeMillis();
+        OffHeapStore store = new OffHeapStore(4L << 20, PAGE_SIZE, 0, file);
+        assertFalse(store.isAwaitingVersion(), "新建的文件不需要校验");
+        for (long key = 0; key < 1000; key++) {
+            store.put(key, bytes((int) key, (int) key), 0, 5);
+        }
+        store.put(2000L, bytes(10, 0), 0, 4);
+        store.put(2001L, bytes(10, 0), now + 50, 5);
+        store.close();
+        Thread.sleep(100);
+
+        OffHeapStore reopened = new OffHeapStore(4L << 20, PAGE_SIZE, 0, file);
+        try {
+            assertTrue(reopened.isAwaitingVersion());
+            assertNull(reopened.get(1L, now), "给出版本号之前不返回重建的记录");
+            reopened.setTrustedVersion(5);
+            assertFalse(reopened.isAwaitingVersion());
+            for (long key = 0; key < 1000; key++) {
+                assertArrayEquals(bytes((int) key, (int) key), reopened.get(key, System.currentTimeMillis()));
+            }
+            assertNull(reopened.get(2000L, now), "版本号变化的记录按未命中处理");
+            assertEquals(1, reopened.getRevalidations());
+            assertNull(reopened.get(2001L, System.currentTimeMillis()), "停机期间过期的记录不重建");
+            assertEquals(1000, reopened.size());
+        } finally {
+            reopened.close();
+        }
+
+        OffHeapStore resized = new OffHeapStore(4L << 20, PAGE_SIZE * 2, 0, file);
+        try {
+            assertFalse(resized.isAwaitingVersion(), "页大小变化时丢弃原有内容");
+            assertEquals(0, resized.size());
+        } finally {
+            resized.close();
+        }
+    }
+
+    @Test
+    @DisplayName("测试持久化的缓存区域使用共享的表版本号")
+    void testSharedVersion() throws Exception {
+        Map<String, AtomicLong> versionMap = new ConcurrentHashMap<>();
+        ITableVersionStore versionStore = new ITableVersionStore() {
+            @Override
+            public long get(String tableName) {
+                return versionMap.computeIfAbsent(tableName, key -> new AtomicLong()).get();
+            }
+
+            @Override
+            public long increment(String tableName) {
+                return versionMap.computeIfAbsent(tableName, key -> new AtomicLong()).incrementAndGet();
+            }
+        };
+        String region = "off_heap_version_" + System.nanoTime();
+        Path file = Files.createTempDirectory("offheap").resolve(region + ".l1");
+        TableVersions.setStore(versionStore);
+        try {
+            OffHeapCache cache = new OffHeapCache(region, 0, new OffHeapStore(4L << 20, PAGE_SIZE, 0, file), null);
+            TableVersions.bump(region);
+            assertEquals(1, versionMap.get(region).get(), "写操作同时递增共享的版本号");
+            cache.put("1", "first");
+            cache.put("2", "second");
+            cache.getStore().close();
+
+            // 模拟重启
+            TableVersions.setStore(versionStore);
+            OffHeapCache reopened = new OffHeapCache(region, 0, new OffHeapStore(4L << 20, PAGE_SIZE, 0, file), null);
+            assertEquals("first", reopened.get("1"), "版本号未变化时直接返回");
+            reopened.getStore().close();
+
+            // 模拟停机期间其他节点的写操作
+            versionMap.get(region).incrementAndGet();
+            TableVersions.setStore(versionStore);
+            reopened = new OffHeapCache(region, 0, new OffHeapStore(4L << 20, PAGE_SIZE, 0, file), null);
+            assertNull(reopened.get("2"), "版本号变化后按未命中处理");
+            reopened.put("2", "reloaded");
+            assertEquals("reloaded", reopened.get("2"));
+            reopened.getStore().close();
+        } finally {
+            TableVersions.setStore(null);
+        }
+    }
+
+    private byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
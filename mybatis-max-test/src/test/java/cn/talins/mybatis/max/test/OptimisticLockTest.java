@@ -0,0 +1,109 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.api.exception.VersionConflictException;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 乐观锁更新测试
+ * 测试updateByIdWithVersion的版本校验和retryOnVersionConflict重试
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class OptimisticLockTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        JSONObject entity = new JSONObject();
+        entity.set("username", "version_user_" + System.nanoTime());
+        entity.set("nickname", "乐观锁");
+        id = baseRepository.insert(TEST_TABLE, entity);
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteById(TEST_TABLE, id);
+    }
+
+    @Test
+    @DisplayName("测试版本号匹配时更新成功并分配新版本")
+    void testUpdateWithVersion() {
+        JSONObject entity = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        Long version = entity.getLong("version");
+        entity.set("nickname", "已更新");
+
+        Long newVersion = baseRepository.updateByIdWithVersion(TEST_TABLE, entity);
+
+        assertNotEquals(version, newVersion, "更新后应该分配新版本号");
+        JSONObject updated = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        assertEquals("已更新", updated.getStr("nickname"));
+        assertEquals(newVersion, updated.getLong("version"));
+    }
+
+    @Test
+    @DisplayName("测试使用旧版本号更新时抛出冲突异常")
+    void testConflict() {
+        JSONObject first = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        JSONObject second = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        first.set("nickname", "第一次");
+        baseRepository.updateByIdWithVersion(TEST_TABLE, first);
+
+        second.set("nickname", "第二次");
+        VersionConflictException e = assertThrows(VersionConflictException.class,
+                () -> baseRepository.updateByIdWithVersion(TEST_TABLE, second));
+        assertEquals(id, e.getId());
+        assertEquals("第一次", baseRepository.selectById(TEST_TABLE, id, JSONObject.class).getStr("nickname"),
+                "冲突的更新不应覆盖已有数据");
+    }
+
+    @Test
+    @DisplayName("测试冲突后重新读取并重试")
+    void testRetry() {
+        JSONObject stale = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        JSONObject other = baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+        other.set("nickname", "其他请求");
+        baseRepository.updateByIdWithVersion(TEST_TABLE, other);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Long version = baseRepository.retryOnVersionConflict(3, () -> {
+            JSONObject entity = attempts.getAndIncrement() == 0 ? stale
+                    : baseRepository.selectById(TEST_TABLE, id, JSONObject.class);
+            entity.set("nickname", "重试成功");
+            return baseRepository.updateByIdWithVersion(TEST_TABLE, entity);
+        });
+
+        assertNotNull(version);
+        assertEquals(2, attempts.get(), "第一次冲突后应该重试一次");
+        assertEquals("重试成功", baseRepository.selectById(TEST_TABLE, id, JSONObject.class).getStr("nickname"));
+    }
+
+    @Test
+    @DisplayName("测试重试次数用尽后抛出冲突异常")
+    void testRetryExhausted() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(VersionConflictException.class, () -> baseRepository.retryOnVersionConflict(3, () -> {
+            attempts.incrementAndGet();
+            throw new VersionConflictException(TEST_TABLE, id, 0L);
+        }));
+        assertEquals(3, attempts.get());
+    }
+}
@@ -0,0 +1,167 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.cache.QueryCache;
+import cn.talins.mybatis.max.sdk.cache.QueryCachePolicy;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询结果缓存测试
+ * 测试条件查询结果的缓存命中，以及写操作后按表版本号失效
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class QueryCacheTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    private String nickname;
+
+    @BeforeEach
+    void setUp() {
+        QueryCache.register(TEST_TABLE, new QueryCachePolicy(100, 60));
+        nickname = "query_cache_" + System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            idList.add(baseRepository.insert(TEST_TABLE, newUser(i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        QueryCache.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试相同查询命中缓存")
+    void testHit() {
+        String key = QueryCache.key(TEST_TABLE, "list",
+                Wrappers.query(JSONObject.class).eq("nickname", nickname).eq("normal", 1), null);
+        assertNull(QueryCache.get(TEST_TABLE, key));
+
+        List<JSONObject> first = baseRepository.selectList(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertNotNull(QueryCache.get(TEST_TABLE, key), "查询结果应该写入缓存");
+
+        first.get(0).set("nickname", "调用方修改");
+        List<JSONObject> second = baseRepository.selectList(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(5, second.size());
+        assertEquals(nickname, second.get(0).getStr("nickname"), "调用方修改结果不应该影响缓存");
+    }
+
+    @Test
+    @DisplayName("测试写操作后查询结果失效")
+    void testInvalidateOnWrite() {
+        long version = TableVersions.get(TEST_TABLE);
+        assertEquals(5L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+
+        idList.add(baseRepository.insert(TEST_TABLE, newUser(5)));
+        assertTrue(TableVersions.get(TEST_TABLE) > version, "写操作应该递增表版本号");
+        assertEquals(6L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)), "写操作后不应该返回旧结果");
+
+        baseRepository.deleteById(TEST_TABLE, idList.get(0));
+        assertEquals(5L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+    }
+
+    @Test
+    @DisplayName("测试分页查询缓存总数")
+    void testPage() {
+        Page<JSONObject> page = baseRepository.selectPage(TEST_TABLE, new Page<>(1, 2),
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(5, page.getTotal());
+
+        Page<JSONObject> cached = baseRepository.selectPage(TEST_TABLE, new Page<>(1, 2),
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(5, cached.getTotal(), "命中缓存时应该恢复总数");
+        assertEquals(2, cached.getRecords().size());
+
+        Page<JSONObject> next = baseRepository.selectPage(TEST_TABLE, new Page<>(3, 2),
+                Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        assertEquals(1, next.getRecords().size(), "不同页不应该命中同一缓存项");
+    }
+
+    @Test
+    @DisplayName("缓存查询与直接查询耗时对比")
+    void testBenchmark() {
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            baseRepository.selectList(TEST_TABLE, Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        QueryCache.unregister(TEST_TABLE);
+        start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            baseRepository.selectList(TEST_TABLE, Wrappers.query(JSONObject.class).eq("nickname", nickname));
+        }
+        long directNanos = System.nanoTime() - start;
+
+        StaticLog.info("200 selectList: query cache={}ms direct={}ms",
+                cachedNanos / 1_000_000, directNanos / 1_000_000);
+    }
+
+    @Test
+    @DisplayName("测试其他节点写入后不再命中旧结果")
+    void testRemoteWrite() {
+        MemoryTableVersionStore versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        TableVersions.setSharedRefreshMillis(0);
+        try {
+            assertEquals(5L, baseRepository.selectCount(TEST_TABLE,
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname)));
+            String cacheKey = QueryCache.key(TEST_TABLE, "count",
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname), null);
+            assertEquals(5L, QueryCache.get(TEST_TABLE, cacheKey));
+
+            versionStore.remoteWrite(TEST_TABLE);
+            assertNotEquals(cacheKey, QueryCache.key(TEST_TABLE, "count",
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname), null), "共享版本号变化后缓存键应该变化");
+            assertNull(QueryCache.get(TEST_TABLE, QueryCache.key(TEST_TABLE, "count",
+                    Wrappers.query(JSONObject.class).eq("nickname", nickname), null)));
+        } finally {
+            TableVersions.setSharedRefreshMillis(TableVersions.DEFAULT_SHARED_REFRESH_MILLIS);
+            TableVersions.setStore(null);
+        }
+    }
+
+    @Test
+    @DisplayName("测试没有共享版本号存储时不允许永不过期")
+    void testTtlRequired() {
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryCache.register(TEST_TABLE, new QueryCachePolicy(100, 0)));
+    }
+
+    private JSONObject newUser(int i) {
+        JSONObject user = new JSONObject();
+        user.set("username", nickname + "_" + i);
+        user.set("nickname", nickname);
+        return user;
+    }
+}
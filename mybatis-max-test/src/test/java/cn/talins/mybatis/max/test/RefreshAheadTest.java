@@ -0,0 +1,112 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CachedRow;
+import cn.talins.mybatis.max.sdk.cache.RefreshAhead;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RefreshAhead 单元测试
+ * 测试提前刷新的时间窗口、同一记录的去重以及每个数据源的并发上限
+ *
+ * @author talins
+ */
+@DisplayName("RefreshAhead测试")
+public class RefreshAheadTest {
+
+    private static final String TEST_TABLE = "sys_user";
+
+    @Test
+    @DisplayName("测试只在过期前的时间窗口内刷新")
+    void testIsDue() {
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, 10);
+        policy.setRefreshAhead(0.2);
+        long now = System.currentTimeMillis();
+
+        assertFalse(RefreshAhead.isDue(row(now + 5000), policy, now), "剩余一半有效时间时不应该刷新");
+        assertTrue(RefreshAhead.isDue(row(now + 1500), policy, now), "剩余时间小于20%的TTL时应该刷新");
+        assertFalse(RefreshAhead.isDue(row(now - 1), policy, now), "已过期的记录按未命中处理");
+        assertFalse(RefreshAhead.isDue(row(0), policy, now), "不过期的记录不刷新");
+
+        policy.setRefreshAhead(0);
+        assertFalse(RefreshAhead.isDue(row(now + 1500), policy, now), "未开启时不刷新");
+    }
+
+    @Test
+    @DisplayName("测试正在刷新的记录不重复提交")
+    void testDeduplicate() throws Exception {
+        RefreshAhead refreshAhead = new RefreshAhead();
+        refreshAhead.setDataSourceConcurrency(4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Collection<Long>> loadedList = new CopyOnWriteArrayList<>();
+
+        assertTrue(refreshAhead.submit(TEST_TABLE, "", List.of(1L, 2L), ids -> {
+            loadedList.add(new ArrayList<>(ids));
+            await(release);
+            done.countDown();
+        }));
+        assertTrue(refreshAhead.submit(TEST_TABLE, "", List.of(2L, 3L), ids -> {
+            loadedList.add(new ArrayList<>(ids));
+            done.countDown();
+        }));
+        assertFalse(refreshAhead.submit(TEST_TABLE, "", List.of(1L), ids -> fail("正在刷新的记录不应该再次提交")));
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(loadedList.contains(List.of(3L)), "第二次只应该刷新未在刷新中的记录");
+        waitIdle(refreshAhead);
+    }
+
+    @Test
+    @DisplayName("测试每个数据源的并发上限")
+    void testDataSourceConcurrency() throws Exception {
+        RefreshAhead refreshAhead = new RefreshAhead();
+        refreshAhead.setDataSourceConcurrency(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(refreshAhead.submit(TEST_TABLE, "master", List.of(1L), ids -> await(release)));
+        assertFalse(refreshAhead.submit(TEST_TABLE, "master", List.of(2L), ids -> { }),
+                "数据源没有空闲名额时应该放弃刷新");
+        assertTrue(refreshAhead.submit(TEST_TABLE, "slave", List.of(2L), ids -> { }),
+                "其他数据源不受影响");
+        release.countDown();
+        waitIdle(refreshAhead);
+
+        assertTrue(refreshAhead.submit(TEST_TABLE, "master", List.of(2L), ids -> {
+            throw new IllegalStateException("数据库不可用");
+        }));
+        waitIdle(refreshAhead);
+        assertTrue(refreshAhead.submit(TEST_TABLE, "master", List.of(2L), ids -> { }), "刷新失败后应该释放名额");
+    }
+
+    private CachedRow row(long expireAt) {
+        return new CachedRow(TEST_TABLE, new JSONObject(), expireAt);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitIdle(RefreshAhead refreshAhead) throws InterruptedException {
+        for (int i = 0; i < 100 && refreshAhead.getRefreshingCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, refreshAhead.getRefreshingCount());
+    }
+}
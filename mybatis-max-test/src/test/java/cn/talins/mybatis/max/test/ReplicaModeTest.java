@@ -0,0 +1,117 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.api.enums.Connect;
+import cn.talins.mybatis.max.api.enums.Operator;
+import cn.talins.mybatis.max.api.enums.Order;
+import cn.talins.mybatis.max.api.pojo.Condition;
+import cn.talins.mybatis.max.api.pojo.Query;
+import cn.talins.mybatis.max.sdk.CacheUtil;
+import cn.talins.mybatis.max.sdk.cache.CacheMode;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.SourceQueryWrapper;
+import cn.talins.mybatis.max.sdk.cache.TableReplica;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存副本模式测试
+ * 测试REPLICA模式的表在快照上计算Query，以及写操作后的快照重建
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class ReplicaModeTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private final List<Long> idList = new ArrayList<>();
+
+    private String nickname;
+
+    @BeforeEach
+    void setUp() {
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 10000, -1);
+        policy.setMode(CacheMode.REPLICA);
+        CacheUtil.register(TEST_TABLE, policy);
+        nickname = "replica_" + System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            JSONObject user = new JSONObject();
+            user.set("username", nickname + "_" + i);
+            user.set("nickname", nickname);
+            idList.add(baseRepository.insert(TEST_TABLE, user));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+        idList.clear();
+        CacheUtil.unregister(TEST_TABLE);
+    }
+
+    @Test
+    @DisplayName("测试在快照上查询并立即看到本节点的写操作")
+    void testSelectFromReplica() {
+        List<JSONObject> userList = baseRepository.selectList(TEST_TABLE, wrapper());
+        assertEquals(5, userList.size());
+        assertEquals(nickname + "_4", userList.get(0).getStr("username"), "按用户名降序");
+        assertNotNull(TableReplica.get(TEST_TABLE), "查询应该创建内存副本");
+        long version = TableReplica.get(TEST_TABLE).peek().getVersion();
+
+        JSONObject user = new JSONObject();
+        user.set("username", nickname + "_5");
+        user.set("nickname", nickname);
+        idList.add(baseRepository.insert(TEST_TABLE, user));
+        assertEquals(6L, baseRepository.selectCount(TEST_TABLE, wrapper()));
+        assertNotEquals(version, TableReplica.get(TEST_TABLE).peek().getVersion());
+
+        Page<JSONObject> page = baseRepository.selectPage(TEST_TABLE, new Page<>(2, 4), wrapper());
+        assertEquals(6, page.getTotal());
+        assertEquals(2, page.getRecords().size());
+        assertEquals(nickname + "_1", page.getRecords().get(0).getStr("username"));
+    }
+
+    @Test
+    @DisplayName("测试被修改的查询条件访问数据库")
+    void testModifiedWrapper() {
+        SourceQueryWrapper<JSONObject> wrapper = wrapper();
+        wrapper.eq("username", nickname + "_0");
+        assertEquals(1, baseRepository.selectList(TEST_TABLE, wrapper).size());
+        assertNull(TableReplica.get(TEST_TABLE), "附加了条件的查询不使用内存副本");
+    }
+
+    /**
+     * 与QueryUtil相同的方式转换查询：nickname = ? ORDER BY username DESC
+     */
+    private SourceQueryWrapper<JSONObject> wrapper() {
+        Condition condition = new Condition();
+        condition.setConnect(Connect.AND);
+        condition.setColumn("nickname");
+        condition.setOperator(Operator.EQUAL);
+        condition.setParamList(new ArrayList<>(Arrays.asList(nickname)));
+        Query query = new Query();
+        query.getConditionList().add(condition);
+        query.getOrderMap().put("username", Order.DESC);
+        SourceQueryWrapper<JSONObject> wrapper = new SourceQueryWrapper<>(new JSONObject(), query);
+        wrapper.orderByDesc("username");
+        wrapper.and(nested -> nested.eq("nickname", nickname));
+        return wrapper.seal();
+    }
+}
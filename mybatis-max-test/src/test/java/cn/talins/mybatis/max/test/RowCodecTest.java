@@ -0,0 +1,167 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.pojo.ColumnMetaData;
+import cn.talins.mybatis.max.api.pojo.TableMetaData;
+import cn.talins.mybatis.max.sdk.cache.CachedRow;
+import cn.talins.mybatis.max.sdk.cache.RowCodec;
+import cn.talins.mybatis.max.sdk.cache.RowSerializer;
+import com.alibaba.fastjson.JSON;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RowCodec 单元测试
+ * 测试记录编码的往返一致性、表结构变更的处理，并对比当前JSON格式的体积和编解码速度
+ *
+ * @author talins
+ */
+@DisplayName("RowCodec测试")
+public class RowCodecTest {
+
+    private static final String TEST_TABLE = "codec_user";
+
+    private static final int ROUNDS = 200_000;
+
+    private final RowSerializer serializer = new RowSerializer();
+
+    private TableMetaData tableMetaData;
+
+    @BeforeEach
+    void setUp() {
+        tableMetaData = new TableMetaData();
+        tableMetaData.setTableName(TEST_TABLE);
+        List<ColumnMetaData> columnList = new ArrayList<>();
+        addColumn(columnList, "id", Types.BIGINT);
+        addColumn(columnList, "username", Types.VARCHAR);
+        addColumn(columnList, "nickname", Types.VARCHAR);
+        addColumn(columnList, "email", Types.VARCHAR);
+        addColumn(columnList, "balance", Types.DECIMAL);
+        addColumn(columnList, "version", Types.BIGINT);
+        addColumn(columnList, "normal", Types.INTEGER);
+        addColumn(columnList, "create_time", Types.TIMESTAMP);
+        addColumn(columnList, "update_time", Types.TIMESTAMP);
+        tableMetaData.setColumnList(columnList);
+        RowCodec.register(tableMetaData);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // 创建序列化器会开启记录包装，恢复为其他测试使用的fastjson格式
+        RowCodec.setEnabled(false);
+    }
+
+    @Test
+    @DisplayName("测试编码后解码得到相同的记录")
+    void testRoundTrip() {
+        JSONObject row = newRow(1);
+        row.set("remark", "不在表结构中的字段");
+
+        CachedRow decoded = (CachedRow) serializer.deserialize(serializer.serialize(new CachedRow(TEST_TABLE, row)));
+
+        assertEquals(TEST_TABLE, decoded.getTableName());
+        assertEquals(row, decoded.getRow(), "字段和值类型应该保持一致");
+        assertEquals(Long.class, decoded.getRow().get("id").getClass());
+        assertEquals(BigDecimal.class, decoded.getRow().get("balance").getClass());
+    }
+
+    @Test
+    @DisplayName("测试长记录压缩")
+    void testCompression() {
+        JSONObject row = newRow(1);
+        row.set("email", "a".repeat(2000));
+
+        byte[] bytes = serializer.serialize(new CachedRow(TEST_TABLE, row));
+
+        assertTrue(bytes.length < 500, "重复内容应该被压缩，实际" + bytes.length + "字节");
+        assertEquals(row, ((CachedRow) serializer.deserialize(bytes)).getRow());
+    }
+
+    @Test
+    @DisplayName("测试表结构变更后旧数据按未命中处理")
+    void testSchemaChange() {
+        byte[] bytes = serializer.serialize(new CachedRow(TEST_TABLE, newRow(1)));
+
+        addColumn(tableMetaData.getColumnList(), "phone", Types.VARCHAR);
+        RowCodec.register(tableMetaData);
+
+        assertNull(serializer.deserialize(bytes), "表结构变更前编码的数据应该解码为null");
+        assertNull(serializer.deserialize("{\"id\":1}".getBytes(StandardCharsets.UTF_8)), "无法识别的数据应该解码为null");
+    }
+
+    @Test
+    @DisplayName("测试非记录的缓存值")
+    void testObject() {
+        assertEquals("plain value", serializer.deserialize(serializer.serialize("plain value")));
+    }
+
+    @Test
+    @DisplayName("与fastjson格式的体积和编解码速度对比")
+    void testBenchmark() {
+        List<JSONObject> rowList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rowList.add(newRow(i));
+        }
+        // fastjson基线不带类型信息，实际的J2Cache格式还会多出类名
+        long rowBytes = 0;
+        long jsonBytes = 0;
+        for (JSONObject row : rowList) {
+            rowBytes += serializer.serialize(new CachedRow(TEST_TABLE, row)).length;
+            jsonBytes += JSON.toJSONBytes(row).length;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            CachedRow cachedRow = new CachedRow(TEST_TABLE, rowList.get(i % rowList.size()));
+            assertNotNull(serializer.deserialize(serializer.serialize(cachedRow)));
+        }
+        long rowNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            byte[] bytes = JSON.toJSONBytes(rowList.get(i % rowList.size()));
+            assertNotNull(JSON.parse(bytes));
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        StaticLog.info("bytes/row: row codec={} fastjson={}", rowBytes / rowList.size(), jsonBytes / rowList.size());
+        StaticLog.info("encode+decode ops/s: row codec={} fastjson={}",
+                ROUNDS * 1_000_000_000L / rowNanos, ROUNDS * 1_000_000_000L / jsonNanos);
+        assertTrue(rowBytes < jsonBytes, "按表结构编码应该比JSON更小");
+    }
+
+    private JSONObject newRow(int i) {
+        JSONObject row = new JSONObject();
+        row.set("id", 1_800_000_000_000_000L + i);
+        row.set("username", "user_" + i);
+        row.set("nickname", "用户" + i);
+        row.set("email", "user_" + i + "@example.com");
+        row.set("balance", new BigDecimal("1024.50").add(BigDecimal.valueOf(i)));
+        row.set("version", 1L);
+        row.set("normal", 1);
+        row.set("createTime", new Date(1_700_000_000_000L + i));
+        row.set("updateTime", LocalDateTime.of(2024, 1, 1, 12, 0).plusSeconds(i));
+        return row;
+    }
+
+    private void addColumn(List<ColumnMetaData> columnList, String columnName, int typeCode) {
+        ColumnMetaData column = new ColumnMetaData();
+        column.setColumnName(columnName);
+        column.setTypeCode(typeCode);
+        column.setTableName(TEST_TABLE);
+        columnList.add(column);
+    }
+}
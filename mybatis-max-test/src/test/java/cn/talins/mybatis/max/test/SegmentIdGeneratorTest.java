@@ -0,0 +1,148 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.sdk.id.SegmentIdGenerator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SegmentIdGenerator 单元测试
+ * 使用H2内存数据库测试号段ID生成器
+ *
+ * @author talins
+ */
+@DisplayName("SegmentIdGenerator测试")
+public class SegmentIdGeneratorTest {
+
+    private static final String TABLE_NAME = SegmentIdGenerator.DEFAULT_TABLE_NAME;
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:segment;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE_NAME);
+        }
+    }
+
+    @Test
+    @DisplayName("测试自动创建序列表并从1开始分配")
+    void testFirstSegment() {
+        try (SegmentIdGenerator idGenerator = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 10)) {
+            assertEquals(1L, idGenerator.nextId(), "第一个ID应该为1");
+            assertEquals(2L, idGenerator.nextId(), "ID应该连续递增");
+        }
+    }
+
+    @Test
+    @DisplayName("测试跨号段连续分配")
+    void testCrossSegment() {
+        try (SegmentIdGenerator idGenerator = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 10)) {
+            Set<Long> idSet = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < 95; i++) {
+                assertTrue(idSet.add(idGenerator.nextId()), "ID不应该重复");
+            }
+            assertEquals(95, idSet.size());
+        }
+    }
+
+    @Test
+    @DisplayName("测试异步预加载下一个号段")
+    void testPreload() throws Exception {
+        try (SegmentIdGenerator idGenerator = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 100)) {
+            for (int i = 0; i < 20; i++) {
+                idGenerator.nextId();
+            }
+            long maxId = 0;
+            for (int i = 0; i < 50 && maxId < 200; i++) {
+                Thread.sleep(20);
+                maxId = queryMaxId("test");
+            }
+            assertEquals(200L, maxId, "消耗超过10%后应该已经租用了第二个号段");
+        }
+    }
+
+    @Test
+    @DisplayName("测试多个节点共享序列表不重复")
+    void testMultipleNodes() throws InterruptedException {
+        try (SegmentIdGenerator node1 = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 50);
+             SegmentIdGenerator node2 = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 50)) {
+            Set<Long> idSet = ConcurrentHashMap.newKeySet();
+            int threadCount = 8;
+            int perThread = 500;
+            CountDownLatch latch = new CountDownLatch(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                SegmentIdGenerator idGenerator = i % 2 == 0 ? node1 : node2;
+                new Thread(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        idSet.add(idGenerator.nextId());
+                    }
+                    latch.countDown();
+                }).start();
+            }
+            latch.await();
+
+            assertEquals(threadCount * perThread, idSet.size(), "多节点多线程生成的ID不应该重复");
+        }
+    }
+
+    @Test
+    @DisplayName("测试不同业务标识独立计数")
+    void testBizTag() {
+        try (SegmentIdGenerator order = new SegmentIdGenerator(dataSource, TABLE_NAME, "order", 10);
+             SegmentIdGenerator user = new SegmentIdGenerator(dataSource, TABLE_NAME, "user", 10)) {
+            assertEquals(1L, order.nextId());
+            assertEquals(1L, user.nextId());
+        }
+    }
+
+    @Test
+    @DisplayName("测试初始化序列失败时不吞掉主键冲突以外的异常")
+    void testInsertFailure() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + TABLE_NAME + " (biz_tag VARCHAR(128) NOT NULL PRIMARY KEY, "
+                    + "max_id BIGINT NOT NULL, step INT NOT NULL, remark VARCHAR(64) NOT NULL)");
+        }
+        try (SegmentIdGenerator idGenerator = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 10)) {
+            assertThrows(IllegalStateException.class, idGenerator::nextId, "违反非空约束不应该被当作主键冲突忽略");
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO " + TABLE_NAME + " VALUES ('test', 0, 10, 'x')");
+        }
+        try (SegmentIdGenerator idGenerator = new SegmentIdGenerator(dataSource, TABLE_NAME, "test", 10)) {
+            assertEquals(1L, idGenerator.nextId(), "已存在的序列表应该直接使用");
+        }
+    }
+
+    @Test
+    @DisplayName("测试非法表名")
+    void testIllegalTableName() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SegmentIdGenerator(dataSource, "seq; DROP TABLE x", "test", 10));
+    }
+
+    private long queryMaxId(String bizTag) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT max_id FROM " + TABLE_NAME + " WHERE biz_tag = '" + bizTag + "'")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.talins.mybatis.max.api.ILoadLease;
+import cn.talins.mybatis.max.sdk.cache.SingleFlight;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight 单元测试
+ * 测试并发加载同一个键、并发重载同一个区域时的合并，以及分布式租约
+ *
+ * @author talins
+ */
+@DisplayName("SingleFlight测试")
+public class SingleFlightTest {
+
+    private static final int THREAD_COUNT = 16;
+
+    @Test
+    @DisplayName("测试并发加载同一个键只查询一次")
+    void testLoadAll() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<Map<String, Object>>> futureList = IntStream.range(0, THREAD_COUNT)
+                .mapToObj(i -> executor.submit(() -> {
+                    start.await();
+                    return singleFlight.<Object>loadAll("sys_user", List.of("1", "2"), keys -> {
+                        loadCount.incrementAndGet();
+                        ThreadUtil.sleep(200);
+                        Map<String, Object> loadedMap = new HashMap<>();
+                        keys.stream().filter("1"::equals).forEach(key -> loadedMap.put(key, "user" + key));
+                        return loadedMap;
+                    }, null);
+                }))
+                .collect(Collectors.toList());
+        start.countDown();
+        for (Future<Map<String, Object>> future : futureList) {
+            Map<String, Object> resultMap = future.get(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonMap("1", "user1"), resultMap, "不存在的键不应该包含在结果中");
+        }
+        executor.shutdown();
+        assertTrue(loadCount.get() <= 2, "同一个键的并发加载应该合并，实际加载" + loadCount.get() + "次");
+    }
+
+    @Test
+    @DisplayName("测试并发重载同一个区域被合并")
+    void testRefresh() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger refreshCount = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<?>> futureList = IntStream.range(0, THREAD_COUNT)
+                .mapToObj(i -> executor.submit(() -> {
+                    start.await();
+                    singleFlight.refresh("sys_user", () -> {
+                        refreshCount.incrementAndGet();
+                        ThreadUtil.sleep(200);
+                    });
+                    return null;
+                }))
+                .collect(Collectors.toList());
+        start.countDown();
+        for (Future<?> future : futureList) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // 第一次重载开始后到达的请求最多再合并为一次
+        assertTrue(refreshCount.get() <= 2, "并发重载应该合并，实际重载" + refreshCount.get() + "次");
+    }
+
+    @Test
+    @DisplayName("测试重载开始后的请求会再次重载")
+    void testRefreshAfterStart() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger refreshCount = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> first = executor.submit(() -> singleFlight.refresh("sys_user", () -> {
+            refreshCount.incrementAndGet();
+            started.countDown();
+            ThreadUtil.sleep(200);
+        }));
+        started.await();
+        singleFlight.refresh("sys_user", refreshCount::incrementAndGet);
+        first.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(2, refreshCount.get(), "重载开始后的请求不能合并到这次重载中");
+    }
+
+    @Test
+    @DisplayName("测试其他节点持有租约时读取共享缓存")
+    void testLease() {
+        Set<String> heldSet = ConcurrentHashMap.newKeySet();
+        heldSet.add("sys_user:1");
+        ILoadLease lease = new ILoadLease() {
+            @Override
+            public String tryAcquire(String key, long leaseMillis) {
+                return heldSet.add(key) ? key : null;
+            }
+
+            @Override
+            public void release(String key, String token) {
+                heldSet.remove(token);
+            }
+        };
+        SingleFlight singleFlight = new SingleFlight();
+        singleFlight.setLoadLease(lease, 1000, 1000);
+        AtomicInteger loadCount = new AtomicInteger();
+        Map<String, String> sharedCache = new ConcurrentHashMap<>();
+        ThreadUtil.execAsync(() -> {
+            ThreadUtil.sleep(100);
+            sharedCache.put("1", "loaded by other node");
+        });
+
+        Map<String, String> resultMap = singleFlight.loadAll("sys_user", List.of("1"), keys -> {
+            loadCount.incrementAndGet();
+            return Collections.singletonMap("1", "loaded locally");
+        }, sharedCache::get);
+
+        assertEquals("loaded by other node", resultMap.get("1"), "应该使用持有租约的节点写入的值");
+        assertEquals(0, loadCount.get());
+        assertTrue(heldSet.contains("sys_user:1"), "不应该释放其他节点的租约");
+    }
+
+    @Test
+    @DisplayName("测试租约过期被其他节点获取后不会被原持有者释放")
+    void testLeaseToken() {
+        TokenLease lease = new TokenLease();
+        SingleFlight singleFlight = new SingleFlight();
+        singleFlight.setLoadLease(lease, 1000, 1000);
+
+        Map<String, String> resultMap = singleFlight.loadAll("sys_user", List.of("1"), keys -> {
+            // 加载超过了租约时长，租约过期后被其他节点获取
+            lease.tokenMap.put("sys_user:1", "other node");
+            return Collections.singletonMap("1", "loaded locally");
+        }, key -> null);
+
+        assertEquals("loaded locally", resultMap.get("1"));
+        assertEquals("other node", lease.tokenMap.get("sys_user:1"), "不应该释放其他节点的租约");
+
+        singleFlight.loadAll("sys_user", List.of("2"), keys -> Collections.singletonMap("2", "loaded"), key -> null);
+        assertFalse(lease.tokenMap.containsKey("sys_user:2"), "加载完成后应该释放自己的租约");
+    }
+
+    @Test
+    @DisplayName("测试开启快速失败时单个键等待超时抛出异常，区域重载自行加载")
+    void testLeaseFailFast() {
+        TokenLease lease = new TokenLease();
+        lease.tokenMap.put("sys_user:1", "other node");
+        SingleFlight singleFlight = new SingleFlight();
+        singleFlight.setLoadLease(lease, 1000, 100, true);
+        AtomicInteger loadCount = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.loadAll("sys_user", List.of("1"), keys -> {
+            loadCount.incrementAndGet();
+            return Collections.singletonMap("1", "loaded locally");
+        }, key -> null));
+        assertEquals(0, loadCount.get());
+
+        lease.tokenMap.put("sys_user", "other node");
+        singleFlight.refresh("sys_user", loadCount::incrementAndGet);
+        assertEquals(1, loadCount.get(), "区域重载等待超时后自行加载，不抛出异常");
+    }
+
+    /**
+     * 按令牌比较后删除的租约，模拟Redis的SET NX PX和比较删除脚本
+     */
+    private static class TokenLease implements ILoadLease {
+
+        private final Map<String, String> tokenMap = new ConcurrentHashMap<>();
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public String tryAcquire(String key, long leaseMillis) {
+            String token = String.valueOf(sequence.incrementAndGet());
+            return tokenMap.putIfAbsent(key, token) == null ? token : null;
+        }
+
+        @Override
+        public void release(String key, String token) {
+            tokenMap.remove(key, token);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.talins.mybatis.max.sdk.cache.CachePolicy;
+import cn.talins.mybatis.max.sdk.cache.CachedRow;
+import cn.talins.mybatis.max.sdk.cache.QueryCache;
+import cn.talins.mybatis.max.sdk.cache.QueryCachePolicy;
+import cn.talins.mybatis.max.sdk.cache.StaleIfError;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StaleIfError 单元测试
+ * 测试旧记录的可用范围、回源查询的耗时预算、数据源的降级状态和陈旧标记
+ *
+ * @author talins
+ */
+@DisplayName("StaleIfError测试")
+public class StaleIfErrorTest {
+
+    private static final String TEST_TABLE = "sys_user";
+
+    @AfterEach
+    void tearDown() {
+        StaleIfError.clear();
+    }
+
+    @Test
+    @DisplayName("测试只有未超过最大陈旧时间的过期记录可以返回")
+    void testIsServable() {
+        CachePolicy policy = new CachePolicy(TEST_TABLE, 1000, 10);
+        policy.setMaxStaleness(60);
+        long now = System.currentTimeMillis();
+
+        assertFalse(StaleIfError.isServable(row(now + 1000), policy, now), "未过期的记录直接命中");
+        assertTrue(StaleIfError.isServable(row(now - 30_000), policy, now), "过期30秒的记录可以返回");
+        assertFalse(StaleIfError.isServable(row(now - 61_000), policy, now), "超过最大陈旧时间的记录不能返回");
+        assertFalse(StaleIfError.isServable(row(0), policy, now), "不过期的记录不需要降级");
+
+        policy.setMaxStaleness(0);
+        assertFalse(StaleIfError.isServable(row(now - 30_000), policy, now), "未开启时不返回旧记录");
+    }
+
+    @Test
+    @DisplayName("测试回源查询的耗时预算")
+    void testLoadBudget() throws Exception {
+        StaleIfError staleIfError = new StaleIfError();
+        assertEquals("ok", staleIfError.load(() -> "ok", 0));
+        assertEquals("ok", staleIfError.load(() -> "ok", 1000));
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        assertThrows(TimeoutException.class, () -> staleIfError.load(() -> {
+            await(release);
+            finished.countDown();
+            return "slow";
+        }, 50));
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS), "超时的查询应该在后台继续执行");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> staleIfError.load(() -> {
+            throw new IllegalStateException("数据库不可用");
+        }, 1000));
+        assertEquals("数据库不可用", e.getMessage(), "应该抛出回源查询本身的异常");
+    }
+
+    @Test
+    @DisplayName("测试降级状态下每个间隔只允许一次重新加载")
+    void testDegraded() throws Exception {
+        StaleIfError staleIfError = new StaleIfError();
+        assertFalse(staleIfError.isDegraded(""));
+        assertFalse(staleIfError.tryProbe(""), "正常状态不需要重新加载");
+
+        staleIfError.markFailed("");
+        assertTrue(staleIfError.isDegraded(""));
+        assertFalse(staleIfError.isDegraded("slave"), "其他数据源不受影响");
+        assertFalse(staleIfError.tryProbe(""), "间隔内不重新加载");
+
+        Thread.sleep(StaleIfError.PROBE_INTERVAL_MILLIS + 50);
+        assertTrue(staleIfError.tryProbe(""));
+        assertFalse(staleIfError.tryProbe(""), "同一个间隔只有一次重新加载");
+
+        staleIfError.markRecovered("");
+        assertFalse(staleIfError.isDegraded(""));
+    }
+
+    @Test
+    @DisplayName("测试陈旧标记取最大值并可以清除")
+    void testStaleness() {
+        assertNull(StaleIfError.getStaleness());
+        StaleIfError.markStale(100);
+        StaleIfError.markStale(30);
+        assertEquals(100L, StaleIfError.getStaleness());
+        StaleIfError.clear();
+        assertNull(StaleIfError.getStaleness());
+    }
+
+    @Test
+    @DisplayName("测试作用域丢弃残留的陈旧标记并在关闭时清除")
+    void testScope() throws Exception {
+        StaleIfError.markStale(500);
+        try (StaleIfError.Scope scope = StaleIfError.open()) {
+            assertNull(StaleIfError.getStaleness(), "打开作用域时丢弃之前残留的标记");
+            StaleIfError.markStale(100);
+            try (StaleIfError.Scope inner = StaleIfError.open()) {
+                StaleIfError.markStale(200);
+            }
+            assertEquals(200L, StaleIfError.getStaleness(), "嵌套的作用域关闭时不清除");
+        }
+        assertNull(StaleIfError.getStaleness());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(StaleIfError.wrap(() -> StaleIfError.markStale(100))).get();
+            assertNull(executor.submit(StaleIfError::getStaleness).get(), "包装的任务不在线程上残留标记");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("测试写操作后查询最后一次的结果仍然保留")
+    void testQueryCacheStale() {
+        String tableName = "stale_query_" + System.nanoTime();
+        QueryCachePolicy policy = new QueryCachePolicy(100, 60);
+        policy.setMaxStaleness(300);
+        QueryCache.register(tableName, policy);
+        try {
+            QueryWrapper<JSONObject> queryWrapper = Wrappers.query(JSONObject.class).eq("nickname", "stale");
+            String key = QueryCache.key(tableName, "count", queryWrapper, null);
+            QueryCache.put(tableName, key, 5L);
+
+            TableVersions.bump(tableName);
+            String newKey = QueryCache.key(tableName, "count", queryWrapper, null);
+            assertNull(QueryCache.get(tableName, newKey), "写操作后不再命中");
+            QueryCache.StaleValue staleValue = QueryCache.getStale(tableName, newKey);
+            assertNotNull(staleValue, "最后一次的结果不受写版本号影响");
+            assertEquals(5L, staleValue.getValue());
+            assertTrue(staleValue.getStaleness(System.currentTimeMillis()) >= 0);
+
+            QueryCache.register(tableName, new QueryCachePolicy(100, 60));
+            assertNull(QueryCache.getStale(tableName, newKey), "关闭降级读取后不保留");
+        } finally {
+            QueryCache.unregister(tableName);
+        }
+    }
+
+    private CachedRow row(long expireAt) {
+        return new CachedRow(TEST_TABLE, new JSONObject(), expireAt);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
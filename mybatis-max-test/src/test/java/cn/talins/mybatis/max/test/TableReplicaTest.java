@@ -0,0 +1,289 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.enums.Connect;
+import cn.talins.mybatis.max.api.enums.Operator;
+import cn.talins.mybatis.max.api.enums.Order;
+import cn.talins.mybatis.max.api.pojo.Condition;
+import cn.talins.mybatis.max.api.pojo.Query;
+import cn.talins.mybatis.max.sdk.cache.ReplicaQuery;
+import cn.talins.mybatis.max.sdk.cache.SourceQueryWrapper;
+import cn.talins.mybatis.max.sdk.cache.TableReplica;
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TableReplica 单元测试
+ * 测试内存副本快照上的条件、排序、分页和查询列，以及按表写版本号重建快照
+ *
+ * @author talins
+ */
+@DisplayName("TableReplica测试")
+public class TableReplicaTest {
+
+    /**
+     * 快照使用的实体
+     */
+    public static class User {
+        private Long id;
+        private String username;
+        private Integer age;
+        private BigDecimal score;
+    }
+
+    @Test
+    @DisplayName("测试比较、空值、IN和BETWEEN条件")
+    void testOperators() {
+        TableReplica.Snapshot snapshot = snapshot("replica_operators");
+        assertEquals(Arrays.asList(3L), ids(snapshot, query(condition(Connect.AND, "age", Operator.EQUAL, "30"))));
+        assertEquals(Arrays.asList(1L, 2L, 4L), ids(snapshot, query(condition(Connect.AND, "age", Operator.NOT_EQUAL, 30))),
+                "NULL不满足不等于");
+        assertEquals(Arrays.asList(1L, 2L), ids(snapshot, query(condition(Connect.AND, "age", Operator.LESS, 30))));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(snapshot, query(condition(Connect.AND, "age", Operator.LESS_EQUAL, 30))));
+        assertEquals(Arrays.asList(4L), ids(snapshot, query(condition(Connect.AND, "age", Operator.GREAT, 30))));
+        assertEquals(Arrays.asList(3L, 4L), ids(snapshot, query(condition(Connect.AND, "age", Operator.GREAT_EQUAL, 30))));
+        assertEquals(Arrays.asList(5L), ids(snapshot, query(condition(Connect.AND, "age", Operator.IS_NULL))));
+        assertEquals(4, snapshot.count(snapshot.compile(query(condition(Connect.AND, "age", Operator.IS_NOT_NULL)))));
+        assertEquals(Arrays.asList(1L, 4L), ids(snapshot, query(condition(Connect.AND, "age", Operator.IN, 18, "40"))));
+        assertEquals(Arrays.asList(2L, 3L), ids(snapshot, query(condition(Connect.AND, "age", Operator.NOT_IN, 18, 40))));
+        assertEquals(0, ids(snapshot, query(condition(Connect.AND, "age", Operator.NOT_IN, 18, null))).size(),
+                "NOT IN的参数中有NULL时不成立");
+        assertEquals(Arrays.asList(2L, 3L), ids(snapshot, query(condition(Connect.AND, "age", Operator.BETWEEN, 20, 30))));
+        assertEquals(Arrays.asList(1L, 4L), ids(snapshot, query(condition(Connect.AND, "age", Operator.NOT_BETWEEN, 20, 30))));
+        assertEquals(Arrays.asList(2L), ids(snapshot, query(condition(Connect.AND, "score", Operator.EQUAL, "88.50"))),
+                "数字按数值比较");
+    }
+
+    @Test
+    @DisplayName("测试LIKE通配符和转义")
+    void testLike() {
+        TableReplica.Snapshot snapshot = snapshot("replica_like");
+        assertEquals(Arrays.asList(1L, 2L), ids(snapshot, query(condition(Connect.AND, "username", Operator.LIKE, "ali"))));
+        assertEquals(Arrays.asList(3L, 4L, 5L), ids(snapshot, query(condition(Connect.AND, "username", Operator.NOT_LIKE, "ali"))));
+        assertEquals(Arrays.asList(1L, 2L), ids(snapshot, query(condition(Connect.AND, "username", Operator.LIKE, "a_i"))));
+        assertEquals(Arrays.asList(4L), ids(snapshot, query(condition(Connect.AND, "username", Operator.LIKE, "100\\%"))));
+        assertEquals(Arrays.asList(1L), ids(snapshot, query(condition(Connect.AND, "username", Operator.LIKE, "ALICE"))),
+                "默认不区分大小写");
+        assertEquals(Arrays.asList(1L), ids(snapshot, query(condition(Connect.AND, "age", Operator.LIKE, "8"))),
+                "非字符串字段按字符串形式匹配");
+    }
+
+    @Test
+    @DisplayName("测试字符串比较的大小写")
+    void testCaseSensitive() {
+        TableReplica.Snapshot snapshot = snapshot("replica_case");
+        assertEquals(Arrays.asList(1L), ids(snapshot, query(condition(Connect.AND, "username", Operator.EQUAL, "Alice"))));
+        assertEquals(Arrays.asList(1L, 3L), ids(snapshot, query(condition(Connect.AND, "username", Operator.IN, "ALICE", "Carol"))));
+        assertEquals(Arrays.asList(3L, 5L), ids(snapshot, query(condition(Connect.AND, "username", Operator.GREAT, "BOB"))));
+        Query order = new Query();
+        order.getOrderMap().put("username", Order.ASC);
+        List<Map<String, Object>> rowList = rows();
+        rowList.get(0).put("username", "Bob");
+        TableReplica.remove("replica_case");
+        snapshot = TableReplica.of("replica_case").get(User.class, () -> rowList);
+        assertEquals(Arrays.asList(4L, 2L, 1L, 3L, 5L), ids(snapshot, order), "排序不区分大小写");
+
+        String tableName = "replica_case_sensitive";
+        TableReplica.remove(tableName);
+        snapshot = TableReplica.of(tableName, 0, true).get(User.class, this::rows);
+        assertEquals(0, ids(snapshot, query(condition(Connect.AND, "username", Operator.EQUAL, "Alice"))).size());
+        assertEquals(Arrays.asList(3L), ids(snapshot, query(condition(Connect.AND, "username", Operator.IN, "ALICE", "carol"))));
+        assertEquals(0, ids(snapshot, query(condition(Connect.AND, "username", Operator.LIKE, "ALI"))).size());
+        TableReplica.remove(tableName);
+    }
+
+    @Test
+    @DisplayName("测试AND优先于OR")
+    void testConnect() {
+        TableReplica.Snapshot snapshot = snapshot("replica_connect");
+        // age = 18 OR age >= 30 AND username LIKE 'c' => age = 18 OR (age >= 30 AND username LIKE 'c')
+        Query query = query(condition(Connect.AND, "age", Operator.EQUAL, 18),
+                condition(Connect.OR, "age", Operator.GREAT_EQUAL, 30),
+                condition(Connect.AND, "username", Operator.LIKE, "c"));
+        assertEquals(Arrays.asList(1L, 3L), ids(snapshot, query));
+        // 第一个条件的连接方式被忽略
+        query = query(condition(Connect.OR, "age", Operator.EQUAL, 18),
+                condition(Connect.AND, "username", Operator.LIKE, "bob"));
+        assertEquals(0, ids(snapshot, query).size());
+    }
+
+    @Test
+    @DisplayName("测试排序、分页和查询列")
+    void testOrderPageColumns() {
+        TableReplica.Snapshot snapshot = snapshot("replica_order");
+        Query query = new Query();
+        query.getOrderMap().put("age", Order.DESC);
+        assertEquals(Arrays.asList(4L, 3L, 2L, 1L, 5L), ids(snapshot, query), "降序时NULL在最后");
+        query.getOrderMap().put("age", Order.ASC);
+        assertEquals(Arrays.asList(5L, 1L, 2L, 3L, 4L), ids(snapshot, query), "升序时NULL在最前");
+
+        List<Map<String, Object>> page = snapshot.select(snapshot.compile(query), 1, 2);
+        assertEquals(Arrays.asList(1L, 2L), page.stream().map(row -> row.get("id")).collect(Collectors.toList()));
+
+        query.setColumnList(Arrays.asList("username", "age"));
+        Map<String, Object> row = snapshot.select(snapshot.compile(query), 0, 1).get(0);
+        assertNull(row.get("id"), "未查询的字段为null");
+        assertEquals("eve", row.get("username"));
+        row.put("username", "changed");
+        assertEquals("eve", snapshot.select(snapshot.compile(query), 0, 1).get(0).get("username"),
+                "修改返回的记录不影响快照");
+
+        query.getOrderMap().put("unknownColumn", Order.ASC);
+        assertNull(snapshot.compile(query), "不存在的字段由数据库处理");
+        assertNull(snapshot.compile(query(condition(Connect.AND, "age", Operator.BETWEEN, 1))), "缺少参数由数据库处理");
+        assertNull(snapshot.compile(query(condition(Connect.AND, "age", Operator.IN))), "IN的参数为空由数据库处理");
+    }
+
+    @Test
+    @DisplayName("测试写版本号变化后重建快照")
+    void testRebuild() {
+        String tableName = "replica_rebuild_" + System.nanoTime();
+        AtomicInteger loads = new AtomicInteger();
+        TableReplica replica = TableReplica.of(tableName);
+        TableReplica.Snapshot first = replica.get(User.class, () -> {
+            loads.incrementAndGet();
+            return rows();
+        });
+        assertSame(first, replica.get(User.class, () -> {
+            loads.incrementAndGet();
+            return rows();
+        }), "版本号未变化时复用快照");
+        assertEquals(1, loads.get());
+
+        TableVersions.bump(tableName);
+        assertTrue(replica.markRefreshPending());
+        assertFalse(replica.markRefreshPending(), "连续的写操作只安排一次重建");
+        replica.refresh(User.class, () -> {
+            loads.incrementAndGet();
+            return rows().subList(0, 2);
+        });
+        TableReplica.Snapshot second = replica.get(User.class, ArrayList::new);
+        assertNotSame(first, second);
+        assertEquals(2, second.size());
+        assertEquals(5, first.size(), "旧快照保持不变");
+        assertEquals(2, loads.get());
+        assertTrue(replica.markRefreshPending());
+
+        TableReplica.remove(tableName);
+        assertNull(TableReplica.get(tableName));
+    }
+
+    @Test
+    @DisplayName("测试其他节点写入后在后台重建，只有写入的线程等待重建")
+    void testBackgroundRebuild() {
+        String tableName = "replica_background_" + System.nanoTime();
+        MemoryTableVersionStore versionStore = new MemoryTableVersionStore();
+        TableVersions.setStore(versionStore);
+        TableVersions.setSharedRefreshMillis(0);
+        try {
+            List<Runnable> taskList = new ArrayList<>();
+            TableReplica replica = TableReplica.of(tableName);
+            TableReplica.Snapshot first = replica.get(User.class, this::rows, taskList::add);
+            assertTrue(taskList.isEmpty());
+
+            versionStore.remoteWrite(tableName);
+            assertSame(first, replica.get(User.class, () -> rows().subList(0, 3), taskList::add), "重建期间返回旧快照");
+            assertSame(first, replica.get(User.class, () -> rows().subList(0, 3), taskList::add));
+            assertEquals(1, taskList.size(), "连续的过期读取只安排一次重建");
+            taskList.remove(0).run();
+            TableReplica.Snapshot second = replica.get(User.class, ArrayList::new, taskList::add);
+            assertEquals(3, second.size(), "其他节点的写操作在后台重建后可见");
+
+            replica.markWritten(TableVersions.bump(tableName));
+            TableReplica.Snapshot third = replica.get(User.class, () -> rows().subList(0, 1), taskList::add);
+            assertEquals(1, third.size(), "写入的线程等待包含自己写操作的快照");
+            assertTrue(taskList.isEmpty());
+        } finally {
+            TableVersions.setSharedRefreshMillis(TableVersions.DEFAULT_SHARED_REFRESH_MILLIS);
+            TableVersions.setStore(null);
+            TableReplica.remove(tableName);
+        }
+    }
+
+    @Test
+    @DisplayName("测试快照超过最大存活时间后重建")
+    void testMaxAge() throws InterruptedException {
+        String tableName = "replica_max_age_" + System.nanoTime();
+        List<Runnable> taskList = new ArrayList<>();
+        TableReplica replica = TableReplica.of(tableName, 50, false);
+        TableReplica.Snapshot first = replica.get(User.class, this::rows, taskList::add);
+        Thread.sleep(100);
+        assertSame(first, replica.get(User.class, () -> rows().subList(0, 2), taskList::add));
+        assertEquals(1, taskList.size());
+        taskList.remove(0).run();
+        assertEquals(2, replica.get(User.class, ArrayList::new, taskList::add).size());
+        TableReplica.remove(tableName);
+    }
+
+    @Test
+    @DisplayName("测试转换后被修改的QueryWrapper不使用内存副本")
+    void testSourceQueryWrapper() {
+        Query query = query(condition(Connect.AND, "age", Operator.EQUAL, 18));
+        SourceQueryWrapper<Map<String, Object>> wrapper = new SourceQueryWrapper<>(new LinkedHashMap<>(), query);
+        assertFalse(wrapper.isSealed());
+        wrapper.eq("age", 18);
+        wrapper.seal();
+        assertTrue(wrapper.isSealed());
+        assertSame(query, wrapper.getSource());
+        wrapper.eq("tenant_id", 1);
+        assertFalse(wrapper.isSealed(), "附加了行级数据权限");
+    }
+
+    private TableReplica.Snapshot snapshot(String tableName) {
+        TableReplica.remove(tableName);
+        return TableReplica.of(tableName).get(User.class, this::rows);
+    }
+
+    private List<Map<String, Object>> rows() {
+        List<Map<String, Object>> rowList = new ArrayList<>();
+        rowList.add(row(1L, "alice", 18, "90"));
+        rowList.add(row(2L, "alina", 25, "88.5"));
+        rowList.add(row(3L, "carol", "30", null));
+        rowList.add(row(4L, "100%", 40, "70"));
+        rowList.add(row(5L, "eve", null, "60"));
+        return rowList;
+    }
+
+    private Map<String, Object> row(Long id, String username, Object age, String score) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", String.valueOf(id));
+        row.put("username", username);
+        row.put("age", age);
+        row.put("score", score);
+        return row;
+    }
+
+    private List<Long> ids(TableReplica.Snapshot snapshot, Query query) {
+        ReplicaQuery replicaQuery = snapshot.compile(query);
+        assertNotNull(replicaQuery);
+        return snapshot.select(replicaQuery, 0, -1).stream()
+                .map(row -> (Long) row.get("id")).collect(Collectors.toList());
+    }
+
+    private Query query(Condition... conditions) {
+        Query query = new Query();
+        query.setConditionList(new ArrayList<>(Arrays.asList(conditions)));
+        return query;
+    }
+
+    private Condition condition(Connect connect, String column, Operator operator, Object... params) {
+        Condition condition = new Condition();
+        condition.setConnect(connect);
+        condition.setColumn(column);
+        condition.setOperator(operator);
+        condition.setParamList(new ArrayList<>(Arrays.asList(params)));
+        return condition;
+    }
+}
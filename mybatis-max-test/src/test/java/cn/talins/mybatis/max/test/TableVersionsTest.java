@@ -0,0 +1,89 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.sdk.cache.TableVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TableVersions 单元测试
+ * 测试共享版本号递增失败后的重放
+ *
+ * @author talins
+ */
+@DisplayName("TableVersions测试")
+public class TableVersionsTest {
+
+    private static final String TEST_TABLE = "versions_table";
+
+    @AfterEach
+    void tearDown() {
+        TableVersions.setStore(null);
+        TableVersions.setSharedRefreshMillis(TableVersions.DEFAULT_SHARED_REFRESH_MILLIS);
+    }
+
+    @Test
+    @DisplayName("测试递增失败的写操作在下一次写操作时合并重放")
+    void testReplayOnNextWrite() {
+        FlakyStore store = new FlakyStore();
+        TableVersions.setStore(store);
+        TableVersions.setSharedRefreshMillis(0);
+
+        store.failing = true;
+        TableVersions.bump(TEST_TABLE);
+        TableVersions.bump(TEST_TABLE);
+
+        store.failing = false;
+        assertEquals(0, store.get(TEST_TABLE));
+        TableVersions.bump(TEST_TABLE);
+        assertEquals(1, store.get(TEST_TABLE), "失败的写操作合并到这一次递增中");
+        assertEquals(0, TableVersions.getRemoteWrites(TEST_TABLE), "本节点的写操作不计入其他节点");
+    }
+
+    @Test
+    @DisplayName("测试没有新的写操作时读取共享版本号重放失败的写操作")
+    void testReplayOnRead() {
+        FlakyStore store = new FlakyStore();
+        TableVersions.setStore(store);
+        TableVersions.setSharedRefreshMillis(0);
+
+        store.failing = true;
+        TableVersions.bump(TEST_TABLE);
+        assertEquals(TableVersions.UNKNOWN, TableVersions.getShared(TEST_TABLE));
+
+        store.failing = false;
+        assertEquals(1, TableVersions.getShared(TEST_TABLE), "其他节点应该能感知到失败的写操作");
+        assertEquals(0, TableVersions.getRemoteWrites(TEST_TABLE));
+        long floor = TableVersions.readRemoteWritesFloor(TEST_TABLE);
+        assertEquals(floor, TableVersions.readRemoteWritesCeiling(TEST_TABLE), "重放后不应误判其他节点写入");
+
+        store.remoteWrite(TEST_TABLE);
+        assertEquals(1, TableVersions.getRemoteWrites(TEST_TABLE));
+    }
+
+    /**
+     * 可以模拟存储不可用的版本号存储
+     */
+    private static class FlakyStore extends MemoryTableVersionStore {
+
+        private volatile boolean failing;
+
+        @Override
+        public long get(String tableName) {
+            if (failing) {
+                throw new IllegalStateException("store unavailable");
+            }
+            return super.get(tableName);
+        }
+
+        @Override
+        public long increment(String tableName) {
+            if (failing) {
+                throw new IllegalStateException("store unavailable");
+            }
+            return super.increment(tableName);
+        }
+    }
+}
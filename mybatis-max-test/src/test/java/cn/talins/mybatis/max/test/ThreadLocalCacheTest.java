@@ -0,0 +1,188 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.annotation.ThreadLocalCache;
+import cn.talins.mybatis.max.starter.ThreadLocalCacheAspect;
+import cn.talins.mybatis.max.starter.ThreadLocalCacheScope;
+import cn.talins.mybatis.max.starter.ThreadLocalCacheTaskDecorator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ThreadLocalCache 切面和作用域测试
+ *
+ * @author talins
+ */
+@DisplayName("ThreadLocalCacheTest测试")
+public class ThreadLocalCacheTest {
+
+    private CountingService target;
+
+    private CountingService service;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        target = new CountingService();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new ThreadLocalCacheAspect());
+        service = factory.getProxy();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        ThreadLocalCacheScope.setMaxEntries(ThreadLocalCacheScope.DEFAULT_MAX_ENTRIES);
+    }
+
+    @Test
+    @DisplayName("作用域外不缓存")
+    void testNoScope() {
+        service.find(1L);
+        service.find(1L);
+
+        assertEquals(2, target.count.get());
+        assertFalse(ThreadLocalCacheScope.isActive());
+    }
+
+    @Test
+    @DisplayName("作用域内相同参数只执行一次，关闭后清空")
+    void testScope() {
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            String first = service.find(1L);
+            assertSame(first, service.find(1L));
+            service.find(2L);
+            assertEquals(2, target.count.get());
+        }
+        assertFalse(ThreadLocalCacheScope.isActive());
+
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            service.find(1L);
+        }
+        assertEquals(3, target.count.get());
+    }
+
+    @Test
+    @DisplayName("数组参数按内容比较，null返回值也缓存")
+    void testArrayArgsAndNull() {
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            service.join(new Long[]{1L, 2L});
+            service.join(new Long[]{1L, 2L});
+            assertNull(service.find(null));
+            assertNull(service.find(null));
+        }
+        assertEquals(2, target.count.get());
+    }
+
+    @Test
+    @DisplayName("抛出异常时不缓存")
+    void testException() {
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            assertThrows(IllegalArgumentException.class, () -> service.find(-1L));
+            assertThrows(IllegalArgumentException.class, () -> service.find(-1L));
+        }
+        assertEquals(2, target.count.get());
+    }
+
+    @Test
+    @DisplayName("嵌套打开沿用外层作用域")
+    void testNestedScope() {
+        try (ThreadLocalCacheScope outer = ThreadLocalCacheScope.open()) {
+            service.find(1L);
+            try (ThreadLocalCacheScope inner = ThreadLocalCacheScope.open()) {
+                service.find(1L);
+            }
+            assertTrue(ThreadLocalCacheScope.isActive());
+            service.find(1L);
+        }
+        assertEquals(1, target.count.get());
+    }
+
+    @Test
+    @DisplayName("异步任务沿用提交线程的作用域，执行后线程不残留作用域")
+    void testTaskDecorator() throws Exception {
+        ThreadLocalCacheTaskDecorator decorator = new ThreadLocalCacheTaskDecorator();
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            service.find(1L);
+            executor.submit(decorator.decorate(() -> service.find(1L))).get();
+            executor.submit(ThreadLocalCacheScope.wrap(() -> service.find(2L))).get();
+            service.find(2L);
+        }
+        assertEquals(2, target.count.get());
+        assertFalse(executor.submit(ThreadLocalCacheScope::isActive).get());
+    }
+
+    @Test
+    @DisplayName("达到上限后不再缓存新的结果")
+    void testMaxEntries() {
+        ThreadLocalCacheScope.setMaxEntries(1);
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            service.find(1L);
+            service.find(2L);
+            service.find(2L);
+            service.find(1L);
+        }
+        assertEquals(3, target.count.get());
+    }
+
+    @Test
+    @DisplayName("不同的bean实例和子类不共享缓存")
+    void testTargetIdentity() {
+        PrefixService subTarget = new PrefixService();
+        AspectJProxyFactory factory = new AspectJProxyFactory(subTarget);
+        factory.addAspect(new ThreadLocalCacheAspect());
+        CountingService subService = factory.getProxy();
+        try (ThreadLocalCacheScope scope = ThreadLocalCacheScope.open()) {
+            assertEquals("user-1", service.find(1L));
+            assertEquals("sub-user-1", subService.find(1L));
+            assertEquals("sub-user-1", subService.find(1L));
+        }
+        assertEquals(1, target.count.get());
+        assertEquals(1, subTarget.count.get());
+    }
+
+    public static class CountingService {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @ThreadLocalCache
+        public String find(Long id) {
+            count.incrementAndGet();
+            if (id == null) {
+                return null;
+            }
+            if (id < 0) {
+                throw new IllegalArgumentException("id");
+            }
+            return prefix() + id;
+        }
+
+        protected String prefix() {
+            return "user-";
+        }
+
+        @ThreadLocalCache
+        public String join(Long[] ids) {
+            count.incrementAndGet();
+            return String.valueOf(ids.length);
+        }
+    }
+
+    public static class PrefixService extends CountingService {
+
+        @Override
+        protected String prefix() {
+            return "sub-user-";
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package cn.talins.mybatis.max.test;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.App;
+import cn.talins.mybatis.max.sdk.repository.BaseRepository;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工作单元测试
+ * 测试inTransaction的批量刷新、回滚、加入外部事务，并对比逐条写入的耗时
+ *
+ * @author talins
+ */
+@SpringBootTest(classes = App.class)
+public class UnitOfWorkTest {
+
+    @Autowired
+    private BaseRepository baseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final String TEST_TABLE = "sys_user";
+
+    private static final int OPERATION_COUNT = 30;
+
+    @Test
+    @DisplayName("测试工作单元插入、更新、删除")
+    void testInTransaction() {
+        List<Long> idList = new ArrayList<>();
+        baseRepository.inTransaction(uow -> {
+            for (int i = 0; i < 3; i++) {
+                idList.add(uow.insert(TEST_TABLE, newUser("uow_" + i)));
+            }
+        });
+        assertEquals(3, idList.size(), "登记时应该分配ID");
+        assertEquals(3, baseRepository.selectBatchIds(TEST_TABLE, idList, JSONObject.class).size());
+
+        baseRepository.inTransaction(uow -> {
+            JSONObject update = new JSONObject();
+            update.set("id", idList.get(0));
+            update.set("nickname", "已更新");
+            uow.updateById(TEST_TABLE, update);
+            uow.deleteById(TEST_TABLE, idList.get(1));
+        });
+        JSONObject updated = baseRepository.selectById(TEST_TABLE, idList.get(0), JSONObject.class);
+        assertEquals("已更新", updated.getStr("nickname"), "更新应该生效");
+        assertEquals(0L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).eq("id", idList.get(1))), "删除应该生效");
+
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+    }
+
+    @Test
+    @DisplayName("测试回调异常时不写入")
+    void testRollback() {
+        List<Long> idList = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> baseRepository.inTransaction(uow -> {
+            idList.add(uow.insert(TEST_TABLE, newUser("uow_rollback")));
+            throw new IllegalStateException("业务异常");
+        }));
+        assertEquals(0L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).in("id", idList)), "回调异常时不应写入任何记录");
+    }
+
+    @Test
+    @DisplayName("测试在已有写操作的外部事务中使用工作单元")
+    void testJoinedTransaction() {
+        List<Long> idList = new ArrayList<>();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            idList.add(baseRepository.insert(TEST_TABLE, newUser("uow_joined_before")));
+            baseRepository.inTransaction(uow -> {
+                idList.add(uow.insert(TEST_TABLE, newUser("uow_joined")));
+                uow.deleteById(TEST_TABLE, idList.get(0));
+            });
+            idList.add(baseRepository.insert(TEST_TABLE, newUser("uow_joined_after")));
+        });
+        assertEquals(2L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).in("id", idList)), "外部事务中的写操作和工作单元都应该提交");
+        assertNull(baseRepository.selectById(TEST_TABLE, idList.get(0), JSONObject.class));
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            idList.add(baseRepository.insert(TEST_TABLE, newUser("uow_joined_rollback")));
+            baseRepository.inTransaction(uow -> idList.add(uow.insert(TEST_TABLE, newUser("uow_joined_rollback"))));
+            throw new IllegalStateException("业务异常");
+        }));
+        assertEquals(2L, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).in("id", idList)), "外部事务回滚时工作单元的写操作也应该回滚");
+
+        baseRepository.deleteBatchIds(TEST_TABLE, idList);
+    }
+
+    @Test
+    @DisplayName("逐条写入与工作单元批量写入耗时对比")
+    void testBenchmark() {
+        List<JSONObject> userList = new ArrayList<>();
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            userList.add(newUser("uow_bench_" + i));
+        }
+
+        long start = System.nanoTime();
+        List<Long> directIdList = new ArrayList<>();
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            directIdList.add(baseRepository.insert(TEST_TABLE, newUser("direct_bench_" + i)));
+        }
+        long directNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Long> batchIdList = new ArrayList<>();
+        baseRepository.inTransaction(uow -> batchIdList.addAll(uow.insertBatch(TEST_TABLE, userList)));
+        long batchNanos = System.nanoTime() - start;
+
+        StaticLog.info("{} inserts: direct={}ms ({} round-trips) unit-of-work={}ms (1 batch)",
+                OPERATION_COUNT, directNanos / 1_000_000, OPERATION_COUNT, batchNanos / 1_000_000);
+        assertEquals(OPERATION_COUNT, batchIdList.size());
+        assertEquals((long) OPERATION_COUNT, baseRepository.selectCount(TEST_TABLE,
+                Wrappers.query(JSONObject.class).in("id", batchIdList)));
+
+        baseRepository.deleteBatchIds(TEST_TABLE, directIdList);
+        baseRepository.deleteBatchIds(TEST_TABLE, batchIdList);
+    }
+
+    private JSONObject newUser(String username) {
+        JSONObject user = new JSONObject();
+        user.set("username", username + "_" + System.nanoTime());
+        user.set("nickname", "工作单元");
+        user.set("email", "uow@example.com");
+        return user;
+    }
+}
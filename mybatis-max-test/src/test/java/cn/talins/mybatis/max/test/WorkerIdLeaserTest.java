@@ -0,0 +1,181 @@
+package cn.talins.mybatis.max.test;
+
+import cn.talins.mybatis.max.api.IIdGenerator;
+import cn.talins.mybatis.max.sdk.id.BufferedIdGenerator;
+import cn.talins.mybatis.max.sdk.id.LeasedIdGenerator;
+import cn.talins.mybatis.max.sdk.id.WorkerIdLeaser;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WorkerIdLeaser 单元测试
+ * 使用H2内存数据库测试workerId的租约分配、续约和回收
+ *
+ * @author talins
+ */
+@DisplayName("WorkerIdLeaser测试")
+public class WorkerIdLeaserTest {
+
+    private static final String TABLE_NAME = WorkerIdLeaser.DEFAULT_TABLE_NAME;
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:worker;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE_NAME);
+        }
+    }
+
+    @Test
+    @DisplayName("测试多个节点分配到不同的workerId")
+    void testDistinctWorkerId() {
+        try (WorkerIdLeaser node1 = newLeaser(3, null);
+             WorkerIdLeaser node2 = newLeaser(3, null)) {
+            assertEquals(0, node1.start(), "第一个节点应该分配到0");
+            assertEquals(1, node2.start(), "第二个节点应该分配到1");
+            assertEquals(0, node1.start(), "重复启动应该返回同一个workerId");
+        }
+    }
+
+    @Test
+    @DisplayName("测试workerId耗尽")
+    void testExhausted() {
+        try (WorkerIdLeaser node1 = newLeaser(0, null);
+             WorkerIdLeaser node2 = newLeaser(0, null)) {
+            node1.start();
+            assertThrows(IllegalStateException.class, node2::start, "没有空闲workerId时应该抛出异常");
+        }
+    }
+
+    @Test
+    @DisplayName("测试关闭后释放workerId")
+    void testRelease() {
+        WorkerIdLeaser node1 = newLeaser(0, null);
+        assertEquals(0, node1.start());
+        node1.close();
+        assertEquals(-1, node1.getWorkerId(), "关闭后不再持有workerId");
+
+        try (WorkerIdLeaser node2 = newLeaser(0, null)) {
+            assertEquals(0, node2.start(), "释放的workerId应该可以立即复用");
+        }
+    }
+
+    @Test
+    @DisplayName("测试租约被回收后重新分配")
+    void testReassign() throws Exception {
+        CompletableFuture<Integer> reassigned = new CompletableFuture<>();
+        try (WorkerIdLeaser node = newLeaser(3, reassigned::complete)) {
+            assertEquals(0, node.start());
+            // 模拟租约过期后被其他节点接管
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.executeUpdate("UPDATE " + TABLE_NAME + " SET instance_id = 'other' WHERE worker_id = 0");
+            }
+            int workerId = reassigned.get(5, TimeUnit.SECONDS);
+            assertEquals(1, workerId, "应该重新分配到空闲的workerId");
+            assertEquals(1, node.getWorkerId());
+        }
+    }
+
+    @Test
+    @DisplayName("测试心跳失败后暂停生成ID，重新分配后清空缓冲区")
+    void testFenceAndReassign() throws Exception {
+        AtomicLong sequence = new AtomicLong();
+        BufferedIdGenerator buffered = new BufferedIdGenerator(sequence::incrementAndGet, 1, 100);
+        CompletableFuture<Integer> reassigned = new CompletableFuture<>();
+        try (WorkerIdLeaser node = newLeaser(3, reassigned::complete)) {
+            node.addReassignListener(workerId -> {
+                // 模拟按新workerId重置底层生成器
+                sequence.set(workerId * 1000L);
+                buffered.clear();
+            });
+            IIdGenerator idGenerator = new LeasedIdGenerator(node, buffered);
+            assertEquals(0, node.start());
+            assertEquals(1L, idGenerator.nextId());
+
+            // 协调表不可用，心跳持续失败
+            execute("DROP TABLE " + TABLE_NAME);
+            assertTrue(waitFor(() -> !node.isLeaseValid()), "续约失败超过租约时长后租约应该失效");
+            assertThrows(IllegalStateException.class, idGenerator::nextId, "租约失效后不能继续生成ID");
+
+            // 恢复后发现workerId已被其他节点接管
+            execute("CREATE TABLE " + TABLE_NAME + " (worker_id INT NOT NULL PRIMARY KEY, "
+                    + "instance_id VARCHAR(128) NOT NULL, expire_time TIMESTAMP NOT NULL)");
+            execute("INSERT INTO " + TABLE_NAME + " VALUES (0, 'other', TIMESTAMP '9999-12-31 00:00:00')");
+            assertEquals(1, reassigned.get(5, TimeUnit.SECONDS), "应该重新分配到空闲的workerId");
+            assertTrue(waitFor(node::isLeaseValid), "重新分配后租约应该恢复有效");
+            assertEquals(1001L, idGenerator.nextId(), "旧workerId预生成的ID应该被丢弃");
+        }
+    }
+
+    @Test
+    @DisplayName("测试按数据库时间判断租约过期")
+    void testDatabaseTime() throws SQLException {
+        execute("CREATE TABLE " + TABLE_NAME + " (worker_id INT NOT NULL PRIMARY KEY, "
+                + "instance_id VARCHAR(128) NOT NULL, expire_time TIMESTAMP NOT NULL)");
+        execute("INSERT INTO " + TABLE_NAME + " VALUES (0, 'live', "
+                + "{fn TIMESTAMPADD(SQL_TSI_SECOND, 60, CURRENT_TIMESTAMP)})");
+        execute("INSERT INTO " + TABLE_NAME + " VALUES (1, 'expired', "
+                + "{fn TIMESTAMPADD(SQL_TSI_SECOND, -60, CURRENT_TIMESTAMP)})");
+        try (WorkerIdLeaser node = newLeaser(3, null)) {
+            assertEquals(1, node.start(), "应该跳过数据库时间下仍然有效的租约，接管已过期的租约");
+        }
+    }
+
+    @Test
+    @DisplayName("测试插入租约失败时不当作已被占用")
+    void testInsertError() throws SQLException {
+        execute("CREATE TABLE " + TABLE_NAME + " (worker_id INT NOT NULL PRIMARY KEY, "
+                + "instance_id VARCHAR(4) NOT NULL, expire_time TIMESTAMP NOT NULL)");
+        try (WorkerIdLeaser node = newLeaser(3, null)) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, node::start);
+            assertInstanceOf(SQLException.class, e.getCause(), "数据库异常应该向上抛出，而不是报告没有可用的workerId");
+        }
+    }
+
+    @Test
+    @DisplayName("测试非法表名")
+    void testIllegalTableName() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WorkerIdLeaser(dataSource, "worker; DROP TABLE x", 3, 1000, 100, null));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private WorkerIdLeaser newLeaser(int maxWorkerId, IntConsumer onReassign) {
+        return new WorkerIdLeaser(dataSource, TABLE_NAME, maxWorkerId, 1000, 100, onReassign);
+    }
+}
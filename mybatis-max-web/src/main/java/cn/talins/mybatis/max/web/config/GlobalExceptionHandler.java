@@ -1,6 +1,7 @@
 package cn.talins.mybatis.max.web.config;
 
 import cn.hutool.log.StaticLog;
+import cn.talins.mybatis.max.api.exception.VersionConflictException;
 import cn.talins.mybatis.max.api.pojo.Result;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindException;
@@ -38,6 +39,7 @@ import java.util.stream.Collectors;
  *     <li>MethodArgumentNotValidException: @RequestBody参数校验失败</li>
  *     <li>ConstraintViolationException: @PathVariable/@RequestParam参数校验失败</li>
  *     <li>BindException: 表单参数绑定校验失败</li>
+ *     <li>VersionConflictException: 乐观锁版本冲突</li>
  *     <li>Exception: 其他未捕获的异常</li>
  * </ul>
  * </p>
@@ -105,6 +107,22 @@ public class GlobalExceptionHandler {
         return Result.error(message);
     }
 
+    /**
+     * 处理乐观锁版本冲突异常
+     * <p>
+     * 记录已被其他请求修改，客户端应重新读取后再提交。
+     * </p>
+     * 
+     * @param e 异常对象
+     * @return 错误响应
+     */
+    @ExceptionHandler(VersionConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Result<?> handleVersionConflictException(VersionConflictException e) {
+        StaticLog.warn(e.getMessage());
+        return Result.error(e.getMessage());
+    }
+
     /**
      * 处理所有未捕获的异常
      * <p>
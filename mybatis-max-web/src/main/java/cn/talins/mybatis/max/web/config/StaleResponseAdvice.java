@@ -0,0 +1,49 @@
+package cn.talins.mybatis.max.web.config;
+
+import cn.talins.mybatis.max.api.pojo.PageResult;
+import cn.talins.mybatis.max.api.pojo.Result;
+import cn.talins.mybatis.max.sdk.cache.StaleIfError;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 陈旧数据响应处理器 - 为返回了缓存旧值的响应加上陈旧标记
+ * <p>
+ * 开启了降级读取的缓存表在数据库出错或超时时返回旧值，并在当前线程记录陈旧时间。
+ * 该类在写出响应体之前读取并清除该记录，写入{@link Result}或{@link PageResult}的stale字段，
+ * 调用方据此判断数据是否为最新。请求结束时由{@link StaleResponseFilter}兜底清除。
+ * </p>
+ *
+ * @author talins
+ * @see StaleIfError 降级读取
+ */
+@RestControllerAdvice
+public class StaleResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        Long staleness = StaleIfError.getStaleness();
+        if (staleness == null) {
+            return body;
+        }
+        StaleIfError.clear();
+        if (body instanceof Result) {
+            ((Result<?>) body).setStale(staleness);
+        } else if (body instanceof PageResult) {
+            ((PageResult<?>) body).setStale(staleness);
+        }
+        return body;
+    }
+}
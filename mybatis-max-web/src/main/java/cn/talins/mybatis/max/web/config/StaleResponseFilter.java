@@ -0,0 +1,31 @@
+package cn.talins.mybatis.max.web.config;
+
+import cn.talins.mybatis.max.sdk.cache.StaleIfError;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 陈旧标记的请求作用域过滤器
+ * <p>
+ * 每个请求开始时打开{@link StaleIfError.Scope}，丢弃线程上之前残留的陈旧标记；请求处理完成后关闭并清除，
+ * 包括抛出异常或响应体不经过{@link StaleResponseAdvice}的请求，请求线程归还到容器线程池时不残留任何状态。
+ * </p>
+ *
+ * @author talins
+ * @see StaleResponseAdvice 写入陈旧标记
+ */
+public class StaleResponseFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (StaleIfError.Scope ignored = StaleIfError.open()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -10,7 +10,7 @@ import org.springframework.context.annotation.Configuration;
 /**
  * Web配置类 - 配置Web层相关的Bean
  * <p>
- * 该类配置了JSON序列化相关的设置，确保API响应的JSON格式符合预期。
+ * 该类配置了JSON序列化相关的设置，确保API响应的JSON格式符合预期，并注册陈旧标记的请求作用域过滤器。
  * </p>
  * 
  * @author talins
@@ -39,4 +39,15 @@ public class WebConfiguration {
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         return mapper;
     }
+
+    /**
+     * 配置陈旧标记的请求作用域过滤器
+     *
+     * @return 过滤器
+     * @see StaleResponseAdvice 写入陈旧标记
+     */
+    @Bean
+    public StaleResponseFilter staleResponseFilter() {
+        return new StaleResponseFilter();
+    }
 }
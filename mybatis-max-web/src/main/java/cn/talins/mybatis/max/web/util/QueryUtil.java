@@ -6,8 +6,8 @@ import cn.talins.mybatis.max.api.enums.Connect;
 import cn.talins.mybatis.max.api.enums.Order;
 import cn.talins.mybatis.max.api.pojo.Condition;
 import cn.talins.mybatis.max.api.pojo.Query;
+import cn.talins.mybatis.max.sdk.cache.SourceQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -46,13 +46,14 @@ public class QueryUtil {
      *     <li>处理排序规则（ORDER BY子句）</li>
      *     <li>处理查询条件（WHERE子句）</li>
      * </ol>
+     * 返回的QueryWrapper保留原始查询，内存副本模式的表直接在内存中计算（见{@link SourceQueryWrapper}）。
      * </p>
      * 
      * @param query 查询对象
      * @return MyBatis-Plus的QueryWrapper
      */
     public static QueryWrapper<Map<String, Object>> toQueryWrapper(Query query) {
-        QueryWrapper<Map<String, Object>> queryWrapper = Wrappers.query(new LinkedHashMap<>());
+        SourceQueryWrapper<Map<String, Object>> queryWrapper = new SourceQueryWrapper<>(new LinkedHashMap<>(), query);
 
         if(CollUtil.isNotEmpty(query.getColumnList())) {
             queryWrapper.select(query.getColumnList().stream().map(StrUtil::toUnderlineCase).collect(Collectors.toList()));
@@ -80,7 +81,7 @@ public class QueryUtil {
             }
         }
 
-        return queryWrapper;
+        return queryWrapper.seal();
     }
 
     /**